@@ -44,12 +44,17 @@ import com.termux.shared.shell.command.ExecutionCommand.ExecutionCommandBuilder;
 import com.termux.shared.shell.command.ExecutionCommand.Runner;
 import com.termux.shared.shell.command.ExecutionCommand.SessionCreateMode;
 import com.termux.shared.view.ViewUtils;
+import com.termux.terminal.SessionJournal;
 import com.termux.terminal.TerminalEmulator;
+import com.termux.terminal.TerminalMemoryGovernor;
 import com.termux.terminal.TerminalSession;
 import com.termux.terminal.TerminalSessionClient;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A service holding a list of {@link TermuxSession} in {@link #mTermuxSessions} and background {@link AppShell}
@@ -106,6 +111,25 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
      */
     final TermuxTerminalSessionClientBase mTermuxTerminalSessionClientBase = new TermuxTerminalSessionClientBase();
 
+    /**
+     * The governor of the memory used by the terminal buffers of all {@link #mTermuxSessions}, with a budget of a
+     * quarter of the app heap, so that many sessions with large histories do not run the app out of memory.
+     */
+    final TerminalMemoryGovernor mTerminalMemoryGovernor = new TerminalMemoryGovernor(Runtime.getRuntime().maxMemory() / 4);
+
+    /** The directory in the no backup files directory with the {@link SessionJournal} of each slot, named after it. */
+    private static final String SESSION_JOURNALS_DIRECTORY = "session-journals";
+
+    /** The minimum number of output bytes of a segment of a {@link SessionJournal}. */
+    private static final int SESSION_JOURNAL_SEGMENT_BYTES = 1024 * 1024;
+
+    /**
+     * The slots of the journals of the sessions in {@link #mTermuxSessions} which are journaled. A new session takes the
+     * lowest slot not in use, so that the sessions created after the app process has been killed are restored in the
+     * order they had been created in.
+     */
+    private final Map<TerminalSession, Integer> mSessionJournalSlots = new HashMap<>();
+
     /**
      * Termux app shared properties manager, loaded from termux.properties
      */
@@ -789,6 +813,14 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
         }
 
         mTermuxSessions.add(newTermuxSession);
+        TerminalSession newTerminalSession = newTermuxSession.getTerminalSession();
+        // Must be set before the emulator is initialized by the first resize of the terminal view.
+        newTerminalSession.setZeroCopyOutput(mProperties.isUsingTerminalZeroCopyOutput());
+        newTerminalSession.setFlushOutputOnInterrupt(mProperties.shouldDiscardTerminalOutputOnInterrupt());
+        // The output of plugin commands is not restored, as they are not run again.
+        if (mProperties.isUsingTerminalSessionJournal() && !executionCommand.isPluginExecutionCommand)
+            setSessionJournal(newTerminalSession);
+        mTerminalMemoryGovernor.register(newTerminalSession);
 
         // Remove the execution command from the pending plugin execution commands list since it has
         // now been processed
@@ -833,6 +865,8 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
                 TermuxPluginUtils.processPluginExecutionCommandResult(this, LOG_TAG, executionCommand);
 
             mTermuxSessions.remove(termuxSession);
+            mTerminalMemoryGovernor.unregister(termuxSession.getTerminalSession());
+            deleteSessionJournal(termuxSession.getTerminalSession());
 
             // Notify {@link TermuxSessionsListViewController} that sessions list has been updated if
             // activity in is foreground
@@ -848,6 +882,22 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
 
 
 
+    /** Set a {@link SessionJournal} in the lowest free slot for a session, restoring the one journaled in it last. */
+    private void setSessionJournal(TerminalSession terminalSession) {
+        int slot = 0;
+        while (mSessionJournalSlots.containsValue(slot)) slot++;
+        mSessionJournalSlots.put(terminalSession, slot);
+        File directory = new File(new File(getNoBackupFilesDir(), SESSION_JOURNALS_DIRECTORY), String.valueOf(slot));
+        terminalSession.setJournal(new SessionJournal(directory, SESSION_JOURNAL_SEGMENT_BYTES));
+    }
+
+    /** Delete the journal of a session which has ended, so that it is not restored, and free its slot. */
+    private void deleteSessionJournal(TerminalSession terminalSession) {
+        mSessionJournalSlots.remove(terminalSession);
+        SessionJournal journal = terminalSession.getJournal();
+        if (journal != null) journal.delete();
+    }
+
     /** Process session action for new session. */
     private void handleSessionAction(int sessionAction, TerminalSession newTerminalSession) {
         Logger.logDebug(LOG_TAG, "Processing sessionAction \"" + sessionAction + "\" for session \"" + newTerminalSession.mSessionName + "\"");
@@ -1038,6 +1088,11 @@ public final class TermuxService extends Service implements AppShell.AppShellCli
         preferences.setCurrentSession(terminalSession.mHandle);
     }
 
+    /** The governor of the memory used by the terminal buffers of the sessions, which also has its usage statistics. */
+    public TerminalMemoryGovernor getTerminalMemoryGovernor() {
+        return mTerminalMemoryGovernor;
+    }
+
     public synchronized boolean isTermuxSessionsEmpty() {
         return mTermuxSessions.isEmpty();
     }
@@ -205,7 +205,11 @@ public class TermuxTerminalSessionClient extends TermuxTerminalSessionClientBase
         ClipData clipData = clipboard.getPrimaryClip();
         if (clipData != null) {
             CharSequence paste = clipData.getItemAt(0).coerceToText(mActivity);
-            if (!TextUtils.isEmpty(paste)) mActivity.getTerminalView().mEmulator.paste(paste.toString());
+            if (TextUtils.isEmpty(paste)) return;
+
+            // Stream the paste from a background thread, a large paste may take a while for the process to consume.
+            TerminalSession currentSession = mActivity.getTerminalView().getCurrentSession();
+            if (currentSession != null) currentSession.pasteInBackground(paste);
         }
     }
 
@@ -311,6 +315,10 @@ public class TermuxTerminalSessionClient extends TermuxTerminalSessionClientBase
             notifyOfSessionChange();
         }
 
+        // Keep the shown session out of hibernation, and restore its history if hibernated:
+        TermuxService service = mActivity.getTermuxService();
+        if (service != null) service.getTerminalMemoryGovernor().onSessionViewed(session);
+
         // We call the following even when the session is already being displayed since config may
         // be stale, like current session not selected or scrolled to.
         checkAndScrollToSession(session);
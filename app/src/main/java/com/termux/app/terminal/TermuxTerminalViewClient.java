@@ -763,15 +763,19 @@ public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
 
         final String transcriptText = shellUtils.getTerminalSessionTranscriptText(session, false, true);
         if (transcriptText == null) return;
+        // The metrics are only to be accessed on the main thread, so are taken before generating the report.
+        String metrics = session.getMetrics() + "\n" + session.getOutputQueueStats();
+        if (session.getInputLatencyTracer() != null) metrics += "\n" + session.getInputLatencyTracer();
+        final String metricsText = metrics;
 
         MessageDialogUtils.showMessage(mActivity, TermuxConstants.TERMUX_APP_NAME + " Report Issue",
             mActivity.getString(R.string.msg_add_termux_debug_info),
-            mActivity.getString(R.string.action_yes), (dialog, which) -> reportIssueFromTranscript(transcriptText, true),
-            mActivity.getString(R.string.action_no), (dialog, which) -> reportIssueFromTranscript(transcriptText, false),
+            mActivity.getString(R.string.action_yes), (dialog, which) -> reportIssueFromTranscript(transcriptText, metricsText, true),
+            mActivity.getString(R.string.action_no), (dialog, which) -> reportIssueFromTranscript(transcriptText, metricsText, false),
             null);
     }
 
-    private void reportIssueFromTranscript(String transcriptText, boolean addTermuxDebugInfo) {
+    private void reportIssueFromTranscript(String transcriptText, String metricsText, boolean addTermuxDebugInfo) {
         Logger.showToast(mActivity, mActivity.getString(R.string.msg_generating_report), true);
 
         new Thread() {
@@ -781,7 +785,7 @@ public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
 
                 addReportHeader(reportString, transcriptText);
 
-                addReportBody(reportString, addTermuxDebugInfo);
+                addReportBody(reportString, metricsText, addTermuxDebugInfo);
 
                 ReportInfo reportInfo = updateReportInfo(reportString);
 
@@ -790,7 +794,7 @@ public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
         }.start();
     }
 
-    private void addReportBody(StringBuilder reportString, boolean addTermuxDebugInfo) {
+    private void addReportBody(StringBuilder reportString, String metricsText, boolean addTermuxDebugInfo) {
         if (addTermuxDebugInfo) {
             reportString.append("\n\n").append(TermuxUtils.getAppInfoMarkdownString(mActivity, TermuxUtils.AppInfoMode.TERMUX_AND_PLUGIN_PACKAGES));
         } else {
@@ -809,6 +813,10 @@ public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
             String termuxDebugInfo = TermuxUtils.getTermuxDebugMarkdownString(mActivity);
             if (termuxDebugInfo != null)
                 reportString.append("\n\n").append(termuxDebugInfo);
+
+            reportString.append("\n\n## Terminal Metrics\n");
+            reportString.append("\n").append(MarkdownUtils.getMarkdownCodeForString(metricsText, true));
+            reportString.append("\n##\n");
         }
     }
 
@@ -842,7 +850,7 @@ public class TermuxTerminalViewClient extends TermuxTerminalViewClientBase {
         if (clipData == null) return;
         CharSequence paste = clipData.getItemAt(0).coerceToText(mActivity);
         if (!TextUtils.isEmpty(paste))
-            session.getEmulator().paste(paste.toString());
+            session.pasteInBackground(paste);
     }
 
 }
@@ -0,0 +1,56 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clearing a full history with ED 3, like with {@code clear && printf '\e[3J'}, which bumps the generation of the
+ * transcript instead of clearing its rows. A clear empties the history, so the history is filled again before each
+ * one, outside of the measured time, and each clear is measured on its own.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+@Fork(2)
+@State(Scope.Thread)
+public class ClearTranscriptBenchmark {
+
+    @Param({"2000", "50000"})
+    public int transcriptRows;
+
+    private TerminalEmulator mEmulator;
+    private final byte[] mClear = "\033[H\033[2J\033[3J".getBytes(StandardCharsets.US_ASCII);
+
+    @Setup
+    public void setUp() {
+        mEmulator = OutputCorpus.createEmulator(transcriptRows, false);
+    }
+
+    @Setup(Level.Invocation)
+    public void fillTranscript() {
+        byte[] log = OutputCorpus.get(OutputCorpus.ASCII_LOG);
+        final TerminalBuffer screen = mEmulator.getScreen();
+        while (screen.getActiveTranscriptRows() < screen.mTotalRows - screen.mScreenRows) mEmulator.append(log, log.length);
+    }
+
+    @Benchmark
+    public TerminalEmulator clearTranscript() {
+        mEmulator.append(mClear, mClear.length);
+        return mEmulator;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Erasing the screen with ED, where the rows only record where their blank tail starts, and for comparison by setting
+ * each cell like before. {@link #writeAndEraseScreen()} writes a line to each row before erasing, as a full screen
+ * program redrawing does, so that the erase has stored columns to drop.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class EraseBenchmark {
+
+    /** The columns and rows of the screen. */
+    @Param({"80x24", "300x100"})
+    public String size;
+
+    private int mColumns, mRows;
+    private TerminalEmulator mEmulator;
+    private byte[] mEraseScreen;
+    private byte[] mScreenOfLines;
+
+    @Setup
+    public void setUp() {
+        mColumns = Integer.parseInt(size.substring(0, size.indexOf('x')));
+        mRows = Integer.parseInt(size.substring(size.indexOf('x') + 1));
+        mEmulator = new TerminalEmulator(new DiscardingTerminalOutput(), mColumns, mRows, mRows, null);
+        mEraseScreen = "\033[H\033[2J".getBytes(StandardCharsets.US_ASCII);
+
+        StringBuilder lines = new StringBuilder("\033[H");
+        for (int row = 0; row < mRows; row++) {
+            if (row > 0) lines.append("\r\n");
+            for (int column = 0; column < mColumns / 2; column++) lines.append((char) ('a' + column % 26));
+        }
+        mScreenOfLines = lines.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public TerminalEmulator eraseScreen() {
+        mEmulator.append(mEraseScreen, mEraseScreen.length);
+        return mEmulator;
+    }
+
+    @Benchmark
+    public TerminalBuffer eraseScreenPerCell() {
+        final TerminalBuffer screen = mEmulator.getScreen();
+        for (int row = 0; row < mRows; row++)
+            for (int column = 0; column < mColumns; column++)
+                screen.setChar(column, row, ' ', TextStyle.NORMAL);
+        return screen;
+    }
+
+    @Benchmark
+    public TerminalEmulator writeAndEraseScreen() {
+        mEmulator.append(mScreenOfLines, mScreenOfLines.length);
+        mEmulator.append(mEraseScreen, mEraseScreen.length);
+        return mEmulator;
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processing output with runs of empty lines, like from a pager or a log with blank separators, where
+ * {@link TerminalEmulator#append(byte[], int)} scrolls the screen once for each run of linefeeds. For comparison,
+ * {@link #processCodePoints()} feeds the same output through {@link TerminalEmulator#processCodePoint(int)} one byte at
+ * a time, which scrolls once for each linefeed like before runs were collected, without the UTF-8 decoding of append.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class LinefeedBenchmark {
+
+    /** The longest run of empty lines after each line of text, with runs of 0 up to it empty lines. */
+    @Param({"0", "8", "32"})
+    public int emptyLines;
+
+    private byte[] mOutput;
+    private TerminalEmulator mEmulator;
+
+    @Setup
+    public void setUp() {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; output.length() < 64 * 1024; i++) {
+            output.append("line ").append(i).append("\r\n");
+            for (int j = 0; j < i % (emptyLines + 1); j++) output.append("\r\n");
+        }
+        mOutput = output.toString().getBytes(StandardCharsets.UTF_8);
+        mEmulator = OutputCorpus.createEmulator(2000, true);
+    }
+
+    @Benchmark
+    public TerminalEmulator append() {
+        mEmulator.append(mOutput, mOutput.length);
+        return mEmulator;
+    }
+
+    @Benchmark
+    public TerminalEmulator processCodePoints() {
+        for (byte b : mOutput) mEmulator.processCodePoint(b);
+        return mEmulator;
+    }
+
+}
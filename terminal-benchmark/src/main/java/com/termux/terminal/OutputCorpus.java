@@ -0,0 +1,195 @@
+package com.termux.terminal;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Process output of typical kinds to feed the emulator with, generated deterministically so that the results of runs
+ * on different machines and at different times are comparable. Lines end with "\r\n" like after the pty has translated
+ * them, and the full screen programs redraw an 80x24 screen.
+ */
+final class OutputCorpus {
+
+    /** The approximate size of each corpus. */
+    static final int SIZE = 256 * 1024;
+
+    static final String ASCII_LOG = "ascii-log";
+    static final String LS_COLOR = "ls-color";
+    static final String CJK = "cjk";
+    static final String EMOJI = "emoji";
+    static final String VIM_REDRAW = "vim-redraw";
+    static final String HTOP_REDRAW = "htop-redraw";
+    static final String YES = "yes";
+
+    private static final int COLUMNS = 80;
+    private static final int ROWS = 24;
+
+    private static final String[] WORDS = {"request", "worker", "cache", "session", "buffer", "socket", "handler",
+        "timeout", "queue", "index", "thread", "commit", "render", "update", "config", "token"};
+
+    private OutputCorpus() {
+    }
+
+    /** Create an 80x24 emulator, with its transcript filled with {@link #ASCII_LOG} lines if {@code filled}. */
+    static TerminalEmulator createEmulator(int transcriptRows, boolean filled) {
+        TerminalEmulator emulator = new TerminalEmulator(new DiscardingTerminalOutput(), COLUMNS, ROWS, transcriptRows, null);
+        if (filled) {
+            byte[] log = get(ASCII_LOG);
+            final TerminalBuffer screen = emulator.getScreen();
+            while (screen.getActiveTranscriptRows() < screen.mTotalRows - screen.mScreenRows) emulator.append(log, log.length);
+        }
+        return emulator;
+    }
+
+    static byte[] get(String name) {
+        final Random random = new Random(name.hashCode());
+        final StringBuilder out = new StringBuilder(SIZE);
+        final Utf8Size size = new Utf8Size(out);
+        switch (name) {
+            case ASCII_LOG:
+                for (int i = 0; size.get() < SIZE; i++) {
+                    out.append(String.format(Locale.ROOT, "2024-03-%02d %02d:%02d:%02d.%03d %-5s [%s-%d] %s %s id=%08x in %d ms\r\n",
+                        1 + i / 86400 % 28, i / 3600 % 24, i / 60 % 60, i % 60, random.nextInt(1000),
+                        random.nextInt(10) == 0 ? "WARN" : "INFO", word(random), random.nextInt(16), word(random),
+                        word(random), random.nextInt(), random.nextInt(500)));
+                }
+                break;
+            case LS_COLOR:
+                for (int i = 0; size.get() < SIZE; i++) {
+                    out.append("./").append(word(random)).append('/').append(word(random)).append(i).append(":\r\n");
+                    int column = 0;
+                    for (int entry = random.nextInt(30); entry >= 0; entry--) {
+                        String entryName = word(random) + (random.nextBoolean() ? "_" + random.nextInt(100) : "");
+                        int kind = random.nextInt(4);
+                        if (column + 16 > COLUMNS) {
+                            out.append("\r\n");
+                            column = 0;
+                        }
+                        if (kind == 0) out.append("\033[01;34m").append(entryName).append("\033[0m");
+                        else if (kind == 1) out.append("\033[01;32m").append(entryName).append(".sh\033[0m");
+                        else if (kind == 2) out.append("\033[01;36m").append(entryName).append("\033[0m");
+                        else out.append(entryName).append(".txt");
+                        out.append("  ");
+                        column += 16;
+                    }
+                    out.append("\r\n\r\n");
+                }
+                break;
+            case CJK:
+                while (size.get() < SIZE) {
+                    for (int i = random.nextInt(30) + 5; i > 0; i--) {
+                        if (random.nextInt(8) == 0) out.append(' ').append(word(random)).append(' ');
+                        // CJK Unified Ideographs, Hiragana and Hangul Syllables.
+                        int block = random.nextInt(3);
+                        out.appendCodePoint(block == 0 ? 0x4E00 + random.nextInt(0x5000) : block == 1 ? 0x3041 + random.nextInt(0x56) : 0xAC00 + random.nextInt(0x2BA4));
+                    }
+                    out.append("。\r\n");
+                }
+                break;
+            case EMOJI:
+                final String[] sequences = {"😀", "👍🏽", "👩‍💻", "🇸🇪", "❤️", "✨", "🎉", "👨‍👩‍👧‍👦", "☕", "🚀"};
+                while (size.get() < SIZE) {
+                    for (int i = random.nextInt(20) + 2; i > 0; i--) {
+                        out.append(random.nextInt(3) == 0 ? word(random) : sequences[random.nextInt(sequences.length)]).append(' ');
+                    }
+                    out.append("\r\n");
+                }
+                break;
+            case VIM_REDRAW:
+                while (size.get() < SIZE) {
+                    // A full redraw, then scrolling in the window above the status line as when moving through a file.
+                    out.append("\033[?25l\033[H\033[2J");
+                    for (int row = 1; row < ROWS; row++) {
+                        out.append("\033[").append(row).append(";1H\033[38;5;130m").append(String.format(Locale.ROOT, "%4d ", row)).append("\033[m");
+                        appendCode(out, random);
+                    }
+                    out.append("\033[").append(ROWS).append(";1H\033[1m\033[7m\"").append(word(random)).append(".c\" 1234L, 45678B")
+                        .append("\033[K\033[m\033[1;23r");
+                    for (int scroll = 0; scroll < 10; scroll++) {
+                        out.append("\033[23;1H\r\n\033[22;1H\033[38;5;130m").append(String.format(Locale.ROOT, "%4d ", scroll + 100)).append("\033[m");
+                        appendCode(out, random);
+                    }
+                    out.append("\033[r\033[").append(1 + random.nextInt(ROWS - 1)).append(';').append(6 + random.nextInt(40)).append("H\033[?25h");
+                }
+                break;
+            case HTOP_REDRAW:
+                while (size.get() < SIZE) {
+                    out.append("\033[?25l\033[H");
+                    for (int cpu = 0; cpu < 4; cpu++) {
+                        int used = random.nextInt(30);
+                        out.append("\033[").append(cpu + 1).append(";3H\033[1m").append(cpu).append("\033[m[\033[32m")
+                            .append(repeat('|', used / 2)).append("\033[31m").append(repeat('|', used - used / 2))
+                            .append(repeat(' ', 30 - used)).append(String.format(Locale.ROOT, "\033[m%5.1f%%]", used * 100 / 30.0));
+                    }
+                    out.append("\033[6;1H\033[30;42m    PID USER      PRI  NI  VIRT   RES   SHR S CPU% MEM%   TIME+  Command\033[K\033[m");
+                    int selectedRow = 7 + random.nextInt(ROWS - 7);
+                    for (int row = 7; row <= ROWS; row++) {
+                        out.append("\033[").append(row).append(";1H");
+                        if (row == selectedRow) out.append("\033[30;46m");
+                        out.append(String.format(Locale.ROOT, "%7d %-8s  20   0 %5dM %5dM %5dM %s %4.1f %4.1f %2d:%02d.%02d ", random.nextInt(32768), word(random),
+                            random.nextInt(9999), random.nextInt(999), random.nextInt(99), random.nextBoolean() ? "S" : "R",
+                            random.nextInt(1000) / 10.0, random.nextInt(1000) / 10.0, random.nextInt(60), random.nextInt(60), random.nextInt(100)));
+                        out.append(row == selectedRow ? "" : "\033[32m").append("/usr/bin/").append(word(random)).append("\033[K\033[m");
+                    }
+                }
+                break;
+            case YES:
+                while (size.get() < SIZE) out.append("y\r\n");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown corpus: " + name);
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) builder.append(c);
+        return builder.toString();
+    }
+
+    /** Append a line of syntax highlighted C code, as vim draws it. */
+    private static void appendCode(StringBuilder out, Random random) {
+        for (int i = random.nextInt(4); i > 0; i--) out.append("    ");
+        switch (random.nextInt(4)) {
+            case 0:
+                out.append("\033[38;5;121mif\033[m (").append(word(random)).append(" \033[38;5;224m!=\033[m NULL) {");
+                break;
+            case 1:
+                out.append("\033[38;5;81mint\033[m ").append(word(random)).append(" = \033[38;5;224m").append(random.nextInt(1000)).append("\033[m;");
+                break;
+            case 2:
+                out.append("\033[38;5;14m/* ").append(word(random)).append(' ').append(word(random)).append(" */\033[m");
+                break;
+            default:
+                out.append(word(random)).append('(').append(word(random)).append(", \033[38;5;224m\"").append(word(random)).append("\"\033[m);");
+                break;
+        }
+    }
+
+    /** Tracks the UTF-8 size of the output built so far, without encoding it each time. */
+    private static final class Utf8Size {
+        private final StringBuilder mOut;
+        private int mCountedChars;
+        private int mSize;
+
+        Utf8Size(StringBuilder out) {
+            mOut = out;
+        }
+
+        int get() {
+            for (; mCountedChars < mOut.length(); mCountedChars++) {
+                char c = mOut.charAt(mCountedChars);
+                mSize += c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isSurrogate(c) ? 2 : 3;
+            }
+            return mSize;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaying a {@link TerminalRecording} as fast as possible with {@link TerminalReplay}, into a new emulator each time.
+ * Recordings made in the app are passed with -p recording=file1,file2, and without any the
+ * {@link OutputCorpus#VIM_REDRAW} corpus is replayed as a recording of reads of 4 KiB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ReplayBenchmark {
+
+    @Param({""})
+    public String recording;
+
+    private byte[] mRecording;
+
+    @Setup
+    public void setUp() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (recording.isEmpty()) {
+            byte[] output = OutputCorpus.get(OutputCorpus.VIM_REDRAW);
+            TerminalRecording.Writer writer = new TerminalRecording.Writer(Channels.newChannel(bytes), 80, 24);
+            for (int offset = 0; offset < output.length; offset += 4096)
+                writer.writeOutput(offset * 1000L, output, offset, Math.min(4096, output.length - offset));
+            writer.flush();
+        } else {
+            try (FileInputStream in = new FileInputStream(recording)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) bytes.write(buffer, 0, read);
+            }
+        }
+        mRecording = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public long replay() throws IOException, InterruptedException {
+        return TerminalReplay.replay(Channels.newChannel(new ByteArrayInputStream(mRecording)), false).getChecksum();
+    }
+
+}
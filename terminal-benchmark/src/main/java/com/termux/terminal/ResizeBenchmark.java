@@ -0,0 +1,51 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizing an emulator with a full transcript back and forth, by changing only the number of rows, which is done by
+ * {@link FastResize}, or the number of columns, which reflows all rows with {@link UpdateOldBuffer}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ResizeBenchmark {
+
+    @Param({"100", "2000", "50000"})
+    public int transcriptRows;
+
+    private TerminalEmulator mEmulator;
+
+    @Setup
+    public void setUp() {
+        mEmulator = OutputCorpus.createEmulator(transcriptRows, true);
+    }
+
+    @Benchmark
+    public TerminalEmulator fastResize() {
+        mEmulator.resize(mEmulator.mColumns, mEmulator.mRows == 24 ? 30 : 24);
+        return mEmulator;
+    }
+
+    @Benchmark
+    public TerminalEmulator updateOldBuffer() {
+        mEmulator.resize(mEmulator.mColumns == 80 ? 100 : 80, mEmulator.mRows);
+        return mEmulator;
+    }
+
+}
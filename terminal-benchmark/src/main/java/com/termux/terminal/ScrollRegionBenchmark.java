@@ -0,0 +1,73 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scrolling a region of three quarters of the screen by one line, as editors and pagers with a status line do, with
+ * {@link TerminalBuffer#moveLines(int, int, int, long)} rotating the lines and, for comparison, by copying their
+ * contents with {@link TerminalBuffer#blockCopy(int, int, int, int, int, int)} like before. {@link #sequences()} sends
+ * IL, DL, RI, SU, SD and LF within the region through the emulator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ScrollRegionBenchmark {
+
+    private static final int ROWS = 24, TOP = 3, BOTTOM = 21;
+
+    @Param({"80", "300"})
+    public int columns;
+
+    private TerminalBuffer mBuffer;
+    private TerminalEmulator mEmulator;
+    private byte[] mSequences;
+
+    @Setup
+    public void setUp() {
+        mBuffer = new TerminalBuffer(columns, ROWS, ROWS);
+        for (int row = 0; row < ROWS; row++)
+            for (int column = 0; column < columns; column++)
+                mBuffer.setChar(column, row, 'a' + row, TextStyle.NORMAL);
+
+        mEmulator = new TerminalEmulator(new DiscardingTerminalOutput(), columns, ROWS, ROWS, null);
+        byte[] margins = ("\033[" + (TOP + 1) + ";" + BOTTOM + "r").getBytes(StandardCharsets.US_ASCII);
+        mEmulator.append(margins, margins.length);
+        mSequences = "\033[5H\033[L\033[M\033[4H\033M\033[S\033[T\033[21Hx\n".getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public TerminalBuffer moveLines() {
+        mBuffer.moveLines(TOP, BOTTOM, 1, TextStyle.NORMAL);
+        return mBuffer;
+    }
+
+    @Benchmark
+    public TerminalBuffer blockCopy() {
+        mBuffer.blockCopy(0, TOP, columns, BOTTOM - TOP - 1, 0, TOP + 1);
+        mBuffer.blockSet(0, TOP, columns, 1, ' ', TextStyle.NORMAL);
+        return mBuffer;
+    }
+
+    @Benchmark
+    public TerminalEmulator sequences() {
+        mEmulator.append(mSequences, mSequences.length);
+        return mEmulator;
+    }
+
+}
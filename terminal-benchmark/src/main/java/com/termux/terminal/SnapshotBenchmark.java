@@ -0,0 +1,90 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a {@link TerminalSnapshot} of an emulator with a full transcript of colored log lines, and reading it back. The
+ * snapshot is written to a channel discarding it, and read from memory, so that only the encoding and decoding is
+ * measured and not the storage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+    @Param({"2000", "50000"})
+    public int transcriptRows;
+
+    private TerminalEmulator mEmulator;
+    private byte[] mSnapshot;
+    private final DiscardingChannel mDiscardingChannel = new DiscardingChannel();
+
+    @Setup
+    public void setUp() throws IOException {
+        mEmulator = new TerminalEmulator(new DiscardingTerminalOutput(), 80, 24, transcriptRows, null);
+        byte[] log = OutputCorpus.get(OutputCorpus.LS_COLOR);
+        final TerminalBuffer screen = mEmulator.getScreen();
+        while (screen.getActiveTranscriptRows() < screen.mTotalRows - screen.mScreenRows) mEmulator.append(log, log.length);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TerminalSnapshot.write(mEmulator, Channels.newChannel(bytes));
+        mSnapshot = bytes.toByteArray();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        mDiscardingChannel.mBytesWritten = 0;
+        TerminalSnapshot.write(mEmulator, mDiscardingChannel);
+        return mDiscardingChannel.mBytesWritten;
+    }
+
+    @Benchmark
+    public TerminalEmulator read() throws IOException {
+        return TerminalSnapshot.read(Channels.newChannel(new ByteArrayInputStream(mSnapshot)), new DiscardingTerminalOutput(), null);
+    }
+
+    private static final class DiscardingChannel implements WritableByteChannel {
+
+        long mBytesWritten;
+
+        @Override
+        public int write(ByteBuffer buffer) {
+            final int bytes = buffer.remaining();
+            buffer.position(buffer.limit());
+            mBytesWritten += bytes;
+            return bytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processing of output by {@link TerminalEmulator#append(byte[], int)}, for each kind of {@link OutputCorpus}. The
+ * emulator keeps its state between invocations, so that the transcript is full and rows are recycled as in a long
+ * running session.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TerminalEmulatorBenchmark {
+
+    @Param({OutputCorpus.ASCII_LOG, OutputCorpus.LS_COLOR, OutputCorpus.CJK, OutputCorpus.EMOJI, OutputCorpus.VIM_REDRAW,
+        OutputCorpus.HTOP_REDRAW, OutputCorpus.YES})
+    public String corpus;
+
+    private byte[] mOutput;
+    private TerminalEmulator mEmulator;
+
+    @Setup
+    public void setUp() {
+        mOutput = OutputCorpus.get(corpus);
+        mEmulator = OutputCorpus.createEmulator(2000, false);
+    }
+
+    @Benchmark
+    public TerminalEmulator append() {
+        mEmulator.append(mOutput, mOutput.length);
+        return mEmulator;
+    }
+
+}
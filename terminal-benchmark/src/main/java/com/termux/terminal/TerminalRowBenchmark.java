@@ -0,0 +1,66 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a full row with {@link TerminalRow#setChar(int, int, long)}, and looking up the start of every column with
+ * {@link TerminalRow#findStartOfColumn(int)}, for rows of single width characters, wide characters and emoji outside
+ * of the basic multilingual plane.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TerminalRowBenchmark {
+
+    private static final int COLUMNS = 80;
+
+    @Param({"ascii", "cjk", "emoji"})
+    public String text;
+
+    private int mFirstCodePoint;
+    private int mWidth;
+    private long mStyle;
+    private TerminalRow mRow;
+
+    @Setup
+    public void setUp() {
+        mFirstCodePoint = text.equals("ascii") ? 'a' : text.equals("cjk") ? 0x4E00 : 0x1F600;
+        mWidth = WcWidth.width(mFirstCodePoint);
+        mStyle = TextStyle.encode(TextStyle.COLOR_INDEX_FOREGROUND, TextStyle.COLOR_INDEX_BACKGROUND, 0);
+        mRow = new TerminalRow(COLUMNS, mStyle);
+        setChars();
+    }
+
+    @Benchmark
+    public TerminalRow setChars() {
+        final TerminalRow row = mRow;
+        for (int column = 0, i = 0; column + mWidth <= COLUMNS; column += mWidth, i++) {
+            row.setChar(column, mFirstCodePoint + i % 26, mStyle);
+        }
+        return row;
+    }
+
+    @Benchmark
+    public int findStartOfColumns() {
+        final TerminalRow row = mRow;
+        int sum = 0;
+        for (int column = 0; column < COLUMNS; column++) sum += row.findStartOfColumn(column);
+        return sum;
+    }
+
+}
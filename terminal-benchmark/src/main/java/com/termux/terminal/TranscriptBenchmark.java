@@ -0,0 +1,50 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting text out of a full transcript, all of it with {@link TerminalBuffer#getTranscriptText()} as when sharing the
+ * transcript, and a selection of the screen with {@link TextFinder#getSelectedText(Cursor, Cursor, boolean, boolean)}
+ * as when copying text or for accessibility.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TranscriptBenchmark {
+
+    @Param({"100", "2000", "50000"})
+    public int transcriptRows;
+
+    private TerminalEmulator mEmulator;
+
+    @Setup
+    public void setUp() {
+        mEmulator = OutputCorpus.createEmulator(transcriptRows, true);
+    }
+
+    @Benchmark
+    public String getTranscriptText() {
+        return mEmulator.getScreen().getTranscriptText();
+    }
+
+    @Benchmark
+    public String getSelectedTextOfScreen() {
+        return new TextFinder(mEmulator.getScreen()).getSelectedText(new Cursor(0, 0), new Cursor(mEmulator.mRows - 1, mEmulator.mColumns), true, false);
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.termux.terminal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** {@link WcWidth#width(int)} of code points from the ranges seen in typical output. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class WcWidthBenchmark {
+
+    private static final int CODE_POINTS = 4096;
+
+    @Param({"ascii", "latin", "combining", "cjk", "emoji", "mixed"})
+    public String range;
+
+    private final int[] mCodePoints = new int[CODE_POINTS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(range.hashCode());
+        for (int i = 0; i < CODE_POINTS; i++) {
+            String codePointRange = range.equals("mixed") ? new String[]{"ascii", "latin", "combining", "cjk", "emoji"}[random.nextInt(5)] : range;
+            switch (codePointRange) {
+                case "ascii":
+                    mCodePoints[i] = 0x20 + random.nextInt(0x5F);
+                    break;
+                case "latin":
+                    mCodePoints[i] = 0xA0 + random.nextInt(0x1B0);
+                    break;
+                case "combining":
+                    mCodePoints[i] = 0x300 + random.nextInt(0x70);
+                    break;
+                case "cjk":
+                    mCodePoints[i] = 0x4E00 + random.nextInt(0x5000);
+                    break;
+                default:
+                    mCodePoints[i] = 0x1F300 + random.nextInt(0x300);
+                    break;
+            }
+        }
+    }
+
+    /** The sum of the widths of {@value #CODE_POINTS} code points. */
+    @Benchmark
+    public int width() {
+        int sum = 0;
+        for (int codePoint : mCodePoints) sum += WcWidth.width(codePoint);
+        return sum;
+    }
+
+}
@@ -15,6 +15,7 @@ public final class BufferStyler {
             TerminalRow line = mTerminalBuffer.mLines[mTerminalBuffer.externalToInternalRow(row)];
             int startOfLine = (isRectangular || row == top) ? left : leftMargin;
             int endOfLine = (isRectangular || row + 1 == bottom) ? right : rightMargin;
+            line.storeColumns(endOfLine);
             for (int col = startOfLine; col < endOfLine; col++) {
                 setStyle(bits, isSetOrClear, isReverse, line, col);
             }
@@ -0,0 +1,33 @@
+package com.termux.terminal;
+
+/**
+ * Output which discards what the emulator writes, for emulators which are not connected to a process, like the one of a
+ * {@link TerminalReplay}, and for the emulators of allocation tests and benchmarks.
+ */
+final class DiscardingTerminalOutput extends TerminalOutput {
+
+    @Override
+    public void write(byte[] data, int offset, int count) {
+    }
+
+    @Override
+    public void titleChanged(String oldTitle, String newTitle) {
+    }
+
+    @Override
+    public void onCopyTextToClipboard(String text) {
+    }
+
+    @Override
+    public void onPasteTextFromClipboard() {
+    }
+
+    @Override
+    public void onBell() {
+    }
+
+    @Override
+    public void onColorsChanged() {
+    }
+
+}
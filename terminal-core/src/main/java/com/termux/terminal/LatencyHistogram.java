@@ -0,0 +1,83 @@
+package com.termux.terminal;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of durations with one bucket for each power of two of nanoseconds, which records in constant time without
+ * allocating, so that it can be left on in production, at the cost of percentiles only being known up to a factor of
+ * two. Used for the histograms of {@link TerminalMetrics}.
+ * <p>
+ * Not thread safe, like the emulator it is recorded and read on the main thread.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The number of buckets. Bucket 0 holds durations of 0 ns, bucket i durations in [2^(i-1), 2^i) ns, and the last one
+     * everything from 2^(BUCKETS-2) ns, which is more than two minutes.
+     */
+    static final int BUCKETS = 40;
+
+    private final long[] mBucketCounts = new long[BUCKETS];
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    /** Record a duration, where a negative one, as from a clock going backwards, counts as 0. */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        mBucketCounts[getBucket(nanos)]++;
+        mCount++;
+        mTotalNanos += nanos;
+        if (nanos > mMaxNanos) mMaxNanos = nanos;
+    }
+
+    static int getBucket(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    public void reset() {
+        Arrays.fill(mBucketCounts, 0);
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    /** The number of durations recorded. */
+    public long getCount() {
+        return mCount;
+    }
+
+    /** The average duration, or 0 if none was recorded. */
+    public long getMeanNanos() {
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    /**
+     * An upper bound of the given percentile of the recorded durations, which is the end of the bucket the percentile
+     * falls in, but at most the longest duration recorded. 0 if none was recorded.
+     *
+     * @param percentile The percentile in [0, 100].
+     */
+    public long getPercentileNanos(double percentile) {
+        if (mCount == 0) return 0;
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * mCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS - 1; bucket++) {
+            seen += mBucketCounts[bucket];
+            if (seen >= rank) return Math.min(bucket == 0 ? 0 : (1L << bucket) - 1, mMaxNanos);
+        }
+        return mMaxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + mCount + ", meanMicros=" + getMeanNanos() / 1000
+            + ", p50Micros=" + getPercentileNanos(50) / 1000 + ", p90Micros=" + getPercentileNanos(90) / 1000
+            + ", p99Micros=" + getPercentileNanos(99) / 1000 + ", maxMicros=" + mMaxNanos / 1000 + "}";
+    }
+
+}
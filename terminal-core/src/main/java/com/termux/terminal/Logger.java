@@ -1,49 +1,55 @@
 package com.termux.terminal;
 
-import android.util.Log;
-
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
+/**
+ * Logs through the {@link TerminalEmulatorClient} if there is one, and otherwise to the standard error stream, which on
+ * Android ends up in the log too, so that the emulator does not depend on android.util.Log.
+ */
 public class Logger {
 
-    public static void logError(TerminalSessionClient client, String logTag, String message) {
+    public static void logError(TerminalEmulatorClient client, String logTag, String message) {
         if (client != null)
             client.logError(logTag, message);
         else
-            Log.e(logTag, message);
+            logWithoutClient('E', logTag, message);
     }
 
-    public static void logWarn(TerminalSessionClient client, String logTag, String message) {
+    public static void logWarn(TerminalEmulatorClient client, String logTag, String message) {
         if (client != null)
             client.logWarn(logTag, message);
         else
-            Log.w(logTag, message);
+            logWithoutClient('W', logTag, message);
     }
 
-    public static void logInfo(TerminalSessionClient client, String logTag, String message) {
+    public static void logInfo(TerminalEmulatorClient client, String logTag, String message) {
         if (client != null)
             client.logInfo(logTag, message);
         else
-            Log.i(logTag, message);
+            logWithoutClient('I', logTag, message);
     }
 
-    public static void logDebug(TerminalSessionClient client, String logTag, String message) {
+    public static void logDebug(TerminalEmulatorClient client, String logTag, String message) {
         if (client != null)
             client.logDebug(logTag, message);
         else
-            Log.d(logTag, message);
+            logWithoutClient('D', logTag, message);
     }
 
-    public static void logVerbose(TerminalSessionClient client, String logTag, String message) {
+    public static void logVerbose(TerminalEmulatorClient client, String logTag, String message) {
         if (client != null)
             client.logVerbose(logTag, message);
         else
-            Log.v(logTag, message);
+            logWithoutClient('V', logTag, message);
+    }
+
+    private static void logWithoutClient(char priority, String logTag, String message) {
+        System.err.println(priority + "/" + logTag + ": " + message);
     }
 
-    public static void logStackTraceWithMessage(TerminalSessionClient client, String tag, String message, Throwable throwable) {
+    public static void logStackTraceWithMessage(TerminalEmulatorClient client, String tag, String message, Throwable throwable) {
         logError(client, tag, getMessageAndStackTraceString(message, throwable));
     }
 
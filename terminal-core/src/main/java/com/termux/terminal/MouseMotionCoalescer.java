@@ -0,0 +1,102 @@
+package com.termux.terminal;
+
+/**
+ * Coalesces mouse motion reports sent with {@link TerminalEmulator#sendMouseEvent(int, int, int, boolean)} while
+ * mouse tracking is active.
+ * <p>
+ * Touch and stylus input may deliver move events at 120-240 Hz, and most of them do not even leave the cell of the
+ * previous one. A motion report is therefore only kept if it moves to another cell than the last reported one, and
+ * is held back as pending until {@link #flush(TerminalEmulator)} is called, which the view does once per frame, with
+ * later motion in the same frame replacing it. Button press and release events are never dropped, and any pending
+ * motion is sent before them so that the order of events is kept.
+ * <p>
+ * Should only be used from the main thread.
+ */
+public final class MouseMotionCoalescer {
+
+    /** The last reported cell, 1-based like the reports, or 0 if none reported yet. */
+    private int mLastColumn, mLastRow;
+    /** The cell of the motion report held back until the next {@link #flush(TerminalEmulator)}. */
+    private int mPendingColumn, mPendingRow;
+    private boolean mMotionPending;
+
+    private long mReportedMotionEvents;
+    private long mSuppressedMotionEvents;
+
+    /**
+     * Handle motion to the 1-based column and row.
+     *
+     * @return true if a motion report became pending and a {@link #flush(TerminalEmulator)} needs to be scheduled,
+     * false if the motion was suppressed or merged into an already pending report.
+     */
+    public boolean onMotion(TerminalEmulator emulator, int column, int row) {
+        column = clamp(column, emulator.mColumns);
+        row = clamp(row, emulator.mRows);
+
+        if (mMotionPending) {
+            // Whether moved back to the last reported cell or to yet another cell, the pending report is obsolete.
+            mSuppressedMotionEvents++;
+            if (column == mLastColumn && row == mLastRow) {
+                mMotionPending = false;
+            } else {
+                mPendingColumn = column;
+                mPendingRow = row;
+            }
+            return false;
+        }
+
+        if (column == mLastColumn && row == mLastRow) {
+            mSuppressedMotionEvents++;
+            return false;
+        }
+
+        mPendingColumn = column;
+        mPendingRow = row;
+        mMotionPending = true;
+        return true;
+    }
+
+    /** Send a button press or release event after any pending motion report. */
+    public void sendButtonEvent(TerminalEmulator emulator, int mouseButton, int column, int row, boolean pressed) {
+        flush(emulator);
+        emulator.sendMouseEvent(mouseButton, column, row, pressed);
+        mLastColumn = clamp(column, emulator.mColumns);
+        mLastRow = clamp(row, emulator.mRows);
+    }
+
+    /** Send the pending motion report, if any. */
+    public void flush(TerminalEmulator emulator) {
+        if (!mMotionPending) return;
+        mMotionPending = false;
+        emulator.sendMouseEvent(TerminalEmulator.MOUSE_LEFT_BUTTON_MOVED, mPendingColumn, mPendingRow, true);
+        mLastColumn = mPendingColumn;
+        mLastRow = mPendingRow;
+        mReportedMotionEvents++;
+    }
+
+    /** Forget the pending motion report and the last reported cell, e.g. when another session is attached. */
+    public void reset() {
+        if (mMotionPending) mSuppressedMotionEvents++;
+        mMotionPending = false;
+        mLastColumn = mLastRow = 0;
+    }
+
+    public boolean isMotionPending() {
+        return mMotionPending;
+    }
+
+    /** The number of motion events sent as reports. */
+    public long getReportedMotionEventCount() {
+        return mReportedMotionEvents;
+    }
+
+    /** The number of motion events not sent as reports since they were redundant or superseded within a frame. */
+    public long getSuppressedMotionEventCount() {
+        return mSuppressedMotionEvents;
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(1, Math.min(value, max));
+    }
+
+}
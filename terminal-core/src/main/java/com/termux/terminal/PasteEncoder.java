@@ -0,0 +1,95 @@
+package com.termux.terminal;
+
+/**
+ * Incrementally sanitizes and UTF-8 encodes pasted text. The result is the same as for the whole text at once:
+ * <ul>
+ * <li>The escape key and C1 control characters [0x80,0x9F] are removed.</li>
+ * <li>Newlines (\n) and CRLF (\r\n) are replaced with carriage returns (\r).</li>
+ * <li>Unpaired surrogates are encoded as '?', like {@link String#getBytes(java.nio.charset.Charset)} does.</li>
+ * </ul>
+ * Used by {@link TerminalEmulator#paste(String)} and by the pastes streamed from a background thread by terminal sessions.
+ */
+final class PasteEncoder {
+
+    /** The size of the chunks pastes are encoded into. */
+    static final int CHUNK_SIZE = 4096;
+
+    /** The number of bytes of the longest UTF-8 sequence. */
+    private static final int MAX_BYTES_PER_CODE_POINT = 4;
+
+    private final CharSequence mText;
+    private int mPosition;
+    /** The previous character kept after removing escape and C1 control characters. */
+    private char mPreviousChar;
+    /** A high surrogate waiting for the next kept character, or 0. */
+    private char mPendingHighSurrogate;
+
+    PasteEncoder(CharSequence text) {
+        mText = text;
+    }
+
+    /**
+     * Encode the next part of the text into the buffer.
+     *
+     * @return The number of bytes encoded, 0 if the whole text has been encoded.
+     */
+    int encode(byte[] buffer) {
+        final CharSequence text = mText;
+        final int textLength = text.length();
+        final int limit = buffer.length - MAX_BYTES_PER_CODE_POINT;
+        int bufferPosition = 0;
+
+        while (mPosition < textLength && bufferPosition <= limit) {
+            char c = text.charAt(mPosition++);
+            if (c == 0x1B || (c >= 0x80 && c <= 0x9F)) continue;
+
+            if (mPendingHighSurrogate != 0) {
+                if (Character.isLowSurrogate(c)) {
+                    bufferPosition = encodeCodePoint(Character.toCodePoint(mPendingHighSurrogate, c), buffer, bufferPosition);
+                    mPendingHighSurrogate = 0;
+                    mPreviousChar = c;
+                    continue;
+                }
+                buffer[bufferPosition++] = '?';
+                mPendingHighSurrogate = 0;
+            }
+
+            if (c == '\n') {
+                if (mPreviousChar != '\r') buffer[bufferPosition++] = '\r';
+            } else if (Character.isHighSurrogate(c)) {
+                mPendingHighSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                buffer[bufferPosition++] = '?';
+            } else {
+                bufferPosition = encodeCodePoint(c, buffer, bufferPosition);
+            }
+            mPreviousChar = c;
+        }
+
+        if (mPosition == textLength && mPendingHighSurrogate != 0) {
+            buffer[bufferPosition++] = '?';
+            mPendingHighSurrogate = 0;
+        }
+        return bufferPosition;
+    }
+
+    private static int encodeCodePoint(int codePoint, byte[] buffer, int bufferPosition) {
+        if (codePoint <= /* 7 bits */0b1111111) {
+            buffer[bufferPosition++] = (byte) codePoint;
+        } else if (codePoint <= /* 11 bits */0b11111111111) {
+            buffer[bufferPosition++] = (byte) (0b11000000 | (codePoint >> 6));
+            buffer[bufferPosition++] = (byte) (0b10000000 | (codePoint & 0b111111));
+        } else if (codePoint <= /* 16 bits */0b1111111111111111) {
+            buffer[bufferPosition++] = (byte) (0b11100000 | (codePoint >> 12));
+            buffer[bufferPosition++] = (byte) (0b10000000 | ((codePoint >> 6) & 0b111111));
+            buffer[bufferPosition++] = (byte) (0b10000000 | (codePoint & 0b111111));
+        } else {
+            buffer[bufferPosition++] = (byte) (0b11110000 | (codePoint >> 18));
+            buffer[bufferPosition++] = (byte) (0b10000000 | ((codePoint >> 12) & 0b111111));
+            buffer[bufferPosition++] = (byte) (0b10000000 | ((codePoint >> 6) & 0b111111));
+            buffer[bufferPosition++] = (byte) (0b10000000 | (codePoint & 0b111111));
+        }
+        return bufferPosition;
+    }
+
+}
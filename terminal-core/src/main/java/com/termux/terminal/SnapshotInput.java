@@ -0,0 +1,95 @@
+package com.termux.terminal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/** Buffered reading of the values written by {@link SnapshotOutput} from a channel. */
+final class SnapshotInput {
+
+    private final ReadableByteChannel mChannel;
+    private final ByteBuffer mBuffer;
+
+    SnapshotInput(ReadableByteChannel channel, int bufferSize) {
+        mChannel = channel;
+        mBuffer = ByteBuffer.allocate(bufferSize);
+        mBuffer.flip();
+    }
+
+    int readByte() throws IOException {
+        if (!mBuffer.hasRemaining()) fill();
+        return mBuffer.get() & 0xFF;
+    }
+
+    boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    int readVarInt() throws IOException {
+        long value = readVarLong();
+        if ((value & ~0xFFFFFFFFL) != 0) throw new IOException("Varint out of range: " + value);
+        return (int) value;
+    }
+
+    /** Read a varint which has to be from 0 to max, as it is used for a size. */
+    int readVarInt(int max) throws IOException {
+        int value = readVarInt();
+        if (value < 0 || value > max) throw new IOException("Value " + (value & 0xFFFFFFFFL) + " out of range 0.." + max);
+        return value;
+    }
+
+    long readVarLong() throws IOException {
+        final ByteBuffer buffer = mBuffer;
+        if (buffer.remaining() >= 10) {
+            // Fast path without checking for the end of the buffer, mostly for the single byte varints of text:
+            int b = buffer.get();
+            if (b >= 0) return b;
+            long value = b & 0x7F;
+            for (int shift = 7; shift < 64; shift += 7) {
+                b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    void readBytes(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!mBuffer.hasRemaining()) fill();
+            int bytesToCopy = Math.min(length, mBuffer.remaining());
+            mBuffer.get(data, offset, bytesToCopy);
+            offset += bytesToCopy;
+            length -= bytesToCopy;
+        }
+    }
+
+    /** Read a string, which may be null, of at most maxBytes bytes as UTF-8. */
+    String readString(int maxBytes) throws IOException {
+        int length = readVarInt(maxBytes + 1);
+        if (length == 0) return null;
+        byte[] bytes = new byte[length - 1];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) readByte();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void fill() throws IOException {
+        mBuffer.clear();
+        int read;
+        do {
+            read = mChannel.read(mBuffer);
+        } while (read == 0);
+        mBuffer.flip();
+        if (read < 0) throw new EOFException("Truncated snapshot");
+    }
+
+}
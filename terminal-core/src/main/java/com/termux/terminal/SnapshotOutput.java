@@ -0,0 +1,74 @@
+package com.termux.terminal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writing of the values of a {@link TerminalSnapshot} to a channel, with integers as varints: seven bits per
+ * byte, least significant first, with the high bit set on all but the last byte. Read by {@link SnapshotInput}.
+ */
+final class SnapshotOutput {
+
+    private final WritableByteChannel mChannel;
+    private final ByteBuffer mBuffer;
+
+    SnapshotOutput(WritableByteChannel channel, int bufferSize) {
+        mChannel = channel;
+        mBuffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    void writeByte(int value) throws IOException {
+        if (!mBuffer.hasRemaining()) flush();
+        mBuffer.put((byte) value);
+    }
+
+    void writeBoolean(boolean value) throws IOException {
+        writeByte(value ? 1 : 0);
+    }
+
+    /** Write an int as unsigned, so that negative values take five bytes. */
+    void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /** Write a long as unsigned, so that negative values take ten bytes. */
+    void writeVarLong(long value) throws IOException {
+        if (mBuffer.remaining() < 10) flush();
+        while ((value & ~0x7FL) != 0) {
+            mBuffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        mBuffer.put((byte) value);
+    }
+
+    void writeBytes(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!mBuffer.hasRemaining()) flush();
+            int bytesToCopy = Math.min(length, mBuffer.remaining());
+            mBuffer.put(data, offset, bytesToCopy);
+            offset += bytesToCopy;
+            length -= bytesToCopy;
+        }
+    }
+
+    /** Write a string as UTF-8, which may be null. */
+    void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length + 1);
+        for (byte b : bytes) writeByte(b);
+    }
+
+    /** Write out all buffered bytes to the channel. */
+    void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) mChannel.write(mBuffer);
+        mBuffer.clear();
+    }
+
+}
@@ -0,0 +1,529 @@
+package com.termux.terminal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A circular buffer of {@link TerminalRow}:s which keeps notes about what is visible on a logical screen and the scroll
+ * history.
+ * <p>
+ * See {@link #externalToInternalRow(int)} for how to map from logical screen rows to array indices.
+ */
+public final class TerminalBuffer {
+
+    /** The size of the buffer for writing and reading rows when hibernating and restoring a transcript. */
+    private static final int HIBERNATION_BUFFER_SIZE = 8192;
+
+    TerminalRow[] mLines;
+    /** The length of {@link #mLines}. */
+    int mTotalRows;
+    /** The number of rows and columns visible on the screen. */
+    int mScreenRows, mColumns;
+    /** The number of rows kept in history. */
+    int mActiveTranscriptRows = 0;
+    /** The index in the circular buffer where the visible screen starts. */
+    int mScreenFirstRow = 0;
+    /** Incremented each time the transcript is cleared, see {@link #getGeneration()}. */
+    private int mGeneration = 0;
+    /**
+     * The compressed rows of a transcript hibernated by {@link #hibernateTranscript()}, which are older than the rows
+     * of the current transcript, or null if not hibernated.
+     */
+    private byte[] mHibernatedTranscript;
+    /** The number of rows in {@link #mHibernatedTranscript}. */
+    private int mHibernatedRows;
+
+    /**
+     * Create a transcript screen.
+     *
+     * @param columns    the width of the screen in characters.
+     * @param totalRows  the height of the entire text area, in rows of text.
+     * @param screenRows the height of just the screen, not including the transcript that holds lines that have scrolled off
+     *                   the top of the screen.
+     */
+    public TerminalBuffer(int columns, int totalRows, int screenRows) {
+        mColumns = columns;
+        mTotalRows = totalRows;
+        mScreenRows = screenRows;
+        mLines = new TerminalRow[totalRows];
+
+        blockSet(0, 0, columns, screenRows, ' ', TextStyle.NORMAL);
+    }
+
+    public String getTranscriptText() {
+        return getSelectedText(0, -getActiveTranscriptRows(), mColumns, mScreenRows).trim();
+    }
+
+    public String getTranscriptTextWithoutJoinedLines() {
+        return getSelectedText(0, -getActiveTranscriptRows(), mColumns, mScreenRows, false).trim();
+    }
+
+    public String getTranscriptTextWithFullLinesJoined() {
+        return getSelectedText(0, -getActiveTranscriptRows(), mColumns, mScreenRows, true, true).trim();
+    }
+
+    public String getSelectedText(int selX1, int selY1, int selX2, int selY2) {
+        return getSelectedText(selX1, selY1, selX2, selY2, true);
+    }
+
+    public String getSelectedText(int selX1, int selY1, int selX2, int selY2, boolean joinBackLines) {
+        return getSelectedText(selX1, selY1, selX2, selY2, true, false);
+    }
+
+    public String getSelectedText(int selX1, int selY1, int selX2, int selY2, boolean joinBackLines, boolean joinFullLines) {
+        return new TextFinder(this).getSelectedText(new Cursor(selY1, selX1), new Cursor(selY2, selX2), joinBackLines, joinFullLines);
+    }
+
+    public String getWordAtLocation(int x, int y) {
+        return new TextFinder(this).getWordAtLocation(new Cursor(y, x));
+    }
+
+    /** The number of rows kept in history, restoring the history first if hibernated. */
+    public int getActiveTranscriptRows() {
+        if (mHibernatedTranscript != null) rehydrateTranscript();
+        return mActiveTranscriptRows;
+    }
+
+    public int getActiveRows() {
+        return getActiveTranscriptRows() + mScreenRows;
+    }
+
+    /** An estimate of the heap used by the rows of this buffer, including a hibernated transcript. */
+    public long getMemoryUsage() {
+        long bytes = 4L * mLines.length;
+        for (TerminalRow row : mLines)
+            if (row != null) bytes += row.getMemoryUsage();
+        if (mHibernatedTranscript != null) bytes += mHibernatedTranscript.length;
+        return bytes;
+    }
+
+    /**
+     * Release the rows which are neither on the screen nor in the history, like the rows forgotten by
+     * {@link #clearTranscript()}, instead of keeping them for reuse.
+     *
+     * @return the number of released rows.
+     */
+    public int releaseUnusedRows() {
+        int released = 0;
+        for (int row = mActiveTranscriptRows + mScreenRows; row < mTotalRows; row++) {
+            int internalRow = (mScreenFirstRow - mActiveTranscriptRows + row + mTotalRows) % mTotalRows;
+            if (mLines[internalRow] != null) {
+                mLines[internalRow] = null;
+                released++;
+            }
+        }
+        return released;
+    }
+
+    public boolean isTranscriptHibernated() {
+        return mHibernatedTranscript != null;
+    }
+
+    /**
+     * Compress the rows of the history into a byte array and release them, to save memory for a session which is not
+     * viewed. The screen keeps working meanwhile, with the rows scrolled off it starting a new history, and the
+     * hibernated rows are restored before them by {@link #rehydrateTranscript()} when the history is next read through
+     * {@link #getActiveTranscriptRows()} or the buffer is resized.
+     *
+     * @return false if there was no history to hibernate.
+     */
+    public boolean hibernateTranscript() {
+        if (mActiveTranscriptRows == 0) return false;
+        // Rows already hibernated are compressed again together with the newer ones:
+        if (mHibernatedTranscript != null) rehydrateTranscript();
+
+        final int rows = mActiveTranscriptRows;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = Channels.newChannel(new DeflaterOutputStream(bytes))) {
+            SnapshotOutput out = new SnapshotOutput(channel, HIBERNATION_BUFFER_SIZE);
+            for (int row = -rows; row < 0; row++)
+                allocateFullLineIfNecessary(externalToInternalRow(row)).writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            // Not thrown by in-memory streams.
+            throw new IllegalStateException(e);
+        }
+        for (int row = -rows; row < 0; row++)
+            mLines[externalToInternalRow(row)] = null;
+        mActiveTranscriptRows = 0;
+        mHibernatedTranscript = bytes.toByteArray();
+        mHibernatedRows = rows;
+        return true;
+    }
+
+    /**
+     * Restore the rows compressed by {@link #hibernateTranscript()} before the rows of the current history, or as many of
+     * the newest of them as fit in the history.
+     */
+    public void rehydrateTranscript() {
+        final byte[] hibernatedTranscript = mHibernatedTranscript;
+        if (hibernatedTranscript == null) return;
+        mHibernatedTranscript = null;
+
+        final int newerRows = mActiveTranscriptRows;
+        final int restoredRows = Math.min(mHibernatedRows, mTotalRows - mScreenRows - newerRows);
+        final int skippedRows = mHibernatedRows - restoredRows;
+        mActiveTranscriptRows = newerRows + restoredRows;
+        try (ReadableByteChannel channel = Channels.newChannel(new InflaterInputStream(new ByteArrayInputStream(hibernatedTranscript)))) {
+            SnapshotInput in = new SnapshotInput(channel, HIBERNATION_BUFFER_SIZE);
+            for (int i = 0; i < mHibernatedRows; i++) {
+                TerminalRow row = TerminalRow.readFrom(in, mColumns);
+                if (i >= skippedRows) mLines[externalToInternalRow(i - skippedRows - mActiveTranscriptRows)] = row;
+            }
+        } catch (IOException e) {
+            // Not thrown by in-memory streams of data written by hibernateTranscript().
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the size and the rows of the history and the screen to a snapshot, see {@link TerminalSnapshot}. A
+     * hibernated transcript is written in its compressed form, so that writing a snapshot of a session which is not
+     * viewed does not restore its history.
+     */
+    void writeSnapshot(SnapshotOutput out) throws IOException {
+        final int transcriptRows = mActiveTranscriptRows;
+        out.writeVarInt(mColumns);
+        out.writeVarInt(mTotalRows);
+        out.writeVarInt(mScreenRows);
+        out.writeVarInt(transcriptRows);
+        for (int row = -transcriptRows; row < mScreenRows; row++) {
+            TerminalRow line = mLines[externalToInternalRow(row)];
+            out.writeBoolean(line != null);
+            if (line != null) line.writeTo(out);
+        }
+        if (mHibernatedTranscript == null) {
+            out.writeVarInt(0);
+        } else {
+            out.writeVarInt(mHibernatedRows);
+            out.writeVarInt(mHibernatedTranscript.length);
+            out.writeBytes(mHibernatedTranscript, 0, mHibernatedTranscript.length);
+        }
+    }
+
+    /** Read a buffer written by {@link #writeSnapshot(SnapshotOutput)}. */
+    static TerminalBuffer readSnapshot(SnapshotInput in) throws IOException {
+        final int columns = in.readVarInt(Short.MAX_VALUE);
+        final int totalRows = in.readVarInt(TerminalEmulator.TERMINAL_TRANSCRIPT_ROWS_MAX);
+        final int screenRows = in.readVarInt(totalRows);
+        final int transcriptRows = in.readVarInt(totalRows - screenRows);
+        if (columns == 0 || screenRows == 0) throw new IOException("Empty screen of " + columns + "x" + screenRows);
+
+        TerminalBuffer buffer = new TerminalBuffer(columns, totalRows, screenRows);
+        buffer.mActiveTranscriptRows = transcriptRows;
+        buffer.mScreenFirstRow = transcriptRows;
+        for (int row = -transcriptRows; row < screenRows; row++) {
+            final int internalRow = buffer.externalToInternalRow(row);
+            if (in.readBoolean()) {
+                buffer.mLines[internalRow] = TerminalRow.readFrom(in, columns);
+            } else {
+                buffer.mLines[internalRow] = (row < 0) ? null : new TerminalRow(columns, TextStyle.NORMAL);
+            }
+        }
+
+        final int hibernatedRows = in.readVarInt(totalRows - screenRows);
+        if (hibernatedRows > 0) {
+            // The rows are only inflated when rehydrated, so just bound the size to what deflating them could give:
+            final int hibernatedBytes = in.readVarInt((int) Math.min(Integer.MAX_VALUE - 8, hibernatedRows * (16L * columns + 64)));
+            buffer.mHibernatedTranscript = new byte[hibernatedBytes];
+            in.readBytes(buffer.mHibernatedTranscript, 0, hibernatedBytes);
+            buffer.mHibernatedRows = hibernatedRows;
+        }
+        return buffer;
+    }
+
+    /**
+     * Convert a row value from the public external coordinate system to our internal private coordinate system.
+     *
+     * <pre>
+     * - External coordinate system: -mActiveTranscriptRows to mScreenRows-1, with the screen being 0..mScreenRows-1.
+     * - Internal coordinate system: the mScreenRows lines starting at mScreenFirstRow comprise the screen, while the
+     *   mActiveTranscriptRows lines ending at mScreenFirstRow-1 form the transcript (as a circular buffer).
+     *
+     * External ↔ Internal:
+     *
+     * [ ...                            ]     [ ...                                     ]
+     * [ -mActiveTranscriptRows         ]     [ mScreenFirstRow - mActiveTranscriptRows ]
+     * [ ...                            ]     [ ...                                     ]
+     * [ 0 (visible screen starts here) ]  ↔  [ mScreenFirstRow                         ]
+     * [ ...                            ]     [ ...                                     ]
+     * [ mScreenRows-1                  ]     [ mScreenFirstRow + mScreenRows-1         ]
+     * </pre>
+     *
+     * @param externalRow a row in the external coordinate system.
+     * @return The row corresponding to the input argument in the private coordinate system.
+     */
+    public int externalToInternalRow(int externalRow) {
+        if (externalRow < -mActiveTranscriptRows || externalRow > mScreenRows)
+            throw new IllegalArgumentException("extRow=" + externalRow + ", mScreenRows=" + mScreenRows + ", mActiveTranscriptRows=" + mActiveTranscriptRows);
+        final int internalRow = mScreenFirstRow + externalRow;
+        return (internalRow < 0) ? (mTotalRows + internalRow) : (internalRow % mTotalRows);
+    }
+
+    public void setLineWrap(int row) {
+        mLines[externalToInternalRow(row)].mLineWrap = true;
+    }
+
+    public boolean getLineWrap(int row) {
+        TerminalRow line = mLines[externalToInternalRow(row)];
+        return line != null && line.mLineWrap;
+    }
+
+    public void clearLineWrap(int row) {
+        mLines[externalToInternalRow(row)].mLineWrap = false;
+    }
+
+    /**
+     * Resize the screen which this transcript backs. Currently, this only works if the number of columns does not
+     * change or the rows expand (that is, it only works when shrinking the number of rows).
+     *
+     * @param newColumns The number of columns the screen should have.
+     * @param newRows    The number of rows the screen should have.
+     * @param cursor     An int[2] containing the (column, row) cursor location.
+     */
+    public void resize(int newColumns, int newRows, int newTotalRows, int[] cursor, long currentStyle, boolean isAltScreen) {
+        // The hibernated rows are stored with the old number of columns:
+        rehydrateTranscript();
+        // newRows > mTotalRows should not normally happen since mTotalRows is TRANSCRIPT_ROWS (10000):
+        if (newColumns == mColumns && newRows <= mTotalRows) {
+            // Fast resize where just the rows changed.
+            new FastResize(this).resize(newColumns, newRows, newTotalRows, cursor, currentStyle, isAltScreen);
+        } else {
+            // Copy away old state and update new:
+            new UpdateOldBuffer(this).resize(newColumns, newRows, newTotalRows, cursor, currentStyle, isAltScreen);
+        }
+
+        // Handle cursor scrolling off screen:
+        if (cursor[0] < 0 || cursor[1] < 0) cursor[0] = cursor[1] = 0;
+    }
+
+    /**
+     * Block copy lines and associated metadata from one location to another in the circular buffer, taking wraparound
+     * into account.
+     *
+     * @param srcInternal The first line to be copied.
+     * @param len         The number of lines to be copied.
+     */
+    private void blockCopyLinesDown(int srcInternal, int len) {
+        if (len == 0) return;
+        int totalRows = mTotalRows;
+
+        int start = len - 1;
+        // Save away line to be overwritten:
+        TerminalRow lineToBeOverWritten = mLines[(srcInternal + start + 1) % totalRows];
+        // Do the copy from bottom to top.
+        for (int i = start; i >= 0; --i)
+            mLines[(srcInternal + i + 1) % totalRows] = mLines[(srcInternal + i) % totalRows];
+        // Put back overwritten line, now above the block:
+        mLines[(srcInternal) % totalRows] = lineToBeOverWritten;
+    }
+
+    /**
+     * Scroll the screen down one line. To scroll the whole screen of a 24 line screen, the arguments would be (0, 24).
+     *
+     * @param topMargin    First line that is scrolled.
+     * @param bottomMargin One line after the last line that is scrolled.
+     * @param style        the style for the newly exposed line.
+     */
+    public void scrollDownOneLine(int topMargin, int bottomMargin, long style) {
+        if (topMargin > bottomMargin - 1 || topMargin < 0 || bottomMargin > mScreenRows)
+            throw new IllegalArgumentException("topMargin=" + topMargin + ", bottomMargin=" + bottomMargin + ", mScreenRows=" + mScreenRows);
+
+        // Copy the fixed topMargin lines one line down so that they remain on screen in same position:
+        blockCopyLinesDown(mScreenFirstRow, topMargin);
+        // Copy the fixed mScreenRows-bottomMargin lines one line down so that they remain on screen in same
+        // position:
+        blockCopyLinesDown(externalToInternalRow(bottomMargin), mScreenRows - bottomMargin);
+
+        // Update the screen location in the ring buffer:
+        mScreenFirstRow = (mScreenFirstRow + 1) % mTotalRows;
+        // Note that the history has grown if not already full:
+        if (mActiveTranscriptRows < mTotalRows - mScreenRows) mActiveTranscriptRows++;
+
+        // Blank the newly revealed line above the bottom margin:
+        clearRow(externalToInternalRow(bottomMargin - 1), style);
+    }
+
+    /**
+     * Scroll the whole screen down a number of lines, with the same result as that many calls to
+     * {@link #scrollDownOneLine(int, int, long)} with the margins (0, mScreenRows), but in time bounded by the size of
+     * the screen instead of the number of lines. Only the revealed lines on the screen are cleared, while blank lines
+     * scrolled through the screen into the history are left unallocated if possible, see
+     * {@link #allocateFullLineIfNecessary(int)}.
+     *
+     * @param lines the number of lines to scroll.
+     * @param style the style for the newly exposed lines.
+     */
+    public void scrollDownLines(int lines, long style) {
+        if (lines < 0) throw new IllegalArgumentException("lines=" + lines);
+
+        // Update the screen location in the ring buffer and note that the history has grown if not already full:
+        mScreenFirstRow = (mScreenFirstRow + lines % mTotalRows) % mTotalRows;
+        mActiveTranscriptRows = Math.min(mActiveTranscriptRows + lines, mTotalRows - mScreenRows);
+
+        // Blank the lines which have scrolled through the whole screen into the history:
+        final int blankTranscriptRows = Math.min(lines - mScreenRows, mActiveTranscriptRows);
+        for (int row = -blankTranscriptRows; row < 0; row++) {
+            int internalRow = externalToInternalRow(row);
+            if (style == TextStyle.NORMAL) {
+                mLines[internalRow] = null;
+            } else {
+                clearRow(internalRow, style);
+            }
+        }
+        // Blank the newly revealed lines at the bottom of the screen:
+        for (int row = Math.max(0, mScreenRows - lines); row < mScreenRows; row++)
+            clearRow(externalToInternalRow(row), style);
+    }
+
+    /**
+     * Move the full width lines between the margins of the screen down, or up if negative, and blank the lines exposed
+     * at the other margin. The line references are rotated instead of copying their contents, with the lines moved past
+     * a margin reused as the blank lines, so this takes time proportional to the number of lines instead of the number
+     * of cells like {@link #blockCopy(int, int, int, int, int, int)} followed by {@link #blockSet(int, int, int, int, int, long)}.
+     *
+     * @param topMargin    First line that is moved.
+     * @param bottomMargin One line after the last line that is moved.
+     * @param lines        The number of lines to move down, or up if negative.
+     * @param style        the style for the newly exposed lines.
+     */
+    public void moveLines(int topMargin, int bottomMargin, int lines, long style) {
+        if (topMargin > bottomMargin || topMargin < 0 || bottomMargin > mScreenRows)
+            throw new IllegalArgumentException("topMargin=" + topMargin + ", bottomMargin=" + bottomMargin + ", mScreenRows=" + mScreenRows);
+
+        final int linesToBlank = Math.min(Math.abs(lines), bottomMargin - topMargin);
+        if (linesToBlank == 0) return;
+        final int firstBlankLine = (lines > 0) ? topMargin : bottomMargin - linesToBlank;
+        if (linesToBlank < bottomMargin - topMargin) {
+            // Rotate by reversing the whole block and then each of the two parts:
+            final int split = (lines > 0) ? topMargin + linesToBlank : bottomMargin - linesToBlank;
+            reverseLines(topMargin, bottomMargin);
+            reverseLines(topMargin, split);
+            reverseLines(split, bottomMargin);
+        }
+        for (int row = firstBlankLine; row < firstBlankLine + linesToBlank; row++) {
+            int internalRow = externalToInternalRow(row);
+            clearRow(internalRow, style);
+            mLines[internalRow].mLineWrap = false;
+        }
+    }
+
+    /** Reverse the order of the lines of the screen from start to one before end. */
+    private void reverseLines(int start, int end) {
+        for (int i = start, j = end - 1; i < j; i++, j--) {
+            int internalI = externalToInternalRow(i);
+            int internalJ = externalToInternalRow(j);
+            TerminalRow line = mLines[internalI];
+            mLines[internalI] = mLines[internalJ];
+            mLines[internalJ] = line;
+        }
+    }
+
+    private void clearRow(int internalRow, long style) {
+        if (mLines[internalRow] == null) {
+            mLines[internalRow] = new TerminalRow(mColumns, style);
+        } else {
+            mLines[internalRow].clear(style);
+        }
+    }
+
+    /**
+     * Block copy characters from one position in the screen to another. The two positions can overlap. All characters
+     * of the source and destination must be within the bounds of the screen, or else an InvalidParameterException will
+     * be thrown.
+     *
+     * @param sx source X coordinate
+     * @param sy source Y coordinate
+     * @param w  width
+     * @param h  height
+     * @param dx destination X coordinate
+     * @param dy destination Y coordinate
+     */
+    public void blockCopy(int sx, int sy, int w, int h, int dx, int dy) {
+        if (w == 0) return;
+        if (sx < 0 || sx + w > mColumns || sy < 0 || sy + h > mScreenRows || dx < 0 || dx + w > mColumns || dy < 0 || dy + h > mScreenRows)
+            throw new IllegalArgumentException();
+        boolean isCopyingUp = sy > dy;
+        for (int y = 0; y < h; y++) {
+            int y2 = isCopyingUp ? y : (h - (y + 1));
+            TerminalRow sourceRow = allocateFullLineIfNecessary(externalToInternalRow(sy + y2));
+            allocateFullLineIfNecessary(externalToInternalRow(dy + y2)).copyInterval(sourceRow, sx, sx + w, dx);
+        }
+    }
+
+    /**
+     * Block set characters. All characters must be within the bounds of the screen, or else and
+     * InvalidParemeterException will be thrown. Typically this is called with a "val" argument of 32 to clear a block
+     * of characters. Clearing to the end of lines, as when erasing the screen, takes constant time per line, see
+     * {@link TerminalRow#clear(int, long)}.
+     */
+    public void blockSet(int sx, int sy, int w, int h, int val, long style) {
+        if (sx < 0 || sx + w > mColumns || sy < 0 || sy + h > mScreenRows) {
+            throw new IllegalArgumentException(
+                "Illegal arguments! blockSet(" + sx + ", " + sy + ", " + w + ", " + h + ", " + val + ", " + mColumns + ", " + mScreenRows + ")");
+        }
+        if (val == ' ' && sx + w == mColumns && w > 0) {
+            for (int y = 0; y < h; y++)
+                allocateFullLineIfNecessary(externalToInternalRow(sy + y)).clear(sx, style);
+            return;
+        }
+        for (int y = 0; y < h; y++)
+            for (int x = 0; x < w; x++)
+                setChar(sx + x, sy + y, val, style);
+    }
+
+    /** Get a line, or null if it is not allocated, which reads like a blank line of normal style. */
+    public TerminalRow getLineIfAllocated(int row) {
+        return mLines[row];
+    }
+
+    /** Get a line, allocating it as a blank line of normal style if it is not allocated, like unused history lines. */
+    public TerminalRow allocateFullLineIfNecessary(int row) {
+        return (mLines[row] == null) ? (mLines[row] = new TerminalRow(mColumns, TextStyle.NORMAL)) : mLines[row];
+    }
+
+    public void setChar(int column, int row, int codePoint, long style) {
+        if (row  < 0 || row >= mScreenRows || column < 0 || column >= mColumns)
+            throw new IllegalArgumentException("TerminalBuffer.setChar(): row=" + row + ", column=" + column + ", mScreenRows=" + mScreenRows + ", mColumns=" + mColumns);
+        row = externalToInternalRow(row);
+        allocateFullLineIfNecessary(row).setChar(column, codePoint, style);
+    }
+
+    /**
+     * Clear the history in constant time by forgetting the transcript rows instead of releasing them. The rows outside
+     * the transcript and the screen are stale, and are blanked and reused when scrolled onto the screen again, as is
+     * already done with the oldest transcript rows once the history is full.
+     */
+    public void clearTranscript() {
+        mActiveTranscriptRows = 0;
+        mHibernatedTranscript = null;
+        mGeneration++;
+    }
+
+    /**
+     * The generation of the transcript, which changes each time it is cleared with {@link #clearTranscript()}, so that
+     * a client holding on to negative row positions, like a text selection, can notice that they have become stale.
+     */
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    public long getStyleAt(int externalRow, int column) {
+        return allocateFullLineIfNecessary(externalToInternalRow(externalRow)).getStyle(column);
+    }
+
+    /** Support for http://vt100.net/docs/vt510-rm/DECCARA and http://vt100.net/docs/vt510-rm/DECCARA */
+    public void setOrClearEffect(int bits, boolean isSetOrClear, boolean isReverse, boolean isRectangular, int leftMargin, int rightMargin, int top, int left,
+                                 int bottom, int right) {
+        new BufferStyler(this).setOrClearEffect(bits, isSetOrClear, isReverse, isRectangular, leftMargin, rightMargin, top, left, bottom, right);
+    }
+
+
+}
+
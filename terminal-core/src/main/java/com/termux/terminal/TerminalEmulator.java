@@ -1,7 +1,6 @@
 package com.termux.terminal;
 
-import android.util.Base64;
-
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Locale;
@@ -86,6 +85,8 @@ public final class TerminalEmulator {
 
     private String mTitle;
     private final Stack<String> mTitleStack = new Stack<>();
+    /** The number of titles kept by {@link #mTitleStack}. */
+    private static final int MAX_TITLE_STACK_SIZE = 20;
 
 
     /** The cursor position. Between (0,0) and (mRows-1, mColumns-1). */
@@ -119,15 +120,18 @@ public final class TerminalEmulator {
      * the alternate screen buffer is active, you cannot scroll back to view saved lines).
      * <p>
      * See http://www.xfree86.org/current/ctlseqs.html#The%20Alternate%20Screen%20Buffer
+     * <p>
+     * Only allocated when first switched to, as most sessions never use it, and released again by
+     * {@link #releaseAlternateBuffer()} while unused. Null if not allocated.
      */
-    final TerminalBuffer mAltBuffer;
+    TerminalBuffer mAltBuffer;
     /** The current screen buffer, pointing at either {@link #mMainBuffer} or {@link #mAltBuffer}. */
     private TerminalBuffer mScreen;
 
     /** The terminal session this emulator is bound to. */
     private final TerminalOutput mSession;
 
-    TerminalSessionClient mClient;
+    TerminalEmulatorClient mClient;
 
     /** Keeps track of the current argument of the current escape sequence. Ranges from 0 to MAX_ESCAPE_PARAMETERS-1. */
     private int mArgIndex;
@@ -143,9 +147,29 @@ public final class TerminalEmulator {
      */
     private boolean mContinueSequence;
 
-    /** The current state of the escape sequence state machine. One of the ESC_* constants. */
+    /** The current state of the escape sequence state machine, one of the states below. */
     private EscapeState mEscapeState;
 
+    /** The states of the escape sequence state machine, which keep no data of their own so that they are reused. */
+    private final EscNoneState mEscNoneState = new EscNoneState();
+    private final EscState mEscState = new EscState();
+    private final EscPoundState mEscPoundState = new EscPoundState();
+    private final EscSelectLeftParenState mEscSelectLeftParenState = new EscSelectLeftParenState();
+    private final EscSelectRightParenState mEscSelectRightParenState = new EscSelectRightParenState();
+    private final EscCsiState mEscCsiState = new EscCsiState();
+    private final EscCsiQuestionMarkState mEscCsiQuestionMarkState = new EscCsiQuestionMarkState();
+    private final EscCsiDollarState mEscCsiDollarState = new EscCsiDollarState();
+    private final EscOscState mEscOscState = new EscOscState();
+    private final EscOscEscState mEscOscEscState = new EscOscEscState();
+    private final EscCsiBiggerThanState mEscCsiBiggerThanState = new EscCsiBiggerThanState();
+    private final EscPState mEscPState = new EscPState();
+    private final EscCsiQuestionMarkArgDollarState mEscCsiQuestionMarkArgDollarState = new EscCsiQuestionMarkArgDollarState();
+    private final EscCsiArgSpaceState mEscCsiArgSpaceState = new EscCsiArgSpaceState();
+    private final EscCsiArgsAsterixState mEscCsiArgsAsterixState = new EscCsiArgsAsterixState();
+    private final EscCsiDoubleQuoteState mEscCsiDoubleQuoteState = new EscCsiDoubleQuoteState();
+    private final EscCsiSingleQuoteState mEscCsiSingleQuoteState = new EscCsiSingleQuoteState();
+    private final EscCsiExclamationState mEscCsiExclamationState = new EscCsiExclamationState();
+
     private final SavedScreenState mSavedStateMain = new SavedScreenState();
     private final SavedScreenState mSavedStateAlt = new SavedScreenState();
 
@@ -209,6 +233,9 @@ public final class TerminalEmulator {
      */
     private int mScrollCounter = 0;
 
+    /** See {@link #getMetrics()}. */
+    private final TerminalMetrics mMetrics = new TerminalMetrics();
+
     private byte mUtf8ToFollow, mUtf8Index;
     private final byte[] mUtf8InputBuffer = new byte[4];
     private int mLastEmittedCodePoint = -1;
@@ -217,6 +244,9 @@ public final class TerminalEmulator {
 
     private static final String LOG_TAG = "TerminalEmulator";
 
+    /** The longest title read from a snapshot, so that a corrupt snapshot can not cause huge allocations. */
+    private static final int MAX_SNAPSHOT_TITLE_BYTES = 64 * 1024;
+
     private boolean isDecsetInternalBitSet(int bit) {
         return (mCurrentDecSetFlags & bit) != 0;
     }
@@ -269,10 +299,13 @@ public final class TerminalEmulator {
         }
     }
 
-    public TerminalEmulator(TerminalOutput session, int columns, int rows, Integer transcriptRows, TerminalSessionClient client) {
+    public TerminalEmulator(TerminalOutput session, int columns, int rows, Integer transcriptRows, TerminalEmulatorClient client) {
+        this(session, new TerminalBuffer(columns, getTerminalTranscriptRows(transcriptRows), rows), columns, rows, client);
+    }
+
+    private TerminalEmulator(TerminalOutput session, TerminalBuffer mainBuffer, int columns, int rows, TerminalEmulatorClient client) {
         mSession = session;
-        mScreen = mMainBuffer = new TerminalBuffer(columns, getTerminalTranscriptRows(transcriptRows), rows);
-        mAltBuffer = new TerminalBuffer(columns, rows, rows);
+        mScreen = mMainBuffer = mainBuffer;
         mClient = client;
         mRows = rows;
         mColumns = columns;
@@ -280,7 +313,7 @@ public final class TerminalEmulator {
         reset();
     }
 
-    public void updateTerminalSessionClient(TerminalSessionClient client) {
+    public void updateTerminalSessionClient(TerminalEmulatorClient client) {
         mClient = client;
         setCursorStyle();
         setCursorBlinkState(true);
@@ -294,7 +327,48 @@ public final class TerminalEmulator {
         return mScreen == mAltBuffer;
     }
 
-    private int getTerminalTranscriptRows(Integer transcriptRows) {
+    /** If the alternate screen buffer is allocated but not active, so that it can be {@link #releaseAlternateBuffer() released}. */
+    public boolean hasUnusedAlternateBuffer() {
+        return mAltBuffer != null && mScreen != mAltBuffer;
+    }
+
+    /**
+     * Release the alternate screen buffer if it is not active, to be allocated again when next switched to. Nothing is
+     * lost by this, as the alternate screen buffer is cleared when switched to.
+     */
+    public void releaseAlternateBuffer() {
+        if (hasUnusedAlternateBuffer()) mAltBuffer = null;
+    }
+
+    /** An estimate of the heap used by the screen buffers, see {@link TerminalBuffer#getMemoryUsage()}. */
+    public long getMemoryUsage() {
+        return mMainBuffer.getMemoryUsage() + (mAltBuffer == null ? 0 : mAltBuffer.getMemoryUsage());
+    }
+
+    /**
+     * Release the memory which is not needed to show the current content, which is an unused alternate screen buffer
+     * and rows kept for reuse, see {@link TerminalBuffer#releaseUnusedRows()}.
+     */
+    public void releaseUnusedMemory() {
+        releaseAlternateBuffer();
+        mMainBuffer.releaseUnusedRows();
+    }
+
+    /** Hibernate the history of the main screen buffer, see {@link TerminalBuffer#hibernateTranscript()}. */
+    public boolean hibernateTranscript() {
+        return mMainBuffer.hibernateTranscript();
+    }
+
+    public boolean isTranscriptHibernated() {
+        return mMainBuffer.isTranscriptHibernated();
+    }
+
+    /** Restore a hibernated history, see {@link TerminalBuffer#rehydrateTranscript()}. */
+    public void rehydrateTranscript() {
+        mMainBuffer.rehydrateTranscript();
+    }
+
+    private static int getTerminalTranscriptRows(Integer transcriptRows) {
         if (transcriptRows == null || transcriptRows < TERMINAL_TRANSCRIPT_ROWS_MIN || transcriptRows > TERMINAL_TRANSCRIPT_ROWS_MAX)
             return DEFAULT_TERMINAL_TRANSCRIPT_ROWS;
         else
@@ -331,6 +405,7 @@ public final class TerminalEmulator {
         } else if (columns < 2 || rows < 2) {
             throw new IllegalArgumentException("rows=" + rows + ", columns=" + columns);
         }
+        mMetrics.onResize(mColumns != columns);
 
         if (mRows != rows) {
             mRows = rows;
@@ -437,8 +512,72 @@ public final class TerminalEmulator {
      * @param length the number of bytes in the array to process
      */
     public void append(byte[] buffer, int length) {
-        for (int i = 0; i < length; i++)
-            processByte(buffer[i]);
+        append(buffer, 0, length);
+    }
+
+    /**
+     * Accept bytes (typically from the pseudo-teletype) and process them.
+     *
+     * @param buffer a byte array containing the bytes to be processed
+     * @param offset the index of the first byte in the array to process
+     * @param length the number of bytes in the array to process
+     */
+    public void append(byte[] buffer, int offset, int length) {
+        final long startNanos = System.nanoTime();
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '\n' && mUtf8ToFollow == 0 && isScrollingWholeScreen()) {
+                i = processLinefeedRun(buffer, i, end) - 1;
+            } else {
+                processByte(b);
+            }
+        }
+        mMetrics.onAppend(length, System.nanoTime() - startNanos);
+    }
+
+    /** If a linefeed at the bottom margin scrolls the whole screen into the history. */
+    private boolean isScrollingWholeScreen() {
+        return mTopMargin == 0 && mBottomMargin == mRows && mLeftMargin == 0 && mRightMargin == mColumns;
+    }
+
+    /**
+     * Process a run of linefeeds, possibly mixed with carriage returns as with output from a pty, scrolling the screen
+     * once by the number of lines instead of once per linefeed, which matters for output with many empty lines.
+     * Linefeeds and carriage returns do not affect an escape sequence being parsed, so that does not need checking.
+     * Should only be called if {@link #isScrollingWholeScreen()}.
+     *
+     * @param buffer the bytes being appended
+     * @param start  the index of the linefeed starting the run
+     * @param end    the index after the last byte to process
+     * @return the index after the run
+     */
+    private int processLinefeedRun(byte[] buffer, int start, int end) {
+        int linefeeds = 0;
+        boolean carriageReturn = false;
+        int i = start;
+        for (; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '\n') {
+                linefeeds++;
+            } else if (b == '\r') {
+                carriageReturn = true;
+            } else {
+                break;
+            }
+        }
+
+        final int cursorMoves = Math.min(linefeeds, mBottomMargin - 1 - mCursorRow);
+        final int linesToScroll = linefeeds - cursorMoves;
+        setCursorRow(mCursorRow + cursorMoves);
+        if (linesToScroll > 0) {
+            mScrollCounter += linesToScroll;
+            mMetrics.onScroll(linesToScroll);
+            mScreen.scrollDownLines(linesToScroll, getStyle());
+        }
+        // A linefeed does not change the column, so the carriage returns have the same effect in any order:
+        if (carriageReturn) setCursorCol(mLeftMargin);
+        return i;
     }
 
     private void processByte(byte byteToProcess) {
@@ -556,7 +695,7 @@ public final class TerminalEmulator {
             case 26: // SUB.
                 if (!(mEscapeState instanceof EscNoneState)) {
                     // FIXME: What is this??
-                    mEscapeState = new EscNoneState();
+                    mEscapeState = mEscNoneState;
                     emitCodePoint(127);
                 }
                 break;
@@ -579,7 +718,7 @@ public final class TerminalEmulator {
                 else {
                     unknownSequence(b);
                 }
-                if (!mContinueSequence) mEscapeState = new EscNoneState();
+                if (!mContinueSequence) mEscapeState = mEscNoneState;
                 break;
         }
     }
@@ -658,6 +797,7 @@ public final class TerminalEmulator {
             case 1049: {
                 // Set: Save cursor as in DECSC and use Alternate Screen Buffer, clearing it first.
                 // Reset: Use Normal Screen Buffer and restore cursor as in DECRC.
+                if (setting && mAltBuffer == null) mAltBuffer = new TerminalBuffer(mColumns, mRows, mRows);
                 TerminalBuffer newScreen = setting ? mAltBuffer : mMainBuffer;
                 if (newScreen != mScreen) {
                     boolean resized = !(newScreen.mColumns == mColumns && newScreen.mScreenRows == mRows);
@@ -691,7 +831,7 @@ public final class TerminalEmulator {
     }
 
     private void startEscapeSequence() {
-        mEscapeState = new EscState();
+        mEscapeState = mEscState;
         mArgIndex = 0;
         Arrays.fill(mArgs, -1);
     }
@@ -859,7 +999,7 @@ public final class TerminalEmulator {
                 doOscSetTextParameters("\007");
                 break;
             case 27: // Escape.
-                continueSequence(new EscOscEscState());
+                continueSequence(mEscOscEscState);
                 break;
             default:
                 collectOSCArgs(b);
@@ -964,7 +1104,7 @@ public final class TerminalEmulator {
             case 52: // Manipulate Selection Data. Skip the optional first selection parameter(s).
                 int startIndex = textParameter.indexOf(";") + 1;
                 try {
-                    String clipboardText = new String(Base64.decode(textParameter.substring(startIndex), 0), StandardCharsets.UTF_8);
+                    String clipboardText = new String(decodeBase64(textParameter.substring(startIndex)), StandardCharsets.UTF_8);
                     mSession.onCopyTextToClipboard(clipboardText);
                 } catch (Exception e) {
                     Logger.logError(mClient, LOG_TAG, "OSC Manipulate selection, invalid string '" + textParameter + "");
@@ -1062,8 +1202,10 @@ public final class TerminalEmulator {
 
     private void scrollDownOneLine() {
         mScrollCounter++;
+        mMetrics.onScroll(1);
         if (mLeftMargin != 0 || mRightMargin != mColumns) {
-            // Horizontal margin: Do not put anything into scroll history, just non-margin part of screen up.
+            // Horizontal margin: Do not put anything into scroll history, just non-margin part of screen up. The lines
+            // extend past the margins, so their contents have to be copied instead of moving the lines.
             mScreen.blockCopy(mLeftMargin, mTopMargin + 1, mRightMargin - mLeftMargin, mBottomMargin - mTopMargin - 1, mLeftMargin, mTopMargin);
             // .. and blank bottom row between margins:
             mScreen.blockSet(mLeftMargin, mBottomMargin - 1, mRightMargin - mLeftMargin, 1, ' ', mEffect);
@@ -1122,18 +1264,19 @@ public final class TerminalEmulator {
         }
     }
 
+    // The messages are only built if logged, since unsupported sequences may be repeated throughout the output.
     private void unimplementedSequence(int b) {
-        logError("Unimplemented sequence char '" + (char) b + "' (U+" + String.format("%04x", b) + ")");
+        if (LOG_ESCAPE_SEQUENCES) logError("Unimplemented sequence char '" + (char) b + "' (U+" + String.format("%04x", b) + ")");
         finishSequence();
     }
 
     private void unknownSequence(int b) {
-        logError("Unknown sequence char '" + (char) b + "' (numeric value=" + b + ")");
+        if (LOG_ESCAPE_SEQUENCES) logError("Unknown sequence char '" + (char) b + "' (numeric value=" + b + ")");
         finishSequence();
     }
 
     private void unknownParameter(int parameter) {
-        logError("Unknown parameter: " + parameter);
+        if (LOG_ESCAPE_SEQUENCES) logError("Unknown parameter: " + parameter);
         finishSequence();
     }
 
@@ -1168,7 +1311,7 @@ public final class TerminalEmulator {
     }
 
     private void finishSequence() {
-        mEscapeState = new EscNoneState();
+        mEscapeState = mEscNoneState;
     }
 
     /**
@@ -1356,12 +1499,17 @@ public final class TerminalEmulator {
         mScrollCounter = 0;
     }
 
+    /** The counters and latency histograms of this emulator, which must only be accessed on the main thread. */
+    public TerminalMetrics getMetrics() {
+        return mMetrics;
+    }
+
     /** Reset terminal state so user can interact with it regardless of present state. */
     public void reset() {
         setCursorStyle();
         mArgIndex = 0;
         mContinueSequence = false;
-        mEscapeState = new EscNoneState();
+        mEscapeState = mEscNoneState;
         mInsertMode = false;
         mTopMargin = mLeftMargin = 0;
         mBottomMargin = mRows;
@@ -1407,20 +1555,30 @@ public final class TerminalEmulator {
         }
     }
 
-    /** If DECSET 2004 is set, prefix paste with "\033[200~" and suffix with "\033[201~". */
+    /**
+     * If DECSET 2004 is set, prefix paste with "\033[200~" and suffix with "\033[201~".
+     * <p>
+     * The text is written at once, see TerminalSession#pasteInBackground(CharSequence) of the terminal-emulator library for large pastes.
+     */
     public void paste(String text) {
-        // First: Always remove escape key and C1 control characters [0x80,0x9F]:
-        text = text.replaceAll("(\u001B|[\u0080-\u009F])", "");
+        // First: Always remove escape key and C1 control characters [0x80,0x9F].
         // Second: Replace all newlines (\n) or CRLF (\r\n) with carriage returns (\r).
-        text = text.replaceAll("\r?\n", "\r");
+        PasteEncoder encoder = new PasteEncoder(text);
+        byte[] buffer = new byte[Math.min(PasteEncoder.CHUNK_SIZE, text.length() * 3 + 4)];
 
         // Then: Implement bracketed paste mode if enabled:
-        boolean bracketed = isDecsetInternalBitSet(DECSET_BIT_BRACKETED_PASTE_MODE);
+        boolean bracketed = isBracketedPasteMode();
         if (bracketed) mSession.write("\033[200~");
-        mSession.write(text);
+        int length;
+        while ((length = encoder.encode(buffer)) > 0) mSession.write(buffer, 0, length);
         if (bracketed) mSession.write("\033[201~");
     }
 
+    /** If DECSET 2004 is set and pastes should be bracketed, see {@link #paste(String)}. */
+    public boolean isBracketedPasteMode() {
+        return isDecsetInternalBitSet(DECSET_BIT_BRACKETED_PASTE_MODE);
+    }
+
     /** http://www.vt100.net/docs/vt510-rm/DECSC */
     static final class SavedScreenState {
         /** Saved state of the cursor position, Used to implement the save/restore cursor position escape sequences. */
@@ -1430,6 +1588,167 @@ public final class TerminalEmulator {
         boolean mUseLineDrawingG0, mUseLineDrawingG1, mUseLineDrawingUsesG0 = true;
     }
 
+    /** If no escape sequence or UTF-8 sequence is partially processed, so that a snapshot contains the complete state. */
+    boolean isBetweenSequences() {
+        return mUtf8ToFollow == 0 && mEscapeState instanceof EscNoneState;
+    }
+
+    /**
+     * Write the screen buffers and the state of this emulator to a snapshot, see {@link TerminalSnapshot}. The state of
+     * a partially processed escape sequence or UTF-8 sequence is not written, so an emulator restored from the snapshot
+     * starts processing output anew.
+     */
+    void writeSnapshot(SnapshotOutput out) throws IOException {
+        out.writeVarInt(mColumns);
+        out.writeVarInt(mRows);
+        mMainBuffer.writeSnapshot(out);
+        out.writeBoolean(mAltBuffer != null);
+        if (mAltBuffer != null) mAltBuffer.writeSnapshot(out);
+        out.writeBoolean(isAlternateBufferActive());
+
+        out.writeVarInt(mCursorRow);
+        out.writeVarInt(mCursorCol);
+        out.writeVarInt(mCursorStyle);
+        out.writeVarInt(mTopMargin);
+        out.writeVarInt(mBottomMargin);
+        out.writeVarInt(mLeftMargin);
+        out.writeVarInt(mRightMargin);
+        out.writeVarInt(mCurrentDecSetFlags);
+        out.writeVarInt(mSavedDecSetFlags);
+        out.writeByte((mInsertMode ? 1 : 0) | (mAboutToAutoWrap ? 2 : 0) | (mUseLineDrawingG0 ? 4 : 0)
+            | (mUseLineDrawingG1 ? 8 : 0) | (mUseLineDrawingUsesG0 ? 16 : 0));
+        out.writeVarInt(mForeColor);
+        out.writeVarInt(mBackColor);
+        out.writeVarInt(mEffect);
+
+        // The tab stops as the distances between them, which are mostly the same:
+        int tabStops = 0;
+        for (boolean tabStop : mTabStop) if (tabStop) tabStops++;
+        out.writeVarInt(tabStops);
+        for (int column = 0, previous = 0; column < mColumns; column++) {
+            if (!mTabStop[column]) continue;
+            out.writeVarInt(column - previous);
+            previous = column;
+        }
+
+        writeSavedScreenState(out, mSavedStateMain);
+        writeSavedScreenState(out, mSavedStateAlt);
+        for (int color : mColors.mCurrentColors) out.writeVarInt(color);
+        out.writeString(mTitle);
+        out.writeVarInt(mTitleStack.size());
+        for (String title : mTitleStack) out.writeString(title);
+    }
+
+    /** Read an emulator written by {@link #writeSnapshot(SnapshotOutput)}. */
+    static TerminalEmulator readSnapshot(SnapshotInput in, TerminalOutput session, TerminalEmulatorClient client) throws IOException {
+        final int columns = in.readVarInt(Short.MAX_VALUE);
+        final int rows = in.readVarInt(Short.MAX_VALUE);
+        final TerminalEmulator emulator = new TerminalEmulator(session, TerminalBuffer.readSnapshot(in), columns, rows, client);
+        if (in.readBoolean()) emulator.mAltBuffer = TerminalBuffer.readSnapshot(in);
+        if (in.readBoolean()) {
+            if (emulator.mAltBuffer == null) throw new IOException("Active alternate buffer not in snapshot");
+            emulator.mScreen = emulator.mAltBuffer;
+        }
+        if (emulator.mScreen.mColumns != columns || emulator.mScreen.mScreenRows != rows)
+            throw new IOException("Screen of " + emulator.mScreen.mColumns + "x" + emulator.mScreen.mScreenRows + " for a terminal of " + columns + "x" + rows);
+        emulator.readSnapshotState(in);
+        return emulator;
+    }
+
+    private void readSnapshotState(SnapshotInput in) throws IOException {
+        mCursorRow = in.readVarInt(mRows - 1);
+        mCursorCol = in.readVarInt(mColumns - 1);
+        mCursorStyle = in.readVarInt(TERMINAL_CURSOR_STYLES_LIST.length - 1);
+        mTopMargin = in.readVarInt(mRows - 1);
+        mBottomMargin = in.readVarInt(mRows);
+        mLeftMargin = in.readVarInt(mColumns - 1);
+        mRightMargin = in.readVarInt(mColumns);
+        if (mBottomMargin <= mTopMargin || mRightMargin <= mLeftMargin) throw new IOException("Invalid margins");
+        mCurrentDecSetFlags = in.readVarInt();
+        mSavedDecSetFlags = in.readVarInt();
+        final int flags = in.readByte();
+        mInsertMode = (flags & 1) != 0;
+        mAboutToAutoWrap = (flags & 2) != 0;
+        mUseLineDrawingG0 = (flags & 4) != 0;
+        mUseLineDrawingG1 = (flags & 8) != 0;
+        mUseLineDrawingUsesG0 = (flags & 16) != 0;
+        mForeColor = in.readVarInt();
+        mBackColor = in.readVarInt();
+        mEffect = in.readVarInt();
+
+        Arrays.fill(mTabStop, false);
+        final int tabStops = in.readVarInt(mColumns);
+        for (int i = 0, column = 0; i < tabStops; i++) {
+            column += in.readVarInt(mColumns - 1 - column);
+            mTabStop[column] = true;
+        }
+
+        readSavedScreenState(in, mSavedStateMain);
+        readSavedScreenState(in, mSavedStateAlt);
+        for (int i = 0; i < mColors.mCurrentColors.length; i++) mColors.mCurrentColors[i] = in.readVarInt();
+        mTitle = in.readString(MAX_SNAPSHOT_TITLE_BYTES);
+        final int titles = in.readVarInt(MAX_TITLE_STACK_SIZE);
+        for (int i = 0; i < titles; i++) mTitleStack.push(in.readString(MAX_SNAPSHOT_TITLE_BYTES));
+        mSession.onColorsChanged();
+    }
+
+    /**
+     * Decode base64 like android.util.Base64 with its default flags, which is not available on a plain JVM, and
+     * java.util.Base64 not before Android 8. Characters outside of the alphabet are skipped, and decoding stops at
+     * the first padding character.
+     *
+     * @throws IllegalArgumentException if the input ends with a single character of a group of four.
+     */
+    static byte[] decodeBase64(String input) {
+        byte[] output = new byte[input.length() * 3 / 4];
+        int outputLength = 0;
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            int value;
+            if (c >= 'A' && c <= 'Z') value = c - 'A';
+            else if (c >= 'a' && c <= 'z') value = c - 'a' + 26;
+            else if (c >= '0' && c <= '9') value = c - '0' + 52;
+            else if (c == '+') value = 62;
+            else if (c == '/') value = 63;
+            else if (c == '=') break;
+            else continue;
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                output[outputLength++] = (byte) (bits >> bitCount);
+            }
+        }
+        if (bitCount >= 6) throw new IllegalArgumentException("Truncated base64 input");
+        return outputLength == output.length ? output : Arrays.copyOf(output, outputLength);
+    }
+
+    private static void writeSavedScreenState(SnapshotOutput out, SavedScreenState state) throws IOException {
+        out.writeVarInt(state.mSavedCursorRow);
+        out.writeVarInt(state.mSavedCursorCol);
+        out.writeVarInt(state.mSavedEffect);
+        out.writeVarInt(state.mSavedForeColor);
+        out.writeVarInt(state.mSavedBackColor);
+        out.writeVarInt(state.mSavedDecFlags);
+        out.writeByte((state.mUseLineDrawingG0 ? 1 : 0) | (state.mUseLineDrawingG1 ? 2 : 0) | (state.mUseLineDrawingUsesG0 ? 4 : 0));
+    }
+
+    private static void readSavedScreenState(SnapshotInput in, SavedScreenState state) throws IOException {
+        // The saved cursor is clipped to the screen when restored, as it may be from before a resize:
+        state.mSavedCursorRow = in.readVarInt(Integer.MAX_VALUE);
+        state.mSavedCursorCol = in.readVarInt(Integer.MAX_VALUE);
+        state.mSavedEffect = in.readVarInt();
+        state.mSavedForeColor = in.readVarInt();
+        state.mSavedBackColor = in.readVarInt();
+        state.mSavedDecFlags = in.readVarInt();
+        final int flags = in.readByte();
+        state.mUseLineDrawingG0 = (flags & 1) != 0;
+        state.mUseLineDrawingG1 = (flags & 2) != 0;
+        state.mUseLineDrawingUsesG0 = (flags & 4) != 0;
+    }
+
     @Override
     public String toString() {
         return "TerminalEmulator[size=" + mScreen.mColumns + "x" + mScreen.mScreenRows + ", margins={" + mTopMargin + "," + mRightMargin + "," + mBottomMargin
@@ -1470,15 +1789,16 @@ public final class TerminalEmulator {
         /** Encountering a character in the ESC state. */
         @Override
         public void processCodePoint(int b) {
+            mMetrics.onEscapeSequence(b);
             switch (b) {
                 case '#':
-                    continueSequence(new EscPoundState());
+                    continueSequence(mEscPoundState);
                     break;
                 case '(':
-                    continueSequence(new EscSelectLeftParenState());
+                    continueSequence(mEscSelectLeftParenState);
                     break;
                 case ')':
-                    continueSequence(new EscSelectRightParenState());
+                    continueSequence(mEscSelectRightParenState);
                     break;
                 case '6': // Back index (http://www.vt100.net/docs/vt510-rm/DECBI). Move left, insert blank column if start.
                     if (mCursorCol > mLeftMargin) {
@@ -1527,8 +1847,7 @@ public final class TerminalEmulator {
                     // http://www.vt100.net/docs/vt100-ug/chapter3.html: "Move the active position to the same horizontal
                     // position on the preceding line. If the active position is at the top margin, a scroll down is performed".
                     if (mCursorRow <= mTopMargin) {
-                        mScreen.blockCopy(0, mTopMargin, mColumns, mBottomMargin - (mTopMargin + 1), 0, mTopMargin + 1);
-                        blockClear(0, mTopMargin, mColumns);
+                        mScreen.moveLines(mTopMargin, mBottomMargin, 1, getStyle());
                     } else {
                         mCursorRow--;
                     }
@@ -1538,17 +1857,17 @@ public final class TerminalEmulator {
                     break;
                 case 'P': // Device control string
                     mOSCOrDeviceControlArgs.setLength(0);
-                    continueSequence(new EscPState());
+                    continueSequence(mEscPState);
                     break;
                 case '[':
-                    continueSequence(new EscCsiState());
+                    continueSequence(mEscCsiState);
                     break;
                 case '=': // DECKPAM
                     setDecsetinternalBit(DECSET_BIT_APPLICATION_KEYPAD, true);
                     break;
                 case ']': // OSC
                     mOSCOrDeviceControlArgs.setLength(0);
-                    continueSequence(new EscOscState());
+                    continueSequence(mEscOscState);
                     break;
                 case '>': // DECKPNM
                     setDecsetinternalBit(DECSET_BIT_APPLICATION_KEYPAD, false);
@@ -1631,19 +1950,19 @@ public final class TerminalEmulator {
         public void processCodePoint(int b) {
             switch (b) {
                 case '!':
-                    continueSequence(new EscCsiExclamationState());
+                    continueSequence(mEscCsiExclamationState);
                     break;
                 case '"':
-                    continueSequence(new EscCsiDoubleQuoteState());
+                    continueSequence(mEscCsiDoubleQuoteState);
                     break;
                 case '\'':
-                    continueSequence(new EscCsiSingleQuoteState());
+                    continueSequence(mEscCsiSingleQuoteState);
                     break;
                 case '$':
-                    continueSequence(new EscCsiDollarState());
+                    continueSequence(mEscCsiDollarState);
                     break;
                 case '*':
-                    continueSequence(new EscCsiArgsAsterixState());
+                    continueSequence(mEscCsiArgsAsterixState);
                     break;
                 case '@': {
                     // "CSI{n}@" - Insert ${n} space characters (ICH) - http://www.vt100.net/docs/vt510-rm/ICH.
@@ -1727,21 +2046,13 @@ public final class TerminalEmulator {
                     break;
                 case 'L': // "${CSI}{N}L" - insert ${N} lines (IL).
                 {
-                    int linesAfterCursor = mBottomMargin - mCursorRow;
-                    int linesToInsert = Math.min(getArg0(1), linesAfterCursor);
-                    int linesToMove = linesAfterCursor - linesToInsert;
-                    mScreen.blockCopy(0, mCursorRow, mColumns, linesToMove, 0, mCursorRow + linesToInsert);
-                    blockClear(0, mCursorRow, mColumns, linesToInsert);
+                    if (mCursorRow < mBottomMargin) mScreen.moveLines(mCursorRow, mBottomMargin, getArg0(1), getStyle());
                 }
                 break;
                 case 'M': // "${CSI}${N}M" - delete N lines (DL).
                 {
                     mAboutToAutoWrap = false;
-                    int linesAfterCursor = mBottomMargin - mCursorRow;
-                    int linesToDelete = Math.min(getArg0(1), linesAfterCursor);
-                    int linesToMove = linesAfterCursor - linesToDelete;
-                    mScreen.blockCopy(0, mCursorRow + linesToDelete, mColumns, linesToMove, 0, mCursorRow);
-                    blockClear(0, mCursorRow + linesToMove, mColumns, linesToDelete);
+                    if (mCursorRow < mBottomMargin) mScreen.moveLines(mCursorRow, mBottomMargin, -getArg0(1), getStyle());
                 }
                 break;
                 case 'P': // "${CSI}{N}P" - delete ${N} characters (DCH).
@@ -1761,8 +2072,14 @@ public final class TerminalEmulator {
                 break;
                 case 'S': { // "${CSI}${N}S" - scroll up ${N} lines (default = 1) (SU).
                     final int linesToScroll = getArg0(1);
-                    for (int i = 0; i < linesToScroll; i++)
-                        scrollDownOneLine();
+                    if (isScrollingWholeScreen()) {
+                        mScrollCounter += linesToScroll;
+                        mMetrics.onScroll(linesToScroll);
+                        mScreen.scrollDownLines(linesToScroll, getStyle());
+                    } else {
+                        for (int i = 0; i < linesToScroll; i++)
+                            scrollDownOneLine();
+                    }
                     break;
                 }
                 case 'T':
@@ -1771,11 +2088,7 @@ public final class TerminalEmulator {
                         // http://vt100.net/docs/vt510-rm/SD: "N is the number of lines to move the user window up in page
                         // memory. N new lines appear at the top of the display. N old lines disappear at the bottom of the
                         // display. You cannot pan past the top margin of the current page".
-                        final int linesToScrollArg = getArg0(1);
-                        final int linesBetweenTopAndBottomMargins = mBottomMargin - mTopMargin;
-                        final int linesToScroll = Math.min(linesBetweenTopAndBottomMargins, linesToScrollArg);
-                        mScreen.blockCopy(0, mTopMargin, mColumns, linesBetweenTopAndBottomMargins - linesToScroll, 0, mTopMargin + linesToScroll);
-                        blockClear(0, mTopMargin, mColumns, linesToScroll);
+                        mScreen.moveLines(mTopMargin, mBottomMargin, getArg0(1), getStyle());
                     } else {
                         // "${CSI}${func};${startx};${starty};${firstrow};${lastrow}T" - initiate highlight mouse tracking.
                         unimplementedSequence(b);
@@ -1798,10 +2111,10 @@ public final class TerminalEmulator {
                     mCursorCol = newCol;
                     break;
                 case '?': // Esc [ ? -- start of a private mode set
-                    continueSequence(new EscCsiQuestionMarkState());
+                    continueSequence(mEscCsiQuestionMarkState);
                     break;
                 case '>': // "Esc [ >" --
-                    continueSequence(new EscCsiBiggerThanState());
+                    continueSequence(mEscCsiBiggerThanState);
                     break;
                 case '`': // Horizontal position absolute (HPA - http://www.vt100.net/docs/vt510-rm/HPA).
                     setCursorColRespectingOriginMode(getArg0(1) - 1);
@@ -1923,7 +2236,7 @@ public final class TerminalEmulator {
                             // 22;1 -> Save xterm icon title on stack.
                             // 22;2 -> Save xterm window title on stack.
                             mTitleStack.push(mTitle);
-                            if (mTitleStack.size() > 20) {
+                            if (mTitleStack.size() > MAX_TITLE_STACK_SIZE) {
                                 // Limit size
                                 mTitleStack.remove(0);
                             }
@@ -1940,7 +2253,7 @@ public final class TerminalEmulator {
                     restoreCursor();
                     break;
                 case ' ':
-                    continueSequence(new EscCsiArgSpaceState());
+                    continueSequence(mEscCsiArgSpaceState);
                     break;
                 default:
                     parseArg(b);
@@ -2036,7 +2349,7 @@ public final class TerminalEmulator {
                     }
                     break;
                 case '$':
-                    continueSequence(new EscCsiQuestionMarkArgDollarState());
+                    continueSequence(mEscCsiQuestionMarkArgDollarState);
                     return;
                 default:
                     parseArg(b);
@@ -2234,7 +2547,7 @@ public final class TerminalEmulator {
                 // the current character in arg buffer.
                 collectOSCArgs(27);
                 collectOSCArgs(b);
-                continueSequence(new EscOscState());
+                continueSequence(mEscOscState);
             }
         }
 
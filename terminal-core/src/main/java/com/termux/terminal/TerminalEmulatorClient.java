@@ -0,0 +1,32 @@
+package com.termux.terminal;
+
+/**
+ * The interface for communication between {@link TerminalEmulator} and its client, for the callbacks which are not
+ * about output for the process, see {@link TerminalOutput}, and for sending logs. Extended by the client of an Android
+ * terminal session, and implemented directly when using the emulator without one, like on a server JVM.
+ */
+public interface TerminalEmulatorClient {
+
+    void onTerminalCursorStateChange(boolean state);
+
+
+
+    Integer getTerminalCursorStyle();
+
+
+
+    void logError(String tag, String message);
+
+    void logWarn(String tag, String message);
+
+    void logInfo(String tag, String message);
+
+    void logDebug(String tag, String message);
+
+    void logVerbose(String tag, String message);
+
+    void logStackTraceWithMessage(String tag, String message, Exception e);
+
+    void logStackTrace(String tag, Exception e);
+
+}
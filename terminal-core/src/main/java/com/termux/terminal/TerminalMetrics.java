@@ -0,0 +1,197 @@
+package com.termux.terminal;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters and latency histograms of what a {@link TerminalEmulator} does, to see what the output of programs costs on
+ * real devices, see {@link TerminalEmulator#getMetrics()}.
+ * <p>
+ * The emulator counts the bytes it parses, the escape sequences by type, the scrolls and the resizes, and records the
+ * time each {@link TerminalEmulator#append(byte[], int, int)} takes. The session records when the output it appends has
+ * been queued and the view when it has rendered a frame, giving the latency from the output of a process to it being
+ * shown, as long as the emulator is shown by a view. Recording never allocates and takes a few field updates, so the
+ * metrics are always kept.
+ * <p>
+ * Not thread safe, like the emulator it is recorded and read on the main thread.
+ */
+public final class TerminalMetrics {
+
+    /** An escape sequence other than the ones below, like ESC 7 to save the cursor. */
+    public static final int SEQUENCE_ESC = 0;
+    /** A control sequence, ESC [. */
+    public static final int SEQUENCE_CSI = 1;
+    /** An operating system command, ESC ]. */
+    public static final int SEQUENCE_OSC = 2;
+    /** A device control string, ESC P. */
+    public static final int SEQUENCE_DCS = 3;
+    private static final String[] SEQUENCE_NAMES = {"esc", "csi", "osc", "dcs"};
+
+    /**
+     * The longest latency from output being queued until the frame showing it which is recorded. Output queued longer
+     * before the frame has not been waiting for it but for the emulator to be shown at all, like while the activity was
+     * stopped, which would otherwise make up the tail of the latencies.
+     */
+    static final long MAX_QUEUE_TO_RENDER_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private long mBytesParsed;
+    private final long[] mEscapeSequences = new long[SEQUENCE_NAMES.length];
+    private long mScrolls;
+    private long mLinesScrolled;
+    private long mResizes;
+    private long mReflows;
+
+    private final LatencyHistogram mAppendTime = new LatencyHistogram();
+    private final LatencyHistogram mQueueToRenderLatency = new LatencyHistogram();
+    private final LatencyHistogram mRenderTime = new LatencyHistogram();
+
+    /** The {@link System#nanoTime()} since the oldest output appended but not rendered yet has been queued, or 0. */
+    private long mOutputQueuedSinceNanos;
+
+    void onAppend(int bytes, long nanos) {
+        mBytesParsed += bytes;
+        mAppendTime.record(nanos);
+    }
+
+    /** Called with the character following the ESC starting an escape sequence. */
+    void onEscapeSequence(int b) {
+        switch (b) {
+            case '[':
+                mEscapeSequences[SEQUENCE_CSI]++;
+                break;
+            case ']':
+                mEscapeSequences[SEQUENCE_OSC]++;
+                break;
+            case 'P':
+                mEscapeSequences[SEQUENCE_DCS]++;
+                break;
+            default:
+                mEscapeSequences[SEQUENCE_ESC]++;
+                break;
+        }
+    }
+
+    void onScroll(int lines) {
+        mScrolls++;
+        mLinesScrolled += lines;
+    }
+
+    /** Called on a resize, which reflows the lines if the number of columns changed. */
+    void onResize(boolean reflow) {
+        mResizes++;
+        if (reflow) mReflows++;
+    }
+
+    /**
+     * Called when output is appended to the emulator, with the {@link System#nanoTime()} it was queued at by the reader
+     * of the process output. Only the time of the oldest output not rendered yet is kept.
+     */
+    void onOutputQueued(long queuedNanos) {
+        if (mOutputQueuedSinceNanos == 0) mOutputQueuedSinceNanos = queuedNanos;
+    }
+
+    /**
+     * Record that a frame of the emulator has been rendered, which shows the output appended since the previous one.
+     *
+     * @param startNanos The {@link System#nanoTime()} rendering started at.
+     * @param endNanos   The {@link System#nanoTime()} rendering ended at.
+     */
+    public void onFrameRendered(long startNanos, long endNanos) {
+        mRenderTime.record(endNanos - startNanos);
+        if (mOutputQueuedSinceNanos != 0) {
+            final long latencyNanos = endNanos - mOutputQueuedSinceNanos;
+            if (latencyNanos <= MAX_QUEUE_TO_RENDER_NANOS) mQueueToRenderLatency.record(latencyNanos);
+            mOutputQueuedSinceNanos = 0;
+        }
+    }
+
+    /**
+     * Called by a view when it starts showing the emulator, as the output appended while no view showed it has not been
+     * waiting for a frame, so that it is not recorded as latency by the first frame.
+     */
+    public void onViewAttached() {
+        mOutputQueuedSinceNanos = 0;
+    }
+
+    /** Clear the counters and histograms, to measure from now on. */
+    public void reset() {
+        mBytesParsed = 0;
+        Arrays.fill(mEscapeSequences, 0);
+        mScrolls = 0;
+        mLinesScrolled = 0;
+        mResizes = 0;
+        mReflows = 0;
+        mAppendTime.reset();
+        mQueueToRenderLatency.reset();
+        mRenderTime.reset();
+        mOutputQueuedSinceNanos = 0;
+    }
+
+    public long getBytesParsed() {
+        return mBytesParsed;
+    }
+
+    /**
+     * The number of escape sequences started of a type.
+     *
+     * @param type One of {@link #SEQUENCE_ESC}, {@link #SEQUENCE_CSI}, {@link #SEQUENCE_OSC} or {@link #SEQUENCE_DCS}.
+     */
+    public long getEscapeSequences(int type) {
+        return mEscapeSequences[type];
+    }
+
+    /** The number of escape sequences started of all types. */
+    public long getEscapeSequences() {
+        long total = 0;
+        for (long count : mEscapeSequences) total += count;
+        return total;
+    }
+
+    /** The number of times the screen, or the scroll region of it, has been scrolled up by one or more lines at once. */
+    public long getScrolls() {
+        return mScrolls;
+    }
+
+    public long getLinesScrolled() {
+        return mLinesScrolled;
+    }
+
+    public long getResizes() {
+        return mResizes;
+    }
+
+    /** The number of resizes which changed the number of columns, which reflows the lines of the screen and history. */
+    public long getReflows() {
+        return mReflows;
+    }
+
+    /** The time each append of output to the emulator took. */
+    public LatencyHistogram getAppendTime() {
+        return mAppendTime;
+    }
+
+    /** The time from output being queued by the reader of the process output until the frame showing it was rendered. */
+    public LatencyHistogram getQueueToRenderLatency() {
+        return mQueueToRenderLatency;
+    }
+
+    /** The time rendering each frame took. */
+    public LatencyHistogram getRenderTime() {
+        return mRenderTime;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("TerminalMetrics{bytesParsed=").append(mBytesParsed).append(", escapeSequences={");
+        for (int i = 0; i < mEscapeSequences.length; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(SEQUENCE_NAMES[i]).append('=').append(mEscapeSequences[i]);
+        }
+        return builder.append("}, scrolls=").append(mScrolls).append(", linesScrolled=").append(mLinesScrolled)
+            .append(", resizes=").append(mResizes).append(", reflows=").append(mReflows)
+            .append(",\nappendTime=").append(mAppendTime)
+            .append(",\nqueueToRenderLatency=").append(mQueueToRenderLatency)
+            .append(",\nrenderTime=").append(mRenderTime).append("}").toString();
+    }
+
+}
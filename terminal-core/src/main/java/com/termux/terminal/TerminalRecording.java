@@ -0,0 +1,266 @@
+package com.termux.terminal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A compact binary recording of a terminal session: the output processed by the emulator, the input written to the
+ * process and the resizes, each with its time, to reproduce problems with the output of programs and to replay it with
+ * {@link TerminalReplay}. Recorded in the app by a {@code SessionRecorder}.
+ * <p>
+ * A recording starts with the bytes "TREC", the version of the format and the size of the terminal, followed by the
+ * events. Each event is a type byte, the time since the previous event in microseconds and the data of the event, with
+ * integers as varints like in a {@link TerminalSnapshot}. A recording started in the middle of a session starts with a
+ * {@link #EVENT_SNAPSHOT} of the emulator to replay the output on.
+ * <p>
+ * A recording ends with its last complete event, as the recording may have been stopped in the middle of writing one.
+ */
+public final class TerminalRecording {
+
+    /** The bytes "TREC" starting every recording. */
+    private static final int MAGIC = 0x54524543;
+
+    /** The version of the format, to be increased with any change to it. */
+    public static final int VERSION = 1;
+
+    /** Output of the process processed by the emulator, with the bytes as data. */
+    public static final int EVENT_OUTPUT = 1;
+    /** Input written to the process, with the bytes as data. */
+    public static final int EVENT_INPUT = 2;
+    /** A resize of the terminal, with the new columns and rows. */
+    public static final int EVENT_RESIZE = 3;
+    /** A {@link TerminalSnapshot} of the emulator, with the bytes of the snapshot as data. */
+    public static final int EVENT_SNAPSHOT = 4;
+
+    /** The maximum size of the data of an event, which is large enough for a snapshot of a full history. */
+    private static final int MAX_EVENT_BYTES = 256 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private TerminalRecording() {
+    }
+
+    /** Writes the events of a recording to a channel, buffered until {@link #flush()}. */
+    public static final class Writer {
+
+        private final SnapshotOutput mOut;
+        private long mLastEventMicros;
+
+        /** Start a recording of a terminal of a size by writing its header. */
+        public Writer(WritableByteChannel channel, int columns, int rows) throws IOException {
+            mOut = new SnapshotOutput(channel, BUFFER_SIZE);
+            for (int shift = 24; shift >= 0; shift -= 8) mOut.writeByte(MAGIC >>> shift);
+            mOut.writeVarInt(VERSION);
+            mOut.writeVarInt(columns);
+            mOut.writeVarInt(rows);
+        }
+
+        /** Record output processed by the emulator, at a time in nanoseconds since the start of the recording. */
+        public void writeOutput(long timeNanos, byte[] data, int offset, int length) throws IOException {
+            writeEventStart(EVENT_OUTPUT, timeNanos);
+            mOut.writeVarInt(length);
+            mOut.writeBytes(data, offset, length);
+        }
+
+        /** Record input written to the process, at a time in nanoseconds since the start of the recording. */
+        public void writeInput(long timeNanos, byte[] data, int offset, int length) throws IOException {
+            writeEventStart(EVENT_INPUT, timeNanos);
+            mOut.writeVarInt(length);
+            mOut.writeBytes(data, offset, length);
+        }
+
+        /** Record a resize of the terminal, at a time in nanoseconds since the start of the recording. */
+        public void writeResize(long timeNanos, int columns, int rows) throws IOException {
+            writeEventStart(EVENT_RESIZE, timeNanos);
+            mOut.writeVarInt(columns);
+            mOut.writeVarInt(rows);
+        }
+
+        /**
+         * Record a snapshot of the emulator, which the output recorded after it is replayed on, at a time in nanoseconds
+         * since the start of the recording. Must be called on the thread processing output, like the emulator.
+         */
+        public void writeSnapshot(long timeNanos, TerminalEmulator emulator) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            TerminalSnapshot.write(emulator, Channels.newChannel(bytes));
+            byte[] snapshot = bytes.toByteArray();
+            writeEventStart(EVENT_SNAPSHOT, timeNanos);
+            mOut.writeVarInt(snapshot.length);
+            mOut.writeBytes(snapshot, 0, snapshot.length);
+        }
+
+        private void writeEventStart(int type, long timeNanos) throws IOException {
+            // Times are recorded in microseconds, which is precise enough while taking a byte or two for most events.
+            long timeMicros = Math.max(mLastEventMicros, timeNanos / 1000);
+            mOut.writeByte(type);
+            mOut.writeVarLong(timeMicros - mLastEventMicros);
+            mLastEventMicros = timeMicros;
+        }
+
+        /** Write out the buffered events to the channel. */
+        public void flush() throws IOException {
+            mOut.flush();
+        }
+
+    }
+
+    /** Reads the events of a recording from a channel, one at a time with {@link #next()}. */
+    public static final class Reader {
+
+        private final SnapshotInput mIn;
+        private int mColumns;
+        private int mRows;
+        private long mTimeMicros;
+        private byte[] mData = new byte[BUFFER_SIZE];
+        private int mDataLength;
+
+        /**
+         * Start reading a recording by reading its header.
+         *
+         * @throws IOException if the channel could not be read, or does not contain a recording of a supported version.
+         */
+        public Reader(ReadableByteChannel channel) throws IOException {
+            mIn = new SnapshotInput(channel, BUFFER_SIZE);
+            int magic = 0;
+            for (int i = 0; i < 4; i++) magic = (magic << 8) | mIn.readByte();
+            if (magic != MAGIC) throw new IOException("Not a terminal recording");
+            int version = mIn.readVarInt();
+            if (version != VERSION) throw new IOException("Unsupported terminal recording version " + version);
+            readSize();
+        }
+
+        /**
+         * Read the next event.
+         *
+         * @return The type of the event, one of the EVENT_* constants, or -1 at the end of the recording.
+         * @throws IOException if the channel could not be read or contains an invalid event.
+         */
+        public int next() throws IOException {
+            try {
+                int type = mIn.readByte();
+                mTimeMicros += mIn.readVarLong();
+                switch (type) {
+                    case EVENT_OUTPUT:
+                    case EVENT_INPUT:
+                    case EVENT_SNAPSHOT:
+                        mDataLength = mIn.readVarInt(MAX_EVENT_BYTES);
+                        if (mDataLength > mData.length) mData = new byte[Math.max(mDataLength, mData.length * 2)];
+                        mIn.readBytes(mData, 0, mDataLength);
+                        break;
+                    case EVENT_RESIZE:
+                        readSize();
+                        mDataLength = 0;
+                        break;
+                    default:
+                        throw new IOException("Unknown terminal recording event " + type);
+                }
+                return type;
+            } catch (EOFException e) {
+                return -1;
+            }
+        }
+
+        private void readSize() throws IOException {
+            mColumns = mIn.readVarInt(Short.MAX_VALUE);
+            mRows = mIn.readVarInt(Short.MAX_VALUE);
+            if (mColumns < 1 || mRows < 1) throw new IOException("Invalid terminal size " + mColumns + "x" + mRows);
+        }
+
+        /** The columns of the terminal, at the start or as of the last {@link #EVENT_RESIZE}. */
+        public int getColumns() {
+            return mColumns;
+        }
+
+        /** The rows of the terminal, at the start or as of the last {@link #EVENT_RESIZE}. */
+        public int getRows() {
+            return mRows;
+        }
+
+        /** The time of the last event in nanoseconds since the start of the recording. */
+        public long getTimeNanos() {
+            return mTimeMicros * 1000;
+        }
+
+        /** The data of the last event, valid until the next call to {@link #next()}. */
+        public byte[] getData() {
+            return mData;
+        }
+
+        public int getDataLength() {
+            return mDataLength;
+        }
+
+    }
+
+    /**
+     * Convert a recording to an asciicast v2 file as played by asciinema, with the output, input and resizes as "o", "i"
+     * and "r" events. A snapshot the recording starts with can not be converted, so the content of the terminal from
+     * before the recording started is missing.
+     */
+    public static void exportAsciicast(ReadableByteChannel recording, java.io.Writer out) throws IOException {
+        Reader reader = new Reader(recording);
+        out.write("{\"version\": 2, \"width\": " + reader.getColumns() + ", \"height\": " + reader.getRows() + "}\n");
+        // A multi-byte character may be split between events, so the bytes of an incomplete one are kept for the next.
+        byte[] pendingOutput = new byte[0];
+        byte[] pendingInput = new byte[0];
+        int type;
+        while ((type = reader.next()) != -1) {
+            String time = String.format(Locale.ROOT, "%.6f", reader.getTimeNanos() / 1e9);
+            if (type == EVENT_OUTPUT || type == EVENT_INPUT) {
+                byte[] pending = type == EVENT_OUTPUT ? pendingOutput : pendingInput;
+                byte[] bytes = Arrays.copyOf(pending, pending.length + reader.getDataLength());
+                System.arraycopy(reader.getData(), 0, bytes, pending.length, reader.getDataLength());
+                int completeLength = getCompleteUtf8Length(bytes);
+                pending = Arrays.copyOfRange(bytes, completeLength, bytes.length);
+                if (type == EVENT_OUTPUT) pendingOutput = pending;
+                else pendingInput = pending;
+                if (completeLength == 0) continue;
+                String text = new String(bytes, 0, completeLength, StandardCharsets.UTF_8);
+                out.write("[" + time + ", \"" + (type == EVENT_OUTPUT ? 'o' : 'i') + "\", " + toJsonString(text) + "]\n");
+            } else if (type == EVENT_RESIZE) {
+                out.write("[" + time + ", \"r\", \"" + reader.getColumns() + "x" + reader.getRows() + "\"]\n");
+            }
+        }
+        out.flush();
+    }
+
+    /** The length of the bytes up to an incomplete UTF-8 sequence at their end, or all of them if there is none. */
+    static int getCompleteUtf8Length(byte[] bytes) {
+        // Look back over at most three continuation bytes for the start of the last sequence.
+        for (int i = bytes.length - 1; i >= 0 && i >= bytes.length - 4; i--) {
+            int b = bytes[i] & 0xFF;
+            if ((b & 0b11000000) == 0b10000000) continue;
+            int sequenceLength = (b & 0b11100000) == 0b11000000 ? 2 : (b & 0b11110000) == 0b11100000 ? 3 : (b & 0b11111000) == 0b11110000 ? 4 : 1;
+            return i + sequenceLength > bytes.length ? i : bytes.length;
+        }
+        return bytes.length;
+    }
+
+    private static String toJsonString(String text) {
+        StringBuilder builder = new StringBuilder(text.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else if (c == '\r') {
+                builder.append("\\r");
+            } else if (c < 0x20 || c == 0x7F) {
+                builder.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.termux.terminal;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Replays a {@link TerminalRecording} into a new {@link TerminalEmulator}, either as fast as possible to measure the
+ * time parsing the output takes, or at the speed it was recorded at to reproduce what was shown. The checksum of the
+ * final screen makes a recording a regression test of the emulator: a change which makes the same output show
+ * something else changes the checksum.
+ * <p>
+ * Can be run from the command line, with the jar of this module on the class path:
+ * <pre>
+ * java com.termux.terminal.TerminalReplay [--realtime] recording...
+ * java com.termux.terminal.TerminalReplay --asciicast recording > recording.cast
+ * </pre>
+ */
+public final class TerminalReplay {
+
+    /** The time between frames of the view at 60 Hz, for {@link #getRenderCount()}. */
+    private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    private TerminalEmulator mEmulator;
+    private long mOutputBytes;
+    private int mOutputEvents;
+    private int mInputEvents;
+    private int mResizes;
+    private long mParseNanos;
+    private int mRenderCount;
+    private long mDurationNanos;
+
+    private TerminalReplay() {
+    }
+
+    /**
+     * Replay a recording into a new emulator, which starts with the snapshot the recording starts with or otherwise blank
+     * with the size of the recording. The input in the recording is only counted, and what the emulator writes to the
+     * process, like the responses to device status reports, is discarded.
+     *
+     * @param recording The channel to read the recording from.
+     * @param realTime  If the output should be processed at the times it was recorded at, instead of as fast as possible.
+     */
+    public static TerminalReplay replay(ReadableByteChannel recording, boolean realTime) throws IOException, InterruptedException {
+        final TerminalReplay replay = new TerminalReplay();
+        final TerminalOutput output = new DiscardingTerminalOutput();
+        final TerminalRecording.Reader reader = new TerminalRecording.Reader(recording);
+        replay.mEmulator = new TerminalEmulator(output, reader.getColumns(), reader.getRows(), null, null);
+
+        final long startNanos = System.nanoTime();
+        long lastFrame = -1;
+        int type;
+        while ((type = reader.next()) != -1) {
+            if (realTime) {
+                long delayNanos = startNanos + reader.getTimeNanos() - System.nanoTime();
+                if (delayNanos > 0) TimeUnit.NANOSECONDS.sleep(delayNanos);
+            }
+            switch (type) {
+                case TerminalRecording.EVENT_OUTPUT:
+                    long parseStartNanos = System.nanoTime();
+                    replay.mEmulator.append(reader.getData(), 0, reader.getDataLength());
+                    replay.mParseNanos += System.nanoTime() - parseStartNanos;
+                    replay.mOutputBytes += reader.getDataLength();
+                    replay.mOutputEvents++;
+                    // The session notifies about a screen update after each output, but the view only draws once a frame.
+                    long frame = reader.getTimeNanos() / FRAME_NANOS;
+                    if (frame != lastFrame) {
+                        replay.mRenderCount++;
+                        lastFrame = frame;
+                    }
+                    break;
+                case TerminalRecording.EVENT_INPUT:
+                    replay.mInputEvents++;
+                    break;
+                case TerminalRecording.EVENT_RESIZE:
+                    replay.mEmulator.resize(reader.getColumns(), reader.getRows());
+                    replay.mResizes++;
+                    break;
+                case TerminalRecording.EVENT_SNAPSHOT:
+                    ReadableByteChannel snapshot = Channels.newChannel(new ByteArrayInputStream(reader.getData(), 0, reader.getDataLength()));
+                    replay.mEmulator = TerminalSnapshot.read(snapshot, output, null);
+                    break;
+            }
+        }
+        replay.mDurationNanos = System.nanoTime() - startNanos;
+        return replay;
+    }
+
+    /**
+     * A checksum of what the screen of an emulator shows: the text and style of each cell, which buffer is active and
+     * where the cursor is. Independent of how the rows are stored, so only changes of what is shown change it.
+     */
+    public static long checksum(TerminalEmulator emulator) {
+        final CRC32 crc = new CRC32();
+        final TerminalBuffer screen = emulator.getScreen();
+        for (int row = 0; row < emulator.mRows; row++) {
+            TerminalRow line = screen.allocateFullLineIfNecessary(screen.externalToInternalRow(row));
+            final char[] text = line.mText;
+            for (int i = 0; i < line.getSpaceUsed(); i++) updateChecksum(crc, text[i]);
+            for (int column = line.getStoredColumns(); column < emulator.mColumns; column++) updateChecksum(crc, ' ');
+            for (int column = 0; column < emulator.mColumns; column++) {
+                long style = line.getStyle(column);
+                for (int shift = 0; shift < 64; shift += 8) crc.update((int) (style >>> shift));
+            }
+            crc.update(line.mLineWrap ? 1 : 0);
+        }
+        crc.update(emulator.isAlternateBufferActive() ? 1 : 0);
+        updateChecksum(crc, emulator.getCursorRow());
+        updateChecksum(crc, emulator.getCursorCol());
+        return crc.getValue();
+    }
+
+    private static void updateChecksum(CRC32 crc, int value) {
+        crc.update(value);
+        crc.update(value >>> 8);
+    }
+
+    /** The emulator the recording was replayed into. */
+    public TerminalEmulator getEmulator() {
+        return mEmulator;
+    }
+
+    public long getOutputBytes() {
+        return mOutputBytes;
+    }
+
+    public int getOutputEvents() {
+        return mOutputEvents;
+    }
+
+    public int getInputEvents() {
+        return mInputEvents;
+    }
+
+    public int getResizes() {
+        return mResizes;
+    }
+
+    /** The time spent by the emulator processing the output, excluding reading the recording and waiting. */
+    public long getParseNanos() {
+        return mParseNanos;
+    }
+
+    /**
+     * The number of frames the view would have drawn for the output, at most one per 60 Hz frame in which output was
+     * processed, going by the times of the recording.
+     */
+    public int getRenderCount() {
+        return mRenderCount;
+    }
+
+    /** The time the whole replay took. */
+    public long getDurationNanos() {
+        return mDurationNanos;
+    }
+
+    /** See {@link #checksum(TerminalEmulator)}. */
+    public long getChecksum() {
+        return checksum(mEmulator);
+    }
+
+    @Override
+    public String toString() {
+        double parseMillis = mParseNanos / 1e6;
+        return String.format(Locale.ROOT, "%d output bytes in %d events, %d inputs, %d resizes, parsed in %.1f ms (%.1f MB/s), "
+                + "%d renders, replayed in %.1f ms, final screen checksum %08x", mOutputBytes, mOutputEvents, mInputEvents, mResizes,
+            parseMillis, mOutputBytes / 1e3 / Math.max(parseMillis, 1e-3), mRenderCount, mDurationNanos / 1e6, getChecksum());
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean realTime = false;
+        boolean asciicast = false;
+        int argIndex = 0;
+        for (; argIndex < args.length && args[argIndex].startsWith("--"); argIndex++) {
+            if (args[argIndex].equals("--realtime")) {
+                realTime = true;
+            } else if (args[argIndex].equals("--asciicast")) {
+                asciicast = true;
+            } else {
+                argIndex = args.length;
+            }
+        }
+        if (argIndex >= args.length) {
+            System.err.println("Usage: TerminalReplay [--realtime] recording...\n       TerminalReplay --asciicast recording > recording.cast");
+            System.exit(2);
+        }
+
+        for (; argIndex < args.length; argIndex++) {
+            try (FileInputStream in = new FileInputStream(args[argIndex])) {
+                if (asciicast) {
+                    TerminalRecording.exportAsciicast(in.getChannel(), new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                } else {
+                    System.out.println(args[argIndex] + ": " + replay(in.getChannel(), realTime));
+                }
+            }
+        }
+    }
+
+}
@@ -1,22 +1,34 @@
 package com.termux.terminal;
 
+import java.io.IOException;
 import java.util.Arrays;
 
 /**
  * A row in a terminal, composed of a fixed number of cells.
  * <p>
  * The text in the row is stored in a char[] array, {@link #mText}, for quick access during rendering.
+ * <p>
+ * Erasing a row to the end, as when clearing the screen, only records the column from which it is blank and the style
+ * of the blank cells, which are stored in {@link #mText} and {@link #mStyle} when the row is next written there. Only
+ * the first {@link #getStoredColumns()} columns are therefore stored, with the rest being blank.
  */
 public final class TerminalRow {
 
     private static final float SPARE_CAPACITY_FACTOR = 1.5f;
 
+    /** The approximate heap used by a row besides its arrays, for {@link #getMemoryUsage()}. */
+    private static final int OBJECT_OVERHEAD_BYTES = 64;
+
     /** The number of columns in this terminal row. */
     private final int mColumns;
     /** The text filling this terminal row. */
     public char[] mText;
     /** The number of java char:s used in {@link #mText}. */
     private short mSpaceUsed;
+    /** The number of columns stored in {@link #mText} and {@link #mStyle}, after which the row is blank. */
+    private int mStoredColumns;
+    /** The style of the blank cells after {@link #mStoredColumns}. */
+    private long mBlankStyle;
     /** If this row has been line wrapped due to text output at the end of line. */
     boolean mLineWrap;
     /** The style bits of each cell in the row. See {@link TextStyle}. */
@@ -30,10 +42,12 @@ public final class TerminalRow {
         mText = new char[(int) (SPARE_CAPACITY_FACTOR * columns)];
         mStyle = new long[columns];
         clear(style);
+        storeColumns(columns);
     }
 
     /** NOTE: The sourceX2 is exclusive. */
     public void copyInterval(TerminalRow line, int sourceX1, int sourceX2, int destinationX) {
+        line.storeColumns(sourceX2);
         mHasNonOneWidthOrSurrogateChars |= line.mHasNonOneWidthOrSurrogateChars;
         final int x1 = line.findStartOfColumn(sourceX1);
         final int x2 = line.findStartOfColumn(sourceX2);
@@ -58,13 +72,44 @@ public final class TerminalRow {
         }
     }
 
+    /** The number of java char:s used in {@link #mText} for the {@link #getStoredColumns()} first columns. */
     public int getSpaceUsed() {
         return mSpaceUsed;
     }
 
-    /** Note that the column may end of second half of wide character. */
+    /**
+     * The number of columns, from the start of the row, stored in {@link #mText} and {@link #mStyle}. The columns after
+     * them are blank, with a single space each and the style of the blank cells, {@link #mBlankStyle}, which
+     * {@link #getStyle(int)} returns for them.
+     */
+    public int getStoredColumns() {
+        return mStoredColumns;
+    }
+
+    /**
+     * Make sure that the first columns are stored in {@link #mText} and {@link #mStyle}, by storing the blank columns
+     * not stored yet.
+     */
+    void storeColumns(int columns) {
+        if (columns <= mStoredColumns) return;
+        final int blankColumns = columns - mStoredColumns;
+        if (mSpaceUsed + blankColumns > mText.length) mText = Arrays.copyOf(mText, mText.length + mColumns);
+        Arrays.fill(mText, mSpaceUsed, mSpaceUsed + blankColumns, ' ');
+        Arrays.fill(mStyle, mStoredColumns, columns, mBlankStyle);
+        mSpaceUsed += blankColumns;
+        mStoredColumns = columns;
+    }
+
+    void storeAllColumns() {
+        storeColumns(mColumns);
+    }
+
+    /**
+     * Note that the column may end of second half of wide character. The columns after {@link #getStoredColumns()} are
+     * not stored, but have the indices they would have if stored.
+     */
     public int findStartOfColumn(int column) {
-        if (column == mColumns) return getSpaceUsed();
+        if (column >= mStoredColumns) return mSpaceUsed + (column - mStoredColumns);
 
         int currentColumn = 0;
         int currentCharIndex = 0;
@@ -115,18 +160,40 @@ public final class TerminalRow {
         return false;
     }
 
+    /** Blank the row with a style, only storing the blank cells when written. */
     public void clear(long style) {
-        Arrays.fill(mText, ' ');
-        Arrays.fill(mStyle, style);
-        mSpaceUsed = (short) mColumns;
+        mSpaceUsed = 0;
+        mStoredColumns = 0;
+        mBlankStyle = style;
         mHasNonOneWidthOrSurrogateChars = false;
     }
 
+    /**
+     * Blank the row from a column to the end with a style, like setting each of those cells to a space, but only storing
+     * the blank cells when written.
+     */
+    public void clear(int fromColumn, long style) {
+        if (fromColumn >= mStoredColumns) {
+            if (style == mBlankStyle) return;
+            storeColumns(fromColumn);
+        } else if (fromColumn > 0 && wideDisplayCharacterStartingAt(fromColumn - 1)) {
+            // Overwriting the second half of a wide character clears the first half, as with setChar():
+            setChar(fromColumn - 1, ' ', style);
+        }
+        mSpaceUsed = (short) findStartOfColumn(fromColumn);
+        mStoredColumns = fromColumn;
+        mBlankStyle = style;
+        if (fromColumn == 0) mHasNonOneWidthOrSurrogateChars = false;
+    }
+
     // https://github.com/steven676/Android-Terminal-Emulator/commit/9a47042620bec87617f0b4f5d50568535668fe26
     public void setChar(int columnToSet, int codePoint, long style) {
         if (columnToSet  < 0 || columnToSet >= mStyle.length)
             throw new IllegalArgumentException("TerminalRow.setChar(): columnToSet=" + columnToSet + ", codePoint=" + codePoint + ", style=" + style);
 
+        // Store the column, and the next one which a wide character also uses, if not stored yet:
+        storeColumns(Math.min(columnToSet + 2, mColumns));
+
         mStyle[columnToSet] = style;
 
         final int newCodePointDisplayWidth = WcWidth.width(codePoint);
@@ -244,7 +311,53 @@ public final class TerminalRow {
     }
 
     public final long getStyle(int column) {
-        return mStyle[column];
+        return (column < mStoredColumns) ? mStyle[column] : mBlankStyle;
+    }
+
+    /** An estimate of the heap used by this row, including its arrays. */
+    long getMemoryUsage() {
+        return OBJECT_OVERHEAD_BYTES + 2L * mText.length + 8L * mStyle.length;
+    }
+
+    /**
+     * Write the stored columns of this row, with the styles as runs of equal styles, to be read back with
+     * {@link #readFrom(SnapshotInput, int)} into a row of the same number of columns.
+     */
+    void writeTo(SnapshotOutput out) throws IOException {
+        out.writeByte((mLineWrap ? 1 : 0) | (mHasNonOneWidthOrSurrogateChars ? 2 : 0));
+        out.writeVarInt(mStoredColumns);
+        out.writeVarInt(mSpaceUsed);
+        out.writeVarLong(mBlankStyle);
+        for (int i = 0; i < mSpaceUsed; i++) out.writeVarInt(mText[i]);
+        for (int column = 0; column < mStoredColumns; ) {
+            final long style = mStyle[column];
+            int runEnd = column + 1;
+            while (runEnd < mStoredColumns && mStyle[runEnd] == style) runEnd++;
+            out.writeVarInt(runEnd - column);
+            out.writeVarLong(style);
+            column = runEnd;
+        }
+    }
+
+    /** Read a row written by {@link #writeTo(SnapshotOutput)}. */
+    static TerminalRow readFrom(SnapshotInput in, int columns) throws IOException {
+        final int flags = in.readByte();
+        final int storedColumns = in.readVarInt(columns);
+        final int spaceUsed = in.readVarInt(Short.MAX_VALUE);
+        final TerminalRow row = new TerminalRow(columns, in.readVarLong());
+        row.mLineWrap = (flags & 1) != 0;
+        row.mHasNonOneWidthOrSurrogateChars = (flags & 2) != 0;
+        if (spaceUsed > row.mText.length) row.mText = new char[spaceUsed + columns];
+        for (int i = 0; i < spaceUsed; i++) row.mText[i] = (char) in.readVarInt(Character.MAX_VALUE);
+        for (int column = 0; column < storedColumns; ) {
+            final int runLength = in.readVarInt(storedColumns - column);
+            if (runLength == 0) throw new IOException("Empty style run");
+            Arrays.fill(row.mStyle, column, column + runLength, in.readVarLong());
+            column += runLength;
+        }
+        row.mSpaceUsed = (short) spaceUsed;
+        row.mStoredColumns = storedColumns;
+        return row;
     }
 
 }
@@ -0,0 +1,58 @@
+package com.termux.terminal;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A versioned binary snapshot of a {@link TerminalEmulator}, with the rows of the main and alternate screen buffers
+ * including the history, the cursor, modes, colors, tab stops, titles and saved cursor states, to restore sessions
+ * after the app process has been killed or to save the content of a session for diagnostics.
+ * <p>
+ * Integers are written as varints and the styles of a row as runs of equal styles, so a snapshot takes little more
+ * space than the text of the rows, and writing and reading it takes time proportional to its size. It is streamed
+ * through a buffer to and from a channel, like a {@link java.nio.channels.FileChannel}.
+ * <p>
+ * A history hibernated by {@link TerminalBuffer#hibernateTranscript()} is written as it is compressed, and is still
+ * hibernated in the emulator read from the snapshot.
+ * <p>
+ * The state of a partially processed escape sequence is not part of a snapshot.
+ */
+public final class TerminalSnapshot {
+
+    /** The bytes "TSNP" starting every snapshot. */
+    private static final int MAGIC = 0x54534E50;
+
+    /** The version of the format, to be increased with any change to it. */
+    public static final int VERSION = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private TerminalSnapshot() {
+    }
+
+    /** Write a snapshot of an emulator to a channel. Must be called on the thread processing output, like the emulator. */
+    public static void write(TerminalEmulator emulator, WritableByteChannel channel) throws IOException {
+        SnapshotOutput out = new SnapshotOutput(channel, BUFFER_SIZE);
+        for (int shift = 24; shift >= 0; shift -= 8) out.writeByte(MAGIC >>> shift);
+        out.writeVarInt(VERSION);
+        emulator.writeSnapshot(out);
+        out.flush();
+    }
+
+    /**
+     * Read a snapshot written by {@link #write(TerminalEmulator, WritableByteChannel)} from a channel into a new emulator.
+     *
+     * @throws IOException if the channel could not be read, or does not contain a valid snapshot of a supported version.
+     */
+    public static TerminalEmulator read(ReadableByteChannel channel, TerminalOutput session, TerminalEmulatorClient client) throws IOException {
+        SnapshotInput in = new SnapshotInput(channel, BUFFER_SIZE);
+        int magic = 0;
+        for (int i = 0; i < 4; i++) magic = (magic << 8) | in.readByte();
+        if (magic != MAGIC) throw new IOException("Not a terminal snapshot");
+        int version = in.readVarInt();
+        if (version != VERSION) throw new IOException("Unsupported terminal snapshot version " + version);
+        return TerminalEmulator.readSnapshot(in, session, client);
+    }
+
+}
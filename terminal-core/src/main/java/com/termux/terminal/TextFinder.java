@@ -18,15 +18,17 @@ public final class TextFinder {
             final int x1 = (row == cursor1.getRow()) ? cursor1.getColumn() : 0;
             final int x2 = getX2(cursor2, row);
 
-            final TerminalRow lineObject = mTerminalBuffer.mLines[mTerminalBuffer.externalToInternalRow(row)];
+            final TerminalRow lineObject = mTerminalBuffer.allocateFullLineIfNecessary(mTerminalBuffer.externalToInternalRow(row));
             final int x1Index = lineObject.findStartOfColumn(x1);
             final int x2Index = getX2Index(x2, lineObject, x1Index);
 
             final boolean rowLineWrap = mTerminalBuffer.getLineWrap(row);
 
             final char[] line = lineObject.mText;
-            final int lastPrintingCharIndex = getLastPrintingCharIndex(x2, x1Index, x2Index, line, rowLineWrap);
-            checkAndAppendLineText(builder, x1Index, line, lastPrintingCharIndex);
+            // The chars after those used for the stored columns are blank, see TerminalRow#getStoredColumns():
+            final int storedIndex = lineObject.getSpaceUsed();
+            final int lastPrintingCharIndex = getLastPrintingCharIndex(x2, x1Index, x2Index, line, storedIndex, rowLineWrap);
+            checkAndAppendLineText(builder, x1Index, line, storedIndex, lastPrintingCharIndex);
 
             final boolean lineFillsWidth = lastPrintingCharIndex == x2Index - 1;
             checkAndAppendNewLine(builder, row, cursor2.getRow(), joinBackLines, joinFullLines, rowLineWrap, lineFillsWidth);
@@ -43,7 +45,7 @@ public final class TextFinder {
     }
 
     private int getX2Index(int x2, TerminalRow lineObject, int x1Index) {
-        int x2Index = (x2 < mTerminalBuffer.mColumns) ? lineObject.findStartOfColumn(x2) : lineObject.getSpaceUsed();
+        int x2Index = lineObject.findStartOfColumn(x2);
         if (x2Index == x1Index) {
             // Selected the start of a wide character.
             x2Index = lineObject.findStartOfColumn(x2 + 1);
@@ -51,12 +53,12 @@ public final class TextFinder {
         return x2Index;
     }
 
-    private int getLastPrintingCharIndex(int x2, int x1Index, int x2Index, char[] line, boolean rowLineWrap) {
+    private int getLastPrintingCharIndex(int x2, int x1Index, int x2Index, char[] line, int storedIndex, boolean rowLineWrap) {
         if (rowLineWrap && x2 == mTerminalBuffer.mColumns){
             // If the line was wrapped, we shouldn't lose trailing space:
             return x2Index - 1;
         }
-        return findLastPrintingCharIndex(line, x1Index, x2Index);
+        return findLastPrintingCharIndex(line, x1Index, Math.min(x2Index, storedIndex));
     }
 
     private int findLastPrintingCharIndex(char[] line, int x1Index, int x2Index) {
@@ -68,9 +70,13 @@ public final class TextFinder {
         return lastPrintingCharIndex;
     }
 
-    private void checkAndAppendLineText(StringBuilder builder, int x1Index, char[] line, int lastPrintingCharIndex) {
+    private void checkAndAppendLineText(StringBuilder builder, int x1Index, char[] line, int storedIndex, int lastPrintingCharIndex) {
         final int len = lastPrintingCharIndex - x1Index + 1;
-        if (lastPrintingCharIndex != -1 && len > 0) builder.append(line, x1Index, len);
+        if (lastPrintingCharIndex != -1 && len > 0) {
+            final int storedLen = Math.max(0, Math.min(len, storedIndex - x1Index));
+            builder.append(line, x1Index, storedLen);
+            for (int i = storedLen; i < len; i++) builder.append(' ');
+        }
     }
 
     private void checkAndAppendNewLine(StringBuilder builder, int row, int selY2, boolean joinBackLines, boolean joinFullLines, boolean rowLineWrap, boolean lineFillsWidth) {
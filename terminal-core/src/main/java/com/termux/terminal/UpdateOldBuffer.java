@@ -36,11 +36,13 @@ public final class UpdateOldBuffer implements ResizeBuffer {
         int skippedBlankLines = 0;
         for (int externalOldRow = -oldActiveTranscriptRows; externalOldRow < oldScreenRows; externalOldRow++) {
             final TerminalRow oldLine = getOldTerminalRow(oldLines, oldScreenFirstRow, oldTotalRows, externalOldRow);
+            // The old line is read as stored, and discarded afterwards:
+            if (oldLine != null) oldLine.storeAllColumns();
             final boolean isCursorAtThisRow = externalOldRow == oldCursor.getRow();
 
             // The cursor may only be on a non-null line, which we should not skip:
             final boolean isOldCursorAtThisRow = (newCursor.getRow() == -1) && isCursorAtThisRow;
-            final boolean isCursorAtBlankLine = !isOldCursorAtThisRow && oldLine.isBlank();
+            final boolean isCursorAtBlankLine = !isOldCursorAtThisRow && oldLine != null && oldLine.isBlank();
             if (oldLine == null || isCursorAtBlankLine) {
                 skippedBlankLines++;
                 continue;
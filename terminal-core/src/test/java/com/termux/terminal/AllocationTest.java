@@ -0,0 +1,65 @@
+package com.termux.terminal;
+
+/**
+ * Allocation budgets for the emulator processing steady output, so that allocations which make the garbage collector
+ * run more often while output is streaming are noticed. See {@link AllocationTestCase}.
+ */
+public class AllocationTest extends AllocationTestCase {
+
+	private static final int COLUMNS = 80;
+	private static final int ROWS = 24;
+
+	private static String repeat(String s, int times) {
+		StringBuilder builder = new StringBuilder(s.length() * times);
+		for (int i = 0; i < times; i++) builder.append(s);
+		return builder.toString();
+	}
+
+	public void testPlainTextAllocatesNothing() {
+		withTerminalSized(COLUMNS, ROWS);
+		// Scrolls through the full transcript, and wraps lines.
+		assertAllocatesNothing(repeat("The quick brown fox jumps over the lazy dog 0123456789.\r\n", 50)
+			+ repeat("0123456789", 40) + "\r\n");
+	}
+
+	public void testWideAndCombiningTextAllocatesNothing() {
+		withTerminalSized(COLUMNS, ROWS);
+		assertAllocatesNothing(repeat("你好，世界 Åå é 😀 \r\n", 50));
+	}
+
+	public void testSgrAllocatesNothing() {
+		withTerminalSized(COLUMNS, ROWS);
+		assertAllocatesNothing(repeat("\033[1;31merror\033[0m \033[38;5;123mindexed\033[48;2;10;20;30mtrue color\033[m"
+			+ "\033[4:3mcurly\033[24m \033[7;9mx\033[27;29m\r\n", 50));
+	}
+
+	public void testCursorMovementAndErasingAllocatesNothing() {
+		withTerminalSized(COLUMNS, ROWS);
+		assertAllocatesNothing(repeat("\033[H\033[2J\033[5;10Hab\033[K\033[3A\033[2Ccd\033[1J\033[10G\033[X\033[?25l\033[?25h", 50));
+	}
+
+	public void testInsertAndDeleteCharactersAllocationsBounded() {
+		withTerminalSized(COLUMNS, ROWS);
+		final int sequences = 100;
+		// As when editing a command line. Shifting the characters of a row copies its text first.
+		assertAllocatesAtMost(2 * COLUMNS * 2 + 64, repeat("\033[10G\033[3P\033[2@ab", sequences / 2), sequences);
+	}
+
+	public void testScrollRegionAllocatesNothing() {
+		withTerminalSized(COLUMNS, ROWS);
+		assertAllocatesNothing(repeat("\033[5;20r\033[20Hscrolled\n\n\n\033[5H\033M\033M\033[3L\033[2M\033[2S\033[T\033[r", 20));
+	}
+
+	public void testOscTitleAllocationsBounded() {
+		withTerminalSized(COLUMNS, ROWS);
+		final int titles = 100;
+		StringBuilder stream = new StringBuilder();
+		for (int i = 0; i < titles; i++) {
+			// Alternate between titles of the same length and terminators as shells setting the title at each prompt do.
+			stream.append(i % 2 == 0 ? "\033]0;user@host: ~/src/termux-app\007" : "\033]2;user@host: ~/src/termux-apq\033\\");
+		}
+		// The title string is new each time, but there should be no more garbage than a few copies of it.
+		assertAllocatesAtMost(256, stream.toString(), titles);
+	}
+
+}
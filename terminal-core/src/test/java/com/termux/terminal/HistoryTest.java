@@ -0,0 +1,200 @@
+package com.termux.terminal;
+
+import java.nio.charset.StandardCharsets;
+
+public class HistoryTest extends TerminalTestCase {
+
+	public void testHistory() {
+		final int rows = 3;
+		final int cols = 3;
+		withTerminalSized(cols, rows).enterString("111222333444555666777888999");
+		assertCursorAt(2, 2);
+		assertLinesAre("777", "888", "999");
+		assertHistoryStartsWith("666", "555");
+
+		mTerminal.resize(cols, 2);
+		assertHistoryStartsWith("777", "666", "555");
+
+		mTerminal.resize(cols, 3);
+		assertHistoryStartsWith("666", "555");
+	}
+
+	public void testHistoryWithScrollRegion() {
+		// "CSI P_s ; P_s r" - set Scrolling Region [top;bottom] (default = full size of window) (DECSTBM).
+		withTerminalSized(3, 4).enterString("111222333444");
+		assertLinesAre("111", "222", "333", "444");
+		enterString("\033[2;3r");
+		// NOTE: "DECSTBM moves the cursor to column 1, line 1 of the page."
+		assertCursorAt(0, 0);
+		enterString("\nCDEFGH").assertLinesAre("111", "CDE", "FGH", "444");
+		enterString("IJK").assertLinesAre("111", "FGH", "IJK", "444").assertHistoryStartsWith("CDE");
+		enterString("LMN").assertLinesAre("111", "IJK", "LMN", "444").assertHistoryStartsWith("FGH", "CDE");
+	}
+
+	public void testLinefeedRuns() {
+		withTerminalSized(3, 3).enterString("111\r\n\r\n\n\r\n\n2");
+		assertCursorAt(2, 1);
+		assertLinesAre("   ", "   ", "2  ");
+		assertHistoryStartsWith("   ", "   ", "111");
+
+		// Scroll more lines than fit in the history:
+		StringBuilder linefeeds = new StringBuilder();
+		for (int i = 0; i < TerminalEmulator.DEFAULT_TERMINAL_TRANSCRIPT_ROWS + 10; i++) linefeeds.append("\r\n");
+		enterString(linefeeds + "3");
+		assertCursorAt(2, 1);
+		assertLinesAre("   ", "   ", "3  ");
+		assertEquals(TerminalEmulator.DEFAULT_TERMINAL_TRANSCRIPT_ROWS - 3, mTerminal.getScreen().getActiveTranscriptRows());
+		assertHistoryStartsWith("   ", "   ", "   ");
+		assertEquals("3", mTerminal.getScreen().getTranscriptText());
+		assertEquals(3 + TerminalEmulator.DEFAULT_TERMINAL_TRANSCRIPT_ROWS + 10, mTerminal.getScrollCounter());
+	}
+
+	public void testLinefeedRunsLikeSingleLinefeeds() {
+		String input = "a\n\n\r\nb\r\n\r\n\r\n\r\n\r\n\r\n\r\n\r\nc\n\n\n\n\n\n\n\n\n\n\n\n\nd\033[41m\r\n\r\n\r\n\r\n\r\n\r\ne\033[0m\n\n"
+			+ "\033[2;3r\033[3Hf\n\n\n\ng\033[r\033[4Hh\n\r\r\n\n";
+		StringBuilder linefeeds = new StringBuilder();
+		for (int i = 0; i < TerminalEmulator.DEFAULT_TERMINAL_TRANSCRIPT_ROWS + 10; i++) linefeeds.append(i % 2 == 0 ? "\n" : "\r\n");
+		input += linefeeds + "i\n\n";
+		withTerminalSized(3, 4).enterString(input);
+		TerminalEmulator expected = new TerminalEmulator(new MockTerminalOutput(), 3, 4, 8, null);
+		for (int i = 0; i < input.length(); i++) expected.processCodePoint(input.charAt(i));
+
+		TerminalBuffer screen = mTerminal.getScreen();
+		TerminalBuffer expectedScreen = expected.getScreen();
+		assertEquals(expectedScreen.getActiveTranscriptRows(), screen.getActiveTranscriptRows());
+		assertEquals(expected.getScrollCounter(), mTerminal.getScrollCounter());
+		assertCursorAt(expected.getCursorRow(), expected.getCursorCol());
+		for (int row = -screen.getActiveTranscriptRows(); row < 4; row++) {
+			assertEquals("row=" + row, expectedScreen.getSelectedText(0, row, 2, row), screen.getSelectedText(0, row, 2, row));
+			for (int column = 0; column < 3; column++)
+				assertEquals("row=" + row + ", column=" + column, expectedScreen.getStyleAt(row, column), screen.getStyleAt(row, column));
+		}
+	}
+
+	public void testClearTranscript() {
+		withTerminalSized(3, 3).enterString("111\r\n222\r\n333\r\n444\r\n555");
+		assertHistoryStartsWith("222", "111");
+		int generation = mTerminal.getScreen().getGeneration();
+
+		enterString("\033[3J");
+		assertEquals(0, mTerminal.getScreen().getActiveTranscriptRows());
+		assertTrue(generation != mTerminal.getScreen().getGeneration());
+		assertLinesAre("333", "444", "555");
+		assertEquals("333\n444\n555", mTerminal.getScreen().getTranscriptText());
+
+		// The forgotten rows are blanked when scrolled onto the screen again, one at a time and in runs:
+		enterString("\r\n").assertLinesAre("444", "555", "   ").assertHistoryStartsWith("333");
+		enterString("\033[41m\r\n\r\n").assertLinesAre("   ", "   ", "   ").assertHistoryStartsWith("555", "444", "333");
+		assertEquals(3, mTerminal.getScreen().getActiveTranscriptRows());
+		long style = TextStyle.encode(TextStyle.COLOR_INDEX_FOREGROUND, 1, 0);
+		for (int column = 0; column < 3; column++) assertEquals(style, mTerminal.getScreen().getStyleAt(2, column));
+
+		// A full reset clears the history as well as the screen:
+		enterString("\033c");
+		assertEquals(0, mTerminal.getScreen().getActiveTranscriptRows());
+		assertLinesAre("   ", "   ", "   ");
+		enterString("6\r\n\r\n\r\n7").assertLinesAre("   ", "   ", "7  ").assertHistoryStartsWith("6  ");
+	}
+
+	public void testHibernateTranscript() {
+		withTerminalSized(4, 3).enterString("\033[31m1\033[42m1\033[0m11\r\n2\u4f60\r\n3333444455\r\n66\r\n7");
+		TerminalBuffer screen = mTerminal.getScreen();
+		assertHistoryStartsWith("4444", "3333", "2\u4f60 ", "1111");
+		String transcript = screen.getTranscriptText();
+		long usage = screen.getMemoryUsage();
+
+		assertTrue(screen.hibernateTranscript());
+		assertTrue(screen.isTranscriptHibernated());
+		assertEquals(0, screen.mActiveTranscriptRows);
+		assertTrue(screen.getMemoryUsage() < usage);
+		assertLinesAre("55  ", "66  ", "7   ");
+
+		// Reading the history restores it:
+		assertEquals(4, screen.getActiveTranscriptRows());
+		assertFalse(screen.isTranscriptHibernated());
+		assertEquals(transcript, screen.getTranscriptText());
+		assertTrue(screen.getLineWrap(-1));
+		assertTrue(screen.getLineWrap(-2));
+		assertFalse(screen.getLineWrap(-3));
+		assertForegroundColorAt(-4, 0, 1);
+		assertEquals(2, TextStyle.decodeBackColor(screen.getStyleAt(-4, 1)));
+		assertEquals(TextStyle.NORMAL, screen.getStyleAt(-4, 2));
+
+		// Output while hibernated starts a new history, which is newer than the hibernated rows:
+		assertTrue(screen.hibernateTranscript());
+		enterString("\r\n8\r\n9");
+		assertEquals(2, screen.mActiveTranscriptRows);
+		assertHistoryStartsWith("66  ", "55  ", "4444", "3333", "2\u4f60 ", "1111");
+		assertLinesAre("7   ", "8   ", "9   ");
+
+		// Resizing restores the history first, as the hibernated rows have the old number of columns:
+		assertTrue(screen.hibernateTranscript());
+		mTerminal.resize(5, 3);
+		assertFalse(screen.isTranscriptHibernated());
+		assertEquals(transcript + "\n8\n9", screen.getTranscriptText());
+
+		// Clearing the history discards the hibernated rows:
+		assertTrue(screen.hibernateTranscript());
+		enterString("\033[3J");
+		assertEquals(0, screen.getActiveTranscriptRows());
+		assertFalse(screen.isTranscriptHibernated());
+	}
+
+	public void testRehydrateOnlyNewestRowsThatFit() {
+		withTerminalSized(3, 3);
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < TerminalEmulator.DEFAULT_TERMINAL_TRANSCRIPT_ROWS; i++) lines.append("\r\n").append(i % 1000);
+		enterString(lines.toString());
+		TerminalBuffer screen = mTerminal.getScreen();
+		int maxTranscriptRows = TerminalEmulator.DEFAULT_TERMINAL_TRANSCRIPT_ROWS - 3;
+		assertEquals(maxTranscriptRows, screen.getActiveTranscriptRows());
+
+		assertTrue(screen.hibernateTranscript());
+		enterString("\r\nabc\r\ndef\r\nghi\r\njkl");
+		assertEquals(maxTranscriptRows, screen.getActiveTranscriptRows());
+		assertLinesAre("def", "ghi", "jkl");
+		assertHistoryStartsWith("abc", "999", "998", "997");
+		// The oldest of the hibernated rows do not fit any longer:
+		assertEquals("4", screen.getSelectedText(0, -maxTranscriptRows, 3, -maxTranscriptRows));
+	}
+
+	/** Clear a full history, like with {@code clear && printf '\e[3J'}, and fill it again. */
+	public void testClearFullTranscript() {
+		StringBuilder output = new StringBuilder();
+		for (int i = 0; i < 50000; i++) output.append("line ").append(i).append("\r\n");
+		byte[] bytes = output.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] clear = "\033[H\033[2J\033[3J".getBytes(StandardCharsets.UTF_8);
+
+		TerminalEmulator emulator = new TerminalEmulator(new MockTerminalOutput(), 80, 24, 50000, null);
+		TerminalBuffer screen = emulator.getScreen();
+		for (int run = 0; run < 2; run++) {
+			emulator.append(bytes, bytes.length);
+			assertEquals(50000 - 24, screen.getActiveTranscriptRows());
+			assertEquals("line 49999", screen.getSelectedText(0, 22, 79, 22).trim());
+			assertEquals("line 1", screen.getSelectedText(0, -screen.getActiveTranscriptRows(), 79, -screen.getActiveTranscriptRows()).trim());
+
+			emulator.append(clear, clear.length);
+			assertEquals(0, screen.getActiveTranscriptRows());
+			assertEquals("", screen.getTranscriptText());
+		}
+	}
+
+	/** Output with runs of empty lines, like from a pager or a log with blank separators, in bulk and line by line. */
+	public void testLinefeedRunsMatchLineByLine() {
+		StringBuilder output = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			output.append("line ").append(i).append("\r\n");
+			for (int j = 0; j < i % 32; j++) output.append("\r\n");
+		}
+		byte[] bytes = output.toString().getBytes(StandardCharsets.UTF_8);
+
+		TerminalEmulator lineByLine = new TerminalEmulator(new MockTerminalOutput(), 80, 24, 2000, null);
+		for (byte b : bytes) lineByLine.processCodePoint(b);
+		TerminalEmulator appended = new TerminalEmulator(new MockTerminalOutput(), 80, 24, 2000, null);
+		appended.append(bytes, bytes.length);
+
+		assertEquals(lineByLine.getScreen().getActiveTranscriptRows(), appended.getScreen().getActiveTranscriptRows());
+		assertEquals(lineByLine.getScreen().getTranscriptText(), appended.getScreen().getTranscriptText());
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.termux.terminal;
+
+public class MouseMotionCoalescerTest extends TerminalTestCase {
+
+	private MouseMotionCoalescer mCoalescer;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mCoalescer = new MouseMotionCoalescer();
+		withTerminalSized(20, 10);
+		// Button event tracking with SGR reports.
+		enterString("\033[?1002h\033[?1006h");
+		mOutput.getOutputAndClear();
+	}
+
+	public void testMotionIsHeldUntilFlush() {
+		assertTrue(mCoalescer.onMotion(mTerminal, 3, 4));
+		assertTrue(mCoalescer.isMotionPending());
+		assertEquals("", mOutput.getOutputAndClear());
+
+		mCoalescer.flush(mTerminal);
+		assertEquals("\033[<32;3;4M", mOutput.getOutputAndClear());
+		assertFalse(mCoalescer.isMotionPending());
+
+		mCoalescer.flush(mTerminal);
+		assertEquals("", mOutput.getOutputAndClear());
+		assertEquals(1, mCoalescer.getReportedMotionEventCount());
+		assertEquals(0, mCoalescer.getSuppressedMotionEventCount());
+	}
+
+	public void testMotionWithinCellIsSuppressed() {
+		mCoalescer.onMotion(mTerminal, 3, 4);
+		mCoalescer.flush(mTerminal);
+		mOutput.getOutputAndClear();
+
+		assertFalse(mCoalescer.onMotion(mTerminal, 3, 4));
+		assertFalse(mCoalescer.isMotionPending());
+		// Positions outside of the screen are clamped to the same cell.
+		mCoalescer.onMotion(mTerminal, 30, 40);
+		mCoalescer.flush(mTerminal);
+		mCoalescer.onMotion(mTerminal, 20, 10);
+		mCoalescer.onMotion(mTerminal, 25, 10);
+		mCoalescer.flush(mTerminal);
+
+		assertEquals("\033[<32;20;10M", mOutput.getOutputAndClear());
+		assertEquals(2, mCoalescer.getReportedMotionEventCount());
+		assertEquals(3, mCoalescer.getSuppressedMotionEventCount());
+	}
+
+	public void testAtMostOneMotionPerFlush() {
+		assertTrue(mCoalescer.onMotion(mTerminal, 1, 1));
+		assertFalse(mCoalescer.onMotion(mTerminal, 2, 1));
+		assertFalse(mCoalescer.onMotion(mTerminal, 3, 1));
+		mCoalescer.flush(mTerminal);
+		assertEquals("\033[<32;3;1M", mOutput.getOutputAndClear());
+
+		// Moving back to the last reported cell within a frame cancels the pending report.
+		assertTrue(mCoalescer.onMotion(mTerminal, 4, 1));
+		assertFalse(mCoalescer.onMotion(mTerminal, 3, 1));
+		assertFalse(mCoalescer.isMotionPending());
+		mCoalescer.flush(mTerminal);
+		assertEquals("", mOutput.getOutputAndClear());
+
+		assertEquals(1, mCoalescer.getReportedMotionEventCount());
+		assertEquals(3, mCoalescer.getSuppressedMotionEventCount());
+	}
+
+	public void testButtonEventsAreNeverDropped() {
+		mCoalescer.sendButtonEvent(mTerminal, TerminalEmulator.MOUSE_LEFT_BUTTON, 2, 2, true);
+		mCoalescer.onMotion(mTerminal, 5, 5);
+		mCoalescer.sendButtonEvent(mTerminal, TerminalEmulator.MOUSE_LEFT_BUTTON, 5, 5, false);
+		mCoalescer.sendButtonEvent(mTerminal, TerminalEmulator.MOUSE_LEFT_BUTTON, 5, 5, true);
+		mCoalescer.sendButtonEvent(mTerminal, TerminalEmulator.MOUSE_LEFT_BUTTON, 5, 5, false);
+		// Already reported by the release, so no motion report needed.
+		assertFalse(mCoalescer.onMotion(mTerminal, 5, 5));
+
+		assertEquals("\033[<0;2;2M\033[<32;5;5M\033[<0;5;5m\033[<0;5;5M\033[<0;5;5m", mOutput.getOutputAndClear());
+	}
+
+	public void testReset() {
+		mCoalescer.onMotion(mTerminal, 3, 3);
+		mCoalescer.flush(mTerminal);
+		mCoalescer.onMotion(mTerminal, 4, 4);
+		mCoalescer.reset();
+		mCoalescer.flush(mTerminal);
+		assertTrue(mCoalescer.onMotion(mTerminal, 3, 3));
+		mCoalescer.flush(mTerminal);
+
+		assertEquals("\033[<32;3;3M\033[<32;3;3M", mOutput.getOutputAndClear());
+		assertEquals(1, mCoalescer.getSuppressedMotionEventCount());
+	}
+
+}
@@ -1,8 +1,9 @@
 package com.termux.terminal;
 
-import android.util.Base64;
-
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 import java.util.Random;
 
@@ -137,9 +138,15 @@ public class OperatingSystemControlTest extends TerminalTestCase {
 		assertIndexColorsMatch(TerminalColors.COLOR_SCHEME.mDefaultColors);
 	}
 
-	public void disabledTestSetClipboard() {
-		// Cannot run this as a unit test since Base64 is a android.util class.
-		enterString("\033]52;c;" + Base64.encodeToString("Hello, world".getBytes(), 0) + "\007");
+	public void testSetClipboard() {
+		withTerminalSized(3, 3).enterString("\033]52;c;" + Base64.getEncoder().encodeToString("Hello, world".getBytes(StandardCharsets.UTF_8)) + "\007");
+		enterString("\033]52;;" + Base64.getMimeEncoder().encodeToString("你好 🙂".getBytes(StandardCharsets.UTF_8)) + "\007");
+		assertEquals(Arrays.asList("Hello, world", "你好 🙂"), mOutput.clipboardPuts);
+		// A single character left of a group of four is invalid.
+		enterString("\033]52;c;SGVsbG8x\007");
+		enterString("\033]52;c;SGVsbG8xA\007");
+		assertEquals("Hello1", mOutput.clipboardPuts.get(2));
+		assertEquals(3, mOutput.clipboardPuts.size());
 	}
 
 	public void testResettingTerminalResetsColor() throws Exception {
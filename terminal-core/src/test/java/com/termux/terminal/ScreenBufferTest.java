@@ -24,6 +24,26 @@ public class ScreenBufferTest extends TerminalTestCase {
 		assertEquals("XX\nXYY\n YY", screen.getTranscriptText());
 	}
 
+	public void testEraseAndWrite() {
+		withTerminalSized(5, 3).enterString("ABCDE\r\nFGHIJ\r\nKLMNO").assertLinesAre("ABCDE", "FGHIJ", "KLMNO");
+		enterString("\033[41m\033[2;3H\033[J").assertLinesAre("ABCDE", "FG   ", "     ");
+		long erasedStyle = TextStyle.encode(TextStyle.COLOR_INDEX_FOREGROUND, 1, 0);
+		assertEquals(TextStyle.NORMAL, getStyleAt(1, 1));
+		assertEquals(erasedStyle, getStyleAt(1, 2));
+		assertEquals(erasedStyle, getStyleAt(2, 4));
+
+		enterString("\033[0m\033[3;4Hx").assertLinesAre("ABCDE", "FG   ", "   x ");
+		assertEquals(erasedStyle, getStyleAt(2, 2));
+		assertEquals(TextStyle.NORMAL, getStyleAt(2, 3));
+		assertEquals(erasedStyle, getStyleAt(2, 4));
+		assertEquals("ABCDE\nFG\n   x", mTerminal.getScreen().getTranscriptText());
+
+		// Erased trailing space of a wrapped line is kept when joining:
+		enterString("\033[1;4H\033[K").assertLinesAre("ABC  ", "FG   ", "   x ");
+		mTerminal.getScreen().setLineWrap(0);
+		assertEquals("ABC  FG\n   x", mTerminal.getScreen().getTranscriptText());
+	}
+
 	public void testGetSelectedText() {
 		withTerminalSized(5, 3).enterString("ABCDEFGHIJ").assertLinesAre("ABCDE", "FGHIJ", "     ");
 		assertEquals("AB", mTerminal.getSelectedText(0, 0, 1, 0));
@@ -107,6 +107,54 @@ public class ScrollRegionTest extends TerminalTestCase {
 		assertLinesAre("1 ", "2 ", "3 ", "QQ", "YY");
 	}
 
+	public void testInsertAndDeleteLinesInScrollRegion() {
+		withTerminalSized(2, 5).enterString("1\r\n2\r\n3\r\n4\r\n5").enterString("\033[2;4r");
+		// IL and DL move the lines from the cursor to the bottom margin:
+		enterString("\033[3H\033[L").assertLinesAre("1 ", "2 ", "  ", "3 ", "5 ");
+		enterString("\033[2H\033[M").assertLinesAre("1 ", "  ", "3 ", "  ", "5 ");
+		// RI at the top margin and SD move the whole region down, SU moves it up:
+		enterString("\033M").assertLinesAre("1 ", "  ", "  ", "3 ", "5 ");
+		enterString("\033[2S").assertLinesAre("1 ", "3 ", "  ", "  ", "5 ");
+		enterString("\033[T").assertLinesAre("1 ", "  ", "3 ", "  ", "5 ");
+		// More lines than in the region blank the region:
+		enterString("\033[3H\033[9M").assertLinesAre("1 ", "  ", "  ", "  ", "5 ");
+		enterString("\033[2;1Hab\033[9L").assertLinesAre("1 ", "  ", "  ", "  ", "5 ");
+		// Outside of the region IL and DL have no effect:
+		enterString("\033[5H\033[L\033[M").assertLinesAre("1 ", "  ", "  ", "  ", "5 ");
+	}
+
+	public void testMovedLinesKeepLineWrap() {
+		withTerminalSized(2, 4).enterString("abcd\r\nef").assertLineWraps(true, false, false, false);
+		enterString("\033[1H\033[L").assertLinesAre("  ", "ab", "cd", "ef").assertLineWraps(false, true, false, false);
+		enterString("\033[M").assertLinesAre("ab", "cd", "ef", "  ").assertLineWraps(true, false, false, false);
+	}
+
+	/** Rotating the lines within the margins gives the same lines as copying their contents like before. */
+	public void testMoveLinesMatchesBlockCopy() {
+		final int columns = 10, rows = 8, top = 2, bottom = 7;
+		TerminalBuffer copied = new TerminalBuffer(columns, rows, rows);
+		TerminalBuffer moved = new TerminalBuffer(columns, rows, rows);
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				copied.setChar(column, row, 'a' + row, TextStyle.NORMAL);
+				moved.setChar(column, row, 'a' + row, TextStyle.NORMAL);
+			}
+		}
+
+		for (int i = 0; i < 7; i++) {
+			if (i % 3 == 2) {
+				copied.blockCopy(0, top + 1, columns, bottom - top - 1, 0, top);
+				copied.blockSet(0, bottom - 1, columns, 1, ' ', TextStyle.NORMAL);
+				moved.moveLines(top, bottom, -1, TextStyle.NORMAL);
+			} else {
+				copied.blockCopy(0, top, columns, bottom - top - 1, 0, top + 1);
+				copied.blockSet(0, top, columns, 1, ' ', TextStyle.NORMAL);
+				moved.moveLines(top, bottom, 1, TextStyle.NORMAL);
+			}
+			assertEquals(copied.getTranscriptText(), moved.getTranscriptText());
+		}
+	}
+
 	/** See https://github.com/termux/termux-app/issues/1340 */
 	public void testScrollRegionDoesNotLimitCursorMovement() {
 		withTerminalSized(6, 4)
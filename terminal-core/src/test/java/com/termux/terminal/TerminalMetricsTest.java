@@ -0,0 +1,114 @@
+package com.termux.terminal;
+
+public class TerminalMetricsTest extends TerminalTestCase {
+
+	private TerminalMetrics metrics() {
+		return mTerminal.getMetrics();
+	}
+
+	public void testBytesAndAppendsAreCounted() {
+		withTerminalSized(10, 5).enterString("hello").enterString("你好");
+		assertEquals(11, metrics().getBytesParsed());
+		assertEquals(2, metrics().getAppendTime().getCount());
+	}
+
+	public void testEscapeSequencesAreCountedByType() {
+		withTerminalSized(10, 5).enterString("\033[1ma\033[0m\033]0;title\007\033Pq#0\033\\\0337\033(0");
+		assertEquals(2, metrics().getEscapeSequences(TerminalMetrics.SEQUENCE_CSI));
+		assertEquals(1, metrics().getEscapeSequences(TerminalMetrics.SEQUENCE_OSC));
+		assertEquals(1, metrics().getEscapeSequences(TerminalMetrics.SEQUENCE_DCS));
+		assertEquals(2, metrics().getEscapeSequences(TerminalMetrics.SEQUENCE_ESC));
+		assertEquals(6, metrics().getEscapeSequences());
+	}
+
+	public void testScrollsAreCounted() {
+		withTerminalSized(5, 3).enterString("1\r\n2\r\n3\r\n4");
+		assertEquals(1, metrics().getScrolls());
+		assertEquals(1, metrics().getLinesScrolled());
+		// A run of linefeeds scrolls at once.
+		enterString("\r\n\r\n\n");
+		assertEquals(2, metrics().getScrolls());
+		assertEquals(4, metrics().getLinesScrolled());
+		enterString("\033[2S");
+		assertEquals(3, metrics().getScrolls());
+		assertEquals(6, metrics().getLinesScrolled());
+		// A scroll region scrolls a line at a time.
+		enterString("\033[1;2r\033[2S");
+		assertEquals(5, metrics().getScrolls());
+		assertEquals(8, metrics().getLinesScrolled());
+	}
+
+	public void testResizesAndReflowsAreCounted() {
+		withTerminalSized(5, 3);
+		mTerminal.resize(5, 3);
+		assertEquals(0, metrics().getResizes());
+		mTerminal.resize(5, 4);
+		mTerminal.resize(6, 4);
+		assertEquals(2, metrics().getResizes());
+		assertEquals(1, metrics().getReflows());
+	}
+
+	public void testQueueToRenderLatency() {
+		withTerminalSized(5, 3);
+		metrics().onFrameRendered(1000, 3000);
+		assertEquals(0, metrics().getQueueToRenderLatency().getCount());
+
+		// The latency is from the oldest output not rendered yet.
+		metrics().onOutputQueued(10_000);
+		metrics().onOutputQueued(20_000);
+		metrics().onFrameRendered(40_000, 50_000);
+		metrics().onFrameRendered(60_000, 61_000);
+		assertEquals(1, metrics().getQueueToRenderLatency().getCount());
+		assertEquals(40_000, metrics().getQueueToRenderLatency().getMaxNanos());
+		assertEquals(3, metrics().getRenderTime().getCount());
+		assertEquals(10_000, metrics().getRenderTime().getMaxNanos());
+
+		enterString("x");
+		metrics().reset();
+		assertEquals(0, metrics().getBytesParsed());
+		assertEquals(0, metrics().getRenderTime().getCount());
+		assertEquals(0, metrics().getAppendTime().getCount());
+	}
+
+	public void testOutputNotShownIsNotRecordedAsLatency() {
+		withTerminalSized(5, 3);
+		// Output appended while no view showed the emulator.
+		metrics().onOutputQueued(10_000);
+		metrics().onViewAttached();
+		metrics().onFrameRendered(5_000_000_000L, 5_000_001_000L);
+		assertEquals(0, metrics().getQueueToRenderLatency().getCount());
+
+		// Output shown by a view which has not rendered a frame for too long, like while the activity was stopped.
+		metrics().onOutputQueued(6_000_000_000L);
+		metrics().onFrameRendered(6_000_000_000L + TerminalMetrics.MAX_QUEUE_TO_RENDER_NANOS, 6_000_000_001L + TerminalMetrics.MAX_QUEUE_TO_RENDER_NANOS);
+		assertEquals(0, metrics().getQueueToRenderLatency().getCount());
+
+		metrics().onOutputQueued(9_000_000_000L);
+		metrics().onFrameRendered(9_000_010_000L, 9_000_020_000L);
+		assertEquals(1, metrics().getQueueToRenderLatency().getCount());
+		assertEquals(20_000, metrics().getQueueToRenderLatency().getMaxNanos());
+	}
+
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentileNanos(50));
+		for (int i = 0; i < 90; i++) histogram.record(1000);
+		for (int i = 0; i < 9; i++) histogram.record(100_000);
+		histogram.record(5_000_000);
+		assertEquals(100, histogram.getCount());
+		assertEquals((90 * 1000 + 9 * 100_000 + 5_000_000) / 100, histogram.getMeanNanos());
+		assertEquals(5_000_000, histogram.getMaxNanos());
+		// Upper bounds of the power of two buckets, but at most the longest recorded.
+		assertEquals(1023, histogram.getPercentileNanos(50));
+		assertEquals(1023, histogram.getPercentileNanos(90));
+		assertEquals(131_071, histogram.getPercentileNanos(99));
+		assertEquals(5_000_000, histogram.getPercentileNanos(100));
+
+		histogram.record(-1);
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(0, histogram.getPercentileNanos(0));
+		assertEquals(Long.MAX_VALUE, histogram.getPercentileNanos(100));
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.getBucket(Long.MAX_VALUE));
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.termux.terminal;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class TerminalRecordingTest extends TestCase {
+
+	private static final int COLUMNS = 80;
+	private static final int ROWS = 24;
+	private static final long MILLIS = 1000 * 1000;
+
+	private final ByteArrayOutputStream mRecording = new ByteArrayOutputStream();
+
+	private TerminalRecording.Writer createWriter(int columns, int rows) throws IOException {
+		return new TerminalRecording.Writer(Channels.newChannel(mRecording), columns, rows);
+	}
+
+	private ReadableByteChannel readRecording() {
+		return Channels.newChannel(new ByteArrayInputStream(mRecording.toByteArray()));
+	}
+
+	private static TerminalEmulator createEmulator() {
+		return new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), COLUMNS, ROWS, null, null);
+	}
+
+	private static void writeOutput(TerminalRecording.Writer writer, TerminalEmulator emulator, long timeNanos, byte[] data, int offset, int length) throws IOException {
+		writer.writeOutput(timeNanos, data, offset, length);
+		if (emulator != null) emulator.append(data, offset, length);
+	}
+
+	private static void writeOutput(TerminalRecording.Writer writer, TerminalEmulator emulator, long timeNanos, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeOutput(writer, emulator, timeNanos, bytes, 0, bytes.length);
+	}
+
+	public void testReplayMatchesEmulator() throws Exception {
+		TerminalEmulator emulator = createEmulator();
+		TerminalRecording.Writer writer = createWriter(COLUMNS, ROWS);
+		StringBuilder output = new StringBuilder();
+		for (int i = 0; i < 500; i++) output.append("\033[3").append(i % 8).append("mline ").append(i).append("\033[0m 你好 😀\r\n");
+		output.append("\033]0;title\007\033[?1049h\033[5;10Hfull screen\033[?1049l$ ");
+		byte[] bytes = output.toString().getBytes(StandardCharsets.UTF_8);
+		// Chunks splitting escape and UTF-8 sequences, as read from a pty.
+		int offset = 0;
+		for (int chunk = 0; offset < bytes.length; chunk++) {
+			int length = Math.min(bytes.length - offset, 1 + (chunk * 37) % 200);
+			writeOutput(writer, emulator, chunk * MILLIS, bytes, offset, length);
+			offset += length;
+			if (chunk == 50) {
+				writer.writeInput(chunk * MILLIS, new byte[]{'l', 's', '\r'}, 0, 3);
+				writer.writeResize(chunk * MILLIS, 60, 20);
+				emulator.resize(60, 20);
+			}
+		}
+		writer.flush();
+
+		TerminalReplay replay = TerminalReplay.replay(readRecording(), false);
+		assertEquals(bytes.length, replay.getOutputBytes());
+		assertEquals(1, replay.getInputEvents());
+		assertEquals(1, replay.getResizes());
+		assertEquals(60, replay.getEmulator().mColumns);
+		assertEquals(emulator.getScreen().getTranscriptText(), replay.getEmulator().getScreen().getTranscriptText());
+		assertEquals("title", replay.getEmulator().getTitle());
+		assertEquals(TerminalReplay.checksum(emulator), replay.getChecksum());
+		// One render for each output in a different frame, with outputs 1 ms apart.
+		assertTrue(replay.getRenderCount() < replay.getOutputEvents() / 10);
+	}
+
+	public void testReplayStartsFromSnapshot() throws Exception {
+		TerminalEmulator emulator = createEmulator();
+		byte[] before = "before recording\r\n\033[1;32m".getBytes(StandardCharsets.UTF_8);
+		emulator.append(before, before.length);
+		TerminalRecording.Writer writer = createWriter(COLUMNS, ROWS);
+		writer.writeSnapshot(0, emulator);
+		writeOutput(writer, emulator, MILLIS, "green after");
+		writer.flush();
+
+		TerminalReplay replay = TerminalReplay.replay(readRecording(), false);
+		assertEquals("before recording\ngreen after", replay.getEmulator().getScreen().getTranscriptText());
+		assertEquals(TerminalReplay.checksum(emulator), replay.getChecksum());
+	}
+
+	public void testChecksum() {
+		TerminalEmulator first = createEmulator();
+		TerminalEmulator second = createEmulator();
+		assertEquals(TerminalReplay.checksum(first), TerminalReplay.checksum(second));
+		// The same screen, with the blank cells stored in one of them but not in the other.
+		first.append("ab\r\nc".getBytes(StandardCharsets.UTF_8), 5);
+		second.append("abxy\033[2D\033[K\r\ncd\b\033[K".getBytes(StandardCharsets.UTF_8), 19);
+		assertEquals(TerminalReplay.checksum(first), TerminalReplay.checksum(second));
+
+		second.append("\033[1m".getBytes(StandardCharsets.UTF_8), 4);
+		second.append(" \b".getBytes(StandardCharsets.UTF_8), 2);
+		assertFalse(TerminalReplay.checksum(first) == TerminalReplay.checksum(second));
+	}
+
+	public void testTruncatedRecordingEndsWithLastCompleteEvent() throws Exception {
+		TerminalRecording.Writer writer = createWriter(COLUMNS, ROWS);
+		writeOutput(writer, null, 0, "first");
+		writeOutput(writer, null, MILLIS, "second");
+		writer.flush();
+		byte[] recording = mRecording.toByteArray();
+
+		for (int truncated = 1; truncated <= "second".length() + 2; truncated++) {
+			byte[] bytes = Arrays.copyOf(recording, recording.length - truncated);
+			TerminalReplay replay = TerminalReplay.replay(Channels.newChannel(new ByteArrayInputStream(bytes)), false);
+			assertEquals(1, replay.getOutputEvents());
+			assertEquals("first", replay.getEmulator().getScreen().getTranscriptText());
+		}
+	}
+
+	public void testNotARecording() {
+		try {
+			new TerminalRecording.Reader(Channels.newChannel(new ByteArrayInputStream("TSNP not a recording".getBytes(StandardCharsets.UTF_8))));
+			fail();
+		} catch (IOException e) {
+			assertEquals("Not a terminal recording", e.getMessage());
+		}
+	}
+
+	public void testRealTimeReplay() throws Exception {
+		TerminalRecording.Writer writer = createWriter(COLUMNS, ROWS);
+		writeOutput(writer, null, 0, "a");
+		writeOutput(writer, null, 1 * MILLIS, "b");
+		writeOutput(writer, null, 100 * MILLIS, "c");
+		writer.flush();
+
+		TerminalReplay replay = TerminalReplay.replay(readRecording(), true);
+		assertTrue(replay.getDurationNanos() >= 100 * MILLIS);
+		assertTrue(replay.getParseNanos() < replay.getDurationNanos());
+		assertEquals(2, replay.getRenderCount());
+		assertEquals("abc", replay.getEmulator().getScreen().getTranscriptText());
+	}
+
+	public void testExportAsciicast() throws Exception {
+		TerminalRecording.Writer writer = createWriter(COLUMNS, ROWS);
+		byte[] output = "\033[1m\"ä\"\\\r\n".getBytes(StandardCharsets.UTF_8);
+		// Split in the middle of the ä.
+		writeOutput(writer, null, 1500 * 1000, output, 0, 6);
+		writeOutput(writer, null, 2 * 1000 * MILLIS, output, 6, output.length - 6);
+		writer.writeInput(2500 * MILLIS, new byte[]{'x', '\t'}, 0, 2);
+		writer.writeResize(3 * 1000 * MILLIS, 100, 30);
+		writer.flush();
+
+		StringWriter asciicast = new StringWriter();
+		TerminalRecording.exportAsciicast(readRecording(), asciicast);
+		assertEquals("{\"version\": 2, \"width\": 80, \"height\": 24}\n"
+			+ "[0.001500, \"o\", \"\\u001b[1m\\\"\"]\n"
+			+ "[2.000000, \"o\", \"ä\\\"\\\\\\r\\n\"]\n"
+			+ "[2.500000, \"i\", \"x\\u0009\"]\n"
+			+ "[3.000000, \"r\", \"100x30\"]\n", asciicast.toString());
+	}
+
+	public void testCompleteUtf8Length() {
+		byte[] bytes = "a你😀".getBytes(StandardCharsets.UTF_8);
+		assertEquals(8, TerminalRecording.getCompleteUtf8Length(bytes));
+		for (int length = 5; length < 8; length++)
+			assertEquals(4, TerminalRecording.getCompleteUtf8Length(Arrays.copyOf(bytes, length)));
+		assertEquals(4, TerminalRecording.getCompleteUtf8Length(Arrays.copyOf(bytes, 4)));
+		assertEquals(1, TerminalRecording.getCompleteUtf8Length(Arrays.copyOf(bytes, 3)));
+		assertEquals(0, TerminalRecording.getCompleteUtf8Length(new byte[0]));
+	}
+
+}
@@ -429,4 +429,73 @@ public class TerminalRowTest extends TestCase {
 		// assertEquals(' ', line.mText[line.findStartOfColumn(COLUMNS - 1)]);
 	}
 
+	public void testClearIsLazy() {
+		final long style = TextStyle.encode(1, 2, 0);
+		for (int i = 0; i < 3; i++) row.setChar(i, 'a' + i, TextStyle.NORMAL);
+		row.clear(style);
+		assertEquals(0, row.getStoredColumns());
+		assertEquals(0, row.getSpaceUsed());
+		assertTrue(row.isBlank());
+		assertEquals(style, row.getStyle(0));
+		assertEquals(style, row.getStyle(COLUMNS - 1));
+		assertEquals(5, row.findStartOfColumn(5));
+
+		// Writing stores the blank columns before it, and the next one:
+		row.setChar(3, 'd', TextStyle.NORMAL);
+		assertEquals(5, row.getStoredColumns());
+		assertLineStartsWith(' ', ' ', ' ', 'd', ' ');
+		assertEquals(style, row.getStyle(2));
+		assertEquals(TextStyle.NORMAL, row.getStyle(3));
+		assertEquals(style, row.getStyle(4));
+		assertEquals(style, row.getStyle(5));
+		assertFalse(row.isBlank());
+	}
+
+	public void testClearFromColumn() {
+		final long style = TextStyle.encode(1, 2, 0);
+		for (int i = 0; i < 10; i++) row.setChar(i, 'a' + i, TextStyle.NORMAL);
+		row.clear(5, style);
+		assertEquals(5, row.getStoredColumns());
+		assertEquals(5, row.getSpaceUsed());
+		assertLineStartsWith('a', 'b', 'c', 'd', 'e');
+		assertEquals(TextStyle.NORMAL, row.getStyle(4));
+		assertEquals(style, row.getStyle(5));
+		assertEquals(7, row.findStartOfColumn(7));
+
+		// Clearing more of the blank part with another style stores the blank columns of the old style:
+		final long otherStyle = TextStyle.encode(3, 4, 0);
+		row.clear(8, otherStyle);
+		assertEquals(8, row.getStoredColumns());
+		assertEquals(style, row.getStyle(7));
+		assertEquals(otherStyle, row.getStyle(8));
+		assertLineStartsWith('a', 'b', 'c', 'd', 'e', ' ', ' ', ' ');
+	}
+
+	public void testClearFromSecondHalfOfWideChar() {
+		row.setChar(0, 'a', TextStyle.NORMAL);
+		row.setChar(1, ONE_JAVA_CHAR_DISPLAY_WIDTH_TWO_1, TextStyle.NORMAL);
+		row.setChar(3, TWO_JAVA_CHARS_DISPLAY_WIDTH_TWO_1, TextStyle.NORMAL);
+		row.clear(4, 5);
+		// The wide character whose second half was cleared is replaced by a space, as when setting the cell:
+		assertEquals(4, row.getStoredColumns());
+		assertLineStartsWith('a', ONE_JAVA_CHAR_DISPLAY_WIDTH_TWO_1, ' ');
+		assertEquals(3, row.getSpaceUsed());
+		assertEquals(5, row.getStyle(3));
+		assertEquals(5, row.getStyle(4));
+		assertEquals(TextStyle.NORMAL, row.getStyle(2));
+	}
+
+	public void testCopyIntervalFromClearedRow() {
+		final long style = TextStyle.encode(1, 2, 0);
+		TerminalRow source = new TerminalRow(COLUMNS, TextStyle.NORMAL);
+		source.setChar(0, 'x', TextStyle.NORMAL);
+		source.clear(1, style);
+		for (int i = 0; i < 4; i++) row.setChar(i, 'a' + i, TextStyle.NORMAL);
+		row.copyInterval(source, 0, 3, 1);
+		assertLineStartsWith('a', 'x', ' ', ' ', ' ');
+		assertEquals(TextStyle.NORMAL, row.getStyle(1));
+		assertEquals(style, row.getStyle(2));
+		assertEquals(style, row.getStyle(3));
+	}
+
 }
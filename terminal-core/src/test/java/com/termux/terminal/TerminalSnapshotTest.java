@@ -0,0 +1,165 @@
+package com.termux.terminal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class TerminalSnapshotTest extends TerminalTestCase {
+
+	private static byte[] writeSnapshot(TerminalEmulator emulator) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TerminalSnapshot.write(emulator, Channels.newChannel(bytes));
+		return bytes.toByteArray();
+	}
+
+	private static TerminalEmulator readSnapshot(byte[] snapshot) throws IOException {
+		return TerminalSnapshot.read(Channels.newChannel(new ByteArrayInputStream(snapshot)), new MockTerminalOutput(), null);
+	}
+
+	/** Restore {@link #mTerminal} from a snapshot, and check that the restored emulator has the same content and snapshot. */
+	private TerminalEmulator assertRoundTrip() throws IOException {
+		byte[] snapshot = writeSnapshot(mTerminal);
+		TerminalEmulator restored = readSnapshot(snapshot);
+		assertSameContent(mTerminal, restored);
+		assertTrue("Different snapshot of restored emulator", Arrays.equals(snapshot, writeSnapshot(restored)));
+		return restored;
+	}
+
+	private static void assertSameContent(TerminalEmulator expected, TerminalEmulator actual) {
+		assertEquals(expected.mColumns, actual.mColumns);
+		assertEquals(expected.mRows, actual.mRows);
+		assertEquals(expected.isAlternateBufferActive(), actual.isAlternateBufferActive());
+		assertEquals(expected.getCursorRow(), actual.getCursorRow());
+		assertEquals(expected.getCursorCol(), actual.getCursorCol());
+		assertEquals(expected.getTitle(), actual.getTitle());
+		TerminalBuffer expectedScreen = expected.getScreen();
+		TerminalBuffer actualScreen = actual.getScreen();
+		assertEquals(expectedScreen.getActiveTranscriptRows(), actualScreen.getActiveTranscriptRows());
+		for (int row = -expectedScreen.getActiveTranscriptRows(); row < expected.mRows; row++) {
+			assertEquals("row=" + row, expectedScreen.getSelectedText(0, row, expected.mColumns, row, false),
+				actualScreen.getSelectedText(0, row, expected.mColumns, row, false));
+			assertEquals("row=" + row, expectedScreen.getLineWrap(row), actualScreen.getLineWrap(row));
+			for (int column = 0; column < expected.mColumns; column++)
+				assertEquals("row=" + row + ", column=" + column, expectedScreen.getStyleAt(row, column), actualScreen.getStyleAt(row, column));
+		}
+	}
+
+	private static void append(TerminalEmulator emulator, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		emulator.append(bytes, bytes.length);
+	}
+
+	public void testRoundTripOfContent() throws IOException {
+		withTerminalSized(5, 3).enterString("\033[31mab\033[1;42mc\033[0m你\r\néfghijk\r\n\r\n\033[44m\033[K\r\n\033[38;2;1;2;3mlm\033[0m\r\n😀x");
+		assertTrue(mTerminal.getScreen().getActiveTranscriptRows() > 0);
+		TerminalEmulator restored = assertRoundTrip();
+
+		// The restored emulator continues like the original:
+		String more = "no\r\n\033[1Mpq";
+		enterString(more);
+		append(restored, more);
+		assertSameContent(mTerminal, restored);
+	}
+
+	public void testRoundTripOfState() throws IOException {
+		withTerminalSized(10, 5).enterString("\033]0;first\007\033[22t\033]0;second\007\033[5 q\033[4h\033[?1h\033[?1000h\033[?2004h"
+			+ "\033[3g\033[6G\033H\033]4;1;#123456\007\033(0\033[5;6H\0337\033[1;35;44m\033[2;4r\033[?6h\033[2;3H");
+		TerminalEmulator restored = assertRoundTrip();
+		assertEquals(TerminalEmulator.TERMINAL_CURSOR_STYLE_BAR, restored.getCursorStyle());
+		assertTrue(restored.isCursorKeysApplicationMode());
+		assertTrue(restored.isMouseTrackingActive());
+		assertTrue(restored.isBracketedPasteMode());
+		assertEquals(0xFF123456, restored.mColors.mCurrentColors[1]);
+		assertEquals(mTerminal.mForeColor, restored.mForeColor);
+		assertEquals(mTerminal.mBackColor, restored.mBackColor);
+
+		// Continue with output using the insert mode, tab stops, line drawing, origin mode and scroll margins, saved
+		// cursor and title stack, and query the cursor position:
+		MockTerminalOutput restoredOutput = new MockTerminalOutput();
+		restored = TerminalSnapshot.read(Channels.newChannel(new ByteArrayInputStream(writeSnapshot(restored))), restoredOutput, null);
+		mOutput.getOutputAndClear();
+		String more = "a\r\tb\tcq\n\n\nd\0338e\033[23t\033[6n";
+		enterString(more);
+		append(restored, more);
+		assertEquals("first", mTerminal.getTitle());
+		assertSameContent(mTerminal, restored);
+		assertEquals(mOutput.getOutputAndClear(), restoredOutput.getOutputAndClear());
+	}
+
+	public void testRoundTripOfAlternateBuffer() throws IOException {
+		withTerminalSized(4, 3).enterString("1\r\n2\r\n3\r\n4\033[?1049h\033[Hvim\r\n\033[7m~");
+		TerminalEmulator restored = assertRoundTrip();
+		assertTrue(restored.isAlternateBufferActive());
+
+		enterString("\033[?1049l");
+		append(restored, "\033[?1049l");
+		assertSameContent(mTerminal, restored);
+		assertLinesAre("2   ", "3   ", "4   ");
+
+		// Without an alternate buffer:
+		mTerminal.releaseAlternateBuffer();
+		assertNull(assertRoundTrip().mAltBuffer);
+	}
+
+	public void testRoundTripOfHibernatedTranscript() throws IOException {
+		withTerminalSized(4, 3).enterString("1\r\n2\r\n3\r\n4\r\n5");
+		assertTrue(mTerminal.hibernateTranscript());
+		enterString("\r\n6");
+		byte[] snapshot = writeSnapshot(mTerminal);
+		assertTrue("Snapshot restored the hibernated transcript", mTerminal.getScreen().isTranscriptHibernated());
+
+		TerminalEmulator restored = readSnapshot(snapshot);
+		assertTrue(restored.getScreen().isTranscriptHibernated());
+		assertTrue(Arrays.equals(snapshot, writeSnapshot(restored)));
+		assertSameContent(mTerminal, restored);
+		assertEquals("1\n2\n3\n4\n5\n6", restored.getScreen().getTranscriptText());
+		for (int length = 0; length < snapshot.length; length++)
+			assertInvalid(Arrays.copyOf(snapshot, length));
+	}
+
+	public void testRoundTripThroughFile() throws IOException {
+		withTerminalSized(20, 5);
+		for (int i = 0; i < 500; i++) enterString("\033[3" + (i % 8) + "mline " + i + "\r\n");
+		File file = File.createTempFile("terminal", ".snapshot");
+		try {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				TerminalSnapshot.write(mTerminal, channel);
+			}
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				assertSameContent(mTerminal, TerminalSnapshot.read(channel, new MockTerminalOutput(), null));
+			}
+		} finally {
+			assertTrue(file.delete());
+		}
+	}
+
+	public void testInvalidSnapshots() throws IOException {
+		withTerminalSized(4, 3).enterString("\033[31mab\r\ncd\r\nef\r\ngh");
+		byte[] snapshot = writeSnapshot(mTerminal);
+
+		byte[] wrongMagic = snapshot.clone();
+		wrongMagic[0] = 'X';
+		assertInvalid(wrongMagic);
+		byte[] unsupportedVersion = snapshot.clone();
+		unsupportedVersion[4] = TerminalSnapshot.VERSION + 1;
+		assertInvalid(unsupportedVersion);
+		for (int length = 0; length < snapshot.length; length++)
+			assertInvalid(Arrays.copyOf(snapshot, length));
+	}
+
+	private static void assertInvalid(byte[] snapshot) {
+		try {
+			readSnapshot(snapshot);
+			fail("Read invalid snapshot of " + snapshot.length + " bytes");
+		} catch (IOException e) {
+			// Expected.
+		}
+	}
+
+}
@@ -40,6 +40,30 @@ public class TerminalTest extends TerminalTestCase {
 		assertForegroundColorAt(2, 0, 115);
 	}
 
+	public void testAltBufferAllocatedWhenUsed() {
+		withTerminalSized(3, 3).enterString("ab");
+		assertNull(mTerminal.mAltBuffer);
+		mTerminal.resize(4, 3);
+		assertNull(mTerminal.mAltBuffer);
+
+		enterString("\033[?1049h\033[Hcd").assertLinesAre("cd  ", "    ", "    ");
+		assertTrue(mTerminal.isAlternateBufferActive());
+		assertFalse(mTerminal.hasUnusedAlternateBuffer());
+		mTerminal.releaseAlternateBuffer();
+		assertTrue(mTerminal.isAlternateBufferActive());
+
+		enterString("\033[?1049l").assertLinesAre("ab  ", "    ", "    ");
+		assertTrue(mTerminal.hasUnusedAlternateBuffer());
+		mTerminal.releaseAlternateBuffer();
+		assertNull(mTerminal.mAltBuffer);
+		assertFalse(mTerminal.hasUnusedAlternateBuffer());
+
+		// Allocated again in the current size when next used:
+		mTerminal.resize(5, 3);
+		enterString("\033[?1049h\033[He").assertLinesAre("e    ", "     ", "     ");
+		enterString("\033[?1049l").assertLinesAre("ab   ", "     ", "     ");
+	}
+
 	public void testMouseClick() throws Exception {
 		withTerminalSized(10, 10);
 		assertFalse(mTerminal.isMouseTrackingActive());
@@ -0,0 +1,90 @@
+package com.termux.terminal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link TerminalTestCase} which measures the bytes allocated on the test thread while a warmed up emulator processes
+ * a stream of output, to catch allocations creeping into the paths that run for every byte of output.
+ * <p/>
+ * The measurement uses the allocation counter of the HotSpot {@link com.sun.management.ThreadMXBean}. On virtual machines
+ * without it the budget assertions pass without checking anything, see {@link #isAllocationMeasurementSupported()}.
+ */
+public abstract class AllocationTestCase extends TerminalTestCase {
+
+	/** The times the stream is processed before measuring, so that it runs compiled as when the emulator is in use. */
+	private static final int WARMUP_ITERATIONS = 200;
+
+	/** The times the stream is processed while measuring, so that allocations are hard to miss in the total. */
+	private static final int MEASURED_ITERATIONS = 50;
+
+	/**
+	 * The number of measurements of which the smallest counts, so that one time allocations outside of the emulator
+	 * while measuring, such as by a deoptimization or class loading, do not fail a test.
+	 */
+	private static final int MEASUREMENTS = 3;
+
+	/**
+	 * Create the emulator, with its history filled so that the rows scrolled onto the screen are reused rows as in a
+	 * terminal which has been used for a while, instead of rows allocated the first time the history fills. Its output
+	 * is discarded, so that the allocations of the test output are not measured.
+	 */
+	@Override
+	protected TerminalTestCase withTerminalSized(int columns, int rows) {
+		mTerminal = new TerminalEmulator(new DiscardingTerminalOutput(), columns, rows, rows * 2, null);
+		byte[] line = "x\r\n".getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < mTerminal.getScreen().mTotalRows; i++) mTerminal.append(line, line.length);
+		return this;
+	}
+
+	/** If the virtual machine can count the bytes allocated by a thread. */
+	public static boolean isAllocationMeasurementSupported() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		return bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+			&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled();
+	}
+
+	/** The bytes allocated by the current thread since it started. */
+	private static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Get the bytes the emulator allocates when processing a stream once, measured over many times after a warmup. The
+	 * allocations of the measuring itself are subtracted.
+	 */
+	protected double measureAllocatedBytes(byte[] stream) {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) mTerminal.append(stream, stream.length);
+
+		long smallest = Long.MAX_VALUE;
+		for (int measurement = 0; measurement < MEASUREMENTS; measurement++) {
+			long overheadStart = getAllocatedBytes();
+			long start = getAllocatedBytes();
+			for (int i = 0; i < MEASURED_ITERATIONS; i++) mTerminal.append(stream, stream.length);
+			long end = getAllocatedBytes();
+			smallest = Math.min(smallest, (end - start) - (start - overheadStart));
+		}
+		return Math.max(0, smallest) / (double) MEASURED_ITERATIONS;
+	}
+
+	/**
+	 * Assert that processing a stream with the given number of units in it, such as printable characters or escape
+	 * sequences, allocates at most the given number of bytes per unit once the emulator is warmed up.
+	 */
+	protected void assertAllocatesAtMost(double maxBytesPerUnit, String stream, int unitsInStream) {
+		if (!isAllocationMeasurementSupported()) return;
+		byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+		double bytesPerUnit = measureAllocatedBytes(bytes) / unitsInStream;
+		if (bytesPerUnit > maxBytesPerUnit)
+			fail("Allocated " + bytesPerUnit + " bytes per unit, more than the budget of " + maxBytesPerUnit);
+		assertInvariants();
+	}
+
+	/** Assert that processing a stream allocates nothing once the emulator is warmed up. */
+	protected void assertAllocatesNothing(String stream) {
+		assertAllocatesAtMost(0, stream, 1);
+	}
+
+}
@@ -6,6 +6,7 @@ import junit.framework.TestCase;
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -165,11 +166,14 @@ public abstract class TerminalTestCase extends TestCase {
 				assertFalse("The first column should not start with combining character", currentColumn == 0 && width < 0);
 				if (width > 0) currentColumn += width;
 			}
+			// The columns after the stored ones are blank with one char each:
+			assertTrue("Line with more stored columns than the screen", lines[i].getStoredColumns() <= screen.mColumns);
 			assertEquals("Line whose width does not match screens. line=" + new String(lines[i].mText, 0, lines[i].getSpaceUsed()),
-					screen.mColumns, currentColumn);
+					screen.mColumns, currentColumn + screen.mColumns - lines[i].getStoredColumns());
 		}
 
-		assertEquals("The alt buffer should have have no history", mTerminal.mAltBuffer.mTotalRows, mTerminal.mAltBuffer.mScreenRows);
+		if (mTerminal.mAltBuffer != null)
+			assertEquals("The alt buffer should have have no history", mTerminal.mAltBuffer.mTotalRows, mTerminal.mAltBuffer.mScreenRows);
 		if (mTerminal.isAlternateBufferActive()) {
 			assertEquals("The alt buffer should be the same size as the screen", mTerminal.mRows, mTerminal.mAltBuffer.mTotalRows);
 		}
@@ -179,8 +183,8 @@ public abstract class TerminalTestCase extends TestCase {
 
 	protected void assertLineIs(int line, String expected) {
 		TerminalRow l = mTerminal.getScreen().allocateFullLineIfNecessary(mTerminal.getScreen().externalToInternalRow(line));
-		char[] chars = l.mText;
-		int textLen = l.getSpaceUsed();
+		char[] chars = getText(l);
+		int textLen = chars.length;
 		if (textLen != expected.length()) fail("Expected '" + expected + "' (len=" + expected.length() + "), was='"
 				+ new String(chars, 0, textLen) + "' (len=" + textLen + ")");
 		for (int i = 0; i < textLen; i++) {
@@ -212,8 +216,15 @@ public abstract class TerminalTestCase extends TestCase {
 		return this;
 	}
 
+	/** Get the text of a line, including the blank columns which are not stored. */
+	static char[] getText(TerminalRow line) {
+		char[] text = Arrays.copyOf(line.mText, line.getSpaceUsed() + line.mStyle.length - line.getStoredColumns());
+		Arrays.fill(text, line.getSpaceUsed(), text.length, ' ');
+		return text;
+	}
+
 	protected TerminalTestCase assertLineStartsWith(int line, int... codePoints) {
-		char[] chars = mTerminal.getScreen().mLines[mTerminal.getScreen().externalToInternalRow(line)].mText;
+		char[] chars = getText(mTerminal.getScreen().mLines[mTerminal.getScreen().externalToInternalRow(line)]);
 		int charIndex = 0;
 		for (int i = 0; i < codePoints.length; i++) {
 			int lineCodePoint = chars[charIndex++];
@@ -0,0 +1,84 @@
+package com.termux.terminal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands what a {@link SessionJournal} or a {@link SessionRecorder} records on the main thread over to a single writer
+ * thread shared by all of them, which writes their files, so that the main thread never waits for the disk.
+ * <p>
+ * Each of them has a writer of its own, which counts the bytes handed over and not written yet, so that it can stop
+ * once the writer thread falls more than a maximum behind instead of holding more and more of the output in memory.
+ * Tasks run on the writer thread in the order they have been handed over, across all writers.
+ */
+final class BackgroundFileWriter {
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TermFileWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** A task writing bytes handed over to the writer thread. */
+    interface WriteTask {
+        void write(byte[] bytes);
+    }
+
+    private final long mMaxPendingBytes;
+
+    /** The number of bytes handed to the writer thread and not written yet. */
+    private final AtomicLong mPendingBytes = new AtomicLong();
+
+    BackgroundFileWriter(long maxPendingBytes) {
+        mMaxPendingBytes = maxPendingBytes;
+    }
+
+    /** If handing over a number of bytes more would put the writer thread more than the maximum behind. */
+    boolean isFallingBehind(long bytes) {
+        return mPendingBytes.get() + bytes > mMaxPendingBytes;
+    }
+
+    /**
+     * Hand bytes over to a task writing them on the writer thread. They are counted as pending with their length until
+     * the task has run, so a partially filled buffer counts with the memory it takes.
+     */
+    void write(byte[] bytes, WriteTask task) {
+        mPendingBytes.addAndGet(bytes.length);
+        WRITER.execute(() -> {
+            try {
+                task.write(bytes);
+            } finally {
+                mPendingBytes.addAndGet(-bytes.length);
+            }
+        });
+    }
+
+    /** Run a task on the writer thread, after everything handed to it before. */
+    void execute(Runnable task) {
+        WRITER.execute(task);
+    }
+
+    /** Wait until everything handed to the writer thread has been written. */
+    void awaitWritten() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        WRITER.execute(latch::countDown);
+        latch.await();
+    }
+
+    /** Run a task on the writer thread, after everything handed to it by all writers before. */
+    static void executeOnWriterThread(Runnable task) {
+        WRITER.execute(task);
+    }
+
+    /** Write the first bytes of an array to a channel, which may take more than one write. */
+    static void writeFully(FileChannel channel, byte[] data, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+}
@@ -1,20 +1,106 @@
 package com.termux.terminal;
 
-/** A circular byte buffer allowing one producer and one consumer thread. */
+/**
+ * A circular byte buffer allowing one consumer thread and one or more producer threads. Writes of several producers
+ * are only kept apart at the granularity of what fits in the queue at once.
+ * <p/>
+ * The queue may grow from its initial size up to a maximum size instead of making producers wait for the consumer, and
+ * be shrunk back by {@link #trim()} once the producers are idle again.
+ */
 final class ByteQueue {
 
-    private final byte[] mBuffer;
+    private final int mInitialSize;
+    private final int mMaxSize;
+    private byte[] mBuffer;
     private int mHead;
     private int mStoredBytes;
     private boolean mOpen = true;
+    /** See {@link #setStateListener(Runnable)}. */
+    private Runnable mStateListener;
+    private final QueueStats mStats;
 
     public ByteQueue(int size) {
-        mBuffer = new byte[size];
+        this(size, size);
+    }
+
+    public ByteQueue(int initialSize, int maxSize) {
+        mInitialSize = initialSize;
+        mMaxSize = Math.max(initialSize, maxSize);
+        mBuffer = new byte[initialSize];
+        mStats = new QueueStats(initialSize);
+    }
+
+    /**
+     * Set a listener to run when the queue becomes non-empty or stops being full, for a consumer or producer which does
+     * not block on the queue itself, like the {@link TerminalIoReactor}. The listener is run while holding the lock of
+     * the queue, so it must not block or access the queue.
+     */
+    public synchronized void setStateListener(Runnable listener) {
+        mStateListener = listener;
+    }
+
+    /** A snapshot of the statistics of the queue. */
+    public synchronized QueueStats getStats() {
+        return mStats.copy();
+    }
+
+    /** The {@link System#nanoTime()} the oldest bytes in the queue were written at, or 0 if it is empty. */
+    public synchronized long getOldestWrittenNanos() {
+        return mStoredBytes == 0 ? 0 : mStats.getWaitingSinceNanos();
+    }
+
+    public synchronized boolean isEmpty() {
+        return mStoredBytes == 0;
+    }
+
+    public synchronized int getCapacity() {
+        return mBuffer.length;
+    }
+
+    /**
+     * Shrink the queue back to its initial size if it has grown and the stored bytes fit, to release the memory once the
+     * producers are idle.
+     */
+    public synchronized void trim() {
+        if (mBuffer.length > mInitialSize && mStoredBytes <= mInitialSize) resize(mInitialSize);
+    }
+
+    /**
+     * Grow the queue if needed and possible so that the length can be written without waiting.
+     *
+     * @return The number of bytes which can be written without waiting, at most the length, 0 if the queue is full, or -1
+     * if it is closed.
+     */
+    public synchronized int ensureWritable(int length) {
+        if (!mOpen) return -1;
+        if (mBuffer.length - mStoredBytes < length) grow(mStoredBytes + length);
+        int writable = Math.min(length, mBuffer.length - mStoredBytes);
+        if (writable == 0) mStats.onFull();
+        return writable;
+    }
+
+    /** Grow the buffer towards the required size by at least doubling it, but not beyond the maximum size. */
+    private void grow(int requiredSize) {
+        int size = mBuffer.length;
+        if (size >= mMaxSize) return;
+        while (size < requiredSize && size < mMaxSize) size *= 2;
+        resize(Math.min(size, mMaxSize));
+    }
+
+    /** Move the stored bytes to a new buffer of the size, which must fit them. */
+    private void resize(int size) {
+        byte[] newBuffer = new byte[size];
+        int firstRun = Math.min(mBuffer.length - mHead, mStoredBytes);
+        System.arraycopy(mBuffer, mHead, newBuffer, 0, firstRun);
+        System.arraycopy(mBuffer, 0, newBuffer, firstRun, mStoredBytes - firstRun);
+        mBuffer = newBuffer;
+        mHead = 0;
+        mStats.onCapacityChanged(size);
     }
 
     public synchronized void close() {
         mOpen = false;
-        notify();
+        notifyAll();
     }
 
     public synchronized int read(byte[] buffer, boolean block) {
@@ -47,7 +133,12 @@ final class ByteQueue {
             offset += bytesToCopy;
             totalRead += bytesToCopy;
         }
-        if (wasFull) notify();
+        mStats.onRead(mStoredBytes);
+        if (wasFull) {
+            mStats.onNoLongerFull();
+            notifyAll();
+            if (mStateListener != null) mStateListener.run();
+        }
         return totalRead;
     }
 
@@ -63,11 +154,11 @@ final class ByteQueue {
             throw new IllegalArgumentException("length <= 0");
         }
 
-        final int bufferLength = mBuffer.length;
-
         synchronized (this) {
             while (lengthToWrite > 0) {
-                while (bufferLength == mStoredBytes && mOpen) {
+                if (mBuffer.length - mStoredBytes < lengthToWrite) grow(mStoredBytes + lengthToWrite);
+                while (mBuffer.length == mStoredBytes && mOpen) {
+                    mStats.onFull();
                     try {
                         wait();
                     } catch (InterruptedException e) {
@@ -75,34 +166,80 @@ final class ByteQueue {
                     }
                 }
                 if (!mOpen) return false;
-                final boolean wasEmpty = mStoredBytes == 0;
-                int bytesToWriteBeforeWaiting = Math.min(lengthToWrite, bufferLength - mStoredBytes);
+                int bytesToWriteBeforeWaiting = Math.min(lengthToWrite, mBuffer.length - mStoredBytes);
+                copyIn(buffer, offset, bytesToWriteBeforeWaiting);
+                offset += bytesToWriteBeforeWaiting;
                 lengthToWrite -= bytesToWriteBeforeWaiting;
-
-                while (bytesToWriteBeforeWaiting > 0) {
-                    int tail = mHead + mStoredBytes;
-                    int oneRun;
-                    if (tail >= bufferLength) {
-                        // Buffer: [.............]
-                        // ________________H_______T
-                        // =>
-                        // Buffer: [.............]
-                        // ___________T____H
-                        // onRun= _____----_
-                        tail = tail - bufferLength;
-                        oneRun = mHead - tail;
-                    } else {
-                        oneRun = bufferLength - tail;
-                    }
-                    int bytesToCopy = Math.min(oneRun, bytesToWriteBeforeWaiting);
-                    System.arraycopy(buffer, offset, mBuffer, tail, bytesToCopy);
-                    offset += bytesToCopy;
-                    bytesToWriteBeforeWaiting -= bytesToCopy;
-                    mStoredBytes += bytesToCopy;
-                }
-                if (wasEmpty) notify();
             }
         }
         return true;
     }
+
+    /**
+     * Write as much of the specified portion of the provided buffer as currently fits in the queue, waiting at most
+     * timeoutMillis for space to become available if the queue is full.
+     * <p/>
+     * Returns the number of bytes written, which is 0 if the queue stayed full, or -1 if it was closed.
+     */
+    public synchronized int write(byte[] buffer, int offset, int lengthToWrite, long timeoutMillis) {
+        if (lengthToWrite + offset > buffer.length) {
+            throw new IllegalArgumentException("length + offset > buffer.length");
+        } else if (lengthToWrite <= 0) {
+            throw new IllegalArgumentException("length <= 0");
+        }
+
+        if (mBuffer.length - mStoredBytes < lengthToWrite) grow(mStoredBytes + lengthToWrite);
+        final int bufferLength = mBuffer.length;
+        if (bufferLength == mStoredBytes && mOpen && timeoutMillis > 0) {
+            mStats.onFull();
+            try {
+                wait(timeoutMillis);
+            } catch (InterruptedException e) {
+                // Ignore.
+            }
+        }
+        if (!mOpen) return -1;
+
+        int bytesToWrite = Math.min(lengthToWrite, mBuffer.length - mStoredBytes);
+        if (bytesToWrite > 0) {
+            copyIn(buffer, offset, bytesToWrite);
+        } else {
+            mStats.onFull();
+        }
+        return bytesToWrite;
+    }
+
+    /** Copy bytes which are known to fit into the queue, waking up the consumer if it was empty. Must hold the lock. */
+    private void copyIn(byte[] buffer, int offset, int bytesToWriteBeforeWaiting) {
+        final int bufferLength = mBuffer.length;
+        final boolean wasEmpty = mStoredBytes == 0;
+        final int bytesWritten = bytesToWriteBeforeWaiting;
+        while (bytesToWriteBeforeWaiting > 0) {
+            int tail = mHead + mStoredBytes;
+            int oneRun;
+            if (tail >= bufferLength) {
+                // Buffer: [.............]
+                // ________________H_______T
+                // =>
+                // Buffer: [.............]
+                // ___________T____H
+                // onRun= _____----_
+                tail = tail - bufferLength;
+                oneRun = mHead - tail;
+            } else {
+                oneRun = bufferLength - tail;
+            }
+            int bytesToCopy = Math.min(oneRun, bytesToWriteBeforeWaiting);
+            System.arraycopy(buffer, offset, mBuffer, tail, bytesToCopy);
+            offset += bytesToCopy;
+            bytesToWriteBeforeWaiting -= bytesToCopy;
+            mStoredBytes += bytesToCopy;
+        }
+        mStats.onWritten(bytesWritten, mStoredBytes);
+        if (wasEmpty) {
+            notifyAll();
+            if (mStateListener != null) mStateListener.run();
+        }
+    }
+
 }
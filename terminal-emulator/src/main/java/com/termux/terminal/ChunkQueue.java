@@ -0,0 +1,137 @@
+package com.termux.terminal;
+
+import java.util.ArrayDeque;
+
+/**
+ * A queue of byte chunks from one producer thread to one consumer thread, where the producer reads directly into a chunk
+ * and the consumer processes it in place, so that no bytes are copied between them, unlike with a {@link ByteQueue}.
+ * Chunks are recycled by the consumer and reused by the producer.
+ * <p>
+ * The producer does not block: it checks {@link #isFull()} before obtaining a chunk, and is notified through the
+ * {@link #setStateListener(Runnable)} listener when the consumer has taken enough chunks for the queue to stop being full.
+ */
+final class ChunkQueue {
+
+    /** A part of the output of a process, stored in {@link #mData} from index 0 to {@link #mLength}. */
+    static final class Chunk {
+        final byte[] mData;
+        int mLength;
+
+        Chunk(int size) {
+            mData = new byte[size];
+        }
+    }
+
+    /** The number of recycled chunks to keep for reuse. */
+    private static final int MAX_POOLED_CHUNKS = 4;
+
+    /** The number of queued bytes at which the queue is full. */
+    private final int mCapacity;
+
+    private final ArrayDeque<Chunk> mQueuedChunks = new ArrayDeque<>();
+    private final ArrayDeque<Chunk> mPooledChunks = new ArrayDeque<>(MAX_POOLED_CHUNKS);
+    private int mQueuedBytes;
+    private boolean mOpen = true;
+    /** See {@link #setStateListener(Runnable)}. */
+    private Runnable mStateListener;
+    private final QueueStats mStats;
+
+    ChunkQueue(int capacity) {
+        mCapacity = capacity;
+        mStats = new QueueStats(capacity);
+    }
+
+    /** A snapshot of the statistics of the queue. */
+    synchronized QueueStats getStats() {
+        return mStats.copy();
+    }
+
+    /**
+     * Set a listener to run when the queue stops being full. The listener is run while holding the lock of the queue, so
+     * it must not block or access the queue.
+     */
+    synchronized void setStateListener(Runnable listener) {
+        mStateListener = listener;
+    }
+
+    synchronized void close() {
+        mOpen = false;
+        mQueuedChunks.clear();
+        mPooledChunks.clear();
+        mQueuedBytes = 0;
+    }
+
+    /** The number of recycled chunks kept for reuse, which {@link #trim()} releases. */
+    synchronized int getPooledChunkCount() {
+        return mPooledChunks.size();
+    }
+
+    /** Release the recycled chunks kept for reuse, to release their memory once the producer is idle. */
+    synchronized void trim() {
+        mPooledChunks.clear();
+    }
+
+    /** If the producer should not add chunks until the consumer has taken some. */
+    synchronized boolean isFull() {
+        if (mQueuedBytes < mCapacity) return false;
+        mStats.onFull();
+        return true;
+    }
+
+    /** The {@link System#nanoTime()} the oldest queued chunk was added at, or 0 if there is none. */
+    synchronized long getOldestAddedNanos() {
+        return mQueuedBytes == 0 ? 0 : mStats.getWaitingSinceNanos();
+    }
+
+    /** The number of chunks which can currently be taken with {@link #poll()}. */
+    synchronized int getQueuedChunkCount() {
+        return mQueuedChunks.size();
+    }
+
+    /** Get an empty chunk of the size for the producer to read into, reusing a recycled one if possible. */
+    synchronized Chunk obtain(int size) {
+        Chunk chunk;
+        while ((chunk = mPooledChunks.poll()) != null) {
+            // Chunks of other sizes are left to the garbage collector, as the read size only changes gradually.
+            if (chunk.mData.length == size) return chunk;
+        }
+        return new Chunk(size);
+    }
+
+    /**
+     * Add a chunk filled by the producer to the queue.
+     *
+     * @return false if the queue has been closed.
+     */
+    synchronized boolean add(Chunk chunk) {
+        if (!mOpen) return false;
+        mQueuedChunks.add(chunk);
+        mQueuedBytes += chunk.mLength;
+        mStats.onWritten(chunk.mLength, mQueuedBytes);
+        return true;
+    }
+
+    /** Take the oldest chunk for the consumer to process and then {@link #recycle(Chunk)}, or null if none queued. */
+    synchronized Chunk poll() {
+        Chunk chunk = mQueuedChunks.poll();
+        if (chunk == null) return null;
+
+        boolean wasFull = mQueuedBytes >= mCapacity;
+        mQueuedBytes -= chunk.mLength;
+        mStats.onRead(mQueuedBytes);
+        if (wasFull && mQueuedBytes < mCapacity) {
+            mStats.onNoLongerFull();
+            if (mStateListener != null) mStateListener.run();
+        }
+        return chunk;
+    }
+
+    /** Return a chunk processed by the consumer, or not used by the producer, for reuse. */
+    synchronized void recycle(Chunk chunk) {
+        if (mOpen && mPooledChunks.size() < MAX_POOLED_CHUNKS) {
+            chunk.mLength = 0;
+            mPooledChunks.push(chunk);
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.termux.terminal;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traces the latency from a key event until the frame showing the echo of the process, in the stages a keystroke goes
+ * through: the view handling the key event, the input being written to the pty, the first output being read back from
+ * it, that output being parsed by the emulator, and the frame drawing it. Enabled for a session with
+ * {@link TerminalSession#setInputLatencyTracing(boolean)}.
+ * <p>
+ * One keystroke is traced at a time, and a key event starts a new trace, abandoning one still in flight. The stages
+ * are passed on between the main thread and the I/O threads through a single atomic state, so tracing costs a volatile
+ * read in the I/O threads when no trace is in flight and is cheap enough to be left on. The durations of the stages of
+ * completed traces are recorded in histograms and the last {@link #RECENT_TRACES} traces are kept in a ring buffer,
+ * both only accessed on the main thread, see {@link #toString()}. While systrace or perfetto is recording, each trace
+ * is also shown as an async section named {@link #TRACE_SECTION_NAME}.
+ */
+public final class InputLatencyTracer {
+
+    /** The name of the async section of each trace, see {@link Trace#beginAsyncSection(String, int)}. */
+    public static final String TRACE_SECTION_NAME = "keystroke-to-echo";
+
+    /** The number of completed traces kept in the ring buffer. */
+    static final int RECENT_TRACES = 64;
+
+    /**
+     * The longest time the input of a key event is taken to be written in the call handling the event. A key event which
+     * does not write any input, like the press of a modifier key, is otherwise not traced by the input written later.
+     */
+    static final long KEY_EVENT_EXPIRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * The longest time after the input has been written that output read is taken to be its echo. Input which is not
+     * echoed, like a typed password, is otherwise traced up to unrelated output much later.
+     */
+    static final long ECHO_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** The first Android version with async trace sections, Build.VERSION_CODES.Q. */
+    private static final int ASYNC_TRACE_MIN_SDK_VERSION = 29;
+
+    // The stages of a trace, in the lowest bits of mState, with the generation of the trace above them.
+    private static final int STAGE_IDLE = 0;
+    private static final int STAGE_INPUT_QUEUED = 1;
+    private static final int STAGE_INPUT_WRITTEN = 2;
+    private static final int STAGE_OUTPUT_READ = 3;
+    private static final int STAGE_OUTPUT_PARSED = 4;
+    /** The input has not been echoed within {@link #ECHO_TIMEOUT_NANOS}, so the trace is abandoned on the next key event. */
+    private static final int STAGE_TIMED_OUT = 5;
+    private static final int STAGE_BITS = 3;
+    private static final long STAGE_MASK = (1 << STAGE_BITS) - 1;
+
+    /**
+     * The generation and stage of the current trace. Each stage is advanced by a compare and set on the thread the
+     * stage ends on, after storing its time, so that a trace replaced meanwhile by a new key event is not advanced.
+     */
+    private final AtomicLong mState = new AtomicLong();
+    private volatile long mInputWrittenNanos;
+    private volatile long mOutputReadNanos;
+
+    // Only accessed on the main thread:
+    /** The time of the last key event, or 0 if none is pending to start a trace. */
+    private long mKeyEventNanos;
+    private long mTraceKeyEventNanos;
+    private long mOutputParsedNanos;
+    private final boolean mAsyncTraceSupported = Build.VERSION.SDK_INT >= ASYNC_TRACE_MIN_SDK_VERSION;
+
+    private final LatencyHistogram mKeyToWrite = new LatencyHistogram();
+    private final LatencyHistogram mWriteToRead = new LatencyHistogram();
+    private final LatencyHistogram mReadToParse = new LatencyHistogram();
+    private final LatencyHistogram mParseToRender = new LatencyHistogram();
+    private final LatencyHistogram mKeyToRender = new LatencyHistogram();
+    private long mAbandonedTraces;
+
+    /** The times of the stages of the recent traces, five for each, in the order of the stages. */
+    private final long[] mRecentTraces = new long[RECENT_TRACES * 5];
+    private int mCompletedTraces;
+
+    /** Called by the view when it handles a key event, which starts a trace once it writes input. Main thread only. */
+    public void onKeyEvent(long nanos) {
+        mKeyEventNanos = nanos;
+    }
+
+    /** Called when input is written to the queue to the process. Main thread only. */
+    void onInputQueued(long nanos) {
+        if (mKeyEventNanos == 0) return;
+        final long keyEventNanos = mKeyEventNanos;
+        mKeyEventNanos = 0;
+        if (nanos - keyEventNanos > KEY_EVENT_EXPIRY_NANOS) return;
+
+        final long state = mState.get();
+        if ((state & STAGE_MASK) != STAGE_IDLE) abandon(state);
+        final long generation = (state >>> STAGE_BITS) + 1;
+        mTraceKeyEventNanos = keyEventNanos;
+        if (mAsyncTraceSupported && Trace.isEnabled()) Trace.beginAsyncSection(TRACE_SECTION_NAME, (int) generation);
+        mState.set(generation << STAGE_BITS | STAGE_INPUT_QUEUED);
+    }
+
+    /** Called when input has been written to the pty. Called on the thread writing to the pty. */
+    void onInputWritten(long nanos) {
+        final long state = mState.get();
+        if ((state & STAGE_MASK) != STAGE_INPUT_QUEUED) return;
+        mInputWrittenNanos = nanos;
+        mState.compareAndSet(state, state + 1);
+    }
+
+    /** Called when output has been read from the pty. Called on the thread reading from the pty. */
+    void onOutputRead(long nanos) {
+        final long state = mState.get();
+        if ((state & STAGE_MASK) != STAGE_INPUT_WRITTEN) return;
+        if (nanos - mInputWrittenNanos > ECHO_TIMEOUT_NANOS) {
+            mState.compareAndSet(state, state & ~STAGE_MASK | STAGE_TIMED_OUT);
+            return;
+        }
+        mOutputReadNanos = nanos;
+        mState.compareAndSet(state, state + 1);
+    }
+
+    /** Called when the emulator has processed output. Main thread only. */
+    void onOutputParsed(long nanos) {
+        final long state = mState.get();
+        if ((state & STAGE_MASK) != STAGE_OUTPUT_READ) return;
+        mOutputParsedNanos = nanos;
+        mState.set(state + 1);
+    }
+
+    /** Called by the view when it has rendered a frame, which completes a trace of parsed output. Main thread only. */
+    public void onFrameRendered(long nanos) {
+        final long state = mState.get();
+        if ((state & STAGE_MASK) != STAGE_OUTPUT_PARSED) return;
+        mState.set(state & ~STAGE_MASK | STAGE_IDLE);
+        if (mAsyncTraceSupported) Trace.endAsyncSection(TRACE_SECTION_NAME, (int) (state >>> STAGE_BITS));
+
+        final long inputWrittenNanos = mInputWrittenNanos;
+        final long outputReadNanos = mOutputReadNanos;
+        mKeyToWrite.record(inputWrittenNanos - mTraceKeyEventNanos);
+        mWriteToRead.record(outputReadNanos - inputWrittenNanos);
+        mReadToParse.record(mOutputParsedNanos - outputReadNanos);
+        mParseToRender.record(nanos - mOutputParsedNanos);
+        mKeyToRender.record(nanos - mTraceKeyEventNanos);
+
+        final int index = (mCompletedTraces++ % RECENT_TRACES) * 5;
+        mRecentTraces[index] = mTraceKeyEventNanos;
+        mRecentTraces[index + 1] = inputWrittenNanos;
+        mRecentTraces[index + 2] = outputReadNanos;
+        mRecentTraces[index + 3] = mOutputParsedNanos;
+        mRecentTraces[index + 4] = nanos;
+    }
+
+    private void abandon(long state) {
+        mAbandonedTraces++;
+        if (mAsyncTraceSupported) Trace.endAsyncSection(TRACE_SECTION_NAME, (int) (state >>> STAGE_BITS));
+    }
+
+    /** The time from the key event until its input was written to the pty. */
+    public LatencyHistogram getKeyToWrite() {
+        return mKeyToWrite;
+    }
+
+    /** The time from the input being written to the pty until the echo was read from it, taken by the process. */
+    public LatencyHistogram getWriteToRead() {
+        return mWriteToRead;
+    }
+
+    /** The time from the echo being read from the pty until the emulator had processed it. */
+    public LatencyHistogram getReadToParse() {
+        return mReadToParse;
+    }
+
+    /** The time from the emulator having processed the echo until the frame showing it was rendered. */
+    public LatencyHistogram getParseToRender() {
+        return mParseToRender;
+    }
+
+    /** The time from the key event until the frame showing its echo was rendered. */
+    public LatencyHistogram getKeyToRender() {
+        return mKeyToRender;
+    }
+
+    public int getCompletedTraces() {
+        return mCompletedTraces;
+    }
+
+    /** The number of traces not completed, as a new key event came first or the input was not echoed in time. */
+    public long getAbandonedTraces() {
+        return mAbandonedTraces;
+    }
+
+    /**
+     * The percentiles of the stages of the completed traces, followed by the times of the stages of the recent ones in
+     * microseconds since the key event, oldest first. Main thread only.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("InputLatencyTracer{completed=").append(mCompletedTraces)
+            .append(", abandoned=").append(mAbandonedTraces)
+            .append(",\nkeyToWrite=").append(mKeyToWrite)
+            .append(",\nwriteToRead=").append(mWriteToRead)
+            .append(",\nreadToParse=").append(mReadToParse)
+            .append(",\nparseToRender=").append(mParseToRender)
+            .append(",\nkeyToRender=").append(mKeyToRender).append("}");
+        final int recent = Math.min(mCompletedTraces, RECENT_TRACES);
+        for (int i = mCompletedTraces - recent; i < mCompletedTraces; i++) {
+            final int index = (i % RECENT_TRACES) * 5;
+            final long keyEventNanos = mRecentTraces[index];
+            builder.append(String.format(Locale.ROOT, "\n#%d: written +%d, read +%d, parsed +%d, rendered +%d us", i,
+                (mRecentTraces[index + 1] - keyEventNanos) / 1000, (mRecentTraces[index + 2] - keyEventNanos) / 1000,
+                (mRecentTraces[index + 3] - keyEventNanos) / 1000, (mRecentTraces[index + 4] - keyEventNanos) / 1000));
+        }
+        return builder.toString();
+    }
+
+}
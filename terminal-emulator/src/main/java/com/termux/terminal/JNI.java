@@ -25,6 +25,21 @@ final class JNI {
      */
     public static native int createSubprocess(String cmd, String cwd, String[] args, String[] envVars, int[] processId, int rows, int columns);
 
+    /**
+     * Get the character which makes the line discipline of a pty send SIGINT to the foreground process group, normally
+     * Ctrl+C, as set with stty(1).
+     *
+     * @return the character, or -1 if it is disabled or signal generation is turned off, like in raw mode.
+     */
+    public static native int getPtyInterruptCharacter(int fd);
+
+    /**
+     * Discard the output written by the processes of a pty but not read yet, through the tcflush(3) function.
+     *
+     * @return the number of bytes discarded.
+     */
+    public static native int discardPtyOutput(int fd);
+
     /** Set the window size for a given pty, which allows connected programs to learn how large their screen is. */
     public static native void setPtyWindowSize(int fd, int rows, int cols);
 
@@ -35,7 +50,61 @@ final class JNI {
      */
     public static native int waitFor(int processId);
 
+    /**
+     * Open a file descriptor referring to a child process through the pidfd_open(2) system call, which becomes readable
+     * when the process exits. Must only be called on Android 12 and later, where the system call is allowed for apps.
+     *
+     * @return the file descriptor, or the negated errno, like ENOSYS on kernels older than Linux 5.3.
+     */
+    public static native int pidfdOpen(int pid);
+
     /** Close a file descriptor through the close(2) system call. */
     public static native void close(int fileDescriptor);
 
+    /** Create an epoll(7) instance through the epoll_create1(2) system call. */
+    public static native int epollCreate();
+
+    /**
+     * Add, modify or remove the events of interest for a file descriptor of an epoll instance through the epoll_ctl(2)
+     * system call.
+     *
+     * @return 0 on success, or the negated errno.
+     */
+    public static native int epollCtl(int epollFd, int operation, int fd, int events);
+
+    /**
+     * Wait for events on an epoll instance through the epoll_wait(2) system call.
+     *
+     * @param readyEvents Receives a long for each ready file descriptor, with the file descriptor in the upper 32 bits
+     *                    and the ready events in the lower 32 bits.
+     * @return the number of ready file descriptors, 0 on timeout or if interrupted, or the negated errno.
+     */
+    public static native int epollWait(int epollFd, long[] readyEvents, int timeoutMillis);
+
+    /** Create a non-blocking eventfd(2) to wake up a thread waiting in {@link #epollWait(int, long[], int)}. */
+    public static native int eventfdCreate();
+
+    /** Signal an eventfd created with {@link #eventfdCreate()}. */
+    public static native void eventfdSignal(int fd);
+
+    /** Clear the signals of an eventfd created with {@link #eventfdCreate()}. */
+    public static native void eventfdClear(int fd);
+
+    /** Set the O_NONBLOCK flag of a file descriptor. */
+    public static native void setNonBlocking(int fd);
+
+    /**
+     * Read from a non-blocking file descriptor directly into the buffer through the read(2) system call.
+     *
+     * @return the number of bytes read, 0 if no bytes were available, or -1 on end of file or error.
+     */
+    public static native int read(int fd, byte[] buffer, int offset, int length);
+
+    /**
+     * Write to a non-blocking file descriptor directly from the buffer through the write(2) system call.
+     *
+     * @return the number of bytes written, 0 if the write would have blocked, or -1 on error.
+     */
+    public static native int write(int fd, byte[] buffer, int offset, int length);
+
 }
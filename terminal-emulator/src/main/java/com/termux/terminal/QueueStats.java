@@ -0,0 +1,121 @@
+package com.termux.terminal;
+
+/**
+ * Statistics about the bytes passing through a queue between a producer and a consumer thread, like the output of the
+ * process of a session on its way to the terminal emulator, see {@link TerminalSession#getOutputQueueStats()}.
+ * <p>
+ * Recorded by the queue while holding its lock, and handed out as snapshots by {@link #copy()}.
+ */
+public final class QueueStats {
+
+    private long mBytesWritten;
+    private int mCapacity;
+    private int mHighWaterMark;
+
+    private long mBlockedNanos;
+    /** The {@link System#nanoTime()} since the producer is blocked on a full queue, or 0 if it is not. */
+    private long mBlockedSinceNanos;
+
+    private long mDrains;
+    private long mTotalDrainLatencyNanos;
+    private long mMaxDrainLatencyNanos;
+    /** The {@link System#nanoTime()} since the oldest bytes in the queue have been waiting for the consumer. */
+    private long mWaitingSinceNanos;
+
+    QueueStats(int capacity) {
+        mCapacity = capacity;
+    }
+
+    void onCapacityChanged(int capacity) {
+        mCapacity = capacity;
+    }
+
+    void onWritten(int bytes, int storedBytes) {
+        if (storedBytes == bytes) mWaitingSinceNanos = System.nanoTime();
+        mBytesWritten += bytes;
+        if (storedBytes > mHighWaterMark) mHighWaterMark = storedBytes;
+    }
+
+    /** Called when the producer has to wait as the queue is full. */
+    void onFull() {
+        if (mBlockedSinceNanos == 0) mBlockedSinceNanos = System.nanoTime();
+    }
+
+    /** Called when the consumer has made room in a full queue. */
+    void onNoLongerFull() {
+        if (mBlockedSinceNanos != 0) {
+            mBlockedNanos += System.nanoTime() - mBlockedSinceNanos;
+            mBlockedSinceNanos = 0;
+        }
+    }
+
+    void onRead(int storedBytes) {
+        final long now = System.nanoTime();
+        long latency = now - mWaitingSinceNanos;
+        mDrains++;
+        mTotalDrainLatencyNanos += latency;
+        if (latency > mMaxDrainLatencyNanos) mMaxDrainLatencyNanos = latency;
+        // The rest has been written later than the bytes read, but when exactly is not tracked.
+        if (storedBytes > 0) mWaitingSinceNanos = now;
+    }
+
+    /** The {@link System#nanoTime()} since the oldest bytes in the queue have been waiting, only valid if it is not empty. */
+    long getWaitingSinceNanos() {
+        return mWaitingSinceNanos;
+    }
+
+    QueueStats copy() {
+        QueueStats copy = new QueueStats(mCapacity);
+        copy.mBytesWritten = mBytesWritten;
+        copy.mHighWaterMark = mHighWaterMark;
+        copy.mBlockedNanos = mBlockedNanos;
+        if (mBlockedSinceNanos != 0) copy.mBlockedNanos += System.nanoTime() - mBlockedSinceNanos;
+        copy.mDrains = mDrains;
+        copy.mTotalDrainLatencyNanos = mTotalDrainLatencyNanos;
+        copy.mMaxDrainLatencyNanos = mMaxDrainLatencyNanos;
+        return copy;
+    }
+
+    /** The total number of bytes written to the queue, which for the output queue is the number read from the process. */
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    /** The current capacity of the queue in bytes. */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /** The highest number of bytes stored in the queue at once. */
+    public int getHighWaterMark() {
+        return mHighWaterMark;
+    }
+
+    /** The total time the producer had to wait for the consumer to make room in the full queue. */
+    public long getBlockedNanos() {
+        return mBlockedNanos;
+    }
+
+    /** The number of times the consumer has read from the queue. */
+    public long getDrainCount() {
+        return mDrains;
+    }
+
+    /** The average time bytes waited in the queue until the consumer read them, or 0 if it never read. */
+    public long getAverageDrainLatencyNanos() {
+        return mDrains == 0 ? 0 : mTotalDrainLatencyNanos / mDrains;
+    }
+
+    public long getMaxDrainLatencyNanos() {
+        return mMaxDrainLatencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "QueueStats{bytesWritten=" + mBytesWritten + ", capacity=" + mCapacity + ", highWaterMark=" + mHighWaterMark
+            + ", blockedMillis=" + mBlockedNanos / 1_000_000 + ", drains=" + mDrains
+            + ", averageDrainLatencyMicros=" + getAverageDrainLatencyNanos() / 1000
+            + ", maxDrainLatencyMicros=" + mMaxDrainLatencyNanos / 1000 + "}";
+    }
+
+}
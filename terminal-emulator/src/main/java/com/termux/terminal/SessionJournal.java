@@ -0,0 +1,426 @@
+package com.termux.terminal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An append-only journal of the output processed by the terminal emulator of a session, from which the emulator can be
+ * restored with {@link #restore(TerminalOutput, TerminalSessionClient)} after the app process has been killed, see
+ * {@link TerminalSession#setJournal(SessionJournal)}.
+ * <p>
+ * The journal is a sequence of segments in its directory, each consisting of a checkpoint file with a
+ * {@link TerminalSnapshot} of the emulator and an output file with the raw output bytes processed after it. Restoring
+ * reads the last checkpoint and replays only the output after it. A new segment is started once the output of the current
+ * one is {@link #MIN_OUTPUT_TO_CHECKPOINT_RATIO} times the size of its checkpoint, but at least the segment size passed to
+ * the constructor, and only the previous segment is kept as a fallback. So the journal takes at most about two segments
+ * of disk space, and checkpoints add at most a fraction of 1 / {@link #MIN_OUTPUT_TO_CHECKPOINT_RATIO} to the bytes
+ * written for the output.
+ * <p>
+ * The main thread only copies the output into a buffer as it is appended to the emulator, and hands it, together with
+ * the resizes and resets of the emulator, to the writer thread of a {@link BackgroundFileWriter}. The writer thread applies
+ * them to a replica of the emulator and takes the checkpoints from that, so neither the main thread nor the thread
+ * reading the process output ever waits for the journal or takes a checkpoint. The history of the replica is
+ * hibernated for each checkpoint, so that the checkpoints contain it compressed and the replica mostly takes the memory
+ * of the rows output since the last one. If the writer falls more than {@link #MAX_PENDING_BYTES} behind, the journal
+ * stops, as the replica can not follow the emulator over a gap in the output. It can still be restored up to there.
+ */
+public final class SessionJournal {
+
+    private static final String LOG_TAG = "SessionJournal";
+
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final String OUTPUT_SUFFIX = ".output";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** The size of the buffers the output is collected in before being handed to the writer thread. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** The number of buffers written by the writer thread to keep for reuse. */
+    private static final int MAX_POOLED_BUFFERS = 2;
+    /**
+     * The maximum number of bytes handed to the writer thread and not written yet, beyond which the journal stops. The
+     * output is counted with the size of the buffers it is handed over in, which is the memory it takes.
+     */
+    static final int MAX_PENDING_BYTES = 4 * 1024 * 1024;
+    /** The minimum ratio of the output bytes of a segment to the size of its checkpoint. */
+    static final int MIN_OUTPUT_TO_CHECKPOINT_RATIO = 4;
+
+    private final File mDirectory;
+    private final int mSegmentBytes;
+
+    // Only accessed on the main thread:
+    /** If the emulator has been restored from this journal, which {@link #start(TerminalEmulator)} then continues. */
+    private boolean mRestored;
+    private boolean mStarted;
+    private boolean mClosed;
+    /** The buffer output is collected in, or null if none obtained since it was last handed to the writer thread. */
+    private byte[] mBuffer;
+    private int mBufferLength;
+
+    private final BackgroundFileWriter mWriter = new BackgroundFileWriter(MAX_PENDING_BYTES);
+    private final ConcurrentLinkedQueue<byte[]> mPooledBuffers = new ConcurrentLinkedQueue<>();
+
+    // Only accessed on the writer thread, after the constructor:
+    /** The number of the current segment, or the last one of a previous journal in the directory if none started yet. */
+    private int mSegment;
+    /** The replica of the emulator, with all output and changes handed to the writer thread applied, or null if none. */
+    private TerminalEmulator mReplica;
+    private long mSegmentOutputBytes;
+    private long mSegmentLimitBytes;
+    /** If a new segment is to be started, once the replica is between escape sequences. */
+    private boolean mCheckpointDue;
+    /** If the replica has been changed other than through output, so that the current segment can not be continued. */
+    private boolean mSegmentDiverged;
+    private FileChannel mOutputChannel;
+
+    private volatile long mDroppedBytes;
+    private volatile long mOutputBytesWritten;
+    private volatile long mCheckpointBytesWritten;
+    private volatile int mCheckpointCount;
+    /** Set if writing failed or the writer thread fell too far behind, after which the journal does nothing anymore. */
+    private volatile IOException mError;
+
+    /**
+     * Create a journal in a directory, continuing after the segments of a previous journal in it, which are kept until
+     * they have been replaced so that {@link #restore(TerminalOutput, TerminalSessionClient)} can be called first.
+     *
+     * @param directory    The directory of the journal, which is created if it does not exist and should not be used for
+     *                     anything else.
+     * @param segmentBytes The minimum number of output bytes after which a new segment is started.
+     */
+    public SessionJournal(File directory, int segmentBytes) {
+        mDirectory = directory;
+        mSegmentBytes = segmentBytes;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            mError = new IOException("Could not create journal directory " + directory);
+        int[] segments = listSegments(directory);
+        mSegment = segments.length == 0 ? 0 : segments[segments.length - 1];
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /** The number of output bytes not journaled as the journal had stopped on an error. */
+    public long getDroppedBytes() {
+        return mDroppedBytes;
+    }
+
+    public long getOutputBytesWritten() {
+        return mOutputBytesWritten;
+    }
+
+    public long getCheckpointBytesWritten() {
+        return mCheckpointBytesWritten;
+    }
+
+    public int getCheckpointCount() {
+        return mCheckpointCount;
+    }
+
+    /** The error which stopped the journal, or null if none occurred. */
+    public IOException getError() {
+        return mError;
+    }
+
+    /**
+     * Start journaling the output of an emulator, which has either been returned by
+     * {@link #restore(TerminalOutput, TerminalSessionClient)} or just been created. A restored emulator continues the
+     * journal it has been restored from, which the writer thread restores again as the replica. A new emulator is
+     * written as the first checkpoint, which takes little time as it only has a blank screen. Must be called on the main
+     * thread before any output is appended to the emulator.
+     */
+    void start(TerminalEmulator emulator) {
+        if (mStarted || mError != null) return;
+        mStarted = true;
+        if (mRestored) {
+            mWriter.execute(this::continueRestoredJournal);
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            TerminalSnapshot.write(emulator, Channels.newChannel(bytes));
+        } catch (IOException e) {
+            // Not thrown when writing to memory.
+            throw new RuntimeException(e);
+        }
+        mWriter.write(bytes.toByteArray(), this::startFromSnapshot);
+    }
+
+    /** Record output before it is appended to the emulator. Must be called on the main thread. */
+    void append(byte[] data, int offset, int length) {
+        if (!mStarted || mClosed || length == 0) return;
+        if (mError == null && mWriter.isFallingBehind(mBufferLength + length))
+            mError = new IOException("Writing the journal fell more than " + MAX_PENDING_BYTES + " bytes behind");
+        if (mError != null) {
+            mDroppedBytes += length;
+            return;
+        }
+
+        while (length > 0) {
+            if (mBuffer == null) {
+                mBuffer = mPooledBuffers.poll();
+                if (mBuffer == null) mBuffer = new byte[BUFFER_SIZE];
+            }
+            int bytesToCopy = Math.min(length, mBuffer.length - mBufferLength);
+            System.arraycopy(data, offset, mBuffer, mBufferLength, bytesToCopy);
+            mBufferLength += bytesToCopy;
+            offset += bytesToCopy;
+            length -= bytesToCopy;
+            if (mBufferLength == mBuffer.length) flush();
+        }
+    }
+
+    /** Record that the emulator has been resized, which starts a new segment. Must be called on the main thread. */
+    void onResize(int columns, int rows) {
+        if (!mStarted || mClosed || mError != null) return;
+        flush();
+        mWriter.execute(() -> resizeReplica(columns, rows));
+    }
+
+    /** Record that the emulator has been reset, which starts a new segment. Must be called on the main thread. */
+    void onReset() {
+        if (!mStarted || mClosed || mError != null) return;
+        flush();
+        mWriter.execute(this::resetReplica);
+    }
+
+    /** Hand the recorded output to the writer thread. Must be called on the main thread after processing output. */
+    void flush() {
+        if (mBufferLength == 0) return;
+        final int length = mBufferLength;
+        final byte[] buffer;
+        if (length < mBuffer.length / 4) {
+            // Like the echo of a key, which is not worth handing over a whole buffer for.
+            buffer = Arrays.copyOf(mBuffer, length);
+        } else {
+            buffer = mBuffer;
+            mBuffer = null;
+        }
+        mBufferLength = 0;
+        mWriter.write(buffer, bytes -> writeOutput(bytes, length));
+    }
+
+    /** Flush the recorded output and stop recording. Must be called on the main thread. */
+    public void close() {
+        if (mClosed) return;
+        flush();
+        mClosed = true;
+        mWriter.execute(() -> {
+            closeOutputChannel();
+            mReplica = null;
+        });
+    }
+
+    /**
+     * Stop recording and delete the journal with its directory, like when its session has ended and is not to be restored.
+     * Must be called on the main thread.
+     */
+    public void delete() {
+        close();
+        mWriter.execute(() -> {
+            File[] files = mDirectory.listFiles();
+            if (files != null) for (File file : files) file.delete();
+            mDirectory.delete();
+        });
+    }
+
+    /** Wait until everything handed to the writer thread has been written. */
+    void awaitWritten() throws InterruptedException {
+        mWriter.awaitWritten();
+    }
+
+    private void startFromSnapshot(byte[] snapshot) {
+        try {
+            if (mError != null) return;
+            mReplica = TerminalSnapshot.read(Channels.newChannel(new ByteArrayInputStream(snapshot)), new DiscardingTerminalOutput(), null);
+            writeCheckpoint();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /** Restore the replica from the segments the emulator has been restored from, and continue the last one. */
+    private void continueRestoredJournal() {
+        if (mError != null) return;
+        mReplica = readJournal(new DiscardingTerminalOutput(), null);
+        if (mReplica == null) {
+            fail(new IOException("Could not restore the journal in " + mDirectory + " on the writer thread"));
+            return;
+        }
+        mSegmentOutputBytes = getOutputFile(mSegment).length();
+        mSegmentLimitBytes = Math.max(mSegmentBytes, getCheckpointFile(mSegment).length() * MIN_OUTPUT_TO_CHECKPOINT_RATIO);
+        mCheckpointDue = mSegmentOutputBytes >= mSegmentLimitBytes;
+    }
+
+    private void writeOutput(byte[] buffer, int length) {
+        try {
+            if (mError != null) return;
+            mReplica.append(buffer, 0, length);
+            // After the replica has been changed other than through output, the output is only in the next checkpoint.
+            if (!mSegmentDiverged) {
+                if (mOutputChannel == null) mOutputChannel = new FileOutputStream(getOutputFile(mSegment), true).getChannel();
+                BackgroundFileWriter.writeFully(mOutputChannel, buffer, length);
+                mOutputBytesWritten += length;
+                mSegmentOutputBytes += length;
+                if (mSegmentOutputBytes >= mSegmentLimitBytes) mCheckpointDue = true;
+            }
+            // A snapshot does not contain the state of a partially processed escape sequence, so a segment can only start
+            // between sequences.
+            if (mCheckpointDue && mReplica.isBetweenSequences()) writeCheckpoint();
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            if (buffer.length == BUFFER_SIZE && mPooledBuffers.size() < MAX_POOLED_BUFFERS) mPooledBuffers.offer(buffer);
+        }
+    }
+
+    private void resizeReplica(int columns, int rows) {
+        if (mError != null) return;
+        mReplica.resize(columns, rows);
+        onReplicaChanged();
+    }
+
+    private void resetReplica() {
+        if (mError != null) return;
+        mReplica.reset();
+        onReplicaChanged();
+    }
+
+    private void onReplicaChanged() {
+        mSegmentDiverged = true;
+        mCheckpointDue = true;
+        try {
+            if (mReplica.isBetweenSequences()) writeCheckpoint();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /** Start a new segment with a checkpoint of the replica, and delete the segments before the previous one. */
+    private void writeCheckpoint() throws IOException {
+        closeOutputChannel();
+        final int segment = mSegment + 1;
+
+        // The history is written compressed, and kept so in the replica.
+        mReplica.hibernateTranscript();
+        // Written under a temporary name first so that only complete checkpoints are found when restoring.
+        File temporaryFile = new File(mDirectory, segment + CHECKPOINT_SUFFIX + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temporaryFile)) {
+            TerminalSnapshot.write(mReplica, out.getChannel());
+        }
+        final long checkpointBytes = temporaryFile.length();
+        if (!temporaryFile.renameTo(getCheckpointFile(segment)))
+            throw new IOException("Could not rename " + temporaryFile);
+        mCheckpointBytesWritten += checkpointBytes;
+        mCheckpointCount++;
+
+        mSegment = segment;
+        mSegmentOutputBytes = 0;
+        mSegmentLimitBytes = Math.max(mSegmentBytes, checkpointBytes * MIN_OUTPUT_TO_CHECKPOINT_RATIO);
+        mCheckpointDue = false;
+        mSegmentDiverged = false;
+
+        // Keep the previous segment in case this checkpoint can not be read.
+        for (int oldSegment : listSegments(mDirectory)) {
+            if (oldSegment >= segment - 1) break;
+            getCheckpointFile(oldSegment).delete();
+            getOutputFile(oldSegment).delete();
+        }
+    }
+
+    private void fail(IOException error) {
+        if (mError == null) mError = error;
+        closeOutputChannel();
+        mReplica = null;
+    }
+
+    private void closeOutputChannel() {
+        if (mOutputChannel == null) return;
+        try {
+            mOutputChannel.close();
+        } catch (IOException e) {
+            if (mError == null) mError = e;
+        }
+        mOutputChannel = null;
+    }
+
+    /**
+     * Restore an emulator from the last readable checkpoint in the directory of the journal, replaying the output
+     * journaled after it. Should be called before {@link #start(TerminalEmulator)}, which then continues the journal.
+     *
+     * @return The restored emulator with the size it had, or null if the directory contains no readable checkpoint.
+     */
+    public TerminalEmulator restore(TerminalOutput session, TerminalSessionClient client) {
+        TerminalEmulator emulator = readJournal(session, client);
+        mRestored = emulator != null;
+        return emulator;
+    }
+
+    private TerminalEmulator readJournal(TerminalOutput session, TerminalSessionClient client) {
+        int[] segments = listSegments(mDirectory);
+        for (int i = segments.length - 1; i >= 0; i--) {
+            try {
+                TerminalEmulator emulator;
+                try (FileInputStream in = new FileInputStream(getCheckpointFile(segments[i]))) {
+                    emulator = TerminalSnapshot.read(in.getChannel(), session, client);
+                }
+                for (int j = i; j < segments.length; j++) replayOutput(getOutputFile(segments[j]), emulator);
+                return emulator;
+            } catch (IOException e) {
+                Logger.logWarn(client, LOG_TAG, "Could not restore from checkpoint " + segments[i] + " in " + mDirectory + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private static void replayOutput(File file, TerminalEmulator emulator) throws IOException {
+        // The output file may be missing if the process was killed before any output after the checkpoint was written.
+        if (!file.exists()) return;
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                emulator.append(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        }
+    }
+
+    private File getCheckpointFile(int segment) {
+        return new File(mDirectory, segment + CHECKPOINT_SUFFIX);
+    }
+
+    private File getOutputFile(int segment) {
+        return new File(mDirectory, segment + OUTPUT_SUFFIX);
+    }
+
+    /** The numbers of the segments with a complete checkpoint in a directory, in ascending order. */
+    private static int[] listSegments(File directory) {
+        String[] names = directory.list();
+        if (names == null) return new int[0];
+        int[] segments = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (!name.endsWith(CHECKPOINT_SUFFIX)) continue;
+            try {
+                segments[count++] = Integer.parseInt(name.substring(0, name.length() - CHECKPOINT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                count--;
+            }
+        }
+        segments = Arrays.copyOf(segments, count);
+        Arrays.sort(segments);
+        return segments;
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.termux.terminal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Records a session in a {@link TerminalRecording} file, to reproduce problems with the output of programs by replaying
+ * it with {@link TerminalReplay}, see {@link TerminalSession#startRecording(File)}.
+ * <p>
+ * The recording starts with a snapshot of the emulator, once it is between escape sequences, followed by the output
+ * processed by the emulator, the input written to the process and the resizes, with the times they happened on the
+ * main thread. Like for a {@link SessionJournal}, the main thread only encodes the events into a buffer, which is
+ * written to the file by the writer thread of a {@link BackgroundFileWriter}. If that falls more than
+ * {@link #MAX_PENDING_BYTES} behind, the recording is stopped instead of leaving a gap in it.
+ */
+public final class SessionRecorder {
+
+    /** The maximum number of bytes handed to the writer thread and not written yet, beyond which recording stops. */
+    static final int MAX_PENDING_BYTES = 4 * 1024 * 1024;
+
+    private final File mFile;
+    private final BackgroundFileWriter mFileWriter = new BackgroundFileWriter(MAX_PENDING_BYTES);
+
+    // Only accessed on the main thread:
+    /** The writer of the recording, or null if not started yet as the emulator has been in an escape sequence. */
+    private TerminalRecording.Writer mWriter;
+    private long mStartNanos;
+    private boolean mStopped;
+
+    // Only accessed on the writer thread:
+    private FileChannel mFileChannel;
+    private boolean mWriteFailed;
+
+    private volatile long mBytesWritten;
+    /** Set if writing failed or the writer thread fell too far behind, after which nothing more is recorded. */
+    private volatile IOException mError;
+
+    SessionRecorder(File file) {
+        mFile = file;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    /** The error which stopped the recording, or null if none occurred. */
+    public IOException getError() {
+        return mError;
+    }
+
+    /** Record output before it is appended to the emulator. Must be called on the main thread. */
+    void recordOutput(TerminalEmulator emulator, byte[] data, int offset, int length) {
+        if (!isRecording(emulator)) return;
+        try {
+            mWriter.writeOutput(System.nanoTime() - mStartNanos, data, offset, length);
+        } catch (IOException e) {
+            stop(e);
+        }
+    }
+
+    /** Record input written to the process. Must be called on the main thread. */
+    void recordInput(TerminalEmulator emulator, byte[] data, int offset, int length) {
+        if (!isRecording(emulator)) return;
+        try {
+            mWriter.writeInput(System.nanoTime() - mStartNanos, data, offset, length);
+        } catch (IOException e) {
+            stop(e);
+        }
+    }
+
+    /** Record that the emulator has been resized. Must be called on the main thread. */
+    void recordResize(TerminalEmulator emulator) {
+        if (!isRecording(emulator)) return;
+        try {
+            mWriter.writeResize(System.nanoTime() - mStartNanos, emulator.mColumns, emulator.mRows);
+        } catch (IOException e) {
+            stop(e);
+        }
+    }
+
+    /** If events should be recorded, starting the recording with a snapshot of the emulator first if not started yet. */
+    private boolean isRecording(TerminalEmulator emulator) {
+        if (mStopped || emulator == null) return false;
+        if (mError != null) {
+            stop(null);
+            return false;
+        }
+        if (mWriter != null) return true;
+
+        // A snapshot does not contain the state of a partially processed escape sequence, so the output before the end
+        // of the sequence can not be replayed on it.
+        if (!emulator.isBetweenSequences()) return false;
+        try {
+            mStartNanos = System.nanoTime();
+            mWriter = new TerminalRecording.Writer(new HandOffChannel(), emulator.mColumns, emulator.mRows);
+            mWriter.writeSnapshot(0, emulator);
+            return true;
+        } catch (IOException e) {
+            stop(e);
+            return false;
+        }
+    }
+
+    /** Hand the recorded events to the writer thread. Must be called on the main thread after processing output. */
+    void flush() {
+        if (mWriter == null || mStopped) return;
+        try {
+            mWriter.flush();
+        } catch (IOException e) {
+            stop(e);
+        }
+    }
+
+    /** Flush the recorded events and stop recording. Must be called on the main thread. */
+    public void stop() {
+        flush();
+        stop(null);
+    }
+
+    private void stop(IOException error) {
+        if (error != null && mError == null) mError = error;
+        if (mStopped) return;
+        mStopped = true;
+        mFileWriter.execute(this::closeFileChannel);
+    }
+
+    /** Wait until everything handed to the writer thread has been written. */
+    void awaitWritten() throws InterruptedException {
+        mFileWriter.awaitWritten();
+    }
+
+    private void write(byte[] bytes) {
+        try {
+            // What has been handed over before the recording was stopped is still written, unless writing failed.
+            if (mWriteFailed) return;
+            if (mFileChannel == null) mFileChannel = new FileOutputStream(mFile).getChannel();
+            BackgroundFileWriter.writeFully(mFileChannel, bytes, bytes.length);
+            mBytesWritten += bytes.length;
+        } catch (IOException e) {
+            mWriteFailed = true;
+            if (mError == null) mError = e;
+            closeFileChannel();
+        }
+    }
+
+    private void closeFileChannel() {
+        if (mFileChannel == null) return;
+        try {
+            mFileChannel.close();
+        } catch (IOException e) {
+            if (mError == null) mError = e;
+        }
+        mFileChannel = null;
+    }
+
+    /** The channel the {@link #mWriter} flushes its buffer to, which copies the bytes to hand them to the writer thread. */
+    private final class HandOffChannel implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            final int length = source.remaining();
+            if (mFileWriter.isFallingBehind(length))
+                throw new IOException("Writing the recording fell more than " + MAX_PENDING_BYTES + " bytes behind");
+            final byte[] bytes = new byte[length];
+            source.get(bytes);
+            mFileWriter.write(bytes, SessionRecorder.this::write);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !mStopped;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
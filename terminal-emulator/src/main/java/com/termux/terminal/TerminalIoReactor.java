@@ -0,0 +1,509 @@
+package com.termux.terminal;
+
+import android.os.Build;
+import android.system.OsConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Performs the pseudoterminal I/O of all terminal sessions on a single thread using epoll(7), instead of a reader and a
+ * writer thread per session.
+ * <p>
+ * Each session registers its pty master file descriptor as a {@link Channel} together with its two {@link ByteQueue}s,
+ * which keep the same contract as with dedicated threads: process output is written to the output queue and the
+ * {@link ChannelListener} is notified, and whatever is written to the input queue is written to the process.
+ * <p>
+ * All file descriptors are non-blocking, and the reactor thread never blocks on a queue: output is only read as far as
+ * the output queue has room for it, growing it if possible, and reading from the pty is paused while it is full, and if
+ * the pty does not accept all input, the rest is written once it becomes writable. The queues wake up the reactor thread
+ * through an eventfd when their state changes, see {@link ByteQueue#setStateListener(Runnable)}.
+ * <p>
+ * The size of the reads adapts to the amount of output, from {@link #MIN_READ_SIZE} for interactive use up to
+ * {@link #MAX_READ_SIZE} when streaming. Output may also be read directly into a {@link ChunkQueue}, see
+ * {@link #register(int, int, ChunkQueue, ByteQueue, ChannelListener)}.
+ * <p>
+ * The reactor also reaps the processes of the sessions, by polling a pidfd for each process which becomes readable when it
+ * exits, instead of a thread per session blocking in {@link JNI#waitFor(int)}. See {@link Channel#isWatchingProcess()}
+ * for when this is not available.
+ * <p>
+ * A channel whose I/O throws is closed, which hangs up its process, without stopping the I/O of the other channels.
+ */
+final class TerminalIoReactor {
+
+    /** Notified on the reactor thread about events of a {@link Channel}. */
+    interface ChannelListener {
+        /** Called after output of the process has been written to the output queue. */
+        void onOutputAvailable();
+
+        /**
+         * Called when the process passed to {@link #register(int, int, ByteQueue, ByteQueue, ChannelListener)} has exited
+         * and has been reaped, after output written by it before has been read as far as the output queue allows.
+         *
+         * @param exitStatus The exit status as returned by {@link JNI#waitFor(int)}.
+         */
+        void onProcessExited(int exitStatus);
+
+        /** Called after input from the input queue has been written to the pty, with the bytes written. */
+        default void onInputWritten(byte[] data, int offset, int count) {
+        }
+    }
+
+    // From <sys/epoll.h>.
+    private static final int EPOLLIN = 0x001;
+    private static final int EPOLLOUT = 0x004;
+    private static final int EPOLLERR = 0x008;
+    private static final int EPOLLHUP = 0x010;
+    private static final int EPOLL_CTL_ADD = 1;
+    private static final int EPOLL_CTL_DEL = 2;
+    private static final int EPOLL_CTL_MOD = 3;
+
+    static final int MIN_READ_SIZE = 4096;
+    static final int MAX_READ_SIZE = 64 * 1024;
+    private static final int INPUT_BUFFER_SIZE = 4096;
+
+    /** The range of the time to wait before calling epoll_wait(2) again after it failed, doubling while it keeps failing. */
+    private static final long MIN_EPOLL_ERROR_BACKOFF_MILLIS = 10;
+    private static final long MAX_EPOLL_ERROR_BACKOFF_MILLIS = 1000;
+
+    /** The first Android version allowing pidfd_open(2) for apps, Build.VERSION_CODES.S. */
+    private static final int PIDFD_MIN_SDK_VERSION = 31;
+
+    private static TerminalIoReactor sInstance;
+    private static boolean sUnavailable;
+    /** Cleared if the kernel does not support pidfd_open(2). */
+    private static volatile boolean sPidfdSupported = Build.VERSION.SDK_INT >= PIDFD_MIN_SDK_VERSION;
+
+    private static final String LOG_TAG = "TerminalIoReactor";
+
+    private final int mEpollFd;
+    private final int mWakeFd;
+
+    /** Channels with work requested from other threads, see {@link #wake(Channel)}. */
+    private final ConcurrentLinkedQueue<Channel> mWokenChannels = new ConcurrentLinkedQueue<>();
+    /** The channels in the epoll set by file descriptor. Only accessed on the reactor thread. */
+    private final Map<Integer, Channel> mChannels = new HashMap<>();
+
+    /** Shared by all channels for reading, as the output is copied into the output queue right away. */
+    private final byte[] mReadBuffer = new byte[MAX_READ_SIZE];
+
+    private TerminalIoReactor() {
+        mEpollFd = JNI.epollCreate();
+        mWakeFd = JNI.eventfdCreate();
+        int result = JNI.epollCtl(mEpollFd, EPOLL_CTL_ADD, mWakeFd, EPOLLIN);
+        if (result != 0) {
+            JNI.close(mWakeFd);
+            JNI.close(mEpollFd);
+            throw new IllegalStateException("Failed to add eventfd to epoll set: errno " + (-result));
+        }
+
+        Thread thread = new Thread("TermSessionIoReactor") {
+            @Override
+            public void run() {
+                runLoop();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the reactor shared by all sessions, starting it if necessary.
+     *
+     * @return The reactor, or null if it could not be started, in which case sessions should use dedicated threads.
+     */
+    static synchronized TerminalIoReactor getInstance(TerminalSessionClient client) {
+        if (sInstance == null && !sUnavailable) {
+            try {
+                sInstance = new TerminalIoReactor();
+            } catch (RuntimeException | LinkageError e) {
+                sUnavailable = true;
+                Logger.logStackTraceWithMessage(client, LOG_TAG, "Failed to start I/O reactor, using threads per session", e);
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Register the pty master file descriptor of a session. The file descriptor is made non-blocking, and is owned by the
+     * reactor from now on and closed by {@link Channel#close()}.
+     *
+     * @param pid The process to reap and report with {@link ChannelListener#onProcessExited(int)}, or 0 for none.
+     */
+    Channel register(int fd, int pid, ByteQueue outputQueue, ByteQueue inputQueue, ChannelListener listener) {
+        return register(fd, pid, outputQueue, null, inputQueue, listener);
+    }
+
+    /**
+     * Register the pty master file descriptor of a session like
+     * {@link #register(int, int, ByteQueue, ByteQueue, ChannelListener)}, but with the output read directly into the
+     * chunks of a {@link ChunkQueue} instead of being copied into a {@link ByteQueue}.
+     */
+    Channel register(int fd, int pid, ChunkQueue outputChunks, ByteQueue inputQueue, ChannelListener listener) {
+        return register(fd, pid, null, outputChunks, inputQueue, listener);
+    }
+
+    private Channel register(int fd, int pid, ByteQueue outputQueue, ChunkQueue outputChunks, ByteQueue inputQueue, ChannelListener listener) {
+        JNI.setNonBlocking(fd);
+        final Channel channel = new Channel(fd, pid, openPidfd(pid), outputQueue, outputChunks, inputQueue, listener);
+        Runnable wakeChannel = () -> wake(channel);
+        if (outputQueue != null) outputQueue.setStateListener(wakeChannel);
+        if (outputChunks != null) outputChunks.setStateListener(wakeChannel);
+        inputQueue.setStateListener(wakeChannel);
+        wake(channel);
+        return channel;
+    }
+
+    /** Open a pidfd for the process, returning -1 if none should be or could be opened. */
+    private static int openPidfd(int pid) {
+        if (pid <= 0 || !sPidfdSupported) return -1;
+        int pidFd = JNI.pidfdOpen(pid);
+        if (pidFd >= 0) return pidFd;
+        if (pidFd == -OsConstants.ENOSYS) sPidfdSupported = false;
+        return -1;
+    }
+
+    /** Have the reactor thread process the channel. May be called from any thread. */
+    private void wake(Channel channel) {
+        if (channel.mWakeQueued.compareAndSet(false, true)) {
+            mWokenChannels.add(channel);
+            JNI.eventfdSignal(mWakeFd);
+        }
+    }
+
+    private void runLoop() {
+        final long[] readyEvents = new long[64];
+        long epollErrorBackoffMillis = MIN_EPOLL_ERROR_BACKOFF_MILLIS;
+        while (true) {
+            Channel woken;
+            while ((woken = mWokenChannels.poll()) != null) {
+                woken.mWakeQueued.set(false);
+                try {
+                    woken.process();
+                } catch (RuntimeException e) {
+                    woken.fail(e);
+                }
+            }
+
+            int count = JNI.epollWait(mEpollFd, readyEvents, -1);
+            if (count < 0) {
+                // Not expected with a valid epoll file descriptor, but would spin the loop if it persists.
+                Logger.logError(null, LOG_TAG, "epoll_wait() failed with errno " + (-count) + ", retrying in " + epollErrorBackoffMillis + " ms");
+                try {
+                    Thread.sleep(epollErrorBackoffMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                epollErrorBackoffMillis = Math.min(epollErrorBackoffMillis * 2, MAX_EPOLL_ERROR_BACKOFF_MILLIS);
+                continue;
+            }
+            epollErrorBackoffMillis = MIN_EPOLL_ERROR_BACKOFF_MILLIS;
+
+            for (int i = 0; i < count; i++) {
+                final int fd = (int) (readyEvents[i] >> 32);
+                final int events = (int) readyEvents[i];
+                if (fd == mWakeFd) {
+                    JNI.eventfdClear(mWakeFd);
+                    continue;
+                }
+
+                Channel channel = mChannels.get(fd);
+                if (channel == null) continue;
+                try {
+                    if (fd == channel.mPidFd) {
+                        channel.reapProcess();
+                        continue;
+                    }
+                    // Input first, so that keystrokes like Ctrl+C reach a process flooding output as soon as possible.
+                    if ((events & EPOLLOUT) != 0) channel.writeInput();
+                    if ((events & (EPOLLIN | EPOLLHUP | EPOLLERR)) != 0) channel.readOutput();
+                    channel.updateInterest();
+                } catch (RuntimeException e) {
+                    channel.fail(e);
+                }
+            }
+        }
+    }
+
+    /** The pty of a session registered with {@link #register(int, int, ByteQueue, ByteQueue, ChannelListener)}. */
+    final class Channel {
+
+        final int mFd;
+        final int mPid;
+        /** See {@link #isWatchingProcess()}. */
+        private final boolean mWatchingProcess;
+        /** The pidfd of {@link #mPid}, or -1 if not watched or no longer. Only accessed on the reactor thread. */
+        private int mPidFd;
+        /** The queue for the output, unless read into {@link #mOutputChunks}. */
+        final ByteQueue mOutputQueue;
+        final ChunkQueue mOutputChunks;
+        final ByteQueue mInputQueue;
+        final ChannelListener mListener;
+
+        final AtomicBoolean mWakeQueued = new AtomicBoolean();
+        volatile boolean mCloseRequested;
+
+        // The fields below are only accessed on the reactor thread.
+        private boolean mClosed;
+        /** The events currently registered in the epoll set, or -1 if not in it. */
+        private int mRegisteredEvents = -1;
+        /** If the end of the output has been reached, or the output queue has been closed. */
+        private boolean mOutputFinished;
+        /** If reading is paused until the full output queue wakes up the channel when it has room again. */
+        private boolean mOutputBlocked;
+
+        /** The maximum size of the next read. */
+        private int mReadSize = MIN_READ_SIZE;
+
+        /**
+         * Output read but not written to the output queue, which can only happen if the queue was trimmed in between.
+         * Written before reading more once the queue has room again.
+         */
+        private byte[] mPendingOutput;
+        private int mPendingOutputOffset, mPendingOutputLength;
+
+        /** Input read from the input queue but not yet written to the pty. */
+        private final byte[] mInputBuffer = new byte[INPUT_BUFFER_SIZE];
+        private int mInputOffset, mInputLength;
+
+        Channel(int fd, int pid, int pidFd, ByteQueue outputQueue, ChunkQueue outputChunks, ByteQueue inputQueue, ChannelListener listener) {
+            mFd = fd;
+            mPid = pid;
+            mPidFd = pidFd;
+            mWatchingProcess = pidFd >= 0;
+            mOutputQueue = outputQueue;
+            mOutputChunks = outputChunks;
+            mInputQueue = inputQueue;
+            mListener = listener;
+        }
+
+        /**
+         * If the reactor reaps the process and reports its exit to {@link ChannelListener#onProcessExited(int)}. If not,
+         * because of an older Android version or kernel, the caller must wait for the process itself.
+         */
+        boolean isWatchingProcess() {
+            return mWatchingProcess;
+        }
+
+        /** Stop the I/O and close the file descriptor. May be called from any thread. */
+        void close() {
+            mCloseRequested = true;
+            wake(this);
+        }
+
+        /** Handle a wake up, due to registration, closing or a state change of a queue. */
+        void process() {
+            if (mCloseRequested) {
+                closePidfd();
+                closeFd();
+                return;
+            }
+            if (mClosed) return;
+
+            if (mPidFd >= 0 && !mChannels.containsKey(mPidFd)) {
+                JNI.epollCtl(mEpollFd, EPOLL_CTL_ADD, mPidFd, EPOLLIN);
+                mChannels.put(mPidFd, this);
+            }
+            mOutputBlocked = false;
+            if (mPendingOutputLength > 0 && flushPendingOutput()) mListener.onOutputAvailable();
+            writeInput();
+            updateInterest();
+        }
+
+        /** Reap the exited process and report its exit status, after reading its remaining output. */
+        void reapProcess() {
+            closePidfd();
+            try {
+                // The output may not have been read yet, as epoll reports the pidfd and the pty in no particular order.
+                //noinspection StatementWithEmptyBody
+                while (readOutput()) ;
+                updateInterest();
+            } catch (RuntimeException e) {
+                // The pidfd is closed already, so the exit has to be reported here.
+                fail(e);
+            }
+            // The process has exited, so this does not block.
+            mListener.onProcessExited(JNI.waitFor(mPid));
+        }
+
+        /**
+         * Stop the I/O after it threw on the reactor thread. The pty is closed, which hangs up the process, but the
+         * process is still reaped and its exit reported if watched, so that the session ends.
+         */
+        void fail(RuntimeException error) {
+            Logger.logStackTraceWithMessage(null, LOG_TAG, "The I/O of pty " + mFd + " failed, closing it", error);
+            mOutputFinished = true;
+            mInputLength = 0;
+            mPendingOutputLength = 0;
+            try {
+                closeFd();
+            } catch (RuntimeException e) {
+                Logger.logStackTraceWithMessage(null, LOG_TAG, "Failed to close pty " + mFd, e);
+            }
+        }
+
+        private void closeFd() {
+            if (mClosed) return;
+            setInterest(0);
+            mClosed = true;
+            JNI.close(mFd);
+        }
+
+        private void closePidfd() {
+            if (mPidFd < 0) return;
+            if (mChannels.remove(mPidFd) != null) JNI.epollCtl(mEpollFd, EPOLL_CTL_DEL, mPidFd, 0);
+            JNI.close(mPidFd);
+            mPidFd = -1;
+        }
+
+        /**
+         * Read available output from the pty into the output queue.
+         *
+         * @return If a full read was written to the output queue, so that more output may be available.
+         */
+        boolean readOutput() {
+            if (mOutputFinished || mOutputBlocked || mPendingOutputLength > 0) return false;
+            if (mOutputChunks != null) return readOutputChunk();
+
+            final int readSize = mReadSize;
+            final int length = mOutputQueue.ensureWritable(readSize);
+            if (length <= 0) {
+                if (length < 0) {
+                    mOutputFinished = true;
+                } else {
+                    mOutputBlocked = true;
+                }
+                return false;
+            }
+
+            final byte[] buffer = mReadBuffer;
+            int read = JNI.read(mFd, buffer, 0, length);
+            if (read == 0) return false;
+            if (read < 0) {
+                mOutputFinished = true;
+                return false;
+            }
+            if (length == readSize) adaptReadSize(read);
+
+            int written = mOutputQueue.write(buffer, 0, read, 0);
+            if (written < 0) {
+                mOutputFinished = true;
+                return false;
+            }
+            if (written < read) {
+                // Keep the rest until the main thread has made room in the queue.
+                if (mPendingOutput == null || mPendingOutput.length < read - written) mPendingOutput = new byte[read - written];
+                mPendingOutputOffset = 0;
+                mPendingOutputLength = read - written;
+                System.arraycopy(buffer, written, mPendingOutput, 0, mPendingOutputLength);
+            }
+            if (written > 0) mListener.onOutputAvailable();
+            return written == length;
+        }
+
+        /** Read more at once while the process outputs faster than it is read, and less again once it does not. */
+        private void adaptReadSize(int read) {
+            if (read == mReadSize) {
+                mReadSize = Math.min(mReadSize * 2, MAX_READ_SIZE);
+            } else if (read < mReadSize / 4) {
+                mReadSize = Math.max(mReadSize / 2, MIN_READ_SIZE);
+            }
+        }
+
+        /** Read available output directly into a chunk of {@link #mOutputChunks}, like {@link #readOutput()}. */
+        private boolean readOutputChunk() {
+            if (mOutputChunks.isFull()) {
+                mOutputBlocked = true;
+                return false;
+            }
+
+            final int chunkSize = mReadSize;
+            ChunkQueue.Chunk chunk = mOutputChunks.obtain(chunkSize);
+            int read = JNI.read(mFd, chunk.mData, 0, chunkSize);
+            if (read <= 0) {
+                mOutputChunks.recycle(chunk);
+                if (read < 0) mOutputFinished = true;
+                return false;
+            }
+
+            adaptReadSize(read);
+
+            chunk.mLength = read;
+            if (!mOutputChunks.add(chunk)) {
+                mOutputFinished = true;
+                return false;
+            }
+            mListener.onOutputAvailable();
+            return read == chunkSize;
+        }
+
+        /** Write pending output to the output queue, returning if anything was written. */
+        private boolean flushPendingOutput() {
+            int written = mOutputQueue.write(mPendingOutput, mPendingOutputOffset, mPendingOutputLength, 0);
+            if (written < 0) {
+                mOutputFinished = true;
+                mPendingOutputLength = 0;
+                return false;
+            }
+            mPendingOutputOffset += written;
+            mPendingOutputLength -= written;
+            return written > 0;
+        }
+
+        /** Write as much input as the pty accepts without blocking. */
+        void writeInput() {
+            while (true) {
+                if (mInputLength == 0) {
+                    int read = mInputQueue.read(mInputBuffer, false);
+                    if (read <= 0) return;
+                    mInputOffset = 0;
+                    mInputLength = read;
+                }
+
+                int written = JNI.write(mFd, mInputBuffer, mInputOffset, mInputLength);
+                if (written == 0) return;
+                if (written < 0) {
+                    // The process is gone, drop the input like a failing blocking write would.
+                    mInputLength = 0;
+                    return;
+                }
+                mListener.onInputWritten(mInputBuffer, mInputOffset, written);
+                mInputOffset += written;
+                mInputLength -= written;
+            }
+        }
+
+        /** Register interest in exactly the events the channel can currently handle. */
+        void updateInterest() {
+            if (mClosed) return;
+            int events = 0;
+            if (!mOutputFinished && !mOutputBlocked && mPendingOutputLength == 0) events |= EPOLLIN;
+            if (mInputLength > 0) events |= EPOLLOUT;
+            setInterest(events);
+        }
+
+        private void setInterest(int events) {
+            if (events == mRegisteredEvents || (events == 0 && mRegisteredEvents == -1)) return;
+
+            // Remove the file descriptor instead of registering no events, since EPOLLHUP is always reported.
+            if (events == 0) {
+                JNI.epollCtl(mEpollFd, EPOLL_CTL_DEL, mFd, 0);
+                mChannels.remove(mFd);
+                mRegisteredEvents = -1;
+                return;
+            }
+
+            if (mRegisteredEvents == -1) {
+                JNI.epollCtl(mEpollFd, EPOLL_CTL_ADD, mFd, events);
+                mChannels.put(mFd, this);
+            } else {
+                JNI.epollCtl(mEpollFd, EPOLL_CTL_MOD, mFd, events);
+            }
+            mRegisteredEvents = events;
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.termux.terminal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the memory used by the screen buffers of all registered {@link TerminalSession}s within a budget, as each session
+ * may keep a large history and nothing else bounds how many sessions produce output.
+ * <p>
+ * The usage is estimated at most once every {@link #CHECK_INTERVAL_NANOS} while any of the sessions outputs. When over
+ * budget, the sessions viewed least recently first release the memory they keep for reuse, see
+ * {@link TerminalEmulator#releaseUnusedMemory()}, and if that is not enough, have their history hibernated into a
+ * compressed form, see {@link TerminalBuffer#hibernateTranscript()}. A hibernated history is restored when it is next
+ * read, like when the session is shown, or by {@link #onSessionViewed(TerminalSession)}. The session viewed most
+ * recently is never hibernated, as it is probably shown.
+ * <p>
+ * Must only be used on the main thread, like the sessions.
+ */
+public final class TerminalMemoryGovernor {
+
+    /** The minimum time between checks of the usage caused by output. */
+    private static final long CHECK_INTERVAL_NANOS = 1_000_000_000L;
+
+    private static final class Entry {
+        final TerminalSession mSession;
+        /** The value of {@link #mViewCounter} when the session was last viewed, for least recently viewed order. */
+        long mLastViewed;
+        /** The usage at the last check. */
+        long mUsageBytes;
+
+        Entry(TerminalSession session) {
+            mSession = session;
+        }
+    }
+
+    private static final Comparator<Entry> LEAST_RECENTLY_VIEWED_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return Long.compare(a.mLastViewed, b.mLastViewed);
+        }
+    };
+
+    private final long mBudgetBytes;
+    private final List<Entry> mEntries = new ArrayList<>();
+    private long mViewCounter;
+    private long mLastCheckNanos;
+
+    private long mUsageBytes;
+    private long mCompactions;
+    private long mHibernations;
+
+    /** @param budgetBytes the memory the screen buffers of all sessions together should use at most. */
+    public TerminalMemoryGovernor(long budgetBytes) {
+        mBudgetBytes = budgetBytes;
+    }
+
+    /** Start governing a session, which counts as just viewed. */
+    public void register(TerminalSession session) {
+        if (findEntry(session) != null) return;
+        Entry entry = new Entry(session);
+        entry.mLastViewed = ++mViewCounter;
+        mEntries.add(entry);
+        session.mMemoryGovernor = this;
+    }
+
+    public void unregister(TerminalSession session) {
+        Entry entry = findEntry(session);
+        if (entry == null) return;
+        mEntries.remove(entry);
+        mUsageBytes -= entry.mUsageBytes;
+        session.mMemoryGovernor = null;
+    }
+
+    /** Note that a session is shown, which restores its history if hibernated. */
+    public void onSessionViewed(TerminalSession session) {
+        Entry entry = findEntry(session);
+        if (entry == null) return;
+        entry.mLastViewed = ++mViewCounter;
+        TerminalEmulator emulator = session.getEmulator();
+        if (emulator != null) emulator.rehydrateTranscript();
+    }
+
+    /** Called by a registered session when it has processed output, which may have grown its history. */
+    void onOutputProcessed() {
+        long now = System.nanoTime();
+        if (now - mLastCheckNanos < CHECK_INTERVAL_NANOS) return;
+        mLastCheckNanos = now;
+        enforceBudget();
+    }
+
+    /** Estimate the usage of all sessions, and release memory of the least recently viewed ones if over budget. */
+    public void enforceBudget() {
+        long usage = 0;
+        for (Entry entry : mEntries) {
+            entry.mUsageBytes = getUsage(entry.mSession);
+            usage += entry.mUsageBytes;
+        }
+        mUsageBytes = usage;
+        if (usage <= mBudgetBytes || mEntries.size() < 2) return;
+
+        List<Entry> candidates = new ArrayList<>(mEntries);
+        Collections.sort(candidates, LEAST_RECENTLY_VIEWED_FIRST);
+        // The most recently viewed session is kept as it is:
+        candidates.remove(candidates.size() - 1);
+
+        // First release what is not needed for the content, as nothing is lost by that:
+        for (int i = 0; i < candidates.size() && mUsageBytes > mBudgetBytes; i++) {
+            Entry entry = candidates.get(i);
+            TerminalEmulator emulator = entry.mSession.getEmulator();
+            if (emulator == null) continue;
+            emulator.releaseUnusedMemory();
+            if (updateUsage(entry)) mCompactions++;
+        }
+        for (int i = 0; i < candidates.size() && mUsageBytes > mBudgetBytes; i++) {
+            Entry entry = candidates.get(i);
+            TerminalEmulator emulator = entry.mSession.getEmulator();
+            if (emulator == null || !emulator.hibernateTranscript()) continue;
+            updateUsage(entry);
+            mHibernations++;
+        }
+    }
+
+    /** Update the usage of a session after memory has been released, returning true if it decreased. */
+    private boolean updateUsage(Entry entry) {
+        long usage = getUsage(entry.mSession);
+        long released = entry.mUsageBytes - usage;
+        entry.mUsageBytes = usage;
+        mUsageBytes -= released;
+        return released > 0;
+    }
+
+    private static long getUsage(TerminalSession session) {
+        TerminalEmulator emulator = session.getEmulator();
+        return emulator == null ? 0 : emulator.getMemoryUsage();
+    }
+
+    private Entry findEntry(TerminalSession session) {
+        for (Entry entry : mEntries)
+            if (entry.mSession == session) return entry;
+        return null;
+    }
+
+    public long getBudgetBytes() {
+        return mBudgetBytes;
+    }
+
+    /** The estimated usage of all sessions at the last check, or after memory was released by it. */
+    public long getUsageBytes() {
+        return mUsageBytes;
+    }
+
+    /** The usage of a session at the last check, or -1 if it is not registered. */
+    public long getUsageBytes(TerminalSession session) {
+        Entry entry = findEntry(session);
+        return entry == null ? -1 : entry.mUsageBytes;
+    }
+
+    /** The number of times memory kept for reuse by a session has been released. */
+    public long getCompactionCount() {
+        return mCompactions;
+    }
+
+    /** The number of times the history of a session has been hibernated. */
+    public long getHibernationCount() {
+        return mHibernations;
+    }
+
+    /** The number of registered sessions with a history which is currently hibernated. */
+    public int getHibernatedSessionCount() {
+        int count = 0;
+        for (Entry entry : mEntries) {
+            TerminalEmulator emulator = entry.mSession.getEmulator();
+            if (emulator != null && emulator.isTranscriptHibernated()) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "TerminalMemoryGovernor{sessions=" + mEntries.size() + ", budgetKiB=" + mBudgetBytes / 1024
+            + ", usageKiB=" + mUsageBytes / 1024 + ", compactions=" + mCompactions + ", hibernations=" + mHibernations
+            + ", hibernatedSessions=" + getHibernatedSessionCount() + "}";
+    }
+
+}
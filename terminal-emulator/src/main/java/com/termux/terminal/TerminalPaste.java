@@ -0,0 +1,204 @@
+package com.termux.terminal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A paste streamed to the process of a {@link TerminalSession} from a background thread.
+ * <p>
+ * {@link TerminalEmulator#paste(String)} builds and writes the whole paste at once, which blocks the calling thread
+ * until the process has read all but the last {@link TerminalSession#mTerminalToProcessIOQueue} worth of it. This
+ * instead sanitizes and encodes the text incrementally in fixed size chunks, with the same rules as
+ * {@link TerminalEmulator#paste(String)}, and writes them from its own thread as the process makes room.
+ * <p>
+ * A paste may be cancelled with {@link #cancel()} at any time. The bytes already queued are not taken back, but no
+ * more of the text is written, and if in bracketed paste mode the paste is still terminated with the end marker so
+ * that the process does not stay in its paste state.
+ * <p>
+ * Other input written to the process while a paste is in progress, like keys typed or replies of the terminal emulator
+ * to queries, is passed to {@link #deferInput(byte[], int, int)} of the last paste started instead of being written
+ * to the queue, and written by the paste after it. It then never ends up in the middle of a paste, and writing it
+ * never blocks behind a paste which fills the queue.
+ * <p>
+ * Everything written to the queue, the paste itself as well as the deferred input, is also passed to an optional
+ * {@link InputListener}, on the thread of the paste.
+ */
+public final class TerminalPaste {
+
+    /** Notified on the thread of the paste about the bytes it has written to the queue. */
+    interface InputListener {
+        void onInputWritten(byte[] data, int offset, int count);
+    }
+
+    /** How long to wait at most for the process to make room before checking for cancellation again. */
+    private static final long WRITE_TIMEOUT_MILLIS = 100;
+
+    private static final byte[] BRACKETED_PASTE_START = "\033[200~".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BRACKETED_PASTE_END = "\033[201~".getBytes(StandardCharsets.UTF_8);
+
+    private final PasteEncoder mEncoder;
+    private final boolean mBracketed;
+    private final ByteQueue mQueue;
+    private final InputListener mInputListener;
+    /** A paste started before this one which has to be finished before this one may start writing. */
+    private volatile TerminalPaste mPrevious;
+
+    private final CountDownLatch mFinishedLatch = new CountDownLatch(1);
+    private volatile boolean mCancelled;
+    private volatile boolean mFinished;
+    private volatile long mBytesWritten;
+
+    /** Input to write after the paste, see {@link #deferInput(byte[], int, int)}. Guarded by this. */
+    private byte[] mDeferredInput;
+    private int mDeferredInputLength;
+
+    TerminalPaste(CharSequence text, boolean bracketed, ByteQueue queue, TerminalPaste previous) {
+        this(text, bracketed, queue, previous, null);
+    }
+
+    TerminalPaste(CharSequence text, boolean bracketed, ByteQueue queue, TerminalPaste previous, InputListener inputListener) {
+        mEncoder = new PasteEncoder(text);
+        mBracketed = bracketed;
+        mQueue = queue;
+        mInputListener = inputListener;
+        mPrevious = previous;
+    }
+
+    /** Start writing the paste on a new thread with the specified name. */
+    void start(String threadName) {
+        new Thread(threadName) {
+            @Override
+            public void run() {
+                TerminalPaste.this.run();
+            }
+        }.start();
+    }
+
+    void run() {
+        try {
+            TerminalPaste previous = mPrevious;
+            if (previous != null) {
+                previous.awaitFinished();
+                mPrevious = null;
+            }
+            if (mCancelled) return;
+
+            if (mBracketed && !writeChunk(BRACKETED_PASTE_START, BRACKETED_PASTE_START.length, false)) return;
+
+            final byte[] chunk = new byte[PasteEncoder.CHUNK_SIZE];
+            while (!mCancelled) {
+                int chunkLength = mEncoder.encode(chunk);
+                if (chunkLength == 0) break;
+                if (!writeChunk(chunk, chunkLength, true)) return;
+            }
+
+            if (mBracketed) writeChunk(BRACKETED_PASTE_END, BRACKETED_PASTE_END.length, false);
+        } finally {
+            writeDeferredInput();
+            mFinishedLatch.countDown();
+        }
+    }
+
+    /**
+     * Write the input deferred while the paste was in progress, until there is none left and the paste is finished, after
+     * which input is written directly to the queue again.
+     */
+    private void writeDeferredInput() {
+        while (true) {
+            final byte[] input;
+            final int length;
+            synchronized (this) {
+                if (mDeferredInputLength == 0) {
+                    mFinished = true;
+                    return;
+                }
+                input = mDeferredInput;
+                length = mDeferredInputLength;
+                mDeferredInput = null;
+                mDeferredInputLength = 0;
+            }
+            // Dropped if the queue has been closed as the process exited, like input written directly would be.
+            if (mQueue.write(input, 0, length)) {
+                mBytesWritten += length;
+                if (mInputListener != null) mInputListener.onInputWritten(input, 0, length);
+            }
+        }
+    }
+
+    /**
+     * Defer input to the process until after this paste, so that it does not end up in the middle of it. Called on the
+     * main thread, which it never blocks.
+     *
+     * @return false if the paste is already finished, in which case the input has to be written directly instead.
+     */
+    synchronized boolean deferInput(byte[] data, int offset, int count) {
+        if (mFinished) return false;
+        if (mDeferredInput == null) {
+            mDeferredInput = new byte[Math.max(count, 64)];
+        } else if (mDeferredInputLength + count > mDeferredInput.length) {
+            mDeferredInput = Arrays.copyOf(mDeferredInput, Math.max(mDeferredInputLength + count, mDeferredInput.length * 2));
+        }
+        System.arraycopy(data, offset, mDeferredInput, mDeferredInputLength, count);
+        mDeferredInputLength += count;
+        return true;
+    }
+
+    /**
+     * Write a chunk to the queue, waiting for the process to make room as needed. If cancellable, stop at the
+     * first character boundary after the paste has been cancelled.
+     *
+     * @return false if the queue was closed as the process exited, true otherwise.
+     */
+    private boolean writeChunk(byte[] chunk, int length, boolean cancellable) {
+        int offset = 0;
+        while (offset < length) {
+            // Do not leave a partial UTF-8 sequence behind, continuation bytes look like 10xxxxxx.
+            if (cancellable && mCancelled && (chunk[offset] & 0b11000000) != 0b10000000) return true;
+
+            int written = mQueue.write(chunk, offset, length - offset, WRITE_TIMEOUT_MILLIS);
+            if (written < 0) return false;
+            if (written > 0 && mInputListener != null) mInputListener.onInputWritten(chunk, offset, written);
+            offset += written;
+            mBytesWritten += written;
+        }
+        return true;
+    }
+
+    /** Stop writing the paste, and any paste it is waiting for, as soon as possible. */
+    public void cancel() {
+        mCancelled = true;
+        TerminalPaste previous = mPrevious;
+        if (previous != null) previous.cancel();
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * If the paste has been completely written, cancelled or aborted due to the process exiting, and the input deferred
+     * meanwhile has been written after it.
+     */
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /** The number of bytes written to the process so far, including bracketed paste markers and deferred input. */
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    /** Block until the paste is finished. */
+    public void awaitFinished() {
+        while (true) {
+            try {
+                mFinishedLatch.await();
+                return;
+            } catch (InterruptedException e) {
+                // Ignore.
+            }
+        }
+    }
+
+}
@@ -15,13 +15,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A terminal session, consisting of a process coupled to a terminal interface.
  * <p>
  * The subprocess will be executed by the constructor, and when the size is made known by a call to
- * {@link #updateSize(int, int)} terminal emulation will begin and threads will be spawned to handle the subprocess I/O.
+ * {@link #updateSize(int, int)} terminal emulation will begin and the subprocess I/O will be handled by the shared
+ * {@link TerminalIoReactor} thread, or by threads spawned for the session if it is not available.
  * All terminal emulation and callback methods will be performed on the main thread.
  * <p>
  * The child process may be exited forcefully by using the {@link #finishIfRunning()} method.
@@ -30,8 +33,48 @@ import java.util.UUID;
  */
 public final class TerminalSession extends TerminalOutput {
 
-    private static final int MSG_NEW_INPUT = 1;
+    static final int MSG_NEW_INPUT = 1;
     private static final int MSG_PROCESS_EXITED = 4;
+    private static final int MSG_TRIM_OUTPUT_QUEUE = 5;
+    private static final int MSG_RELEASE_ALT_BUFFER = 6;
+    static final int MSG_DISCARD_OUTPUT = 7;
+    static final int MSG_RECORD_PASTED_INPUT = 8;
+
+    /**
+     * The initial size of {@link #mProcessToTerminalIOQueue}, which is enough for interactive use. The queue grows up to
+     * {@link #OUTPUT_QUEUE_MAX_SIZE} while the process outputs faster than the terminal emulator processes it, and is
+     * trimmed back once no output has been processed for {@link #OUTPUT_QUEUE_TRIM_DELAY_MILLIS}, so that idle sessions
+     * do not hold on to large buffers. With zero-copy output, the chunks {@link #mProcessToTerminalChunks} keeps for reuse
+     * are released then instead.
+     */
+    private static final int OUTPUT_QUEUE_INITIAL_SIZE = 4096;
+    private static final int OUTPUT_QUEUE_MAX_SIZE = 64 * 1024;
+    private static final long OUTPUT_QUEUE_TRIM_DELAY_MILLIS = 1000;
+
+    /**
+     * The time after leaving the alternate screen buffer at which it is released, see
+     * {@link TerminalEmulator#releaseAlternateBuffer()}, so that it is reused when a program like a pager or an editor
+     * is quickly started again, but not kept by idle sessions.
+     */
+    private static final long ALT_BUFFER_RELEASE_DELAY_MILLIS = 30_000;
+
+    /**
+     * The maximum time the main thread processes output before it yields to other messages, like input events and frame
+     * callbacks, so that a process flooding output does not make the app unresponsive.
+     */
+    private static final long OUTPUT_PROCESSING_SLICE_NANOS = 4_000_000;
+
+    /** The amount of output read ahead of the emulator with {@link #setZeroCopyOutput(boolean)}. */
+    private static final int OUTPUT_CHUNK_QUEUE_CAPACITY = 4 * TerminalIoReactor.MAX_READ_SIZE;
+
+    /**
+     * The bytes per cell of the screen to still process of the output discarded on interrupt, see
+     * {@link #setFlushOutputOnInterrupt(boolean)}, which allows for multi-byte characters and some escape sequences.
+     */
+    private static final int DISCARDED_OUTPUT_TAIL_BYTES_PER_CELL = 4;
+
+    private static final int INITIAL_INPUT_BATCH_BUFFER_SIZE = 256;
+    private static final int MAX_RETAINED_INPUT_BATCH_BUFFER_SIZE = 16 * 1024;
 
     public final String mHandle = UUID.randomUUID().toString();
 
@@ -41,7 +84,22 @@ public final class TerminalSession extends TerminalOutput {
      * A queue written to from a separate thread when the process outputs, and read by main thread to process by
      * terminal emulator.
      */
-    final ByteQueue mProcessToTerminalIOQueue = new ByteQueue(4096);
+    final ByteQueue mProcessToTerminalIOQueue = new ByteQueue(OUTPUT_QUEUE_INITIAL_SIZE, OUTPUT_QUEUE_MAX_SIZE);
+    /**
+     * The queue of chunks the process output is read into instead of {@link #mProcessToTerminalIOQueue} if enabled with
+     * {@link #setZeroCopyOutput(boolean)}, which are then processed by the terminal emulator in place.
+     */
+    private ChunkQueue mProcessToTerminalChunks;
+    private boolean mZeroCopyOutput;
+    /** Buffer the main thread reads from {@link #mProcessToTerminalIOQueue} into. */
+    private final byte[] mReceiveBuffer = new byte[4 * 1024];
+    /**
+     * If a {@link #MSG_NEW_INPUT} message is pending, so that output only causes one message at a time instead of one for
+     * every read, which would all be queued before any input event if the main thread is busy.
+     */
+    final AtomicBoolean mOutputMessagePending = new AtomicBoolean();
+    /** The time slice of processing output, see {@link #OUTPUT_PROCESSING_SLICE_NANOS}. Only changed by tests. */
+    long mOutputProcessingSliceNanos = OUTPUT_PROCESSING_SLICE_NANOS;
     /**
      * A queue written to from the main thread due to user interaction, and read by another thread which forwards by
      * writing to the {@link #mTerminalFileDescriptor}.
@@ -49,6 +107,40 @@ public final class TerminalSession extends TerminalOutput {
     final ByteQueue mTerminalToProcessIOQueue = new ByteQueue(4096);
     /** Buffer to write translate code points into utf8 before writing to mTerminalToProcessIOQueue */
     private final byte[] mUtf8InputBuffer = new byte[5];
+    /**
+     * Buffer collecting bytes written while an input batch is active, see {@link #beginInputBatch()}.
+     * Reused between batches and grown as needed.
+     */
+    private byte[] mInputBatchBuffer = new byte[INITIAL_INPUT_BATCH_BUFFER_SIZE];
+    /** The number of bytes pending in {@link #mInputBatchBuffer}. */
+    private int mInputBatchLength;
+    /** The nesting depth of {@link #beginInputBatch()} calls, input is batched while positive. */
+    private int mInputBatchDepth;
+
+    /** See {@link #setFlushOutputOnInterrupt(boolean)}. Read by the threads doing the I/O of the process. */
+    private volatile boolean mFlushOutputOnInterrupt;
+
+    /** See {@link #setInputLatencyTracing(boolean)}. Read by the threads doing the I/O of the process. */
+    private volatile InputLatencyTracer mInputLatencyTracer;
+
+    /** The governor of the memory used by the emulator, if registered with {@link TerminalMemoryGovernor#register(TerminalSession)}. */
+    TerminalMemoryGovernor mMemoryGovernor;
+
+    /** See {@link #setJournal(SessionJournal)}. */
+    private SessionJournal mJournal;
+
+    /** See {@link #startRecording(File)}. Read by the threads of pastes, to only hand their input over while recording. */
+    private volatile SessionRecorder mRecorder;
+    private final Object mPastedInputLock = new Object();
+    /**
+     * The input written by pastes while recording and not recorded yet, as the {@link #mRecorder} is only used on the main
+     * thread, see {@link #recordPastedInput()}. Guarded by {@link #mPastedInputLock}.
+     */
+    private byte[] mPastedInput;
+    private int mPastedInputLength;
+
+    /** The last paste started by {@link #pasteInBackground(CharSequence)}, which may still be in progress. */
+    private TerminalPaste mPaste;
 
     /** Callback which gets notified when a session finishes or changes title. */
     TerminalSessionClient mClient;
@@ -65,6 +157,9 @@ public final class TerminalSession extends TerminalOutput {
      */
     private int mTerminalFileDescriptor;
 
+    /** The registration of {@link #mTerminalFileDescriptor} with the {@link TerminalIoReactor}, or null if not used. */
+    private TerminalIoReactor.Channel mIoChannel;
+
     /** Set by the application for user identification of session, not by terminal. */
     public String mSessionName;
 
@@ -106,9 +201,104 @@ public final class TerminalSession extends TerminalOutput {
         } else {
             JNI.setPtyWindowSize(mTerminalFileDescriptor, rows, columns);
             mEmulator.resize(columns, rows);
+            if (mJournal != null) mJournal.onResize(columns, rows);
+            if (mRecorder != null) mRecorder.recordResize(mEmulator);
         }
     }
 
+    /**
+     * Set a journal to record the output processed by the terminal emulator in, until the process exits. If the journal
+     * contains the output of a previous session, like one of an app process which has been killed, the emulator is
+     * restored from it with the modes reset, so that the new process starts below the previous output. Only has an
+     * effect if called before the emulator is initialized by the first {@link #updateSize(int, int)}.
+     */
+    public void setJournal(SessionJournal journal) {
+        mJournal = journal;
+    }
+
+    /** The journal set by {@link #setJournal(SessionJournal)}, or null if none. */
+    public SessionJournal getJournal() {
+        return mJournal;
+    }
+
+    /**
+     * Start recording the output processed by the terminal emulator, the input written to the process and the resizes
+     * with their times in a file, to be replayed by {@link TerminalReplay}, replacing a recording in progress. The
+     * recording starts with a snapshot of the emulator, and stops when the process exits. Must be called on the main
+     * thread.
+     *
+     * @return The recorder, to check for errors after the recording has been stopped.
+     */
+    public SessionRecorder startRecording(File file) {
+        stopRecording();
+        mRecorder = new SessionRecorder(file);
+        return mRecorder;
+    }
+
+    /** Stop the recording started by {@link #startRecording(File)}, if any. Must be called on the main thread. */
+    public void stopRecording() {
+        if (mRecorder == null) return;
+        recordPastedInput();
+        mRecorder.stop();
+        mRecorder = null;
+    }
+
+    /**
+     * Set whether the process output should be read directly into chunks which are processed by the terminal emulator in
+     * place, instead of being copied through {@link #mProcessToTerminalIOQueue}. Reads then grow from 4 KB up to 64 KB
+     * while the process is streaming output. Only has an effect if called before the emulator is initialized by the first
+     * {@link #updateSize(int, int)}, and if the {@link TerminalIoReactor} is available.
+     */
+    public void setZeroCopyOutput(boolean zeroCopyOutput) {
+        mZeroCopyOutput = zeroCopyOutput;
+    }
+
+    /**
+     * Set whether output not processed yet should be discarded when the interrupt character, normally Ctrl+C, is written
+     * to the process. After interrupting a process flooding output, like a cat of a huge file, the prompt is then shown
+     * right away instead of after all the output already read from the process, and all the output still buffered by
+     * the pty, has been processed. Only the last screen's worth of the discarded output is processed, followed by a line
+     * with the number of bytes discarded.
+     * <p>
+     * The output is discarded once the interrupt character has actually been written to the pty, which interrupts the
+     * process, by the thread writing it, so that output the process writes until then is discarded as well.
+     */
+    public void setFlushOutputOnInterrupt(boolean flushOutputOnInterrupt) {
+        mFlushOutputOnInterrupt = flushOutputOnInterrupt;
+    }
+
+    /**
+     * Set whether the latency from key events in the view until the frame showing the echo of the process is traced, see
+     * {@link InputLatencyTracer}. Tracing again after disabling it starts with a new tracer.
+     */
+    public void setInputLatencyTracing(boolean enabled) {
+        if (enabled == (mInputLatencyTracer != null)) return;
+        mInputLatencyTracer = enabled ? new InputLatencyTracer() : null;
+    }
+
+    /** The tracer of the latency of key events if enabled with {@link #setInputLatencyTracing(boolean)}, otherwise null. */
+    public InputLatencyTracer getInputLatencyTracer() {
+        return mInputLatencyTracer;
+    }
+
+    /**
+     * Get a snapshot of the statistics of the output of the process on its way to the terminal emulator: the bytes read,
+     * the high-water mark and capacity of the output queue, the time reading was held up by a full queue, and how long
+     * output waited in the queue until processed.
+     */
+    public QueueStats getOutputQueueStats() {
+        return mProcessToTerminalChunks != null ? mProcessToTerminalChunks.getStats() : mProcessToTerminalIOQueue.getStats();
+    }
+
+    /**
+     * The counters and latency histograms of the terminal emulator, from the bytes it parsed to the time from output of
+     * the process being queued until it was rendered, or null if the emulator has not been initialized yet. Must only be
+     * accessed on the main thread.
+     */
+    public TerminalMetrics getMetrics() {
+        return (mEmulator == null) ? null : mEmulator.getMetrics();
+    }
+
     /** The terminal title as set through escape sequences or null if none set. */
     public String getTitle() {
         return (mEmulator == null) ? null : mEmulator.getTitle();
@@ -121,13 +311,130 @@ public final class TerminalSession extends TerminalOutput {
      * @param rows    The number of rows in the terminal window.
      */
     public void initializeEmulator(int columns, int rows) {
-        mEmulator = new TerminalEmulator(this, columns, rows, mTranscriptRows, mClient);
+        TerminalEmulator restoredEmulator = mJournal != null ? mJournal.restore(this, mClient) : null;
+        if (restoredEmulator != null) {
+            mEmulator = restoredEmulator;
+            mJournal.start(mEmulator);
+            mEmulator.resize(columns, rows);
+            mJournal.onResize(columns, rows);
+            // Leave the alternate screen and reset the modes of the previous process, and start the new one on a new line.
+            byte[] resetModes = "\033[?1047l\033[!p".getBytes(StandardCharsets.UTF_8);
+            appendToEmulator(resetModes, 0, resetModes.length);
+            if (mEmulator.getCursorCol() != 0) appendToEmulator(new byte[]{'\r', '\n'}, 0, 2);
+            mJournal.flush();
+        } else {
+            mEmulator = new TerminalEmulator(this, columns, rows, mTranscriptRows, mClient);
+            if (mJournal != null) mJournal.start(mEmulator);
+        }
 
         int[] processId = new int[1];
         mTerminalFileDescriptor = JNI.createSubprocess(mShellPath, mCwd, mArgs, mEnv, processId, rows, columns);
         mShellPid = processId[0];
         mClient.setTerminalShellPid(this, mShellPid);
 
+        TerminalIoReactor ioReactor = TerminalIoReactor.getInstance(mClient);
+        if (ioReactor != null) {
+            TerminalIoReactor.ChannelListener channelListener = new TerminalIoReactor.ChannelListener() {
+                @Override
+                public void onOutputAvailable() {
+                    InputLatencyTracer tracer = mInputLatencyTracer;
+                    if (tracer != null) tracer.onOutputRead(System.nanoTime());
+                    postOutputMessage();
+                }
+
+                @Override
+                public void onInputWritten(byte[] data, int offset, int count) {
+                    TerminalSession.this.onInputWritten(data, offset, count);
+                }
+
+                @Override
+                public void onProcessExited(int exitStatus) {
+                    mMainThreadHandler.sendMessage(mMainThreadHandler.obtainMessage(MSG_PROCESS_EXITED, exitStatus));
+                }
+            };
+            if (mZeroCopyOutput) {
+                mProcessToTerminalChunks = new ChunkQueue(OUTPUT_CHUNK_QUEUE_CAPACITY);
+                mIoChannel = ioReactor.register(mTerminalFileDescriptor, mShellPid, mProcessToTerminalChunks, mTerminalToProcessIOQueue, channelListener);
+            } else {
+                mIoChannel = ioReactor.register(mTerminalFileDescriptor, mShellPid, mProcessToTerminalIOQueue, mTerminalToProcessIOQueue, channelListener);
+            }
+        } else {
+            startIoThreads();
+        }
+
+        // The reactor reaps the process if possible, otherwise a thread has to wait for it.
+        if (mIoChannel == null || !mIoChannel.isWatchingProcess()) {
+            new Thread("TermSessionWaiter[pid=" + mShellPid + "]") {
+                @Override
+                public void run() {
+                    int processExitCode = JNI.waitFor(mShellPid);
+                    mMainThreadHandler.sendMessage(mMainThreadHandler.obtainMessage(MSG_PROCESS_EXITED, processExitCode));
+                }
+            }.start();
+        }
+
+    }
+
+    /** Have the main thread process the output, unless it is already going to. May be called from any thread. */
+    void postOutputMessage() {
+        if (mOutputMessagePending.compareAndSet(false, true)) mMainThreadHandler.sendEmptyMessage(MSG_NEW_INPUT);
+    }
+
+    /**
+     * Process queued output with the terminal emulator until the deadline has passed, or at most the capacity of the
+     * output queue so that output coming in meanwhile is left for later. Must be called on the main thread.
+     *
+     * @return The number of bytes processed.
+     */
+    int processOutput(long deadlineNanos) {
+        // Pasted input comes before the output it makes the process echo, even if its message is still queued.
+        if (mRecorder != null) recordPastedInput();
+        int bytesProcessed = 0;
+        final long queuedNanos;
+        if (mProcessToTerminalChunks != null) {
+            final ChunkQueue chunks = mProcessToTerminalChunks;
+            queuedNanos = chunks.getOldestAddedNanos();
+            int chunkCount = chunks.getQueuedChunkCount();
+            for (int i = 0; i < chunkCount; i++) {
+                ChunkQueue.Chunk chunk = chunks.poll();
+                appendToEmulator(chunk.mData, 0, chunk.mLength);
+                bytesProcessed += chunk.mLength;
+                chunks.recycle(chunk);
+                if (System.nanoTime() >= deadlineNanos) break;
+            }
+        } else {
+            queuedNanos = mProcessToTerminalIOQueue.getOldestWrittenNanos();
+            final int bytesToProcess = mProcessToTerminalIOQueue.getCapacity();
+            int bytesRead;
+            while (bytesProcessed < bytesToProcess && (bytesRead = mProcessToTerminalIOQueue.read(mReceiveBuffer, false)) > 0) {
+                appendToEmulator(mReceiveBuffer, 0, bytesRead);
+                bytesProcessed += bytesRead;
+                if (System.nanoTime() >= deadlineNanos) break;
+            }
+        }
+        // For the latency until the view has rendered the output, see TerminalMetrics#getQueueToRenderLatency().
+        if (bytesProcessed > 0 && queuedNanos != 0) mEmulator.getMetrics().onOutputQueued(queuedNanos);
+        InputLatencyTracer tracer = mInputLatencyTracer;
+        if (bytesProcessed > 0 && tracer != null) tracer.onOutputParsed(System.nanoTime());
+        if (mJournal != null) mJournal.flush();
+        if (mRecorder != null) mRecorder.flush();
+        return bytesProcessed;
+    }
+
+    /** Append output to the emulator, recording it in the {@link #mJournal} and by the {@link #mRecorder} first if set. */
+    private void appendToEmulator(byte[] data, int offset, int length) {
+        if (mJournal != null) mJournal.append(data, offset, length);
+        if (mRecorder != null) mRecorder.recordOutput(mEmulator, data, offset, length);
+        mEmulator.append(data, offset, length);
+    }
+
+    /** If there is queued output not processed yet by {@link #processOutput(long)}. */
+    boolean hasPendingOutput() {
+        return mProcessToTerminalChunks != null ? mProcessToTerminalChunks.getQueuedChunkCount() > 0 : !mProcessToTerminalIOQueue.isEmpty();
+    }
+
+    /** Start a reader and a writer thread for the pty, used if the {@link TerminalIoReactor} is not available. */
+    private void startIoThreads() {
         final FileDescriptor terminalFileDescriptorWrapped = wrapFileDescriptor(mTerminalFileDescriptor, mClient);
 
         new Thread("TermSessionInputReader[pid=" + mShellPid + "]") {
@@ -139,7 +446,9 @@ public final class TerminalSession extends TerminalOutput {
                         int read = termIn.read(buffer);
                         if (read == -1) return;
                         if (!mProcessToTerminalIOQueue.write(buffer, 0, read)) return;
-                        mMainThreadHandler.sendEmptyMessage(MSG_NEW_INPUT);
+                        InputLatencyTracer tracer = mInputLatencyTracer;
+                        if (tracer != null) tracer.onOutputRead(System.nanoTime());
+                        postOutputMessage();
                     }
                 } catch (Exception e) {
                     // Ignore, just shutting down.
@@ -156,27 +465,193 @@ public final class TerminalSession extends TerminalOutput {
                         int bytesToWrite = mTerminalToProcessIOQueue.read(buffer, true);
                         if (bytesToWrite == -1) return;
                         termOut.write(buffer, 0, bytesToWrite);
+                        onInputWritten(buffer, 0, bytesToWrite);
                     }
                 } catch (IOException e) {
                     // Ignore.
                 }
             }
         }.start();
+    }
 
-        new Thread("TermSessionWaiter[pid=" + mShellPid + "]") {
-            @Override
-            public void run() {
-                int processExitCode = JNI.waitFor(mShellPid);
-                mMainThreadHandler.sendMessage(mMainThreadHandler.obtainMessage(MSG_PROCESS_EXITED, processExitCode));
-            }
-        }.start();
+    /**
+     * Called after input has been written to the pty, on the thread writing it. If the input contains the interrupt
+     * character, the process has now been interrupted, so the output still buffered by the pty is discarded and the main
+     * thread is told to discard the queued output, see {@link #setFlushOutputOnInterrupt(boolean)}.
+     */
+    private void onInputWritten(byte[] data, int offset, int count) {
+        InputLatencyTracer tracer = mInputLatencyTracer;
+        if (tracer != null) tracer.onInputWritten(System.nanoTime());
 
+        if (mFlushOutputOnInterrupt && containsInterruptCharacter(data, offset, count)) {
+            int discardedBytes = JNI.discardPtyOutput(mTerminalFileDescriptor);
+            mMainThreadHandler.sendMessage(mMainThreadHandler.obtainMessage(MSG_DISCARD_OUTPUT, discardedBytes, 0));
+        }
     }
 
     /** Write data to the shell process. */
     @Override
     public void write(byte[] data, int offset, int count) {
-        if (mShellPid > 0) mTerminalToProcessIOQueue.write(data, offset, count);
+        if (mShellPid <= 0) return;
+        InputLatencyTracer tracer = mInputLatencyTracer;
+        if (tracer != null) tracer.onInputQueued(System.nanoTime());
+
+        if (mInputBatchDepth > 0) {
+            int requiredLength = mInputBatchLength + count;
+            if (requiredLength > mInputBatchBuffer.length)
+                mInputBatchBuffer = Arrays.copyOf(mInputBatchBuffer, Math.max(requiredLength, mInputBatchBuffer.length * 2));
+            System.arraycopy(data, offset, mInputBatchBuffer, mInputBatchLength, count);
+            mInputBatchLength = requiredLength;
+        } else {
+            queueInput(data, offset, count);
+        }
+    }
+
+    /**
+     * Write input to the {@link #mTerminalToProcessIOQueue}, or if a paste started by
+     * {@link #pasteInBackground(CharSequence)} is in progress have it written after the paste, see
+     * {@link TerminalPaste#deferInput(byte[], int, int)}. The interrupt character then cancels the paste, so that a
+     * Ctrl+C stops a long paste instead of waiting for it to finish. Deferred input is recorded once the paste has
+     * written it, so that the recording has the input in the order the process gets it.
+     */
+    private void queueInput(byte[] data, int offset, int count) {
+        final TerminalPaste paste = mPaste;
+        if (paste != null && paste.deferInput(data, offset, count)) {
+            if (containsInterruptCharacter(data, offset, count)) paste.cancel();
+            return;
+        }
+        if (mRecorder != null) {
+            recordPastedInput();
+            mRecorder.recordInput(mEmulator, data, offset, count);
+        }
+        mTerminalToProcessIOQueue.write(data, offset, count);
+    }
+
+    /**
+     * Called on the thread of a paste after it has written input to the {@link #mTerminalToProcessIOQueue}, to hand the
+     * input over to the main thread for the {@link #mRecorder} if recording.
+     */
+    private void onPasteInputWritten(byte[] data, int offset, int count) {
+        if (mRecorder == null) return;
+        final boolean first;
+        synchronized (mPastedInputLock) {
+            first = mPastedInputLength == 0;
+            if (mPastedInput == null) {
+                mPastedInput = new byte[Math.max(count, 4096)];
+            } else if (mPastedInputLength + count > mPastedInput.length) {
+                mPastedInput = Arrays.copyOf(mPastedInput, Math.max(mPastedInputLength + count, mPastedInput.length * 2));
+            }
+            System.arraycopy(data, offset, mPastedInput, mPastedInputLength, count);
+            mPastedInputLength += count;
+        }
+        if (first) mMainThreadHandler.sendEmptyMessage(MSG_RECORD_PASTED_INPUT);
+    }
+
+    /** Record the input handed over by {@link #onPasteInputWritten(byte[], int, int)}. Must be called on the main thread. */
+    void recordPastedInput() {
+        final byte[] input;
+        final int length;
+        synchronized (mPastedInputLock) {
+            if (mPastedInputLength == 0) return;
+            input = mPastedInput;
+            length = mPastedInputLength;
+            mPastedInput = null;
+            mPastedInputLength = 0;
+        }
+        if (mRecorder != null) mRecorder.recordInput(mEmulator, input, 0, length);
+    }
+
+    /** If the data contains the character which makes the pty interrupt the process. */
+    private boolean containsInterruptCharacter(byte[] data, int offset, int count) {
+        // Only look up the interrupt character, which is a control character, if there is one in the data.
+        int interruptCharacter = -2;
+        for (int i = offset; i < offset + count; i++) {
+            byte b = data[i];
+            if ((b >= 0 && b < 32) || b == 127) {
+                if (interruptCharacter == -2) interruptCharacter = JNI.getPtyInterruptCharacter(mTerminalFileDescriptor);
+                if (interruptCharacter == -1) return false;
+                if (b == interruptCharacter) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Discard the queued output, except for a screen's worth at the end which is processed without rendering in between,
+     * and show a line with the number of bytes discarded.
+     *
+     * @param alreadyDiscardedBytes The bytes discarded already before reaching the queue, to include in the number shown.
+     * @return The total number of bytes discarded.
+     */
+    long discardQueuedOutput(long alreadyDiscardedBytes) {
+        final byte[] tail = new byte[mEmulator.mRows * mEmulator.mColumns * DISCARDED_OUTPUT_TAIL_BYTES_PER_CELL];
+        int tailLength = 0;
+        long queuedBytes = 0;
+        if (mProcessToTerminalChunks != null) {
+            ChunkQueue.Chunk chunk;
+            while ((chunk = mProcessToTerminalChunks.poll()) != null) {
+                tailLength = keepTail(tail, tailLength, chunk.mData, chunk.mLength);
+                queuedBytes += chunk.mLength;
+                mProcessToTerminalChunks.recycle(chunk);
+            }
+        } else {
+            int bytesRead;
+            while ((bytesRead = mProcessToTerminalIOQueue.read(mReceiveBuffer, false)) > 0) {
+                tailLength = keepTail(tail, tailLength, mReceiveBuffer, bytesRead);
+                queuedBytes += bytesRead;
+            }
+        }
+
+        appendToEmulator(tail, 0, tailLength);
+        long discardedBytes = alreadyDiscardedBytes + queuedBytes - tailLength;
+        if (discardedBytes > 0) {
+            String marker = "[Discarded " + discardedBytes + " bytes of output]\r\n";
+            if (mEmulator.getCursorCol() != 0) marker = "\r\n" + marker;
+            byte[] markerBytes = marker.getBytes(StandardCharsets.UTF_8);
+            appendToEmulator(markerBytes, 0, markerBytes.length);
+        }
+        if (mJournal != null) mJournal.flush();
+        if (mRecorder != null) mRecorder.flush();
+        return discardedBytes;
+    }
+
+    /** Append data to the tail buffer, dropping its oldest bytes as needed, and return the new tail length. */
+    private static int keepTail(byte[] tail, int tailLength, byte[] data, int length) {
+        if (length >= tail.length) {
+            System.arraycopy(data, length - tail.length, tail, 0, tail.length);
+            return tail.length;
+        }
+        int kept = Math.min(tailLength, tail.length - length);
+        System.arraycopy(tail, tailLength - kept, tail, 0, kept);
+        System.arraycopy(data, 0, tail, kept, length);
+        return kept + length;
+    }
+
+    /**
+     * Start collecting everything written to the shell process instead of queueing it immediately,
+     * until the matching {@link #endInputBatch()} call writes it all to the process at once.
+     * <p>
+     * This is meant for the main thread writing a lot of small pieces of input in one go, like text
+     * committed by an input method, where writing every code point separately to the
+     * {@link #mTerminalToProcessIOQueue} means one lock and wake up of the writer thread per code point.
+     * Calls may be nested, and must always be paired with {@link #endInputBatch()}.
+     */
+    public void beginInputBatch() {
+        mInputBatchDepth++;
+    }
+
+    /** End an input batch started by {@link #beginInputBatch()} and write the collected input to the process. */
+    public void endInputBatch() {
+        if (mInputBatchDepth == 0) return;
+        if (--mInputBatchDepth > 0) return;
+
+        int length = mInputBatchLength;
+        mInputBatchLength = 0;
+        if (length > 0 && mShellPid > 0) queueInput(mInputBatchBuffer, 0, length);
+
+        // Do not hold on to the memory of a huge batch, like a large paste through the input method.
+        if (mInputBatchBuffer.length > MAX_RETAINED_INPUT_BATCH_BUFFER_SIZE)
+            mInputBatchBuffer = new byte[INITIAL_INPUT_BATCH_BUFFER_SIZE];
     }
 
     /** Write the Unicode code point to the terminal encoded in UTF-8. */
@@ -216,6 +691,32 @@ public final class TerminalSession extends TerminalOutput {
         write(mUtf8InputBuffer, 0, bufferPosition);
     }
 
+    /**
+     * Paste text to the process like {@link TerminalEmulator#paste(String)}, but streamed from a background thread so
+     * that the calling thread is never blocked waiting for the process to read it. Pastes are written in the order
+     * they were started, and input written while they are in progress after them, see {@link TerminalPaste}.
+     *
+     * @return The started paste, or null if the process is not running.
+     */
+    public TerminalPaste pasteInBackground(CharSequence text) {
+        if (mEmulator == null || mShellPid <= 0) return null;
+
+        TerminalPaste previous = (mPaste == null || mPaste.isFinished()) ? null : mPaste;
+        mPaste = new TerminalPaste(text, mEmulator.isBracketedPasteMode(), mTerminalToProcessIOQueue, previous, this::onPasteInputWritten);
+        mPaste.start("TermSessionPaste[pid=" + mShellPid + "]");
+        return mPaste;
+    }
+
+    /** If a paste started by {@link #pasteInBackground(CharSequence)} is still being written to the process. */
+    public boolean isPasting() {
+        return mPaste != null && !mPaste.isFinished();
+    }
+
+    /** Cancel the paste started by {@link #pasteInBackground(CharSequence)} and any pastes started before it. */
+    public void cancelPaste() {
+        if (mPaste != null) mPaste.cancel();
+    }
+
     public TerminalEmulator getEmulator() {
         return mEmulator;
     }
@@ -228,6 +729,7 @@ public final class TerminalSession extends TerminalOutput {
     /** Reset state for terminal emulator state. */
     public void reset() {
         mEmulator.reset();
+        if (mJournal != null) mJournal.onReset();
         notifyScreenUpdate();
     }
 
@@ -249,10 +751,16 @@ public final class TerminalSession extends TerminalOutput {
             mShellExitStatus = exitStatus;
         }
 
-        // Stop the reader and writer threads, and close the I/O streams
+        // Stop the reader and writer threads or the reactor channel, and close the I/O streams
         mTerminalToProcessIOQueue.close();
         mProcessToTerminalIOQueue.close();
-        JNI.close(mTerminalFileDescriptor);
+        if (mProcessToTerminalChunks != null) mProcessToTerminalChunks.close();
+        if (mIoChannel != null) {
+            // The reactor closes the file descriptor once it is no longer polled, so that it can not be reused before.
+            mIoChannel.close();
+        } else {
+            JNI.close(mTerminalFileDescriptor);
+        }
     }
 
     @Override
@@ -336,17 +844,44 @@ public final class TerminalSession extends TerminalOutput {
     @SuppressLint("HandlerLeak")
     class MainThreadHandler extends Handler {
 
-        final byte[] mReceiveBuffer = new byte[4 * 1024];
-
         @Override
         public void handleMessage(Message msg) {
-            int bytesRead = mProcessToTerminalIOQueue.read(mReceiveBuffer, false);
-            if (bytesRead > 0) {
-                mEmulator.append(mReceiveBuffer, bytesRead);
+            if (msg.what == MSG_TRIM_OUTPUT_QUEUE) {
+                if (mProcessToTerminalChunks != null) {
+                    mProcessToTerminalChunks.trim();
+                } else {
+                    mProcessToTerminalIOQueue.trim();
+                }
+                return;
+            } else if (msg.what == MSG_RELEASE_ALT_BUFFER) {
+                if (mEmulator != null) mEmulator.releaseAlternateBuffer();
+                return;
+            } else if (msg.what == MSG_RECORD_PASTED_INPUT) {
+                recordPastedInput();
+                return;
+            } else if (msg.what == MSG_DISCARD_OUTPUT) {
+                // The process may have exited meanwhile, in which case its remaining output has been processed already.
+                if (mShellPid > 0) {
+                    discardQueuedOutput(msg.arg1);
+                    notifyScreenUpdate();
+                }
+                return;
+            }
+
+            if (msg.what == MSG_NEW_INPUT) mOutputMessagePending.set(false);
+            final boolean processExited = msg.what == MSG_PROCESS_EXITED;
+            // Process the remaining output at once if the process has exited, as it is no longer coming in.
+            long deadlineNanos = processExited ? Long.MAX_VALUE : System.nanoTime() + mOutputProcessingSliceNanos;
+            if (processOutput(deadlineNanos) > 0) {
                 notifyScreenUpdate();
+                scheduleOutputQueueTrim();
+                scheduleAltBufferRelease();
+                if (mMemoryGovernor != null) mMemoryGovernor.onOutputProcessed();
             }
+            // Yield to the other messages, like input events and frames, and continue afterwards.
+            if (!processExited && hasPendingOutput()) postOutputMessage();
 
-            if (msg.what == MSG_PROCESS_EXITED) {
+            if (processExited) {
                 int exitCode = (Integer) msg.obj;
                 cleanupResources(exitCode);
 
@@ -361,13 +896,34 @@ public final class TerminalSession extends TerminalOutput {
                 exitDescription += " - press Enter]";
 
                 byte[] bytesToWrite = exitDescription.getBytes(StandardCharsets.UTF_8);
-                mEmulator.append(bytesToWrite, bytesToWrite.length);
+                appendToEmulator(bytesToWrite, 0, bytesToWrite.length);
+                if (mJournal != null) mJournal.close();
+                stopRecording();
                 notifyScreenUpdate();
 
                 mClient.onSessionFinished(TerminalSession.this);
             }
         }
 
+        /** Trim the output queue once the output has stopped for a while, if it has grown or keeps chunks for reuse. */
+        private void scheduleOutputQueueTrim() {
+            if (mProcessToTerminalChunks != null ? mProcessToTerminalChunks.getPooledChunkCount() == 0
+                : mProcessToTerminalIOQueue.getCapacity() == OUTPUT_QUEUE_INITIAL_SIZE) return;
+            removeMessages(MSG_TRIM_OUTPUT_QUEUE);
+            sendEmptyMessageDelayed(MSG_TRIM_OUTPUT_QUEUE, OUTPUT_QUEUE_TRIM_DELAY_MILLIS);
+        }
+
+        /**
+         * Release the alternate screen buffer a while after it has been left, counted from the last output processed
+         * since. If it is switched to again meanwhile, the release does nothing and is scheduled again after it has been
+         * left again.
+         */
+        private void scheduleAltBufferRelease() {
+            if (!mEmulator.hasUnusedAlternateBuffer()) return;
+            removeMessages(MSG_RELEASE_ALT_BUFFER);
+            sendEmptyMessageDelayed(MSG_RELEASE_ALT_BUFFER, ALT_BUFFER_RELEASE_DELAY_MILLIS);
+        }
+
     }
 
 }
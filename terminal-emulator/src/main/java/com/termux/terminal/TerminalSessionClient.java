@@ -6,9 +6,9 @@ import androidx.annotation.Nullable;
 /**
  * The interface for communication between {@link TerminalSession} and its client. It is used to
  * send callbacks to the client when {@link TerminalSession} changes or for sending other
- * back data to the client like logs.
+ * back data to the client like logs, see {@link TerminalEmulatorClient}.
  */
-public interface TerminalSessionClient {
+public interface TerminalSessionClient extends TerminalEmulatorClient {
 
     void onTextChanged(@NonNull TerminalSession changedSession);
 
@@ -24,28 +24,6 @@ public interface TerminalSessionClient {
 
     void onColorsChanged(@NonNull TerminalSession session);
 
-    void onTerminalCursorStateChange(boolean state);
-
     void setTerminalShellPid(@NonNull TerminalSession session, int pid);
 
-
-
-    Integer getTerminalCursorStyle();
-
-
-
-    void logError(String tag, String message);
-
-    void logWarn(String tag, String message);
-
-    void logInfo(String tag, String message);
-
-    void logDebug(String tag, String message);
-
-    void logVerbose(String tag, String message);
-
-    void logStackTraceWithMessage(String tag, String message, Exception e);
-
-    void logStackTrace(String tag, Exception e);
-
 }
@@ -1,11 +1,16 @@
 #include <dirent.h>
+#include <errno.h>
 #include <fcntl.h>
 #include <jni.h>
 #include <signal.h>
 #include <stdio.h>
 #include <stdlib.h>
 #include <string.h>
+#include <stdint.h>
+#include <sys/epoll.h>
+#include <sys/eventfd.h>
 #include <sys/ioctl.h>
+#include <sys/syscall.h>
 #include <sys/wait.h>
 #include <termios.h>
 #include <unistd.h>
@@ -194,6 +199,22 @@ JNIEXPORT void JNICALL Java_com_termux_terminal_JNI_setPtyUTF8Mode(JNIEnv* TERMU
     }
 }
 
+JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_getPtyInterruptCharacter(JNIEnv* TERMUX_UNUSED(env), jclass TERMUX_UNUSED(clazz), jint fd)
+{
+    struct termios tios;
+    if (tcgetattr(fd, &tios) != 0 || (tios.c_lflag & ISIG) == 0 || tios.c_cc[VINTR] == _POSIX_VDISABLE) return -1;
+    return tios.c_cc[VINTR];
+}
+
+JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_discardPtyOutput(JNIEnv* TERMUX_UNUSED(env), jclass TERMUX_UNUSED(clazz), jint fd)
+{
+    // The output of the process is the input of the master side.
+    int available = 0;
+    if (ioctl(fd, FIONREAD, &available) != 0) available = 0;
+    tcflush(fd, TCIFLUSH);
+    return available;
+}
+
 JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_waitFor(JNIEnv* TERMUX_UNUSED(env), jclass TERMUX_UNUSED(clazz), jint pid)
 {
     int status;
@@ -208,7 +229,107 @@ JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_waitFor(JNIEnv* TERMUX_UNUSE
     }
 }
 
+JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_pidfdOpen(JNIEnv* TERMUX_UNUSED(env), jclass TERMUX_UNUSED(clazz), jint pid)
+{
+#ifndef __NR_pidfd_open
+// Not defined by older NDK headers, but the same number on all architectures since Linux 5.3.
+#define __NR_pidfd_open 434
+#endif
+    int fd = (int) syscall(__NR_pidfd_open, (pid_t) pid, 0);
+    if (fd < 0) return -errno;
+    // Close the file descriptor in exec'd processes like other ones of the app, pidfd_open(2) does so from Linux 5.10 on.
+    fcntl(fd, F_SETFD, FD_CLOEXEC);
+    return fd;
+}
+
 JNIEXPORT void JNICALL Java_com_termux_terminal_JNI_close(JNIEnv* TERMUX_UNUSED(env), jclass TERMUX_UNUSED(clazz), jint fileDescriptor)
 {
     close(fileDescriptor);
 }
+
+JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_epollCreate(JNIEnv* env, jclass TERMUX_UNUSED(clazz))
+{
+    int epoll_fd = epoll_create1(EPOLL_CLOEXEC);
+    if (epoll_fd < 0) return throw_runtime_exception(env, "epoll_create1() failed");
+    return epoll_fd;
+}
+
+JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_epollCtl(JNIEnv* TERMUX_UNUSED(env), jclass TERMUX_UNUSED(clazz), jint epollFd, jint operation, jint fd, jint events)
+{
+    struct epoll_event event = { .events = (uint32_t) events, .data.fd = fd };
+    return epoll_ctl(epollFd, operation, fd, &event) == 0 ? 0 : -errno;
+}
+
+JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_epollWait(JNIEnv* env, jclass TERMUX_UNUSED(clazz), jint epollFd, jlongArray readyEvents, jint timeoutMillis)
+{
+    struct epoll_event events[64];
+    jsize max_events = (*env)->GetArrayLength(env, readyEvents);
+    if (max_events > 64) max_events = 64;
+
+    int count = epoll_wait(epollFd, events, max_events, timeoutMillis);
+    if (count < 0) return errno == EINTR ? 0 : -errno;
+
+    // Pack each ready file descriptor and its events into one long to avoid creating objects.
+    jlong packed[64];
+    for (int i = 0; i < count; i++) packed[i] = ((jlong) events[i].data.fd << 32) | (jlong) events[i].events;
+    (*env)->SetLongArrayRegion(env, readyEvents, 0, count, packed);
+    return count;
+}
+
+JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_eventfdCreate(JNIEnv* env, jclass TERMUX_UNUSED(clazz))
+{
+    int fd = eventfd(0, EFD_CLOEXEC | EFD_NONBLOCK);
+    if (fd < 0) return throw_runtime_exception(env, "eventfd() failed");
+    return fd;
+}
+
+JNIEXPORT void JNICALL Java_com_termux_terminal_JNI_eventfdSignal(JNIEnv* TERMUX_UNUSED(env), jclass TERMUX_UNUSED(clazz), jint fd)
+{
+    uint64_t value = 1;
+    while (write(fd, &value, sizeof(value)) < 0 && errno == EINTR);
+}
+
+JNIEXPORT void JNICALL Java_com_termux_terminal_JNI_eventfdClear(JNIEnv* TERMUX_UNUSED(env), jclass TERMUX_UNUSED(clazz), jint fd)
+{
+    uint64_t value;
+    while (read(fd, &value, sizeof(value)) < 0 && errno == EINTR);
+}
+
+JNIEXPORT void JNICALL Java_com_termux_terminal_JNI_setNonBlocking(JNIEnv* env, jclass TERMUX_UNUSED(clazz), jint fd)
+{
+    int flags = fcntl(fd, F_GETFL);
+    if (flags < 0 || fcntl(fd, F_SETFL, flags | O_NONBLOCK) < 0) throw_runtime_exception(env, "fcntl() failed to set O_NONBLOCK");
+}
+
+JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_read(JNIEnv* env, jclass TERMUX_UNUSED(clazz), jint fd, jbyteArray buffer, jint offset, jint length)
+{
+    // The array is pinned instead of copied, nothing may block or call back into the VM until it is released.
+    jbyte* bytes = (*env)->GetPrimitiveArrayCritical(env, buffer, NULL);
+    if (!bytes) return throw_runtime_exception(env, "JNI call GetPrimitiveArrayCritical(buffer, &isCopy) failed");
+    ssize_t bytes_read;
+    do {
+        bytes_read = read(fd, bytes + offset, (size_t) length);
+    } while (bytes_read < 0 && errno == EINTR);
+    int read_errno = errno;
+    (*env)->ReleasePrimitiveArrayCritical(env, buffer, bytes, 0);
+
+    if (bytes_read > 0) return (jint) bytes_read;
+    if (bytes_read < 0 && (read_errno == EAGAIN || read_errno == EWOULDBLOCK)) return 0;
+    // End of file, or EIO from the pty master once all slave file descriptors are closed.
+    return -1;
+}
+
+JNIEXPORT jint JNICALL Java_com_termux_terminal_JNI_write(JNIEnv* env, jclass TERMUX_UNUSED(clazz), jint fd, jbyteArray buffer, jint offset, jint length)
+{
+    jbyte* bytes = (*env)->GetPrimitiveArrayCritical(env, buffer, NULL);
+    if (!bytes) return throw_runtime_exception(env, "JNI call GetPrimitiveArrayCritical(buffer, &isCopy) failed");
+    ssize_t bytes_written;
+    do {
+        bytes_written = write(fd, bytes + offset, (size_t) length);
+    } while (bytes_written < 0 && errno == EINTR);
+    int write_errno = errno;
+    (*env)->ReleasePrimitiveArrayCritical(env, buffer, bytes, JNI_ABORT);
+
+    if (bytes_written >= 0) return (jint) bytes_written;
+    return (write_errno == EAGAIN || write_errno == EWOULDBLOCK) ? 0 : -1;
+}
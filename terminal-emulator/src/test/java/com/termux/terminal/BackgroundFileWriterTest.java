@@ -0,0 +1,36 @@
+package com.termux.terminal;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+
+public class BackgroundFileWriterTest extends TestCase {
+
+	public void testBytesArePendingUntilWritten() throws Exception {
+		BackgroundFileWriter writer = new BackgroundFileWriter(100);
+		CountDownLatch writerBlocked = new CountDownLatch(1);
+		BackgroundFileWriter.executeOnWriterThread(() -> {
+			try {
+				writerBlocked.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		StringBuilder written = new StringBuilder();
+		try {
+			writer.write(new byte[60], bytes -> written.append(bytes.length).append(' '));
+			assertFalse(writer.isFallingBehind(40));
+			assertTrue(writer.isFallingBehind(41));
+			writer.write(new byte[40], bytes -> written.append(bytes.length));
+			assertTrue(writer.isFallingBehind(1));
+		} finally {
+			writerBlocked.countDown();
+		}
+
+		writer.awaitWritten();
+		assertEquals("60 40", written.toString());
+		assertFalse(writer.isFallingBehind(100));
+	}
+
+}
@@ -51,4 +51,69 @@ public class ByteQueueTest extends TestCase {
 		assertEquals(0, q.read(new byte[128], false));
 	}
 
+	public void testStateListener() {
+		ByteQueue q = new ByteQueue(4);
+		final int[] calls = new int[1];
+		q.setStateListener(() -> calls[0]++);
+
+		// Becoming non-empty.
+		assertEquals(2, q.write(new byte[]{1, 2}, 0, 2, 0));
+		assertEquals(1, calls[0]);
+		assertEquals(2, q.write(new byte[]{3, 4, 5}, 0, 3, 0));
+		assertEquals(1, calls[0]);
+
+		// Stopping to be full.
+		byte[] arr = new byte[1];
+		assertEquals(1, q.read(arr, false));
+		assertEquals(2, calls[0]);
+		assertEquals(1, q.read(arr, false));
+		assertEquals(2, calls[0]);
+	}
+
+	public void testGrowAndTrim() {
+		ByteQueue q = new ByteQueue(4, 16);
+		assertEquals(4, q.getCapacity());
+		// Wrap around before growing.
+		assertEquals(3, q.write(new byte[]{1, 2, 3}, 0, 3, 0));
+		byte[] arr = new byte[2];
+		assertEquals(2, q.read(arr, false));
+
+		assertEquals(6, q.write(new byte[]{4, 5, 6, 7, 8, 9}, 0, 6, 0));
+		assertEquals(8, q.getCapacity());
+		assertEquals(9, q.ensureWritable(100));
+		assertEquals(16, q.getCapacity());
+		assertTrue(q.write(new byte[]{10, 11, 12, 13, 14, 15, 16, 17, 18}, 0, 9));
+		assertEquals(16, q.getCapacity());
+		assertEquals(0, q.ensureWritable(1));
+
+		// Not trimmed while the stored bytes do not fit.
+		q.trim();
+		assertEquals(16, q.getCapacity());
+
+		arr = new byte[13];
+		assertEquals(13, q.read(arr, false));
+		assertArrayEquals(new byte[]{3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15}, arr);
+		q.trim();
+		assertEquals(4, q.getCapacity());
+		arr = new byte[3];
+		assertEquals(3, q.read(arr, false));
+		assertArrayEquals(new byte[]{16, 17, 18}, arr);
+	}
+
+	public void testStats() {
+		ByteQueue q = new ByteQueue(4, 8);
+		assertEquals(8, q.write(new byte[10], 0, 10, 0));
+		assertEquals(0, q.write(new byte[2], 0, 2, 0));
+		q.read(new byte[3], false);
+		q.read(new byte[10], false);
+
+		QueueStats stats = q.getStats();
+		assertEquals(8, stats.getBytesWritten());
+		assertEquals(8, stats.getCapacity());
+		assertEquals(8, stats.getHighWaterMark());
+		assertEquals(2, stats.getDrainCount());
+		assertTrue(stats.getBlockedNanos() > 0);
+		assertTrue(stats.getMaxDrainLatencyNanos() >= stats.getAverageDrainLatencyNanos());
+	}
+
 }
@@ -0,0 +1,83 @@
+package com.termux.terminal;
+
+import junit.framework.TestCase;
+
+public class ChunkQueueTest extends TestCase {
+
+	private static ChunkQueue.Chunk fill(ChunkQueue q, int size, int length) {
+		ChunkQueue.Chunk chunk = q.obtain(size);
+		assertEquals(size, chunk.mData.length);
+		chunk.mData[0] = (byte) length;
+		chunk.mLength = length;
+		return chunk;
+	}
+
+	public void testOrderAndCapacity() {
+		ChunkQueue q = new ChunkQueue(10);
+		assertNull(q.poll());
+		assertTrue(q.add(fill(q, 8, 4)));
+		assertFalse(q.isFull());
+		assertTrue(q.add(fill(q, 8, 6)));
+		assertTrue(q.isFull());
+		assertEquals(2, q.getQueuedChunkCount());
+
+		ChunkQueue.Chunk first = q.poll();
+		assertEquals(4, first.mLength);
+		assertEquals(4, first.mData[0]);
+		assertFalse(q.isFull());
+		assertEquals(6, q.poll().mLength);
+		assertNull(q.poll());
+	}
+
+	public void testRecycledChunksAreReused() {
+		ChunkQueue q = new ChunkQueue(100);
+		ChunkQueue.Chunk chunk = fill(q, 8, 8);
+		q.add(chunk);
+		q.recycle(q.poll());
+		assertSame(chunk, q.obtain(8));
+		assertEquals(0, chunk.mLength);
+
+		// A chunk of another size is not reused.
+		q.recycle(chunk);
+		assertNotSame(chunk, q.obtain(16));
+		assertNotSame(chunk, q.obtain(8));
+	}
+
+	public void testTrimReleasesRecycledChunks() {
+		ChunkQueue q = new ChunkQueue(100);
+		ChunkQueue.Chunk chunk = fill(q, 8, 8);
+		q.recycle(chunk);
+		assertEquals(1, q.getPooledChunkCount());
+
+		q.trim();
+		assertEquals(0, q.getPooledChunkCount());
+		assertNotSame(chunk, q.obtain(8));
+	}
+
+	public void testStateListener() {
+		ChunkQueue q = new ChunkQueue(10);
+		final int[] calls = new int[1];
+		q.setStateListener(() -> calls[0]++);
+
+		q.add(fill(q, 8, 8));
+		q.add(fill(q, 8, 8));
+		q.add(fill(q, 8, 8));
+		assertEquals(0, calls[0]);
+		q.poll();
+		assertEquals(0, calls[0]);
+		// Stopping to be full.
+		q.poll();
+		assertEquals(1, calls[0]);
+		q.poll();
+		assertEquals(1, calls[0]);
+	}
+
+	public void testClose() {
+		ChunkQueue q = new ChunkQueue(10);
+		q.add(fill(q, 8, 8));
+		q.close();
+		assertNull(q.poll());
+		assertFalse(q.add(fill(q, 8, 8)));
+	}
+
+}
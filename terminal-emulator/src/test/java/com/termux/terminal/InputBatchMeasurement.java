@@ -0,0 +1,52 @@
+package com.termux.terminal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures committing 100 KB of text one code point at a time, with and without an input batch like the input method
+ * commit path uses. Only runs on demand, see {@link Measurements}.
+ */
+public class InputBatchMeasurement {
+
+	private static final int ROUNDS = 5;
+
+	@Before
+	public void setUp() {
+		Measurements.assumeEnabled();
+	}
+
+	@Test
+	public void measureCommit100KB() throws InterruptedException {
+		String text = TerminalSessionInputBatchTest.createText(50 * 1024);
+		byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+		assertTrue(expected.length >= 100 * 1024);
+
+		// The first rounds warm up the JIT.
+		for (int round = 0; round < ROUNDS; round++) {
+			long unbatchedTime = measureCommit(text, expected.length, false);
+			long batchedTime = measureCommit(text, expected.length, true);
+			System.out.println("InputBatchMeasurement: committing " + expected.length + " bytes: per code point "
+				+ (unbatchedTime / 1000) + " us, batched " + (batchedTime / 1000) + " us");
+		}
+	}
+
+	/** Commit the text to a session and wait until its input has been drained, returning how long that took. */
+	private static long measureCommit(String text, int expectedLength, boolean batched) throws InterruptedException {
+		TerminalSessionInputBatchTest.DrainedSession drained = new TerminalSessionInputBatchTest.DrainedSession();
+		long start = System.nanoTime();
+		if (batched) drained.session.beginInputBatch();
+		TerminalSessionInputBatchTest.writeCodePoints(drained.session, text);
+		if (batched) drained.session.endInputBatch();
+		byte[] written = drained.awaitWritten(expectedLength);
+		long time = System.nanoTime() - start;
+		assertEquals(text, new String(written, StandardCharsets.UTF_8));
+		return time;
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.termux.terminal;
+
+import android.os.Message;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures how long keystrokes wait for the main thread while yes floods the output, with the output processed in time
+ * slices by the {@link TerminalSession.MainThreadHandler} of the session, and with one unbounded message per read like
+ * before. Only runs on demand, see {@link Measurements}, and needs the native library.
+ */
+public class InputLatencyMeasurement {
+
+	private static final int KEYSTROKES = 200;
+	private static final long KEYSTROKE_INTERVAL_MILLIS = 5;
+
+	/** Runs posted tasks one after another on a single thread, like the looper of the main thread. */
+	private static final class TestLooper extends Thread {
+		private final LinkedBlockingQueue<Runnable> mTasks = new LinkedBlockingQueue<>();
+		private volatile boolean mQuit;
+
+		TestLooper() {
+			super("TestLooper");
+		}
+
+		void post(Runnable task) {
+			mTasks.add(task);
+		}
+
+		void quit() throws InterruptedException {
+			mQuit = true;
+			post(() -> {});
+			join();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!mQuit) mTasks.take().run();
+			} catch (InterruptedException e) {
+				// Quit.
+			}
+		}
+	}
+
+	/**
+	 * Delivers the output messages of a session to its handler on a {@link TestLooper}, as the handler does not dispatch
+	 * anything on a desktop JVM.
+	 */
+	private static final class OutputMessages implements Runnable {
+		private final TerminalSession mSession;
+		private final TestLooper mLooper;
+		private final AtomicBoolean mPosted = new AtomicBoolean();
+
+		OutputMessages(TerminalSession session, TestLooper looper) {
+			mSession = session;
+			mLooper = looper;
+		}
+
+		/** Post an output message like {@link TerminalSession#postOutputMessage()} does. */
+		void postOutputMessage() {
+			if (mSession.mOutputMessagePending.compareAndSet(false, true)) post();
+		}
+
+		private void post() {
+			if (mPosted.compareAndSet(false, true)) mLooper.post(this);
+		}
+
+		@Override
+		public void run() {
+			mPosted.set(false);
+			Message message = new Message();
+			message.what = TerminalSession.MSG_NEW_INPUT;
+			mSession.mMainThreadHandler.handleMessage(message);
+			// The handler posted another message if output remains.
+			if (mSession.mOutputMessagePending.get()) post();
+		}
+	}
+
+	@Before
+	public void setUp() {
+		Measurements.assumeEnabled();
+		TerminalIoReactorTest.assumeNativeLibrary();
+	}
+
+	@Test
+	public void measureTypingWhileFlooding() throws Exception {
+		TerminalIoReactor reactor = TerminalIoReactor.getInstance(null);
+
+		long[] unsliced = measureKeystrokeLatencies(reactor, false);
+		long[] sliced = measureKeystrokeLatencies(reactor, true);
+		System.out.println("InputLatencyMeasurement: keystroke latency while flooding, one message per read: " + describe(unsliced)
+			+ ", time sliced: " + describe(sliced));
+	}
+
+	private static String describe(long[] latencies) {
+		Arrays.sort(latencies);
+		long total = 0;
+		for (long latency : latencies) total += latency;
+		return String.format("average %.2f ms, p99 %.2f ms, max %.2f ms", total / 1e6 / latencies.length,
+			latencies[latencies.length * 99 / 100] / 1e6, latencies[latencies.length - 1] / 1e6);
+	}
+
+	/** Type while yes floods the output, returning how long each keystroke waited for the main thread. */
+	private static long[] measureKeystrokeLatencies(TerminalIoReactor reactor, final boolean sliced) throws Exception {
+		final TerminalSession session = new TerminalSession("/bin/sh", "/", new String[0], new String[0], null,
+			new TerminalSessionLatencyTest.CountingClient());
+		session.mEmulator = new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), 80, 24, 1000, null);
+		int[] pid = new int[1];
+		int fd = JNI.createSubprocess("/bin/sh", "/", new String[]{"sh", "-c", "exec yes"}, new String[]{"PATH=/bin:/usr/bin"}, pid, 24, 80);
+		session.mShellPid = pid[0];
+
+		final TestLooper looper = new TestLooper();
+		final OutputMessages outputMessages = new OutputMessages(session, looper);
+		TerminalIoReactor.Channel channel = reactor.register(fd, 0, session.mProcessToTerminalIOQueue, session.mTerminalToProcessIOQueue,
+			new TerminalIoReactor.ChannelListener() {
+				@Override
+				public void onOutputAvailable() {
+					if (sliced) {
+						outputMessages.postOutputMessage();
+					} else {
+						looper.post(() -> session.processOutput(Long.MAX_VALUE));
+					}
+				}
+
+				@Override
+				public void onProcessExited(int exitStatus) {
+				}
+			});
+		looper.start();
+
+		final long[] latencies = new long[KEYSTROKES];
+		final CountDownLatch typed = new CountDownLatch(KEYSTROKES);
+		try {
+			// Let the flood start.
+			Thread.sleep(100);
+			for (int i = 0; i < KEYSTROKES; i++) {
+				final int keystroke = i;
+				final long postedNanos = System.nanoTime();
+				looper.post(() -> {
+					latencies[keystroke] = System.nanoTime() - postedNanos;
+					session.writeCodePoint(false, 'x');
+					typed.countDown();
+				});
+				Thread.sleep(KEYSTROKE_INTERVAL_MILLIS);
+			}
+			assertTrue(typed.await(60, TimeUnit.SECONDS));
+		} finally {
+			channel.close();
+			session.mProcessToTerminalIOQueue.close();
+			session.mTerminalToProcessIOQueue.close();
+			looper.quit();
+			JNI.waitFor(pid[0]);
+		}
+		return latencies;
+	}
+
+}
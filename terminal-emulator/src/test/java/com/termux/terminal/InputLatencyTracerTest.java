@@ -0,0 +1,133 @@
+package com.termux.terminal;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+
+public class InputLatencyTracerTest extends TestCase {
+
+	private static final long MICROS = 1000;
+
+	private final InputLatencyTracer mTracer = new InputLatencyTracer();
+
+	/** Trace a keystroke through all stages, with the key event at the given time and the stages the given times later. */
+	private void traceKeystroke(long keyEventNanos, long written, long read, long parsed, long rendered) {
+		mTracer.onKeyEvent(keyEventNanos);
+		mTracer.onInputQueued(keyEventNanos + 1);
+		mTracer.onInputWritten(keyEventNanos + written);
+		mTracer.onOutputRead(keyEventNanos + read);
+		mTracer.onOutputParsed(keyEventNanos + parsed);
+		mTracer.onFrameRendered(keyEventNanos + rendered);
+	}
+
+	public void testStagesOfKeystroke() {
+		traceKeystroke(1000 * MICROS, 40 * MICROS, 1040 * MICROS, 3000 * MICROS, 9000 * MICROS);
+		assertEquals(1, mTracer.getCompletedTraces());
+		assertEquals(0, mTracer.getAbandonedTraces());
+		assertEquals(40 * MICROS, mTracer.getKeyToWrite().getMaxNanos());
+		assertEquals(1000 * MICROS, mTracer.getWriteToRead().getMaxNanos());
+		assertEquals(1960 * MICROS, mTracer.getReadToParse().getMaxNanos());
+		assertEquals(6000 * MICROS, mTracer.getParseToRender().getMaxNanos());
+		assertEquals(9000 * MICROS, mTracer.getKeyToRender().getMaxNanos());
+		assertTrue(mTracer.toString().endsWith("\n#0: written +40, read +1040, parsed +3000, rendered +9000 us"));
+	}
+
+	public void testStagesOnlyAdvanceInOrder() {
+		// Input written without a key event, like a paste, is not traced.
+		mTracer.onInputQueued(1000 * MICROS);
+		mTracer.onInputWritten(1001 * MICROS);
+		mTracer.onOutputRead(1002 * MICROS);
+		mTracer.onOutputParsed(1003 * MICROS);
+		mTracer.onFrameRendered(1004 * MICROS);
+		assertEquals(0, mTracer.getCompletedTraces());
+
+		mTracer.onKeyEvent(2000 * MICROS);
+		mTracer.onInputQueued(2001 * MICROS);
+		// Output read or frames rendered before the input has been written are not the echo.
+		mTracer.onOutputRead(2002 * MICROS);
+		mTracer.onOutputParsed(2003 * MICROS);
+		mTracer.onFrameRendered(2004 * MICROS);
+		assertEquals(0, mTracer.getCompletedTraces());
+		mTracer.onInputWritten(2010 * MICROS);
+		mTracer.onFrameRendered(2011 * MICROS);
+		mTracer.onOutputRead(2020 * MICROS);
+		mTracer.onFrameRendered(2021 * MICROS);
+		mTracer.onOutputParsed(2030 * MICROS);
+		mTracer.onFrameRendered(2040 * MICROS);
+		assertEquals(1, mTracer.getCompletedTraces());
+		assertEquals(40 * MICROS, mTracer.getKeyToRender().getMaxNanos());
+		assertEquals(10 * MICROS, mTracer.getWriteToRead().getMaxNanos());
+	}
+
+	public void testKeyEventWithoutInputIsNotTraced() {
+		mTracer.onKeyEvent(1000 * MICROS);
+		mTracer.onInputQueued(1000 * MICROS + InputLatencyTracer.KEY_EVENT_EXPIRY_NANOS + 1);
+		mTracer.onInputWritten(1000 * MICROS + InputLatencyTracer.KEY_EVENT_EXPIRY_NANOS + 2);
+		assertEquals(0, mTracer.getCompletedTraces());
+		assertEquals(0, mTracer.getAbandonedTraces());
+
+		// The last key event before the input counts.
+		mTracer.onKeyEvent(2000 * MICROS);
+		traceKeystroke(3000 * MICROS, 1, 2, 3, 5 * MICROS);
+		assertEquals(5 * MICROS, mTracer.getKeyToRender().getMaxNanos());
+	}
+
+	public void testNewKeyEventAbandonsTrace() {
+		mTracer.onKeyEvent(1000 * MICROS);
+		mTracer.onInputQueued(1000 * MICROS);
+		mTracer.onInputWritten(1010 * MICROS);
+		traceKeystroke(2000 * MICROS, 10 * MICROS, 20 * MICROS, 30 * MICROS, 40 * MICROS);
+		assertEquals(1, mTracer.getAbandonedTraces());
+		assertEquals(1, mTracer.getCompletedTraces());
+		assertEquals(40 * MICROS, mTracer.getKeyToRender().getMaxNanos());
+	}
+
+	public void testInputNotEchoedTimesOut() {
+		mTracer.onKeyEvent(1000 * MICROS);
+		mTracer.onInputQueued(1000 * MICROS);
+		mTracer.onInputWritten(1010 * MICROS);
+		mTracer.onOutputRead(1010 * MICROS + InputLatencyTracer.ECHO_TIMEOUT_NANOS + 1);
+		mTracer.onOutputParsed(1010 * MICROS + InputLatencyTracer.ECHO_TIMEOUT_NANOS + 2);
+		mTracer.onFrameRendered(1010 * MICROS + InputLatencyTracer.ECHO_TIMEOUT_NANOS + 3);
+		assertEquals(0, mTracer.getCompletedTraces());
+
+		traceKeystroke(InputLatencyTracer.ECHO_TIMEOUT_NANOS * 2, 1, 2, 3, 4);
+		assertEquals(1, mTracer.getAbandonedTraces());
+		assertEquals(1, mTracer.getCompletedTraces());
+	}
+
+	public void testRecentTracesAreKept() {
+		final int traces = InputLatencyTracer.RECENT_TRACES + 6;
+		for (int i = 0; i < traces; i++) traceKeystroke((i + 1) * 1000 * MICROS, MICROS, 2 * MICROS, 3 * MICROS, (i + 4) * MICROS);
+		assertEquals(traces, mTracer.getCompletedTraces());
+		assertEquals(traces, mTracer.getKeyToRender().getCount());
+		String dump = mTracer.toString();
+		assertFalse(dump.contains("\n#5: "));
+		assertTrue(dump.contains("\n#6: written +1, read +2, parsed +3, rendered +10 us\n"));
+		assertTrue(dump.endsWith("\n#" + (traces - 1) + ": written +1, read +2, parsed +3, rendered +" + (traces + 3) + " us"));
+	}
+
+	public void testSessionTracesKeystroke() {
+		TerminalSession session = new TerminalSession("/bin/sh", "/", new String[0], new String[0], null, null);
+		session.mEmulator = new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), 80, 24, 1000, null);
+		session.mShellPid = 1;
+		assertNull(session.getInputLatencyTracer());
+		session.setInputLatencyTracing(true);
+		InputLatencyTracer tracer = session.getInputLatencyTracer();
+
+		tracer.onKeyEvent(System.nanoTime());
+		session.write(new byte[]{'a'}, 0, 1);
+		// What the reader and writer of the pty do.
+		tracer.onInputWritten(System.nanoTime());
+		byte[] echo = "a".getBytes(StandardCharsets.UTF_8);
+		assertTrue(session.mProcessToTerminalIOQueue.write(echo, 0, echo.length));
+		tracer.onOutputRead(System.nanoTime());
+		session.processOutput(Long.MAX_VALUE);
+		tracer.onFrameRendered(System.nanoTime());
+		assertEquals(1, tracer.getCompletedTraces());
+
+		session.setInputLatencyTracing(false);
+		assertNull(session.getInputLatencyTracer());
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.termux.terminal;
+
+import org.junit.Assume;
+
+/**
+ * Gates the *Measurement classes, which print how fast the terminal is instead of testing it. They are kept out of the
+ * normal test run and only run with the {@link #PROPERTY} system property set, see the build.gradle of the module.
+ */
+final class Measurements {
+
+	static final String PROPERTY = "termux.measurements";
+
+	private Measurements() {
+	}
+
+	/** Skip the calling measurement unless measurements have been asked for. */
+	static void assumeEnabled() {
+		Assume.assumeTrue("Measurements only run with -D" + PROPERTY + "=true", Boolean.getBoolean(PROPERTY));
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.termux.terminal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Measures the output throughput of yes and of cat of a big file through the {@link TerminalIoReactor}, with and without
+ * zero-copy, and with and without processing by a terminal emulator. Only runs on demand, see {@link Measurements}, and
+ * needs the native library.
+ */
+public class OutputThroughputMeasurement {
+
+	private static final int SIZE = 16 * 1024 * 1024;
+
+	@Before
+	public void setUp() {
+		Measurements.assumeEnabled();
+		TerminalIoReactorTest.assumeNativeLibrary();
+	}
+
+	@Test
+	public void measureOutputThroughput() throws Exception {
+		TerminalIoReactor reactor = TerminalIoReactor.getInstance(null);
+		// The terminal translates "\n" to "\r\n".
+		final long yesOutputBytes = SIZE / 2 * 3;
+
+		File bigFile = File.createTempFile("termux-throughput", ".txt");
+		try {
+			byte[] line = new byte[80];
+			Arrays.fill(line, (byte) 'x');
+			line[79] = '\n';
+			try (FileOutputStream out = new FileOutputStream(bigFile)) {
+				for (int i = 0; i < SIZE / line.length; i++) out.write(line);
+			}
+			final long catOutputBytes = SIZE / line.length * (line.length + 1);
+
+			for (boolean emulate : new boolean[]{false, true}) {
+				for (boolean zeroCopy : new boolean[]{false, true}) {
+					measureThroughput(reactor, zeroCopy, emulate, "yes", yesOutputBytes, "/bin/sh", "-c", "yes | head -c " + SIZE);
+					measureThroughput(reactor, zeroCopy, emulate, "cat bigfile", catOutputBytes, "/bin/cat", bigFile.getAbsolutePath());
+				}
+			}
+		} finally {
+			//noinspection ResultOfMethodCallIgnored
+			bigFile.delete();
+		}
+	}
+
+	private static void measureThroughput(TerminalIoReactor reactor, boolean zeroCopy, boolean emulate, String name,
+										  long expectedBytes, String... args) throws Exception {
+		TerminalEmulator emulator = emulate ? new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), 80, 24, 1000, null) : null;
+		long start = System.nanoTime();
+		TerminalIoReactorTest.TestProcess process = new TerminalIoReactorTest.TestProcess(reactor, zeroCopy, args);
+		try {
+			appendOutputTo(process, emulator, expectedBytes);
+			long nanos = System.nanoTime() - start;
+			assertEquals(0, process.awaitExit());
+			QueueStats stats = zeroCopy ? process.mOutputChunks.getStats() : process.mOutputQueue.getStats();
+			assertEquals(expectedBytes, stats.getBytesWritten());
+			System.out.println(String.format("OutputThroughputMeasurement: %s %s%s: %.1f MB/s, %s", name,
+				zeroCopy ? "zero-copy" : "copying", emulate ? " with emulator" : "", expectedBytes * 1000.0 / nanos, stats));
+		} finally {
+			process.close();
+		}
+	}
+
+	/**
+	 * Process the output with a terminal emulator like the main thread of a session does, or only take it if the emulator
+	 * is null, until the expected number of bytes have been processed.
+	 */
+	private static void appendOutputTo(TerminalIoReactorTest.TestProcess process, TerminalEmulator emulator, long expectedBytes) {
+		final byte[] buffer = new byte[4096];
+		long processedBytes = 0;
+		long deadline = System.currentTimeMillis() + 60_000;
+		while (processedBytes < expectedBytes) {
+			int processed = 0;
+			if (process.mOutputChunks != null) {
+				ChunkQueue.Chunk chunk = process.mOutputChunks.poll();
+				if (chunk != null) {
+					if (emulator != null) emulator.append(chunk.mData, 0, chunk.mLength);
+					processed = chunk.mLength;
+					process.mOutputChunks.recycle(chunk);
+				}
+			} else {
+				processed = Math.max(0, process.mOutputQueue.read(buffer, false));
+				if (emulator != null) emulator.append(buffer, processed);
+			}
+			if (processed == 0) {
+				if (System.currentTimeMillis() > deadline) fail("Only " + processedBytes + " of " + expectedBytes + " bytes");
+				Thread.yield();
+			}
+			processedBytes += processed;
+		}
+		assertEquals(expectedBytes, processedBytes);
+	}
+
+}
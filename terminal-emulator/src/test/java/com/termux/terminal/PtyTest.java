@@ -0,0 +1,31 @@
+package com.termux.terminal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/** Tests the pty functions of {@link JNI}, which are skipped if the native library can not be loaded. */
+public class PtyTest {
+
+	@Before
+	public void setUp() {
+		TerminalIoReactorTest.assumeNativeLibrary();
+	}
+
+	@Test
+	public void testInterruptCharacterOfNewPty() {
+		int[] pid = new int[1];
+		int fd = JNI.createSubprocess("/bin/sh", "/", new String[]{"sh", "-c", "exit 0"}, new String[]{"PATH=/bin:/usr/bin"}, pid, 24, 80);
+		try {
+			assertEquals(0, JNI.waitFor(pid[0]));
+			// The terminal attributes belong to the pty and so are kept after the process has exited.
+			assertEquals(3, JNI.getPtyInterruptCharacter(fd));
+			JNI.discardPtyOutput(fd);
+			assertEquals(0, JNI.discardPtyOutput(fd));
+		} finally {
+			JNI.close(fd);
+		}
+	}
+
+}
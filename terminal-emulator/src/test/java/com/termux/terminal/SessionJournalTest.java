@@ -0,0 +1,295 @@
+package com.termux.terminal;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+public class SessionJournalTest extends TestCase {
+
+	private static final int COLUMNS = 80;
+	private static final int ROWS = 24;
+	private static final int SEGMENT_BYTES = 16 * 1024;
+
+	private File mDirectory;
+
+	@Override
+	protected void setUp() throws IOException {
+		mDirectory = File.createTempFile("journal", "");
+		assertTrue(mDirectory.delete());
+	}
+
+	@Override
+	protected void tearDown() {
+		File[] files = mDirectory.listFiles();
+		if (files != null) for (File file : files) file.delete();
+		mDirectory.delete();
+	}
+
+	private static TerminalEmulator createEmulator() {
+		return new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), COLUMNS, ROWS, 1000, null);
+	}
+
+	private SessionJournal startJournal(TerminalEmulator emulator, int segmentBytes) {
+		SessionJournal journal = new SessionJournal(mDirectory, segmentBytes);
+		journal.start(emulator);
+		return journal;
+	}
+
+	private static void append(SessionJournal journal, TerminalEmulator emulator, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		journal.append(bytes, 0, bytes.length);
+		emulator.append(bytes, 0, bytes.length);
+	}
+
+	private static byte[] writeSnapshot(TerminalEmulator emulator) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TerminalSnapshot.write(emulator, Channels.newChannel(bytes));
+		return bytes.toByteArray();
+	}
+
+	private void assertRestored(TerminalEmulator expected) {
+		TerminalEmulator restored = new SessionJournal(mDirectory, SEGMENT_BYTES).restore(new TerminalTestCase.MockTerminalOutput(), null);
+		assertNotNull(restored);
+		assertSameContent(expected, restored);
+	}
+
+	/**
+	 * Compare the rows, cursor and modes of two emulators. Their snapshots are not compared, as the rows of a history
+	 * which has been hibernated in a checkpoint store all their columns while the original rows only store the columns
+	 * written to.
+	 */
+	private static void assertSameContent(TerminalEmulator expected, TerminalEmulator actual) {
+		TerminalBuffer expectedScreen = expected.getScreen(), actualScreen = actual.getScreen();
+		assertEquals(expectedScreen.getTranscriptText(), actualScreen.getTranscriptText());
+		assertEquals(expectedScreen.getActiveTranscriptRows(), actualScreen.getActiveTranscriptRows());
+		for (int row = -expectedScreen.getActiveTranscriptRows(); row < expected.mRows; row++) {
+			assertEquals(expectedScreen.getSelectedText(0, row, expected.mColumns, row, false),
+				actualScreen.getSelectedText(0, row, actual.mColumns, row, false));
+			assertEquals("Line wrap of row " + row, expectedScreen.getLineWrap(row), actualScreen.getLineWrap(row));
+			for (int column = 0; column < expected.mColumns; column++)
+				assertEquals("Style of row " + row, expectedScreen.getStyleAt(row, column), actualScreen.getStyleAt(row, column));
+		}
+		assertEquals(expected.getCursorRow(), actual.getCursorRow());
+		assertEquals(expected.getCursorCol(), actual.getCursorCol());
+		assertEquals(expected.getCursorStyle(), actual.getCursorStyle());
+		assertEquals(expected.getTitle(), actual.getTitle());
+		assertEquals(expected.isAlternateBufferActive(), actual.isAlternateBufferActive());
+		assertEquals(expected.isCursorKeysApplicationMode(), actual.isCursorKeysApplicationMode());
+		assertEquals(expected.isKeypadApplicationMode(), actual.isKeypadApplicationMode());
+		assertEquals(expected.isBracketedPasteMode(), actual.isBracketedPasteMode());
+	}
+
+	public void testRestoreFromEmptyDirectory() {
+		assertNull(new SessionJournal(mDirectory, SEGMENT_BYTES).restore(new TerminalTestCase.MockTerminalOutput(), null));
+	}
+
+	public void testRestoreReplaysOutputAfterCheckpoint() throws Exception {
+		TerminalEmulator emulator = createEmulator();
+		SessionJournal journal = startJournal(emulator, SEGMENT_BYTES);
+		for (int i = 0; i < 20000; i++) {
+			append(journal, emulator, "\033[3" + (i % 8) + "mline " + i + "\033[0m 你好\r\n");
+			if (i % 100 == 0) journal.flush();
+		}
+		append(journal, emulator, "\033]0;title\007$ ");
+		journal.close();
+		journal.awaitWritten();
+
+		assertNull(journal.getError());
+		assertEquals(0, journal.getDroppedBytes());
+		assertTrue(journal.getCheckpointCount() > 2);
+		// Only the last segment and the one before are kept.
+		assertEquals(4, mDirectory.list().length);
+		// The checkpoints are bounded relative to the output, except for the last one which has not been followed by enough yet.
+		long lastCheckpointBytes = 0;
+		for (File file : mDirectory.listFiles()) if (file.getName().endsWith(".checkpoint")) lastCheckpointBytes = Math.max(lastCheckpointBytes, file.length());
+		assertTrue(journal.getCheckpointBytesWritten() <= journal.getOutputBytesWritten() / SessionJournal.MIN_OUTPUT_TO_CHECKPOINT_RATIO + lastCheckpointBytes);
+		assertRestored(emulator);
+	}
+
+	public void testSegmentStartsBetweenSequences() throws Exception {
+		TerminalEmulator emulator = createEmulator();
+		SessionJournal journal = startJournal(emulator, 100);
+		append(journal, emulator, "first\r\n");
+		// Fill the segment, and end the output in the middle of an escape sequence and then of a UTF-8 sequence.
+		append(journal, emulator, new String(new char[40000]).replace('\0', 'x') + "\r\n\033[3");
+		append(journal, emulator, "1mred");
+		byte[] utf8 = "你".getBytes(StandardCharsets.UTF_8);
+		journal.append(utf8, 0, 1);
+		emulator.append(utf8, 0, 1);
+		journal.append(utf8, 1, 2);
+		emulator.append(utf8, 1, 2);
+		journal.close();
+		journal.awaitWritten();
+
+		assertEquals(2, journal.getCheckpointCount());
+		assertRestored(emulator);
+	}
+
+	public void testResizeStartsSegment() throws Exception {
+		TerminalEmulator emulator = createEmulator();
+		SessionJournal journal = startJournal(emulator, SEGMENT_BYTES);
+		append(journal, emulator, "before resize\r\n");
+		emulator.resize(40, 10);
+		journal.onResize(40, 10);
+		append(journal, emulator, "after resize");
+		journal.close();
+		journal.awaitWritten();
+
+		assertEquals(2, journal.getCheckpointCount());
+		assertRestored(emulator);
+	}
+
+	public void testResizeInSequenceStartsSegmentAfterIt() throws Exception {
+		TerminalEmulator emulator = createEmulator();
+		SessionJournal journal = startJournal(emulator, SEGMENT_BYTES);
+		append(journal, emulator, "before resize\r\n\033[3");
+		emulator.resize(40, 10);
+		journal.onResize(40, 10);
+		append(journal, emulator, "1mafter resize");
+		journal.close();
+		journal.awaitWritten();
+
+		assertEquals(2, journal.getCheckpointCount());
+		assertRestored(emulator);
+	}
+
+	public void testResetStartsSegment() throws Exception {
+		TerminalEmulator emulator = createEmulator();
+		SessionJournal journal = startJournal(emulator, SEGMENT_BYTES);
+		append(journal, emulator, "\033[31mbefore reset\r\n\033[?7l");
+		emulator.reset();
+		journal.onReset();
+		append(journal, emulator, "after reset");
+		journal.close();
+		journal.awaitWritten();
+
+		assertEquals(2, journal.getCheckpointCount());
+		assertRestored(emulator);
+	}
+
+	public void testCheckpointsAreTakenOnWriterThread() throws Exception {
+		CountDownLatch writerBlocked = new CountDownLatch(1);
+		BackgroundFileWriter.executeOnWriterThread(() -> {
+			try {
+				writerBlocked.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		TerminalEmulator emulator = createEmulator();
+		SessionJournal journal;
+		try {
+			journal = startJournal(emulator, SEGMENT_BYTES);
+			for (int i = 0; i < 20000; i++) {
+				append(journal, emulator, "\033[3" + (i % 8) + "mline " + i + "\033[0m\r\n");
+				if (i % 1000 == 0) journal.flush();
+			}
+			journal.close();
+			// Neither the first checkpoint nor the ones of the full segments have been taken by the main thread.
+			assertEquals(0, journal.getCheckpointCount());
+			assertEquals(0, journal.getCheckpointBytesWritten());
+		} finally {
+			writerBlocked.countDown();
+		}
+		journal.awaitWritten();
+
+		assertNull(journal.getError());
+		assertTrue(journal.getCheckpointCount() > 2);
+		assertRestored(emulator);
+	}
+
+	public void testRestoredJournalIsContinued() throws Exception {
+		TerminalEmulator emulator = createEmulator();
+		SessionJournal journal = startJournal(emulator, SEGMENT_BYTES);
+		for (int i = 0; i < 1000; i++) append(journal, emulator, "previous " + i + "\r\n");
+		append(journal, emulator, "\033[3");
+		journal.close();
+		journal.awaitWritten();
+
+		journal = new SessionJournal(mDirectory, SEGMENT_BYTES);
+		emulator = journal.restore(new TerminalTestCase.MockTerminalOutput(), null);
+		assertNotNull(emulator);
+		journal.start(emulator);
+		emulator.resize(60, 20);
+		journal.onResize(60, 20);
+		for (int i = 0; i < 1000; i++) append(journal, emulator, "1mnext " + i + "\r\n");
+		journal.close();
+		journal.awaitWritten();
+
+		assertNull(journal.getError());
+		assertTrue(journal.getCheckpointCount() > 0);
+		assertRestored(emulator);
+	}
+
+	public void testJournalStopsWhenWriterFallsBehind() throws Exception {
+		TerminalEmulator emulator = createEmulator();
+		SessionJournal journal = startJournal(emulator, SEGMENT_BYTES);
+		append(journal, emulator, "start\r\n");
+		journal.flush();
+		journal.awaitWritten();
+		TerminalEmulator expected = TerminalSnapshot.read(Channels.newChannel(new ByteArrayInputStream(writeSnapshot(emulator))),
+			new TerminalTestCase.MockTerminalOutput(), null);
+
+		CountDownLatch writerBlocked = new CountDownLatch(1);
+		BackgroundFileWriter.executeOnWriterThread(() -> {
+			try {
+				writerBlocked.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		try {
+			byte[] line = "0123456789012345678901234567890123456789\r\n".getBytes(StandardCharsets.UTF_8);
+			int lines = 3 * SessionJournal.MAX_PENDING_BYTES / line.length;
+			for (int i = 0; i < lines; i++) {
+				journal.append(line, 0, line.length);
+				emulator.append(line, 0, line.length);
+				journal.flush();
+			}
+			assertNotNull(journal.getError());
+			assertTrue(journal.getDroppedBytes() >= SessionJournal.MAX_PENDING_BYTES);
+		} finally {
+			writerBlocked.countDown();
+		}
+		append(journal, emulator, "end");
+		journal.close();
+		journal.awaitWritten();
+
+		// The journal can still be restored up to where it stopped.
+		TerminalEmulator restored = new SessionJournal(mDirectory, SEGMENT_BYTES).restore(new TerminalTestCase.MockTerminalOutput(), null);
+		assertNotNull(restored);
+		assertSameContent(expected, restored);
+	}
+
+	public void testDeleteRemovesJournal() throws Exception {
+		TerminalEmulator emulator = createEmulator();
+		SessionJournal journal = startJournal(emulator, SEGMENT_BYTES);
+		append(journal, emulator, "output\r\n");
+		journal.delete();
+		journal.awaitWritten();
+		assertFalse(mDirectory.exists());
+		assertNull(new SessionJournal(mDirectory, SEGMENT_BYTES).restore(new TerminalTestCase.MockTerminalOutput(), null));
+	}
+
+	public void testSessionJournalsProcessedOutput() throws Exception {
+		TerminalSession session = new TerminalSession("/bin/sh", "/", new String[0], new String[0], null, null);
+		SessionJournal journal = new SessionJournal(mDirectory, SEGMENT_BYTES);
+		session.setJournal(journal);
+		session.mEmulator = createEmulator();
+		journal.start(session.mEmulator);
+		byte[] output = "previous output\r\n$ \033[?1049hfull screen".getBytes(StandardCharsets.UTF_8);
+		assertTrue(session.mProcessToTerminalIOQueue.write(output, 0, output.length));
+		session.processOutput(Long.MAX_VALUE);
+		journal.awaitWritten();
+
+		assertEquals(output.length, journal.getOutputBytesWritten());
+		assertRestored(session.mEmulator);
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.termux.terminal;
+
+import android.os.Message;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+public class SessionRecorderTest extends TestCase {
+
+	private static final int COLUMNS = 80;
+	private static final int ROWS = 24;
+
+	private File mFile;
+
+	@Override
+	protected void setUp() throws IOException {
+		mFile = File.createTempFile("recording", "");
+	}
+
+	@Override
+	protected void tearDown() {
+		mFile.delete();
+	}
+
+	private static TerminalSession createSession() {
+		TerminalSession session = new TerminalSession("/bin/sh", "/", new String[0], new String[0], null, null);
+		session.mEmulator = new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), COLUMNS, ROWS, 1000, null);
+		session.mShellPid = 1;
+		return session;
+	}
+
+	private static void processOutput(TerminalSession session, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		assertTrue(session.mProcessToTerminalIOQueue.write(bytes, 0, bytes.length));
+		session.processOutput(Long.MAX_VALUE);
+	}
+
+	private TerminalReplay replay() throws Exception {
+		try (FileInputStream in = new FileInputStream(mFile)) {
+			return TerminalReplay.replay(in.getChannel(), false);
+		}
+	}
+
+	public void testRecordingReplaysToSameScreen() throws Exception {
+		TerminalSession session = createSession();
+		processOutput(session, "before recording\r\n\033[1;31m");
+		SessionRecorder recorder = session.startRecording(mFile);
+		for (int i = 0; i < 200; i++) processOutput(session, "red line " + i + "\r\n");
+		session.write(new byte[]{'l', 's', '\r'}, 0, 3);
+		session.mEmulator.resize(60, 20);
+		recorder.recordResize(session.mEmulator);
+		processOutput(session, "\033[0m$ ");
+		session.stopRecording();
+		recorder.awaitWritten();
+
+		assertNull(recorder.getError());
+		assertEquals(mFile.length(), recorder.getBytesWritten());
+		TerminalReplay replay = replay();
+		assertEquals(201, replay.getOutputEvents());
+		assertEquals(1, replay.getInputEvents());
+		assertEquals(1, replay.getResizes());
+		assertEquals(session.mEmulator.getScreen().getTranscriptText(), replay.getEmulator().getScreen().getTranscriptText());
+		assertEquals(TerminalReplay.checksum(session.mEmulator), replay.getChecksum());
+
+		// Nothing is recorded after stopping.
+		processOutput(session, "after");
+		recorder.awaitWritten();
+		assertEquals(201, replay().getOutputEvents());
+	}
+
+	public void testPastedInputIsRecorded() throws Exception {
+		TerminalSession session = createSession();
+		SessionRecorder recorder = session.startRecording(mFile);
+		processOutput(session, "$ ");
+		session.write(new byte[]{'a'}, 0, 1);
+		TerminalPaste paste = session.pasteInBackground("pasted text");
+		// Written after the paste, and recorded when it is.
+		session.write(new byte[]{'b'}, 0, 1);
+		paste.awaitFinished();
+		// Deliver the pasted input to the main thread, like the looper would.
+		Message message = new Message();
+		message.what = TerminalSession.MSG_RECORD_PASTED_INPUT;
+		session.mMainThreadHandler.handleMessage(message);
+		session.write(new byte[]{'c'}, 0, 1);
+		session.stopRecording();
+		recorder.awaitWritten();
+
+		byte[] queued = new byte[100];
+		int queuedLength = session.mTerminalToProcessIOQueue.read(queued, false);
+		assertEquals("apasted textbc", new String(queued, 0, queuedLength, StandardCharsets.UTF_8));
+
+		StringBuilder recordedInput = new StringBuilder();
+		try (FileInputStream in = new FileInputStream(mFile)) {
+			TerminalRecording.Reader reader = new TerminalRecording.Reader(in.getChannel());
+			int type;
+			while ((type = reader.next()) != -1) {
+				if (type == TerminalRecording.EVENT_INPUT)
+					recordedInput.append(new String(reader.getData(), 0, reader.getDataLength(), StandardCharsets.UTF_8));
+			}
+		}
+		assertEquals("apasted textbc", recordedInput.toString());
+	}
+
+	public void testRecordingStartsBetweenSequences() throws Exception {
+		TerminalSession session = createSession();
+		processOutput(session, "prompt \033[3");
+		SessionRecorder recorder = session.startRecording(mFile);
+		processOutput(session, "2mgreen");
+		processOutput(session, " text\r\n");
+		session.stopRecording();
+		recorder.awaitWritten();
+
+		// The output finishing the escape sequence is not part of the recording, but in the snapshot it starts with.
+		TerminalReplay replay = replay();
+		assertEquals(1, replay.getOutputEvents());
+		assertEquals(TerminalReplay.checksum(session.mEmulator), replay.getChecksum());
+	}
+
+	public void testRecordingStoppedWhenWriterBehind() throws Exception {
+		TerminalSession session = createSession();
+		SessionRecorder recorder = session.startRecording(mFile);
+		processOutput(session, "start\r\n");
+		recorder.awaitWritten();
+
+		CountDownLatch writerBlocked = new CountDownLatch(1);
+		BackgroundFileWriter.executeOnWriterThread(() -> {
+			try {
+				writerBlocked.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		try {
+			String line = "0123456789012345678901234567890123456789\r\n";
+			for (int i = 0; i < 2 * SessionRecorder.MAX_PENDING_BYTES / line.length() && recorder.getError() == null; i++)
+				processOutput(session, line);
+			assertNotNull(recorder.getError());
+		} finally {
+			writerBlocked.countDown();
+		}
+		session.stopRecording();
+		recorder.awaitWritten();
+
+		// The recording ends with the last event written completely before stopping.
+		TerminalReplay replay = replay();
+		assertTrue(replay.getOutputEvents() > 1);
+		assertTrue(replay.getOutputBytes() <= SessionRecorder.MAX_PENDING_BYTES);
+	}
+
+}
@@ -0,0 +1,255 @@
+package com.termux.terminal;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs many echoing processes through the {@link TerminalIoReactor}. Needs the native library, so the tests are skipped
+ * if it can not be loaded, like when running on a desktop JVM without a host build of it on the library path.
+ */
+public class TerminalIoReactorTest {
+
+	private static final int SESSION_COUNT = 200;
+
+	/** Skip the calling test if the native library can not be loaded. */
+	static void assumeNativeLibrary() {
+		try {
+			System.loadLibrary("termux");
+		} catch (UnsatisfiedLinkError e) {
+			Assume.assumeNoException("The native library is not on java.library.path", e);
+		}
+	}
+
+	@Before
+	public void setUp() {
+		assumeNativeLibrary();
+	}
+
+	static final class TestProcess {
+		final int mPid;
+		final ByteQueue mOutputQueue = new ByteQueue(4096, TerminalIoReactor.MAX_READ_SIZE);
+		/** Used instead of {@link #mOutputQueue} if zero-copy. */
+		final ChunkQueue mOutputChunks;
+		final ByteQueue mInputQueue = new ByteQueue(4096);
+		final StringBuilder mOutput = new StringBuilder();
+		final TerminalIoReactor.Channel mChannel;
+		final CountDownLatch mExited = new CountDownLatch(1);
+		volatile int mExitStatus;
+		/** If notifying about output throws, to test that the reactor survives a failing channel. */
+		volatile boolean mFailOnOutput;
+
+		TestProcess(TerminalIoReactor reactor, String... args) {
+			this(reactor, false, args);
+		}
+
+		TestProcess(TerminalIoReactor reactor, boolean zeroCopy, String... args) {
+			int[] pid = new int[1];
+			int fd = JNI.createSubprocess(args[0], "/", args, new String[]{"PATH=/bin:/usr/bin"}, pid, 24, 80);
+			mPid = pid[0];
+			TerminalIoReactor.ChannelListener listener = new TerminalIoReactor.ChannelListener() {
+				@Override
+				public void onOutputAvailable() {
+					if (mFailOnOutput) throw new IllegalStateException("Failing on output as requested by the test");
+				}
+
+				@Override
+				public void onProcessExited(int exitStatus) {
+					mExitStatus = exitStatus;
+					mExited.countDown();
+				}
+			};
+			mOutputChunks = zeroCopy ? new ChunkQueue(4 * TerminalIoReactor.MAX_READ_SIZE) : null;
+			if (zeroCopy) {
+				mChannel = reactor.register(fd, mPid, mOutputChunks, mInputQueue, listener);
+			} else {
+				mChannel = reactor.register(fd, mPid, mOutputQueue, mInputQueue, listener);
+			}
+		}
+
+		void write(String text) {
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			mInputQueue.write(bytes, 0, bytes.length);
+		}
+
+		/** Read the available output, returning it all so far. */
+		String readOutput() {
+			if (mOutputChunks != null) {
+				ChunkQueue.Chunk chunk;
+				while ((chunk = mOutputChunks.poll()) != null) {
+					mOutput.append(new String(chunk.mData, 0, chunk.mLength, StandardCharsets.UTF_8));
+					mOutputChunks.recycle(chunk);
+				}
+				return mOutput.toString();
+			}
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = mOutputQueue.read(buffer, false)) > 0)
+				mOutput.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+			return mOutput.toString();
+		}
+
+		void awaitOutput(String expected) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (!readOutput().equals(expected)) {
+				if (System.currentTimeMillis() > deadline) fail("Expected '" + expected + "', was '" + mOutput + "'");
+				Thread.sleep(5);
+			}
+		}
+
+		int awaitExit() throws InterruptedException {
+			if (!mChannel.isWatchingProcess()) return JNI.waitFor(mPid);
+			assertTrue("Process exit not reported", mExited.await(10, TimeUnit.SECONDS));
+			return mExitStatus;
+		}
+
+		/** Close the pty after {@link #awaitExit()}, like a session does on exit. */
+		void close() {
+			mChannel.close();
+			mOutputQueue.close();
+			if (mOutputChunks != null) mOutputChunks.close();
+			mInputQueue.close();
+		}
+	}
+
+	@Test
+	public void testManySessionsOnOneThread() throws Exception {
+		TerminalIoReactor reactor = TerminalIoReactor.getInstance(null);
+		assertNotNull(reactor);
+
+		int threadsBefore = Thread.activeCount();
+		long heapBefore = getUsedHeap();
+
+		List<TestProcess> processes = new ArrayList<>();
+		try {
+			for (int i = 0; i < SESSION_COUNT; i++) {
+				TestProcess process = new TestProcess(reactor, "/bin/cat");
+				processes.add(process);
+				process.write("hello " + i + "\n");
+			}
+			for (int i = 0; i < SESSION_COUNT; i++) {
+				// The terminal echoes the line, and then cat outputs it.
+				processes.get(i).awaitOutput("hello " + i + "\r\nhello " + i + "\r\n");
+			}
+
+			// No thread is started per session. The processes are waited for by the reactor if it watches them, or
+			// else by this thread in awaitExit(), where a session would start a thread each.
+			int threadsAdded = Thread.activeCount() - threadsBefore;
+			long heapPerSession = (getUsedHeap() - heapBefore) / SESSION_COUNT;
+			System.out.println("TerminalIoReactorTest: " + SESSION_COUNT + " sessions added " + threadsAdded
+				+ " threads and " + heapPerSession / 1024 + " KiB of heap each, processes "
+				+ (processes.get(0).mChannel.isWatchingProcess() ? "reaped by the reactor" : "waited for by the caller"));
+			assertEquals(0, threadsAdded);
+			// The queues of a session start at 4 KiB each and stay small with this little output.
+			assertTrue("Heap per session: " + heapPerSession, heapPerSession < 64 * 1024);
+
+			// End of file makes cat exit.
+			for (TestProcess process : processes) process.write("\004");
+			for (TestProcess process : processes) assertEquals(0, process.awaitExit());
+		} finally {
+			for (TestProcess process : processes) process.close();
+		}
+	}
+
+	private static long getUsedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	@Test
+	public void testFailingChannelDoesNotStopReactor() throws Exception {
+		TerminalIoReactor reactor = TerminalIoReactor.getInstance(null);
+
+		TestProcess failing = new TestProcess(reactor, "/bin/cat");
+		TestProcess working = new TestProcess(reactor, "/bin/cat");
+		try {
+			failing.mFailOnOutput = true;
+			failing.write("fail\n");
+			// The pty of the failed channel is closed, which hangs up cat, and its exit is still reported.
+			assertEquals(-1, failing.awaitExit());
+
+			working.write("work\n");
+			working.awaitOutput("work\r\nwork\r\n");
+			working.write("\004");
+			assertEquals(0, working.awaitExit());
+		} finally {
+			failing.close();
+			working.close();
+		}
+	}
+
+	@Test
+	public void testOutputLargerThanQueue() throws Exception {
+		TerminalIoReactor reactor = TerminalIoReactor.getInstance(null);
+
+		final int lines = 20_000;
+		StringBuilder expected = new StringBuilder();
+		for (int i = 1; i <= lines; i++) expected.append(i).append("\r\n");
+
+		TestProcess process = new TestProcess(reactor, "/bin/sh", "-c", "seq 1 " + lines);
+		try {
+			// Let the output queue fill up, so that the reactor has to hold back output until there is room.
+			Thread.sleep(200);
+			process.awaitOutput(expected.toString());
+			assertEquals(0, process.awaitExit());
+		} finally {
+			process.close();
+		}
+	}
+
+	@Test
+	public void testExitStatusAndOutputBeforeExit() throws Exception {
+		TerminalIoReactor reactor = TerminalIoReactor.getInstance(null);
+
+		TestProcess exited = new TestProcess(reactor, "/bin/sh", "-c", "echo bye; exit 3");
+		TestProcess killed = new TestProcess(reactor, "/bin/sh", "-c", "kill -9 $$");
+		try {
+			assertEquals(3, exited.awaitExit());
+			if (exited.mChannel.isWatchingProcess()) {
+				// The output is read before the exit is reported.
+				assertEquals("bye\r\n", exited.readOutput());
+			} else {
+				exited.awaitOutput("bye\r\n");
+			}
+			assertEquals(-9, killed.awaitExit());
+		} finally {
+			exited.close();
+			killed.close();
+		}
+	}
+
+	@Test
+	public void testZeroCopyOutput() throws Exception {
+		TerminalIoReactor reactor = TerminalIoReactor.getInstance(null);
+
+		final int lines = 20_000;
+		StringBuilder expected = new StringBuilder();
+		for (int i = 1; i <= lines; i++) expected.append(i).append("\r\n");
+
+		TestProcess process = new TestProcess(reactor, true, "/bin/sh", "-c", "seq 1 " + lines);
+		try {
+			Thread.sleep(200);
+			process.awaitOutput(expected.toString());
+			assertEquals(0, process.awaitExit());
+			assertEquals(expected.length(), process.mOutputChunks.getStats().getBytesWritten());
+		} finally {
+			process.close();
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.termux.terminal;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+
+public class TerminalMemoryGovernorTest extends TestCase {
+
+	private static TerminalSession createSession(int historyLines) {
+		TerminalSession session = new TerminalSession("/bin/sh", "/", new String[0], new String[0], null, null);
+		session.mEmulator = new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), 80, 24, 1000, null);
+		StringBuilder output = new StringBuilder();
+		for (int i = 0; i < historyLines; i++) output.append("line ").append(i).append("\r\n");
+		byte[] bytes = output.toString().getBytes(StandardCharsets.UTF_8);
+		session.mEmulator.append(bytes, bytes.length);
+		return session;
+	}
+
+	public void testWithinBudget() {
+		TerminalSession session = createSession(500);
+		TerminalMemoryGovernor governor = new TerminalMemoryGovernor(Long.MAX_VALUE);
+		governor.register(session);
+		governor.enforceBudget();
+		assertEquals(session.getEmulator().getMemoryUsage(), governor.getUsageBytes());
+		assertEquals(governor.getUsageBytes(), governor.getUsageBytes(session));
+		assertEquals(0, governor.getCompactionCount());
+		assertEquals(0, governor.getHibernationCount());
+	}
+
+	public void testLeastRecentlyViewedHibernatedFirst() {
+		TerminalSession first = createSession(900);
+		TerminalSession second = createSession(900);
+		TerminalSession third = createSession(900);
+		long sessionUsage = first.getEmulator().getMemoryUsage();
+
+		// Only room for two sessions with history:
+		TerminalMemoryGovernor governor = new TerminalMemoryGovernor(2 * sessionUsage + sessionUsage / 2);
+		governor.register(first);
+		governor.register(second);
+		governor.register(third);
+		governor.onSessionViewed(first);
+		governor.enforceBudget();
+
+		assertFalse(first.getEmulator().isTranscriptHibernated());
+		assertTrue(second.getEmulator().isTranscriptHibernated());
+		assertFalse(third.getEmulator().isTranscriptHibernated());
+		assertEquals(1, governor.getHibernationCount());
+		assertEquals(1, governor.getHibernatedSessionCount());
+		assertTrue(governor.getUsageBytes() <= governor.getBudgetBytes());
+		assertEquals(first.getEmulator().getMemoryUsage() + second.getEmulator().getMemoryUsage()
+			+ third.getEmulator().getMemoryUsage(), governor.getUsageBytes());
+
+		// Viewing the session restores its history:
+		governor.onSessionViewed(second);
+		assertFalse(second.getEmulator().isTranscriptHibernated());
+		assertTrue(second.getEmulator().getScreen().getTranscriptText().startsWith("line 0\nline 1\n"));
+
+		// The most recently viewed session is never hibernated, even if the others are not enough:
+		TerminalMemoryGovernor smallGovernor = new TerminalMemoryGovernor(0);
+		smallGovernor.register(first);
+		smallGovernor.register(second);
+		smallGovernor.enforceBudget();
+		assertTrue(first.getEmulator().isTranscriptHibernated());
+		assertFalse(second.getEmulator().isTranscriptHibernated());
+	}
+
+	public void testUnusedMemoryReleasedBeforeHibernating() {
+		TerminalSession background = createSession(900);
+		TerminalSession viewed = createSession(900);
+		byte[] altScreen = "\033[?1049hvim\033[?1049l".getBytes(StandardCharsets.UTF_8);
+		background.getEmulator().append(altScreen, altScreen.length);
+		assertTrue(background.getEmulator().hasUnusedAlternateBuffer());
+		long usage = background.getEmulator().getMemoryUsage() + viewed.getEmulator().getMemoryUsage();
+
+		TerminalMemoryGovernor governor = new TerminalMemoryGovernor(usage - 1);
+		governor.register(background);
+		governor.register(viewed);
+		governor.enforceBudget();
+		assertFalse(background.getEmulator().hasUnusedAlternateBuffer());
+		assertFalse(background.getEmulator().isTranscriptHibernated());
+		assertEquals(1, governor.getCompactionCount());
+		assertEquals(0, governor.getHibernationCount());
+
+		governor.unregister(background);
+		assertNull(background.mMemoryGovernor);
+		assertEquals(viewed.getEmulator().getMemoryUsage(), governor.getUsageBytes());
+	}
+
+}
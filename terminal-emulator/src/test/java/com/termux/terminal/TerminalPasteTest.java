@@ -0,0 +1,191 @@
+package com.termux.terminal;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TerminalPasteTest extends TestCase {
+
+	/** The sanitization {@link TerminalEmulator#paste(String)} did on the whole text before streaming. */
+	private static byte[] sanitizeAtOnce(String text) {
+		text = text.replaceAll("(\u001B|[\u0080-\u009F])", "");
+		text = text.replaceAll("\r?\n", "\r");
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] encodeInChunks(String text, int chunkSize) {
+		PasteEncoder encoder = new PasteEncoder(text);
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] chunk = new byte[chunkSize];
+		int length;
+		while ((length = encoder.encode(chunk)) > 0) {
+			assertTrue(length <= chunkSize);
+			result.write(chunk, 0, length);
+		}
+		return result.toByteArray();
+	}
+
+	private static String repeat(String text, int times) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < times; i++) builder.append(text);
+		return builder.toString();
+	}
+
+	/** Read everything from the queue until it is closed. */
+	private static Thread startConsumer(final ByteQueue queue, final ByteArrayOutputStream output, final boolean slow) {
+		Thread consumer = new Thread() {
+			@Override
+			public void run() {
+				byte[] buffer = new byte[slow ? 7 : 4096];
+				while (true) {
+					int read = queue.read(buffer, true);
+					if (read == -1) return;
+					synchronized (output) {
+						output.write(buffer, 0, read);
+					}
+					if (slow) Thread.yield();
+				}
+			}
+		};
+		consumer.start();
+		return consumer;
+	}
+
+	/** Wait for the pastes to finish and the consumer to have read everything they wrote. */
+	private static String awaitOutput(ByteQueue queue, ByteArrayOutputStream output, Thread consumer, TerminalPaste... pastes) throws InterruptedException {
+		long bytesWritten = 0;
+		for (TerminalPaste paste : pastes) {
+			paste.awaitFinished();
+			bytesWritten += paste.getBytesWritten();
+		}
+		while (true) {
+			synchronized (output) {
+				if (output.size() == bytesWritten) break;
+			}
+			Thread.sleep(1);
+		}
+		queue.close();
+		consumer.join();
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	public void testEncoderMatchesSanitizingAtOnce() {
+		String[] pieces = {"a", "Z", " ", "\r", "\n", "\r\n", "\033", "\u0080", "\u009f", " ", "å", "€", "😀",
+			"\ud83d", "\ude00", "漢"};
+		Random random = new Random(1234);
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder builder = new StringBuilder();
+			int length = random.nextInt(40);
+			for (int j = 0; j < length; j++) builder.append(pieces[random.nextInt(pieces.length)]);
+			String text = builder.toString();
+
+			byte[] expected = sanitizeAtOnce(text);
+			for (int chunkSize : new int[]{5, 6, 7, 13, PasteEncoder.CHUNK_SIZE}) {
+				byte[] actual = encodeInChunks(text, chunkSize);
+				if (!Arrays.equals(expected, actual))
+					fail("Chunk size " + chunkSize + " for " + Arrays.toString(text.toCharArray()) + ": expected "
+						+ Arrays.toString(expected) + ", was " + Arrays.toString(actual));
+			}
+		}
+	}
+
+	public void testEncoderJoinsSurrogatesAroundRemovedCharacters() {
+		assertEquals("😀", new String(encodeInChunks("\ud83d\033\ude00", 5), StandardCharsets.UTF_8));
+		assertEquals("?\r?", new String(encodeInChunks("\ud83d\n\ud83d", 5), StandardCharsets.UTF_8));
+	}
+
+	public void testStreamedPaste() throws InterruptedException {
+		String text = repeat("hello\r\nwörld\033[31m\u009b\n", 2000);
+		ByteQueue queue = new ByteQueue(64);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Thread consumer = startConsumer(queue, output, true);
+
+		TerminalPaste paste = new TerminalPaste(text, true, queue, null);
+		paste.start("PasteTest");
+
+		String expected = "\033[200~" + new String(sanitizeAtOnce(text), StandardCharsets.UTF_8) + "\033[201~";
+		assertEquals(expected, awaitOutput(queue, output, consumer, paste));
+		assertTrue(paste.isFinished());
+		assertFalse(paste.isCancelled());
+	}
+
+	public void testCancelledPasteIsTerminated() throws InterruptedException {
+		String text = repeat("€", 100000);
+		ByteQueue queue = new ByteQueue(64);
+
+		TerminalPaste paste = new TerminalPaste(text, true, queue, null);
+		paste.start("PasteTest");
+		while (paste.getBytesWritten() < 64) Thread.sleep(1);
+		paste.cancel();
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Thread consumer = startConsumer(queue, output, false);
+		String result = awaitOutput(queue, output, consumer, paste);
+
+		assertTrue(paste.isCancelled());
+		assertTrue(result.startsWith("\033[200~€"));
+		assertTrue(result.endsWith("€\033[201~"));
+		assertTrue(result.length() < text.length());
+		assertFalse(result.contains("�"));
+	}
+
+	public void testPastesAreWrittenInOrder() throws InterruptedException {
+		ByteQueue queue = new ByteQueue(16);
+
+		TerminalPaste first = new TerminalPaste(repeat("a", 5000), false, queue, null);
+		TerminalPaste second = new TerminalPaste(repeat("b", 5000), false, queue, first);
+		second.start("PasteTest2");
+		first.start("PasteTest1");
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Thread consumer = startConsumer(queue, output, true);
+		assertEquals(repeat("a", 5000) + repeat("b", 5000), awaitOutput(queue, output, consumer, first, second));
+	}
+
+	public void testInputIsDeferredUntilAfterPaste() throws InterruptedException {
+		ByteQueue queue = new ByteQueue(16);
+		TerminalPaste paste = new TerminalPaste(repeat("x", 1000), true, queue, null);
+		paste.start("PasteTest");
+		while (paste.getBytesWritten() < 16) Thread.sleep(1);
+
+		// The queue is full, but deferring input does not wait for the process.
+		byte[] input = "ab".getBytes(StandardCharsets.UTF_8);
+		assertTrue(paste.deferInput(input, 0, 1));
+		assertTrue(paste.deferInput(input, 1, 1));
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Thread consumer = startConsumer(queue, output, true);
+		assertEquals("\033[200~" + repeat("x", 1000) + "\033[201~ab", awaitOutput(queue, output, consumer, paste));
+		assertFalse(paste.deferInput(input, 0, 2));
+	}
+
+	public void testCancelledPasteWritesDeferredInput() throws InterruptedException {
+		ByteQueue queue = new ByteQueue(16);
+		TerminalPaste paste = new TerminalPaste(repeat("x", 100000), true, queue, null);
+		paste.start("PasteTest");
+		while (paste.getBytesWritten() < 16) Thread.sleep(1);
+		byte[] interrupt = {3};
+		assertTrue(paste.deferInput(interrupt, 0, 1));
+		paste.cancel();
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Thread consumer = startConsumer(queue, output, false);
+		String result = awaitOutput(queue, output, consumer, paste);
+		assertTrue(result.endsWith("x\033[201~\003"));
+		assertTrue(result.length() < 100000);
+	}
+
+	public void testPasteStopsWhenQueueIsClosed() {
+		ByteQueue queue = new ByteQueue(16);
+		TerminalPaste paste = new TerminalPaste(repeat("x", 1000), true, queue, null);
+		paste.start("PasteTest");
+		queue.close();
+		paste.awaitFinished();
+		assertTrue(paste.isFinished());
+		assertTrue(paste.getBytesWritten() <= 16);
+	}
+
+}
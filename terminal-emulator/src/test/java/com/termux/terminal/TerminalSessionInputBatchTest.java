@@ -0,0 +1,115 @@
+package com.termux.terminal;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class TerminalSessionInputBatchTest extends TestCase {
+
+	/** A session with a fake running process, and a thread draining its input like the output writer thread does. */
+	static final class DrainedSession {
+		final TerminalSession session = new TerminalSession("/bin/sh", "/", new String[0], new String[0], null, null);
+		final ByteArrayOutputStream written = new ByteArrayOutputStream();
+		private final Thread mDrainer;
+
+		DrainedSession() {
+			session.mShellPid = 1;
+			mDrainer = new Thread("InputBatchTestDrainer") {
+				@Override
+				public void run() {
+					byte[] buffer = new byte[4096];
+					while (true) {
+						int read = session.mTerminalToProcessIOQueue.read(buffer, true);
+						if (read == -1) return;
+						synchronized (written) {
+							written.write(buffer, 0, read);
+						}
+					}
+				}
+			};
+			mDrainer.start();
+		}
+
+		byte[] awaitWritten(int expectedLength) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 10000;
+			while (System.currentTimeMillis() < deadline) {
+				synchronized (written) {
+					if (written.size() >= expectedLength) break;
+				}
+				Thread.sleep(1);
+			}
+			session.mTerminalToProcessIOQueue.close();
+			mDrainer.join();
+			return written.toByteArray();
+		}
+	}
+
+	static String createText(int codePoints) {
+		StringBuilder builder = new StringBuilder();
+		int[] alphabet = {'a', 'Z', '0', ' ', 'å', '€', 0x1F600, '漢'};
+		for (int i = 0; i < codePoints; i++) builder.appendCodePoint(alphabet[i % alphabet.length]);
+		return builder.toString();
+	}
+
+	static void writeCodePoints(TerminalSession session, String text) {
+		for (int i = 0; i < text.length(); ) {
+			int codePoint = text.codePointAt(i);
+			session.writeCodePoint(false, codePoint);
+			i += Character.charCount(codePoint);
+		}
+	}
+
+	public void testBatchIsWrittenInOrder() throws InterruptedException {
+		DrainedSession drained = new DrainedSession();
+		TerminalSession session = drained.session;
+
+		session.writeCodePoint(false, 'x');
+		session.beginInputBatch();
+		session.writeCodePoint(true, 'b');
+		session.beginInputBatch();
+		session.writeCodePoint(false, '€');
+		session.endInputBatch();
+		session.write(new byte[]{'-', '!', '-'}, 1, 1);
+		session.endInputBatch();
+		// Unbalanced end calls are ignored.
+		session.endInputBatch();
+		session.writeCodePoint(false, 'y');
+
+		byte[] expected = "x\033b€!y".getBytes(StandardCharsets.UTF_8);
+		assertEquals(new String(expected, StandardCharsets.UTF_8),
+			new String(drained.awaitWritten(expected.length), StandardCharsets.UTF_8));
+	}
+
+	public void testBatchIsDroppedWhenNotRunning() throws InterruptedException {
+		DrainedSession drained = new DrainedSession();
+		TerminalSession session = drained.session;
+
+		session.beginInputBatch();
+		session.writeCodePoint(false, 'a');
+		session.mShellPid = -1;
+		session.endInputBatch();
+		session.mShellPid = 1;
+		session.writeCodePoint(false, 'b');
+
+		assertEquals("b", new String(drained.awaitWritten(1), StandardCharsets.UTF_8));
+	}
+
+	/** Commit 100 KB of text through the batched path, which the input method commit path uses, and without batching. */
+	public void testCommit100KB() throws InterruptedException {
+		String text = createText(50 * 1024);
+		byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+		assertTrue(expected.length >= 100 * 1024);
+
+		DrainedSession unbatched = new DrainedSession();
+		writeCodePoints(unbatched.session, text);
+		assertEquals(text, new String(unbatched.awaitWritten(expected.length), StandardCharsets.UTF_8));
+
+		DrainedSession batched = new DrainedSession();
+		batched.session.beginInputBatch();
+		writeCodePoints(batched.session, text);
+		batched.session.endInputBatch();
+		assertEquals(text, new String(batched.awaitWritten(expected.length), StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.termux.terminal;
+
+import android.os.Message;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+
+public class TerminalSessionInterruptTest extends TestCase {
+
+	private static final int COLUMNS = 80;
+	private static final int ROWS = 24;
+
+	private static TerminalSession createSession() {
+		TerminalSession session = new TerminalSession("/bin/sh", "/", new String[0], new String[0], null, new TerminalSessionLatencyTest.CountingClient());
+		session.mEmulator = new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), COLUMNS, ROWS, 1000, null);
+		session.mShellPid = 1;
+		return session;
+	}
+
+	private static String getRowText(TerminalEmulator emulator, int row) {
+		return emulator.getScreen().getSelectedText(0, row, COLUMNS, row).trim();
+	}
+
+	public void testDiscardQueuedOutput() {
+		TerminalSession session = createSession();
+		int queuedBytes = 0;
+		for (int i = 1; i <= 5000; i++) {
+			byte[] line = ("line " + i + "\r\n").getBytes(StandardCharsets.UTF_8);
+			assertTrue(session.mProcessToTerminalIOQueue.write(line, 0, line.length));
+			queuedBytes += line.length;
+		}
+
+		long discardedBytes = session.discardQueuedOutput(100);
+		int processedBytes = ROWS * COLUMNS * 4;
+		assertEquals(100 + queuedBytes - processedBytes, discardedBytes);
+		assertFalse(session.hasPendingOutput());
+
+		// The last screen's worth of output is shown, followed by the marker line and the cursor on an empty line.
+		TerminalEmulator emulator = session.mEmulator;
+		assertEquals("line 5000", getRowText(emulator, ROWS - 3));
+		assertEquals("line 4999", getRowText(emulator, ROWS - 4));
+		assertEquals("[Discarded " + discardedBytes + " bytes of output]", getRowText(emulator, ROWS - 2));
+		assertEquals(ROWS - 1, emulator.getCursorRow());
+		assertEquals(0, emulator.getCursorCol());
+	}
+
+	public void testOutputIsNotDiscardedBeforeInterruptIsWritten() {
+		TerminalSession session = createSession();
+		session.setFlushOutputOnInterrupt(true);
+		byte[] output = "yes\r\n".getBytes(StandardCharsets.UTF_8);
+		session.mProcessToTerminalIOQueue.write(output, 0, output.length);
+
+		// Only queued, so the process has not been interrupted yet.
+		session.write(new byte[]{3}, 0, 1);
+		assertTrue(session.hasPendingOutput());
+	}
+
+	public void testDiscardOutputMessage() {
+		TerminalSession session = createSession();
+		for (int i = 1; i <= 5000; i++) {
+			byte[] line = ("line " + i + "\r\n").getBytes(StandardCharsets.UTF_8);
+			assertTrue(session.mProcessToTerminalIOQueue.write(line, 0, line.length));
+		}
+
+		// Sent by the thread which wrote the interrupt character to the pty, with the bytes it discarded there.
+		Message message = new Message();
+		message.what = TerminalSession.MSG_DISCARD_OUTPUT;
+		message.arg1 = 100;
+		session.mMainThreadHandler.handleMessage(message);
+
+		assertFalse(session.hasPendingOutput());
+		assertEquals("line 5000", getRowText(session.mEmulator, ROWS - 3));
+		assertTrue(getRowText(session.mEmulator, ROWS - 2).startsWith("[Discarded "));
+	}
+
+	public void testNothingToDiscard() {
+		TerminalSession session = createSession();
+		byte[] output = "$ ".getBytes(StandardCharsets.UTF_8);
+		session.mProcessToTerminalIOQueue.write(output, 0, output.length);
+
+		assertEquals(0, session.discardQueuedOutput(0));
+		assertEquals("$", getRowText(session.mEmulator, 0));
+		assertEquals(2, session.mEmulator.getCursorCol());
+	}
+
+}
@@ -0,0 +1,175 @@
+package com.termux.terminal;
+
+import android.os.Message;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives the {@link TerminalSession.MainThreadHandler} of a session like the looper of the main thread does, to check
+ * that a process flooding output only holds up other messages, like input events, for a time slice at a time.
+ */
+public class TerminalSessionLatencyTest extends TestCase {
+
+	private static final int COLUMNS = 80;
+	private static final int ROWS = 24;
+
+	/** A client counting the screen updates of the session. */
+	static final class CountingClient implements TerminalSessionClient {
+		int textChanges;
+
+		@Override
+		public void onTextChanged(TerminalSession changedSession) {
+			textChanges++;
+		}
+
+		@Override
+		public void onTitleChanged(TerminalSession changedSession) {
+		}
+
+		@Override
+		public void onSessionFinished(TerminalSession finishedSession) {
+		}
+
+		@Override
+		public void onCopyTextToClipboard(TerminalSession session, String text) {
+		}
+
+		@Override
+		public void onPasteTextFromClipboard(TerminalSession session) {
+		}
+
+		@Override
+		public void onBell(TerminalSession session) {
+		}
+
+		@Override
+		public void onColorsChanged(TerminalSession session) {
+		}
+
+		@Override
+		public void setTerminalShellPid(TerminalSession session, int pid) {
+		}
+
+		@Override
+		public void onTerminalCursorStateChange(boolean state) {
+		}
+
+		@Override
+		public Integer getTerminalCursorStyle() {
+			return null;
+		}
+
+		@Override
+		public void logError(String tag, String message) {
+		}
+
+		@Override
+		public void logWarn(String tag, String message) {
+		}
+
+		@Override
+		public void logInfo(String tag, String message) {
+		}
+
+		@Override
+		public void logDebug(String tag, String message) {
+		}
+
+		@Override
+		public void logVerbose(String tag, String message) {
+		}
+
+		@Override
+		public void logStackTraceWithMessage(String tag, String message, Exception e) {
+		}
+
+		@Override
+		public void logStackTrace(String tag, Exception e) {
+		}
+	}
+
+	private CountingClient mClient;
+	private TerminalSession mSession;
+
+	@Override
+	protected void setUp() {
+		mClient = new CountingClient();
+		mSession = new TerminalSession("/bin/sh", "/", new String[0], new String[0], null, mClient);
+		mSession.mEmulator = new TerminalEmulator(new TerminalTestCase.MockTerminalOutput(), COLUMNS, ROWS, 1000, null);
+		mSession.mShellPid = 1;
+	}
+
+	/** Queue output like the reader of the process output does, returning the number of bytes queued. */
+	private int queueOutput(int lines) {
+		int queuedBytes = 0;
+		for (int i = 0; i < lines; i++) {
+			byte[] line = ("line " + i + "\r\n").getBytes(StandardCharsets.UTF_8);
+			assertTrue(mSession.mProcessToTerminalIOQueue.write(line, 0, line.length));
+			queuedBytes += line.length;
+		}
+		return queuedBytes;
+	}
+
+	/**
+	 * Run the main thread while an output message is pending, handling one of the input events after each output message
+	 * as they are queued behind it. Returns the messages in the order they were handled, with null for output messages.
+	 */
+	private List<String> runMainThread(List<String> inputEvents) {
+		List<String> handled = new ArrayList<>();
+		while (mSession.mOutputMessagePending.get()) {
+			Message message = new Message();
+			message.what = TerminalSession.MSG_NEW_INPUT;
+			mSession.mMainThreadHandler.handleMessage(message);
+			handled.add(null);
+			if (!inputEvents.isEmpty()) handled.add(inputEvents.remove(0));
+		}
+		return handled;
+	}
+
+	public void testOutputIsProcessedInSlices() {
+		// With a slice of no time at all, every message processes a single read of the queue.
+		mSession.mOutputProcessingSliceNanos = 0;
+		int queuedBytes = queueOutput(5000);
+		int readSize = 4 * 1024;
+		int expectedMessages = (queuedBytes + readSize - 1) / readSize;
+		assertTrue(expectedMessages > 3);
+
+		List<String> inputEvents = new ArrayList<>();
+		inputEvents.add("key 1");
+		inputEvents.add("key 2");
+		inputEvents.add("key 3");
+		mSession.postOutputMessage();
+		List<String> handled = runMainThread(inputEvents);
+
+		// The input events were handled between the slices, instead of after all the output.
+		assertEquals(expectedMessages + 3, handled.size());
+		assertNull(handled.get(0));
+		assertEquals("key 1", handled.get(1));
+		assertNull(handled.get(2));
+		assertEquals("key 2", handled.get(3));
+		assertNull(handled.get(4));
+		assertEquals("key 3", handled.get(5));
+
+		assertFalse(mSession.hasPendingOutput());
+		assertEquals(expectedMessages, mClient.textChanges);
+		assertEquals("line 4999", mSession.mEmulator.getScreen().getSelectedText(0, ROWS - 2, COLUMNS, ROWS - 2).trim());
+	}
+
+	public void testOutputWithinSliceIsProcessedAtOnce() {
+		queueOutput(10);
+		mSession.postOutputMessage();
+		// Posting again while a message is pending does not post another one.
+		mSession.postOutputMessage();
+
+		List<String> handled = runMainThread(new ArrayList<String>());
+		assertEquals(1, handled.size());
+		assertFalse(mSession.hasPendingOutput());
+		assertFalse(mSession.mOutputMessagePending.get());
+		assertEquals(1, mClient.textChanges);
+	}
+
+}
@@ -0,0 +1,177 @@
+package com.termux.view;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewParent;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityNodeProvider;
+
+import com.termux.terminal.TerminalBuffer;
+import com.termux.terminal.TerminalEmulator;
+import com.termux.terminal.TerminalRow;
+
+/**
+ * Exposes the rows of a {@link TerminalView} to accessibility services as one virtual node per visible row.
+ * <p/>
+ * Building the text of the whole screen on every screen update is too slow for continuous output. Instead screen
+ * updates only schedule a check, at most once every {@link #UPDATE_THROTTLE_MILLIS}, which compares a hash of the
+ * content of each visible row with the one of the previous check and sends change events for the changed rows only.
+ * The text of a row is only built when an accessibility service asks for its node.
+ */
+final class TerminalAccessibilityNodeProvider extends AccessibilityNodeProvider {
+
+    /** The minimum time between checks for changed rows, and so between change events. */
+    private static final long UPDATE_THROTTLE_MILLIS = 200;
+
+    /** If more rows changed in one check, a single event for the whole view is sent instead of one per row. */
+    private static final int MAX_ROW_EVENTS_PER_UPDATE = 4;
+
+    private final TerminalView mView;
+
+    /** The content hashes of the visible rows at the last check, or null if they should all be considered changed. */
+    private int[] mRowHashes;
+
+    private boolean mUpdateScheduled;
+    private long mLastUpdateTime;
+
+    private final int[] mChangedRowIndexes = new int[MAX_ROW_EVENTS_PER_UPDATE];
+    private final Rect mTempRect = new Rect();
+    private final int[] mTempLocation = new int[2];
+
+    private final Runnable mUpdateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mUpdateScheduled = false;
+            mLastUpdateTime = SystemClock.uptimeMillis();
+            sendEventsForChangedRows();
+        }
+    };
+
+    TerminalAccessibilityNodeProvider(TerminalView view) {
+        mView = view;
+    }
+
+    /** Called when the screen content or the scroll position has changed. */
+    void onScreenUpdated() {
+        if (mUpdateScheduled) return;
+        mUpdateScheduled = true;
+        long delay = Math.max(0, mLastUpdateTime + UPDATE_THROTTLE_MILLIS - SystemClock.uptimeMillis());
+        mView.postDelayed(mUpdateRunnable, delay);
+    }
+
+    /** Called when the view is detached or another session is attached, to drop a scheduled check for changed rows. */
+    void cancelUpdate() {
+        mView.removeCallbacks(mUpdateRunnable);
+        mUpdateScheduled = false;
+    }
+
+    /** Called when another session was attached or the screen was resized, so that all rows are considered changed. */
+    void invalidateRows() {
+        mRowHashes = null;
+        onScreenUpdated();
+    }
+
+    private void sendEventsForChangedRows() {
+        final TerminalEmulator emulator = mView.mEmulator;
+        if (emulator == null) return;
+
+        final int rows = emulator.mRows;
+        int[] rowHashes = mRowHashes;
+        boolean allChanged = rowHashes == null || rowHashes.length != rows;
+        if (allChanged) rowHashes = new int[rows];
+
+        final int[] changedRowIndexes = mChangedRowIndexes;
+        int changedRows = 0;
+        for (int row = 0; row < rows; row++) {
+            int hash = hashRow(emulator, mView.mTopRow + row);
+            if (allChanged || rowHashes[row] != hash) {
+                if (changedRows < MAX_ROW_EVENTS_PER_UPDATE) changedRowIndexes[changedRows] = row;
+                changedRows++;
+            }
+            rowHashes[row] = hash;
+        }
+        mRowHashes = rowHashes;
+
+        if (changedRows == 0) return;
+        if (allChanged || changedRows > MAX_ROW_EVENTS_PER_UPDATE) {
+            sendContentChangedEvent(View.NO_ID, AccessibilityEvent.CONTENT_CHANGE_TYPE_SUBTREE);
+        } else {
+            for (int i = 0; i < changedRows; i++)
+                sendContentChangedEvent(changedRowIndexes[i], AccessibilityEvent.CONTENT_CHANGE_TYPE_TEXT);
+        }
+    }
+
+    /** Hash the text of a row without creating a string of it, or allocating the row if it is blank. */
+    private static int hashRow(TerminalEmulator emulator, int externalRow) {
+        TerminalBuffer screen = emulator.getScreen();
+        TerminalRow row = screen.getLineIfAllocated(screen.externalToInternalRow(externalRow));
+        int hash = 1;
+        int column = 0;
+        if (row != null) {
+            final char[] text = row.mText;
+            final int spaceUsed = row.getSpaceUsed();
+            for (int i = 0; i < spaceUsed; i++) hash = 31 * hash + text[i];
+            column = row.getStoredColumns();
+        }
+        // The columns which are not stored, and all of a row not allocated, are blank, so hash them like stored blanks:
+        for (; column < emulator.mColumns; column++) hash = 31 * hash + ' ';
+        return hash;
+    }
+
+    private void sendContentChangedEvent(int virtualViewId, int contentChangeType) {
+        ViewParent parent = mView.getParent();
+        if (parent == null) return;
+
+        AccessibilityEvent event = AccessibilityEvent.obtain(AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED);
+        event.setPackageName(mView.getContext().getPackageName());
+        event.setContentChangeTypes(contentChangeType);
+        event.setClassName(TerminalView.class.getName());
+        if (virtualViewId == View.NO_ID) {
+            event.setSource(mView);
+        } else {
+            event.setSource(mView, virtualViewId);
+        }
+        parent.requestSendAccessibilityEvent(mView, event);
+    }
+
+    @Override
+    public AccessibilityNodeInfo createAccessibilityNodeInfo(int virtualViewId) {
+        final TerminalEmulator emulator = mView.mEmulator;
+
+        if (virtualViewId == View.NO_ID) {
+            AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain(mView);
+            mView.onInitializeAccessibilityNodeInfo(info);
+            if (emulator != null) {
+                for (int row = 0; row < emulator.mRows; row++) info.addChild(mView, row);
+            }
+            return info;
+        }
+
+        if (emulator == null || virtualViewId < 0 || virtualViewId >= emulator.mRows) return null;
+
+        final int externalRow = mView.mTopRow + virtualViewId;
+        AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain(mView, virtualViewId);
+        info.setPackageName(mView.getContext().getPackageName());
+        info.setClassName(TerminalView.class.getName());
+        info.setParent(mView);
+        info.setEnabled(true);
+        info.setVisibleToUser(true);
+        info.setText(emulator.getScreen().getSelectedText(0, externalRow, emulator.mColumns, externalRow));
+
+        final TerminalRenderer renderer = mView.mRenderer;
+        final Rect bounds = mTempRect;
+        bounds.left = 0;
+        bounds.top = renderer.mFontLineSpacingAndAscent + virtualViewId * renderer.mFontLineSpacing;
+        bounds.right = (int) Math.ceil(emulator.mColumns * renderer.mFontWidth);
+        bounds.bottom = bounds.top + renderer.mFontLineSpacing;
+        info.setBoundsInParent(bounds);
+
+        mView.getLocationOnScreen(mTempLocation);
+        bounds.offset(mTempLocation[0], mTempLocation[1]);
+        info.setBoundsInScreen(bounds);
+        return info;
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.termux.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.TypedValue;
+
+import com.termux.terminal.InputLatencyTracer;
+import com.termux.terminal.LatencyHistogram;
+import com.termux.terminal.TerminalMetrics;
+
+/**
+ * Draws the {@link TerminalMetrics} of the emulator of a {@link TerminalView} over the top right of it, and the key
+ * to echo latency if the session is traced by an {@link InputLatencyTracer}, see
+ * {@link TerminalView#setMetricsOverlayEnabled(boolean)}. The text is built in reused buffers, so that drawing it in
+ * every frame does not add garbage of its own to what is measured.
+ */
+final class TerminalMetricsOverlay {
+
+    private static final float TEXT_SIZE_SP = 10;
+
+    private final Paint mTextPaint = new Paint();
+    private final Paint mBackgroundPaint = new Paint();
+    private final float mLineHeight;
+    private final float mPadding;
+    private final float mWidth;
+
+    private final StringBuilder mLine = new StringBuilder();
+    private char[] mLineChars = new char[128];
+
+    TerminalMetricsOverlay(Context context) {
+        mTextPaint.setTypeface(Typeface.MONOSPACE);
+        mTextPaint.setAntiAlias(true);
+        mTextPaint.setColor(0xFFFFFFFF);
+        mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP, context.getResources().getDisplayMetrics()));
+        mBackgroundPaint.setColor(0xB0000000);
+        mLineHeight = mTextPaint.getFontSpacing();
+        mPadding = mLineHeight / 2;
+        // The width of the widest line, the one of the escape sequences, with room for the counts to grow.
+        mWidth = mTextPaint.measureText("seq 0000000 csi 0000000 osc 00000 dcs 00 esc 00000") + 2 * mPadding;
+    }
+
+    /** Draw the metrics, and the key to echo latency if the tracer is not null. */
+    void draw(Canvas canvas, TerminalMetrics metrics, InputLatencyTracer tracer, int viewWidth) {
+        final float left = Math.max(0, viewWidth - mWidth);
+        final int lines = tracer == null ? 6 : 7;
+        canvas.drawRect(left, 0, viewWidth, lines * mLineHeight + 2 * mPadding, mBackgroundPaint);
+
+        float y = mPadding - mTextPaint.ascent();
+        mLine.append("parsed ").append(metrics.getBytesParsed() / 1024).append(" KiB");
+        y = drawLine(canvas, left, y);
+
+        mLine.append("seq ").append(metrics.getEscapeSequences())
+            .append(" csi ").append(metrics.getEscapeSequences(TerminalMetrics.SEQUENCE_CSI))
+            .append(" osc ").append(metrics.getEscapeSequences(TerminalMetrics.SEQUENCE_OSC))
+            .append(" dcs ").append(metrics.getEscapeSequences(TerminalMetrics.SEQUENCE_DCS))
+            .append(" esc ").append(metrics.getEscapeSequences(TerminalMetrics.SEQUENCE_ESC));
+        y = drawLine(canvas, left, y);
+
+        mLine.append("scrolls ").append(metrics.getScrolls()).append(" (").append(metrics.getLinesScrolled())
+            .append(" lines) reflows ").append(metrics.getReflows()).append('/').append(metrics.getResizes());
+        y = drawLine(canvas, left, y);
+
+        y = drawHistogram(canvas, left, y, "append ", metrics.getAppendTime());
+        y = drawHistogram(canvas, left, y, "latency", metrics.getQueueToRenderLatency());
+        y = drawHistogram(canvas, left, y, "render ", metrics.getRenderTime());
+        if (tracer != null) drawHistogram(canvas, left, y, "echo   ", tracer.getKeyToRender());
+    }
+
+    private float drawHistogram(Canvas canvas, float left, float y, String name, LatencyHistogram histogram) {
+        mLine.append(name).append(" p50 ").append(histogram.getPercentileNanos(50) / 1000)
+            .append(" p99 ").append(histogram.getPercentileNanos(99) / 1000)
+            .append(" max ").append(histogram.getMaxNanos() / 1000).append(" us");
+        return drawLine(canvas, left, y);
+    }
+
+    /** Draw and clear {@link #mLine}, returning the baseline of the next line. */
+    private float drawLine(Canvas canvas, float left, float y) {
+        final int length = mLine.length();
+        if (length > mLineChars.length) mLineChars = new char[length];
+        mLine.getChars(0, length, mLineChars, 0);
+        canvas.drawText(mLineChars, 0, length, left + mPadding, y, mTextPaint);
+        mLine.setLength(0);
+        return y + mLineHeight;
+    }
+
+}
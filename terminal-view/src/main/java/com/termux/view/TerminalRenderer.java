@@ -11,10 +11,13 @@ import com.termux.terminal.TerminalRow;
 import com.termux.terminal.TextStyle;
 import com.termux.terminal.WcWidth;
 
+import java.util.Arrays;
+
 /**
  * Renderer of a {@link TerminalEmulator} into a {@link Canvas}.
  * <p/>
- * Saves font metrics, so needs to be recreated each time the typeface or font size changes.
+ * Saves font metrics, so needs to be recreated each time the typeface or font size changes. The metrics are shared
+ * with other renderers of the same typeface and font size, see {@link TerminalRendererMetrics}.
  */
 public final class TerminalRenderer {
 
@@ -31,7 +34,10 @@ public final class TerminalRenderer {
     /** The {@link #mFontLineSpacing} + {@link #mFontAscent}. */
     final int mFontLineSpacingAndAscent;
 
-    private final float[] asciiMeasures = new float[127];
+    private final TerminalRendererMetrics mMetrics;
+
+    /** Spaces to draw the blank columns of rows which are not stored, see {@link TerminalRow#getStoredColumns()}. */
+    private char[] mBlankText = new char[0];
 
     public TerminalRenderer(int textSize, Typeface typeface) {
         mTextSize = textSize;
@@ -41,16 +47,11 @@ public final class TerminalRenderer {
         mTextPaint.setAntiAlias(true);
         mTextPaint.setTextSize(textSize);
 
-        mFontLineSpacing = (int) Math.ceil(mTextPaint.getFontSpacing());
-        mFontAscent = (int) Math.ceil(mTextPaint.ascent());
-        mFontLineSpacingAndAscent = mFontLineSpacing + mFontAscent;
-        mFontWidth = mTextPaint.measureText("X");
-
-        StringBuilder sb = new StringBuilder(" ");
-        for (int i = 0; i < asciiMeasures.length; i++) {
-            sb.setCharAt(0, (char) i);
-            asciiMeasures[i] = mTextPaint.measureText(sb, 0, 1);
-        }
+        mMetrics = TerminalRendererMetrics.get(textSize, typeface);
+        mFontLineSpacing = mMetrics.mFontLineSpacing;
+        mFontAscent = mMetrics.mFontAscent;
+        mFontLineSpacingAndAscent = mMetrics.mFontLineSpacingAndAscent;
+        mFontWidth = mMetrics.mFontWidth;
     }
 
     /** Render the terminal to a canvas with at a specified row scroll, and an optional rectangular selection. */
@@ -69,6 +70,11 @@ public final class TerminalRenderer {
         if (isReverseVideo)
             canvas.drawColor(palette[TextStyle.COLOR_INDEX_FOREGROUND], PorterDuff.Mode.SRC);
 
+        if (mBlankText.length < columns) {
+            mBlankText = new char[columns];
+            Arrays.fill(mBlankText, ' ');
+        }
+
         float heightOffset = mFontLineSpacingAndAscent;
         for (int row = topRow; row < endRow; row++) {
             heightOffset += mFontLineSpacing;
@@ -83,7 +89,10 @@ public final class TerminalRenderer {
             TerminalRow lineObject = screen.allocateFullLineIfNecessary(screen.externalToInternalRow(row));
             final char[] line = lineObject.mText;
             final int charsUsedInLine = lineObject.getSpaceUsed();
+            final int storedColumns = lineObject.getStoredColumns();
 
+            char[] text = line;
+            char[] lastRunText = line;
             long lastRunStyle = 0;
             boolean lastRunInsideCursor = false;
             boolean lastRunInsideSelection = false;
@@ -91,13 +100,19 @@ public final class TerminalRenderer {
             int lastRunStartIndex = 0;
             boolean lastRunFontWidthMismatch = false;
             int currentCharIndex = 0;
+            int lastRunEndIndex = 0;
             float measuredWidthForRun = 0.f;
 
             for (int column = 0; column < columns; ) {
-                final char charAtIndex = line[currentCharIndex];
+                if (column == storedColumns) {
+                    // The rest of the row is blank, with the text drawn from mBlankText at the index of the column:
+                    text = mBlankText;
+                    currentCharIndex = column;
+                }
+                final char charAtIndex = text[currentCharIndex];
                 final boolean charIsHighsurrogate = Character.isHighSurrogate(charAtIndex);
                 final int charsForCodePoint = charIsHighsurrogate ? 2 : 1;
-                final int codePoint = charIsHighsurrogate ? Character.toCodePoint(charAtIndex, line[currentCharIndex + 1]) : charAtIndex;
+                final int codePoint = charIsHighsurrogate ? Character.toCodePoint(charAtIndex, text[currentCharIndex + 1]) : charAtIndex;
                 final int codePointWcWidth = WcWidth.width(codePoint);
                 final boolean insideCursor = (cursorX == column || (codePointWcWidth == 2 && cursorX == column + 1));
                 final boolean insideSelection = column >= selx1 && column <= selx2;
@@ -107,19 +122,19 @@ public final class TerminalRenderer {
                 // This could happen for some fonts which are not truly monospace, or for more exotic characters such as
                 // smileys which android font renders as wide.
                 // If this is detected, we draw this code point scaled to match what wcwidth() expects.
-                final float measuredCodePointWidth = (codePoint < asciiMeasures.length) ? asciiMeasures[codePoint] : mTextPaint.measureText(line,
-                    currentCharIndex, charsForCodePoint);
+                final float measuredCodePointWidth = mMetrics.measureCodePoint(codePoint, text, currentCharIndex, charsForCodePoint);
                 final boolean fontWidthMismatch = Math.abs(measuredCodePointWidth / mFontWidth - codePointWcWidth) > 0.01;
 
-                if (style != lastRunStyle || insideCursor != lastRunInsideCursor || insideSelection != lastRunInsideSelection || fontWidthMismatch || lastRunFontWidthMismatch) {
+                if (style != lastRunStyle || insideCursor != lastRunInsideCursor || insideSelection != lastRunInsideSelection || fontWidthMismatch
+                    || lastRunFontWidthMismatch || column == storedColumns) {
                     if (column == 0) {
                         // Skip first column as there is nothing to draw, just record the current style.
                     } else {
                         final int columnWidthSinceLastRun = column - lastRunStartColumn;
-                        final int charsSinceLastRun = currentCharIndex - lastRunStartIndex;
+                        final int charsSinceLastRun = lastRunEndIndex - lastRunStartIndex;
                         int cursorColor = lastRunInsideCursor ? mEmulator.mColors.mCurrentColors[TextStyle.COLOR_INDEX_CURSOR] : 0;
                         boolean invertCursorTextColor = lastRunInsideCursor && cursorShape == TerminalEmulator.TERMINAL_CURSOR_STYLE_BLOCK;
-                        drawTextRun(canvas, line, palette, heightOffset, lastRunStartColumn, columnWidthSinceLastRun,
+                        drawTextRun(canvas, lastRunText, palette, heightOffset, lastRunStartColumn, columnWidthSinceLastRun,
                             lastRunStartIndex, charsSinceLastRun, measuredWidthForRun,
                             cursorColor, cursorShape, lastRunStyle, isReverseVideo || invertCursorTextColor || lastRunInsideSelection);
                     }
@@ -129,23 +144,25 @@ public final class TerminalRenderer {
                     lastRunInsideSelection = insideSelection;
                     lastRunStartColumn = column;
                     lastRunStartIndex = currentCharIndex;
+                    lastRunText = text;
                     lastRunFontWidthMismatch = fontWidthMismatch;
                 }
                 measuredWidthForRun += measuredCodePointWidth;
                 column += codePointWcWidth;
                 currentCharIndex += charsForCodePoint;
-                while (currentCharIndex < charsUsedInLine && WcWidth.width(line, currentCharIndex) <= 0) {
+                while (text == line && currentCharIndex < charsUsedInLine && WcWidth.width(line, currentCharIndex) <= 0) {
                     // Eat combining chars so that they are treated as part of the last non-combining code point,
                     // instead of e.g. being considered inside the cursor in the next run.
                     currentCharIndex += Character.isHighSurrogate(line[currentCharIndex]) ? 2 : 1;
                 }
+                lastRunEndIndex = currentCharIndex;
             }
 
             final int columnWidthSinceLastRun = columns - lastRunStartColumn;
-            final int charsSinceLastRun = currentCharIndex - lastRunStartIndex;
+            final int charsSinceLastRun = lastRunEndIndex - lastRunStartIndex;
             int cursorColor = lastRunInsideCursor ? mEmulator.mColors.mCurrentColors[TextStyle.COLOR_INDEX_CURSOR] : 0;
             boolean invertCursorTextColor = lastRunInsideCursor && cursorShape == TerminalEmulator.TERMINAL_CURSOR_STYLE_BLOCK;
-            drawTextRun(canvas, line, palette, heightOffset, lastRunStartColumn, columnWidthSinceLastRun, lastRunStartIndex, charsSinceLastRun,
+            drawTextRun(canvas, lastRunText, palette, heightOffset, lastRunStartColumn, columnWidthSinceLastRun, lastRunStartIndex, charsSinceLastRun,
                 measuredWidthForRun, cursorColor, cursorShape, lastRunStyle, isReverseVideo || invertCursorTextColor || lastRunInsideSelection);
         }
     }
@@ -0,0 +1,132 @@
+package com.termux.view;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The font metrics and glyph advances a {@link TerminalRenderer} needs for a typeface and text size.
+ * <p/>
+ * Measuring is expensive compared to rendering a frame, and a pinch zoom creates a renderer for every step of the text
+ * size, so the metrics are kept in a least recently used cache shared by all views and sessions, see
+ * {@link #get(int, Typeface)}. Zooming back and forth or switching between sessions with different text sizes then
+ * reuses both the metrics and the advances of the non-ASCII code points measured while rendering.
+ * <p/>
+ * Should only be used from the main thread, except for {@link #get(int, Typeface)}.
+ */
+final class TerminalRendererMetrics {
+
+    /** The number of typeface and text size combinations to keep metrics for. */
+    private static final int MAX_CACHED_METRICS = 16;
+
+    private static final Map<Key, TerminalRendererMetrics> sCache = new LinkedHashMap<Key, TerminalRendererMetrics>(MAX_CACHED_METRICS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, TerminalRendererMetrics> eldest) {
+            return size() > MAX_CACHED_METRICS;
+        }
+    };
+
+    /** The number of cached non-ASCII advances, which must be a power of two. */
+    private static final int ADVANCE_CACHE_SIZE = 512;
+
+    /** Used to measure non-ASCII code points not found in the advance cache. */
+    private final Paint mMeasurePaint = new Paint();
+
+    /** The width of a single mono spaced character obtained by {@link Paint#measureText(String)} on a single 'X'. */
+    final float mFontWidth;
+    /** The {@link Paint#getFontSpacing()}. See http://www.fampennings.nl/maarten/android/08numgrid/font.png */
+    final int mFontLineSpacing;
+    /** The {@link Paint#ascent()}. See http://www.fampennings.nl/maarten/android/08numgrid/font.png */
+    final int mFontAscent;
+    /** The {@link #mFontLineSpacing} + {@link #mFontAscent}. */
+    final int mFontLineSpacingAndAscent;
+
+    final float[] mAsciiMeasures = new float[127];
+
+    /**
+     * A direct mapped cache of the advances of non-ASCII code points, where a code point is stored at the index of its
+     * lower bits and replaces any other code point stored there before. Empty slots have code point -1.
+     */
+    private final int[] mAdvanceCacheCodePoints = new int[ADVANCE_CACHE_SIZE];
+    private final float[] mAdvanceCacheWidths = new float[ADVANCE_CACHE_SIZE];
+
+    private TerminalRendererMetrics(int textSize, Typeface typeface) {
+        mMeasurePaint.setTypeface(typeface);
+        mMeasurePaint.setAntiAlias(true);
+        mMeasurePaint.setTextSize(textSize);
+
+        mFontLineSpacing = (int) Math.ceil(mMeasurePaint.getFontSpacing());
+        mFontAscent = (int) Math.ceil(mMeasurePaint.ascent());
+        mFontLineSpacingAndAscent = mFontLineSpacing + mFontAscent;
+        mFontWidth = mMeasurePaint.measureText("X");
+
+        StringBuilder sb = new StringBuilder(" ");
+        for (int i = 0; i < mAsciiMeasures.length; i++) {
+            sb.setCharAt(0, (char) i);
+            mAsciiMeasures[i] = mMeasurePaint.measureText(sb, 0, 1);
+        }
+
+        Arrays.fill(mAdvanceCacheCodePoints, -1);
+    }
+
+    /** Get the metrics for the text size and typeface, measuring them only if not cached already. */
+    static TerminalRendererMetrics get(int textSize, Typeface typeface) {
+        Key key = new Key(textSize, typeface);
+        synchronized (sCache) {
+            TerminalRendererMetrics metrics = sCache.get(key);
+            if (metrics == null) {
+                metrics = new TerminalRendererMetrics(textSize, typeface);
+                sCache.put(key, metrics);
+            }
+            return metrics;
+        }
+    }
+
+    /**
+     * Get the measured width of the code point at the index of the text.
+     *
+     * @param codePoint The code point at the index.
+     * @param charsForCodePoint 2 if the code point is a surrogate pair, 1 otherwise.
+     */
+    float measureCodePoint(int codePoint, char[] text, int index, int charsForCodePoint) {
+        if (codePoint < mAsciiMeasures.length) return mAsciiMeasures[codePoint];
+
+        final int slot = codePoint & (ADVANCE_CACHE_SIZE - 1);
+        if (mAdvanceCacheCodePoints[slot] == codePoint) return mAdvanceCacheWidths[slot];
+
+        final float width = mMeasurePaint.measureText(text, index, charsForCodePoint);
+        mAdvanceCacheCodePoints[slot] = codePoint;
+        mAdvanceCacheWidths[slot] = width;
+        return width;
+    }
+
+    private static final class Key {
+
+        final int mTextSize;
+        final Typeface mTypeface;
+
+        Key(int textSize, Typeface typeface) {
+            mTextSize = textSize;
+            mTypeface = typeface;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return mTextSize == key.mTextSize && Objects.equals(mTypeface, key.mTypeface);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mTextSize + Objects.hashCode(mTypeface);
+        }
+
+    }
+
+}
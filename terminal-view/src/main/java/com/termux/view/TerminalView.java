@@ -24,6 +24,7 @@ import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewTreeObserver;
 import android.view.accessibility.AccessibilityManager;
+import android.view.accessibility.AccessibilityNodeProvider;
 import android.view.autofill.AutofillValue;
 import android.view.inputmethod.BaseInputConnection;
 import android.view.inputmethod.EditorInfo;
@@ -32,8 +33,11 @@ import android.widget.Scroller;
 
 import androidx.annotation.RequiresApi;
 
+import com.termux.terminal.InputLatencyTracer;
 import com.termux.terminal.KeyHandler;
+import com.termux.terminal.MouseMotionCoalescer;
 import com.termux.terminal.TerminalEmulator;
+import com.termux.terminal.TerminalMetrics;
 import com.termux.terminal.TerminalSession;
 import com.termux.view.textselection.TextSelectionCursorController;
 
@@ -70,6 +74,8 @@ public final class TerminalView extends View {
 
     /** The top row of text to display. Ranges from -activeTranscriptRows to 0. */
     int mTopRow;
+    /** The {@link com.termux.terminal.TerminalBuffer#getGeneration()} of the screen at the last screen update. */
+    private int mScreenGeneration;
     int[] mDefaultSelectors = new int[]{-1,-1,-1,-1};
 
     float mScaleFactor = 1.f;
@@ -79,6 +85,12 @@ public final class TerminalView extends View {
     private int mMouseScrollStartX = -1, mMouseScrollStartY = -1;
     /** Keep track of the time when a touch event leading to sending mouse scroll events started. */
     private long mMouseStartDownTime = -1;
+    /** Coalesces mouse motion reports to one per changed cell and frame, see {@link MouseMotionCoalescer}. */
+    private final MouseMotionCoalescer mMouseMotionCoalescer = new MouseMotionCoalescer();
+    /** Sends the pending mouse motion report, posted on the next animation frame. */
+    private final Runnable mMouseMotionFlushRunnable = () -> {
+        if (!isEmulatorNull()) mMouseMotionCoalescer.flush(mEmulator);
+    };
 
     final Scroller mScroller;
 
@@ -89,6 +101,11 @@ public final class TerminalView extends View {
     int mCombiningAccent;
 
     private final boolean mAccessibilityEnabled;
+    /** Exposes the visible rows to accessibility services, only created if accessibility is enabled. */
+    private TerminalAccessibilityNodeProvider mAccessibilityNodeProvider;
+
+    /** Draws the metrics of the emulator over the view if enabled with {@link #setMetricsOverlayEnabled(boolean)}. */
+    private TerminalMetricsOverlay mMetricsOverlay;
 
     private static final String LOG_TAG = "TerminalView";
 
@@ -218,6 +235,7 @@ public final class TerminalView extends View {
         mScroller = new Scroller(context);
         AccessibilityManager am = (AccessibilityManager) context.getSystemService(Context.ACCESSIBILITY_SERVICE);
         mAccessibilityEnabled = am.isEnabled();
+        if (mAccessibilityEnabled) mAccessibilityNodeProvider = new TerminalAccessibilityNodeProvider(this);
     }
 
 
@@ -239,6 +257,22 @@ public final class TerminalView extends View {
         TERMINAL_VIEW_KEY_LOGGING_ENABLED = value;
     }
 
+    /**
+     * Sets whether the {@link com.termux.terminal.TerminalMetrics} of the emulator, like the bytes parsed and the
+     * percentiles of the time rendering a frame takes, are shown over the top right of the view.
+     *
+     * @param enabled The boolean value that defines the state.
+     */
+    public void setMetricsOverlayEnabled(boolean enabled) {
+        if (enabled == isMetricsOverlayEnabled()) return;
+        mMetricsOverlay = enabled ? new TerminalMetricsOverlay(getContext()) : null;
+        invalidate();
+    }
+
+    public boolean isMetricsOverlayEnabled() {
+        return mMetricsOverlay != null;
+    }
+
 
 
     /**
@@ -253,6 +287,13 @@ public final class TerminalView extends View {
         mTermSession = session;
         mEmulator = null;
         mCombiningAccent = 0;
+        mMouseMotionCoalescer.reset();
+        if (mAccessibilityNodeProvider != null) {
+            mAccessibilityNodeProvider.cancelUpdate();
+            mAccessibilityNodeProvider.invalidateRows();
+        }
+        TerminalMetrics metrics = session != null ? session.getMetrics() : null;
+        if (metrics != null) metrics.onViewAttached();
 
         updateSize();
 
@@ -338,6 +379,20 @@ public final class TerminalView extends View {
             void sendTextToTerminal(CharSequence text) {
                 stopTextSelectionMode();
                 final int textLengthInChars = text.length();
+                if (textLengthInChars == 0 || mTermSession == null) return;
+
+                // Modifiers and the client are still consulted for every code point below, but the encoded
+                // input is collected and written to the process once instead of once per code point.
+                final TerminalSession session = mTermSession;
+                session.beginInputBatch();
+                try {
+                    sendCodePointsToTerminal(text, textLengthInChars);
+                } finally {
+                    session.endInputBatch();
+                }
+            }
+
+            private void sendCodePointsToTerminal(CharSequence text, int textLengthInChars) {
                 for (int i = 0; i < textLengthInChars; i++) {
                     char firstChar = text.charAt(i);
                     int codePoint;
@@ -414,13 +469,17 @@ public final class TerminalView extends View {
 
         int rowsInHistory = mEmulator.getScreen().getActiveTranscriptRows();
         if (mTopRow < -rowsInHistory) mTopRow = -rowsInHistory;
+        int screenGeneration = mEmulator.getScreen().getGeneration();
+        boolean transcriptCleared = screenGeneration != mScreenGeneration;
+        mScreenGeneration = screenGeneration;
 
         boolean skipScrolling = false;
         if (isSelectingText()) {
             // Do not scroll when selecting text.
             int rowShift = mEmulator.getScrollCounter();
-            if (-mTopRow + rowShift > rowsInHistory) {
-                // .. unless we're hitting the end of history transcript, in which
+            if (transcriptCleared || -mTopRow + rowShift > rowsInHistory) {
+                // .. unless we're hitting the end of history transcript, or the
+                // selected rows are gone with the cleared history, in which
                 // case we abort text selection and scroll to end.
                 stopTextSelectionMode();
             } else {
@@ -444,7 +503,7 @@ public final class TerminalView extends View {
         mEmulator.clearScrollCounter();
 
         invalidate();
-        if (mAccessibilityEnabled) setContentDescription(getText());
+        if (mAccessibilityNodeProvider != null) mAccessibilityNodeProvider.onScreenUpdated();
     }
 
     /**
@@ -463,6 +522,11 @@ public final class TerminalView extends View {
         invalidate();
     }
 
+    @Override
+    public AccessibilityNodeProvider getAccessibilityNodeProvider() {
+        return mAccessibilityNodeProvider != null ? mAccessibilityNodeProvider : super.getAccessibilityNodeProvider();
+    }
+
     @Override
     public boolean onCheckIsTextEditor() {
         return true;
@@ -508,7 +572,18 @@ public final class TerminalView extends View {
                 mMouseScrollStartY = y;
             }
         }
-        mEmulator.sendMouseEvent(button, x, y, pressed);
+
+        if (button == TerminalEmulator.MOUSE_LEFT_BUTTON_MOVED) {
+            // Report motion at most once per frame, and only when moved to another cell.
+            if (mMouseMotionCoalescer.onMotion(mEmulator, x, y)) postOnAnimation(mMouseMotionFlushRunnable);
+        } else {
+            mMouseMotionCoalescer.sendButtonEvent(mEmulator, button, x, y, pressed);
+        }
+    }
+
+    /** Get the {@link MouseMotionCoalescer} with the counts of reported and suppressed mouse motion events. */
+    public MouseMotionCoalescer getMouseMotionCoalescer() {
+        return mMouseMotionCoalescer;
     }
 
     /** Perform a scroll, either from dragging the screen or by scrolling a mouse wheel. */
@@ -561,7 +636,7 @@ public final class TerminalView extends View {
                 ClipData clipData = clipboard.getPrimaryClip();
                 if (clipData != null) {
                     CharSequence paste = clipData.getItemAt(0).coerceToText(getContext());
-                    if (!TextUtils.isEmpty(paste)) mEmulator.paste(paste.toString());
+                    if (!TextUtils.isEmpty(paste)) mTermSession.pasteInBackground(paste);
                 }
             } else if (mEmulator.isMouseTrackingActive()) { // BUTTON_PRIMARY.
                 switch (event.getAction()) {
@@ -707,6 +782,7 @@ public final class TerminalView extends View {
         if (TERMINAL_VIEW_KEY_LOGGING_ENABLED)
             mClient.logInfo(LOG_TAG, "onKeyDown(keyCode=" + keyCode + ", isSystem()=" + event.isSystem() + ", event=" + event + ")");
         if (isEmulatorNull()) return true;
+        traceKeyEvent();
         if (isSelectingText()) {
             stopTextSelectionMode();
         }
@@ -785,6 +861,7 @@ public final class TerminalView extends View {
         }
 
         if (mTermSession == null) return;
+        traceKeyEvent();
 
         // Ensure cursor is shown when a key is pressed down like long hold on (arrow) keys
         if (!isEmulatorNull())
@@ -840,6 +917,12 @@ public final class TerminalView extends View {
         }
     }
 
+    /** Pass the time of a key event to the {@link InputLatencyTracer} of the session, if it is traced. */
+    private void traceKeyEvent() {
+        InputLatencyTracer tracer = mTermSession.getInputLatencyTracer();
+        if (tracer != null) tracer.onKeyEvent(System.nanoTime());
+    }
+
     /** Input the specified keyCode if applicable and return if the input was consumed. */
     public boolean handleKeyCode(int keyCode, int keyMod) {
         // Ensure cursor is shown when a key is pressed down like long hold on (arrow) keys
@@ -911,6 +994,7 @@ public final class TerminalView extends View {
             mTopRow = 0;
             scrollTo(0, 0);
             invalidate();
+            if (mAccessibilityNodeProvider != null) mAccessibilityNodeProvider.invalidateRows();
         }
     }
 
@@ -925,10 +1009,17 @@ public final class TerminalView extends View {
                 mTextSelectionCursorController.getSelectors(sel);
             }
 
+            long renderStartNanos = System.nanoTime();
             mRenderer.render(mEmulator, canvas, mTopRow, sel[0], sel[1], sel[2], sel[3]);
+            long renderEndNanos = System.nanoTime();
+            mEmulator.getMetrics().onFrameRendered(renderStartNanos, renderEndNanos);
+            InputLatencyTracer tracer = mTermSession.getInputLatencyTracer();
+            if (tracer != null) tracer.onFrameRendered(renderEndNanos);
 
             // render the text selection handles
             renderTextSelection();
+
+            if (mMetricsOverlay != null) mMetricsOverlay.draw(canvas, mEmulator.getMetrics(), tracer, getWidth());
         }
     }
 
@@ -936,10 +1027,6 @@ public final class TerminalView extends View {
         return mTermSession;
     }
 
-    private CharSequence getText() {
-        return mEmulator.getScreen().getSelectedText(0, mTopRow, mEmulator.mColumns, mTopRow + mEmulator.mRows);
-    }
-
     public int getCursorX(float x) {
         return (int) (x / mRenderer.mFontWidth);
     }
@@ -1226,6 +1313,7 @@ public final class TerminalView extends View {
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        if (!isEmulatorNull()) mEmulator.getMetrics().onViewAttached();
 
         if (mTextSelectionCursorController != null) {
             getViewTreeObserver().addOnTouchModeChangeListener(mTextSelectionCursorController);
@@ -1236,6 +1324,8 @@ public final class TerminalView extends View {
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
 
+        if (mAccessibilityNodeProvider != null) mAccessibilityNodeProvider.cancelUpdate();
+
         if (mTextSelectionCursorController != null) {
             // Might solve the following exception
             // android.view.WindowLeaked: Activity com.termux.app.TermuxActivity has leaked window android.widget.PopupWindow
@@ -18,7 +18,7 @@ import java.util.List;
 import java.util.Set;
 
 /*
- * Version: v0.17.0
+ * Version: v0.20.0
  * SPDX-License-Identifier: MIT
  *
  * Changelog
@@ -77,6 +77,15 @@ import java.util.Set;
  *
  * - 0.17.0 (2022-03-17)
  *      - Add `KEY_DELETE_TMPDIR_FILES_OLDER_THAN_X_DAYS_ON_EXIT`.
+ *
+ * - 0.18.0 (2026-10-19)
+ *      - Add `KEY_TERMINAL_ZERO_COPY_OUTPUT`.
+ *
+ * - 0.19.0 (2026-10-19)
+ *      - Add `KEY_TERMINAL_DISCARD_OUTPUT_ON_INTERRUPT`.
+ *
+ * - 0.20.0 (2026-10-19)
+ *      - Add `KEY_TERMINAL_SESSION_JOURNAL`.
  */
 
 /**
@@ -116,6 +125,11 @@ public final class TermuxPropertyConstants {
 
 
 
+    /** Defines the key for whether output of terminal sessions not shown yet is discarded when the interrupt character is typed */
+    public static final String KEY_TERMINAL_DISCARD_OUTPUT_ON_INTERRUPT =  "terminal-discard-output-on-interrupt"; // Default: "terminal-discard-output-on-interrupt"
+
+
+
     /** Defines the key for whether to hide soft keyboard when termux app is started */
     public static final String KEY_HIDE_SOFT_KEYBOARD_ON_STARTUP =  "hide-soft-keyboard-on-startup"; // Default: "hide-soft-keyboard-on-startup"
 
@@ -131,6 +145,16 @@ public final class TermuxPropertyConstants {
 
 
 
+    /** Defines the key for whether the output of terminal sessions is journaled so that they are restored after the app is killed */
+    public static final String KEY_TERMINAL_SESSION_JOURNAL =  "terminal-session-journal"; // Default: "terminal-session-journal"
+
+
+
+    /** Defines the key for whether the output of terminal sessions is read directly into chunks processed in place by the terminal emulator */
+    public static final String KEY_TERMINAL_ZERO_COPY_OUTPUT =  "terminal-zero-copy-output"; // Default: "terminal-zero-copy-output"
+
+
+
     /** Defines the key for whether to use black UI */
     @Deprecated
     public static final String KEY_USE_BLACK_UI =  "use-black-ui"; // Default: "use-black-ui"
@@ -386,7 +410,10 @@ public final class TermuxPropertyConstants {
         KEY_EXTRA_KEYS_TEXT_ALL_CAPS,
         KEY_HIDE_SOFT_KEYBOARD_ON_STARTUP,
         KEY_RUN_TERMUX_AM_SOCKET_SERVER,
+        KEY_TERMINAL_DISCARD_OUTPUT_ON_INTERRUPT,
         KEY_TERMINAL_ONCLICK_URL_OPEN,
+        KEY_TERMINAL_SESSION_JOURNAL,
+        KEY_TERMINAL_ZERO_COPY_OUTPUT,
         KEY_USE_CTRL_SPACE_WORKAROUND,
         KEY_USE_FULLSCREEN,
         KEY_USE_FULLSCREEN_WORKAROUND,
@@ -430,7 +457,10 @@ public final class TermuxPropertyConstants {
         KEY_DISABLE_TERMINAL_SESSION_CHANGE_TOAST,
         KEY_ENFORCE_CHAR_BASED_INPUT,
         KEY_HIDE_SOFT_KEYBOARD_ON_STARTUP,
+        KEY_TERMINAL_DISCARD_OUTPUT_ON_INTERRUPT,
         KEY_TERMINAL_ONCLICK_URL_OPEN,
+        KEY_TERMINAL_SESSION_JOURNAL,
+        KEY_TERMINAL_ZERO_COPY_OUTPUT,
         KEY_USE_CTRL_SPACE_WORKAROUND,
         KEY_USE_FULLSCREEN,
         KEY_USE_FULLSCREEN_WORKAROUND,